@@ -0,0 +1,55 @@
+package com.cabinetplus.backend.config;
+
+import com.cabinetplus.backend.storage.BlobStorage;
+import com.cabinetplus.backend.storage.FileSystemBlobStorage;
+import com.cabinetplus.backend.storage.S3BlobStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+import java.nio.file.Paths;
+
+/**
+ * Selects where uploads are stored: {@code app.storage.type=filesystem} (default, files under the working directory)
+ * or {@code s3} for an S3-compatible bucket shared by all nodes.
+ */
+@Configuration
+public class BlobStorageConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobStorageConfig.class);
+
+    @Bean
+    public BlobStorage blobStorage(
+            @Value("${app.storage.type:filesystem}") String type,
+            @Value("${app.storage.s3.endpoint:https://s3.amazonaws.com}") String endpoint,
+            @Value("${app.storage.s3.region:us-east-1}") String region,
+            @Value("${app.storage.s3.bucket:}") String bucket,
+            @Value("${app.storage.s3.access-key:}") String accessKey,
+            @Value("${app.storage.s3.secret-key:}") String secretKey,
+            @Value("${app.storage.s3.key-prefix:}") String keyPrefix,
+            @Value("${app.storage.s3.path-style:true}") boolean pathStyle,
+            @Value("${app.storage.s3.multipart-threshold-bytes:16777216}") long multipartThresholdBytes,
+            @Value("${app.storage.s3.part-size-bytes:8388608}") long partSizeBytes
+    ) {
+        FileSystemBlobStorage local = new FileSystemBlobStorage(Paths.get(System.getProperty("user.dir")));
+        if (!"s3".equalsIgnoreCase(type.trim())) {
+            return local;
+        }
+        S3BlobStorage s3 = new S3BlobStorage(new S3BlobStorage.Settings(
+                URI.create(endpoint.trim()),
+                region.trim(),
+                bucket.trim(),
+                accessKey,
+                secretKey,
+                keyPrefix,
+                pathStyle,
+                multipartThresholdBytes,
+                partSizeBytes
+        ), local);
+        log.info("Storing uploads in {}", s3);
+        return s3;
+    }
+}
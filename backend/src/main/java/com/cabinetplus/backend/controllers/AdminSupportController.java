@@ -1,8 +1,12 @@
 package com.cabinetplus.backend.controllers;
 
 import java.security.Principal;
+import java.time.Duration;
 import java.util.List;
 
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -11,6 +15,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -24,7 +29,9 @@ import com.cabinetplus.backend.exceptions.NotFoundException;
 import com.cabinetplus.backend.models.SupportMessage;
 import com.cabinetplus.backend.models.User;
 import com.cabinetplus.backend.services.SupportService;
+import com.cabinetplus.backend.services.ThumbnailService;
 import com.cabinetplus.backend.services.UserService;
+import com.cabinetplus.backend.util.FileDownloadUtil;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -80,18 +87,31 @@ public class AdminSupportController {
     }
 
     @GetMapping("/messages/{messageId}/attachment")
-    public ResponseEntity<byte[]> getMessageAttachment(@PathVariable Long messageId, Principal principal) {
+    public ResponseEntity<Resource> getMessageAttachment(@PathVariable Long messageId,
+                                                         @RequestHeader HttpHeaders requestHeaders,
+                                                         Principal principal) {
         User admin = requireAdmin(principal);
         SupportMessage message = supportService.requireAdminMessageForAttachment(messageId, admin);
         if (message.getAttachmentPath() == null || message.getAttachmentPath().isBlank()) {
             throw new NotFoundException("Pièce jointe introuvable");
         }
-        byte[] bytes = supportService.loadAttachmentBytes(message.getAttachmentPath());
+        Resource attachment = supportService.loadAttachment(message.getAttachmentPath());
         MediaType mt = message.getAttachmentContentType() != null ? MediaType.parseMediaType(message.getAttachmentContentType()) : MediaType.APPLICATION_OCTET_STREAM;
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline")
-                .contentType(mt)
-                .body(bytes);
+        // Attachments never change: the browser keeps them and revalidates with the ETag.
+        return FileDownloadUtil.download(attachment, mt, ContentDisposition.inline().build(), requestHeaders,
+                CacheControl.noCache().cachePrivate());
+    }
+
+    @GetMapping("/messages/{messageId}/attachment/thumbnail")
+    public ResponseEntity<Resource> getMessageAttachmentThumbnail(@PathVariable Long messageId,
+                                                                  @RequestParam(name = "size", required = false) String size,
+                                                                  @RequestHeader HttpHeaders requestHeaders,
+                                                                  Principal principal) {
+        User admin = requireAdmin(principal);
+        SupportMessage message = supportService.requireAdminMessageForAttachment(messageId, admin);
+        Resource thumbnail = supportService.loadAttachmentThumbnail(message, ThumbnailService.Size.parse(size));
+        return FileDownloadUtil.download(thumbnail, MediaType.IMAGE_JPEG, ContentDisposition.inline().build(), requestHeaders,
+                CacheControl.maxAge(Duration.ofDays(30)).cachePrivate());
     }
 
     private User requireAdmin(Principal principal) {
@@ -49,6 +49,7 @@ import com.cabinetplus.backend.repositories.LaboratoryRepository;
 import com.cabinetplus.backend.repositories.UserRepository;
 import com.cabinetplus.backend.security.JwtUtil;
 import com.cabinetplus.backend.security.RefreshTokenHash;
+import com.cabinetplus.backend.security.TokenRevocationEpochs;
 import com.cabinetplus.backend.services.AuditService;
 import com.cabinetplus.backend.services.LaboratoryService;
 import com.cabinetplus.backend.services.PhoneVerificationService;
@@ -76,6 +77,7 @@ public class AuthController {
     private final PasswordEncoder passwordEncoder;
     private final AuditService auditService;
     private final PhoneVerificationService phoneVerificationService;
+    private final TokenRevocationEpochs revocationEpochs;
     private final boolean devProfile;
 
     @Value("${jwt.access.expiration-ms}")
@@ -106,6 +108,7 @@ public class AuthController {
                           UserRepository userRepo, LaboratoryRepository laboratoryRepository, LaboratoryService laboratoryService, RefreshTokenRepository refreshRepo,
                           PasswordEncoder passwordEncoder, AuditService auditService,
                           PhoneVerificationService phoneVerificationService,
+                          TokenRevocationEpochs revocationEpochs,
                           Environment environment) {
         this.authManager = authManager;
         this.jwtUtil = jwtUtil;
@@ -116,6 +119,7 @@ public class AuthController {
         this.passwordEncoder = passwordEncoder;
         this.auditService = auditService;
         this.phoneVerificationService = phoneVerificationService;
+        this.revocationEpochs = revocationEpochs;
         this.devProfile = Arrays.asList(environment.getActiveProfiles()).contains("dev");
     }
 
@@ -839,6 +843,7 @@ if (deviceId == null || deviceId.isBlank()) {
         user.setPhoneVerified(true);
         userRepo.save(user);
         refreshRepo.deleteAllByUser(user);
+        revocationEpochs.revokeAll(user.getId());
 
         auditService.logSuccessAsUser(
                 user,
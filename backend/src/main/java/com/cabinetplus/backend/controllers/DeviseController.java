@@ -11,23 +11,14 @@ import com.cabinetplus.backend.models.Material;
 import com.cabinetplus.backend.models.User;
 import com.cabinetplus.backend.exceptions.NotFoundException;
 import com.cabinetplus.backend.services.AuditService;
+import com.cabinetplus.backend.services.ClinicalPdfService;
 import com.cabinetplus.backend.services.DeviseService;
+import com.cabinetplus.backend.services.PdfCacheService;
 import com.cabinetplus.backend.services.UserService;
 import com.cabinetplus.backend.util.PaginationUtil;
-import com.lowagie.text.FontFactory;
-import com.lowagie.text.Paragraph;
-import com.lowagie.text.Phrase;
-import com.lowagie.text.Rectangle;
-import com.lowagie.text.pdf.PdfPCell;
-import com.lowagie.text.pdf.PdfPTable;
-import com.lowagie.text.pdf.PdfWriter;
-import com.lowagie.text.pdf.draw.LineSeparator;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import com.lowagie.text.Document;
-import com.lowagie.text.PageSize;
-import com.lowagie.text.Font;
-import com.lowagie.text.Element;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -51,6 +42,8 @@ public class DeviseController {
     private final DeviseService deviseService;
     private final UserService userService;
     private final AuditService auditService;
+    private final ClinicalPdfService clinicalPdfService;
+    private final PdfCacheService pdfCacheService;
 
     @GetMapping
     public ResponseEntity<List<DeviseResponse>> getAll(Principal principal) {
@@ -188,121 +181,26 @@ public class DeviseController {
                 item.getUnitPrice() * item.getQuantity()
         );
     }
-      @GetMapping("/{id}/pdf")
-public void generateDevisePdf(
-        @PathVariable Long id,
-        Principal principal,
-        HttpServletResponse response) throws Exception {
-
-    User practitioner = getCurrentUser(principal);
-    // Assuming you add a findById method in service that checks the practitioner
-    Devise devise = deviseService.findById(id)
-            .filter(d -> d.getPractitioner().equals(practitioner))
-            .orElseThrow(() -> new NotFoundException("Devis introuvable"));
-
-    auditService.logSuccess(AuditEventType.DEVISE_PDF_DOWNLOAD, "DEVISE", String.valueOf(devise.getId()), "Devis PDF téléchargé");
- 
-    response.setContentType("application/pdf");
-    String fileNameTitle = (devise.getTitle() != null) 
-            ? devise.getTitle().toLowerCase().replace(" ", "_") 
-            : "devise";
-    
-    response.setHeader("Content-Disposition",
-            "inline; filename=devise_" + fileNameTitle + "_" + devise.getId() + ".pdf");
-
-    Document document = new Document(PageSize.A4, 50, 50, 60, 60);
-    PdfWriter writer = PdfWriter.getInstance(document, response.getOutputStream());
-    document.open();
-
-    // Fonts
-    Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 20);
-    Font subTitleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12);
-    Font normalFont = FontFactory.getFont(FontFactory.HELVETICA, 11);
-    Font boldFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11);
-
-    // Header (Practitioner Info)
-    String clinicName = practitioner.getClinicName();
-    if (clinicName != null && !clinicName.isBlank()) {
-        document.add(new Paragraph(clinicName.toUpperCase(), titleFont));
+    @GetMapping("/{id}/pdf")
+    public void generateDevisePdf(
+            @PathVariable Long id,
+            Principal principal,
+            HttpServletRequest request,
+            HttpServletResponse response) throws Exception {
+
+        User practitioner = getCurrentUser(principal);
+        Devise devise = deviseService.findById(id)
+                .filter(d -> d.getPractitioner().equals(practitioner))
+                .orElseThrow(() -> new NotFoundException("Devis introuvable"));
+
+        auditService.logSuccess(AuditEventType.DEVISE_PDF_DOWNLOAD, "DEVISE", String.valueOf(devise.getId()), "Devis PDF téléchargé");
+
+        String fileNameTitle = (devise.getTitle() != null)
+                ? devise.getTitle().toLowerCase().replace(" ", "_")
+                : "devise";
+        pdfCacheService.serve(clinicalPdfService.devisFingerprint(practitioner, devise), request, response,
+                "inline; filename=devise_" + fileNameTitle + "_" + devise.getId() + ".pdf",
+                () -> clinicalPdfService.devisPdf(practitioner, devise));
     }
-    document.add(new Paragraph("Dr. " + practitioner.getFirstname() + " " + practitioner.getLastname(), subTitleFont));
 
-    if (practitioner.getAddress() != null) {
-        document.add(new Paragraph(practitioner.getAddress(), normalFont));
-    }
-    
-    document.add(new Paragraph(" "));
-    document.add(new LineSeparator(1f, 100, java.awt.Color.LIGHT_GRAY, Element.ALIGN_CENTER, -2));
-    document.add(new Paragraph(" "));
-
-    // Devise Title & Date
-    PdfPTable headerTable = new PdfPTable(2);
-    headerTable.setWidthPercentage(100);
-    
-    PdfPCell titleCell = new PdfPCell(new Phrase("DEVIS: " + devise.getTitle().toUpperCase(), subTitleFont));
-    titleCell.setBorder(Rectangle.NO_BORDER);
-    headerTable.addCell(titleCell);
-
-    PdfPCell dateCell = new PdfPCell(new Phrase("Date: " + java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy").format(devise.getCreatedAt()), normalFont));
-    dateCell.setBorder(Rectangle.NO_BORDER);
-    dateCell.setHorizontalAlignment(Element.ALIGN_RIGHT);
-    headerTable.addCell(dateCell);
-    
-    document.add(headerTable);
-    document.add(new Paragraph(" "));
-
-    // Items Table
-    PdfPTable table = new PdfPTable(new float[]{4, 1, 2, 2}); // Weights for columns
-    table.setWidthPercentage(100);
-    table.setSpacingBefore(10);
-
-    // Table Headers
-    String[] headers = {"Designation", "Qte", "Prix Unitaire", "Total"};
-    for (String columnHeader : headers) {
-        PdfPCell cell = new PdfPCell(new Phrase(columnHeader, boldFont));
-        cell.setBackgroundColor(java.awt.Color.LIGHT_GRAY);
-        cell.setHorizontalAlignment(Element.ALIGN_CENTER);
-        cell.setPadding(5);
-        table.addCell(cell);
-    }
-
-    // Table Rows
-    for (DeviseItem item : devise.getItems()) {
-        String name = (item.getTreatmentCatalog() != null) 
-                      ? item.getTreatmentCatalog().getName() 
-                      : item.getProthesisCatalog().getName();
-        
-        table.addCell(new PdfPCell(new Phrase(name, normalFont)));
-        
-        PdfPCell qtyCell = new PdfPCell(new Phrase(String.valueOf(item.getQuantity()), normalFont));
-        qtyCell.setHorizontalAlignment(Element.ALIGN_CENTER);
-        table.addCell(qtyCell);
-
-        table.addCell(new PdfPCell(new Phrase(String.format("%,.2f DA", item.getUnitPrice()), normalFont)));
-        
-        double subtotal = item.getUnitPrice() * item.getQuantity();
-        table.addCell(new PdfPCell(new Phrase(String.format("%,.2f DA", subtotal), boldFont)));
-    }
-
-    document.add(table);
-
-    // Total Section
-    Paragraph totalP = new Paragraph("\nTOTAL GENERAL: " + String.format("%,.2f DZD", devise.getTotalAmount()), subTitleFont);
-    totalP.setAlignment(Element.ALIGN_RIGHT);
-    document.add(totalP);
-
-    // Signature Area
-    PdfPTable sigTable = new PdfPTable(1);
-    sigTable.setTotalWidth(180);
-    PdfPCell sCell = new PdfPCell(new Phrase("Cachet et Signature\n\n\n___________________", normalFont));
-    sCell.setBorder(Rectangle.NO_BORDER);
-    sCell.setHorizontalAlignment(Element.ALIGN_CENTER);
-    sigTable.addCell(sCell);
-    sigTable.writeSelectedRows(0, -1, 380, 120, writer.getDirectContent());
-
-    document.close();
 }
-
-  }
-
-
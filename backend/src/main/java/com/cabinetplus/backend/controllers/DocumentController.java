@@ -7,13 +7,16 @@ import com.cabinetplus.backend.models.User;
 import com.cabinetplus.backend.services.AuditService;
 import com.cabinetplus.backend.services.DocumentService;
 import com.cabinetplus.backend.services.PublicIdResolutionService;
+import com.cabinetplus.backend.services.ThumbnailService;
 import com.cabinetplus.backend.services.UserService;
 import com.cabinetplus.backend.util.PagedQueryUtil;
+import com.cabinetplus.backend.util.FileDownloadUtil;
 import com.cabinetplus.backend.util.PaginationUtil;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.core.io.Resource;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -23,6 +26,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Principal;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Comparator;
@@ -158,6 +162,7 @@ public class DocumentController {
     public ResponseEntity<Resource> openDocument(
             @PathVariable Long id,
             @RequestParam(name = "download", defaultValue = "false") boolean download,
+            @RequestHeader HttpHeaders requestHeaders,
             Principal principal
     ) {
         User ownerDentist = getClinicUser(principal);
@@ -179,10 +184,21 @@ public class DocumentController {
                 .filename(metadata.filename(), StandardCharsets.UTF_8)
                 .build();
 
-        return ResponseEntity.ok()
-                .contentType(mediaType)
-                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
-                .body(resource);
+        return FileDownloadUtil.download(resource, mediaType, disposition, requestHeaders);
+    }
+
+    @GetMapping("/{id}/thumbnail")
+    public ResponseEntity<Resource> getThumbnail(
+            @PathVariable Long id,
+            @RequestParam(name = "size", required = false) String size,
+            @RequestHeader HttpHeaders requestHeaders,
+            Principal principal
+    ) {
+        User ownerDentist = getClinicUser(principal);
+        Resource thumbnail = documentService.getDocumentThumbnail(id, ownerDentist, ThumbnailService.Size.parse(size));
+        // Documents are immutable, so their previews can stay in the browser cache.
+        return FileDownloadUtil.download(thumbnail, MediaType.IMAGE_JPEG, ContentDisposition.inline().build(), requestHeaders,
+                CacheControl.maxAge(Duration.ofDays(30)).cachePrivate());
     }
 
     @DeleteMapping("/{id}")
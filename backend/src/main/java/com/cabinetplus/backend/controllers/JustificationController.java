@@ -25,16 +25,16 @@ import com.cabinetplus.backend.models.Patient;
 import com.cabinetplus.backend.models.User;
 import com.cabinetplus.backend.repositories.PatientRepository;
 import com.cabinetplus.backend.services.AuditService;
+import com.cabinetplus.backend.services.ClinicalPdfService;
+import com.cabinetplus.backend.services.PdfCacheService;
 import com.cabinetplus.backend.services.JustificationService;
 import com.cabinetplus.backend.services.PublicIdResolutionService;
 import com.cabinetplus.backend.services.UserService;
 import com.cabinetplus.backend.util.PagedQueryUtil;
 import com.cabinetplus.backend.util.PaginationUtil;
 
-import com.lowagie.text.*;
-import com.lowagie.text.pdf.*;
-import com.lowagie.text.pdf.draw.LineSeparator;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 
@@ -49,18 +49,24 @@ public class JustificationController {
     private final PatientRepository patientRepository;
     private final PublicIdResolutionService publicIdResolutionService;
     private final AuditService auditService;
+    private final ClinicalPdfService clinicalPdfService;
+    private final PdfCacheService pdfCacheService;
 
     public JustificationController(
             JustificationService justificationService,
             UserService userService,
             PatientRepository patientRepository,
             PublicIdResolutionService publicIdResolutionService,
-            AuditService auditService) {
+            AuditService auditService,
+            ClinicalPdfService clinicalPdfService,
+            PdfCacheService pdfCacheService) {
         this.justificationService = justificationService;
         this.userService = userService;
         this.patientRepository = patientRepository;
         this.publicIdResolutionService = publicIdResolutionService;
         this.auditService = auditService;
+        this.clinicalPdfService = clinicalPdfService;
+        this.pdfCacheService = pdfCacheService;
     }
 
     private User getCurrentUser(Principal principal) {
@@ -314,122 +320,30 @@ public ResponseEntity<List<JustificationDTO>> getByPatient(
                 .orElseThrow(() -> new NotFoundException("Justificatif introuvable"));
     }
     @GetMapping("/{id}/pdf")
-public void generateJustificationPdf(
-        @PathVariable Long id,
-        Principal principal,
-        HttpServletResponse response) throws Exception {
-
-    User practitioner = getCurrentUser(principal);
-    Justification justification = justificationService.findByIdAndPractitioner(id, practitioner)
-            .orElseThrow(() -> new NotFoundException("Justificatif introuvable"));
-
-    auditService.logSuccess(
-            AuditEventType.JUSTIFICATION_PDF_DOWNLOAD,
-            "PATIENT",
-            justification.getPatient() != null ? String.valueOf(justification.getPatient().getId()) : null,
-            "Justificatif PDF téléchargé"
-    );
-
-    // Set response headers
-    response.setContentType("application/pdf");
-    // Use the new title in the filename (slugified for safety)
-    String fileNameTitle = (justification.getTitle() != null) 
-            ? justification.getTitle().toLowerCase().replace(" ", "_") 
-            : "justification";
-    
-    response.setHeader("Content-Disposition",
-            "inline; filename=" + fileNameTitle + "_" + justification.getId() + ".pdf");
-
-    // PDF setup
-    Document document = new Document(PageSize.A4, 50, 50, 60, 60);
-    PdfWriter writer = PdfWriter.getInstance(document, response.getOutputStream());
-    document.open();
-
-    // Fonts
-    Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 20);
-    Font subTitleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12);
-    Font normalFont = FontFactory.getFont(FontFactory.HELVETICA, 11);
-    Font italicFont = FontFactory.getFont(FontFactory.HELVETICA_OBLIQUE, 10, java.awt.Color.GRAY);
-
-    // Header
-    String clinicName = practitioner.getClinicName();
-    if (clinicName != null && !clinicName.isBlank()) {
-        document.add(new Paragraph(clinicName.toUpperCase(), titleFont));
-    }
-    document.add(new Paragraph("Dr. " + practitioner.getFirstname() + " " + practitioner.getLastname(), subTitleFont));
+    public void generateJustificationPdf(
+            @PathVariable Long id,
+            Principal principal,
+            HttpServletRequest request,
+            HttpServletResponse response) throws Exception {
 
-    if (practitioner.getAddress() != null) {
-        document.add(new Paragraph(practitioner.getAddress(), normalFont));
-    }
+        User practitioner = getCurrentUser(principal);
+        Justification justification = justificationService.findByIdAndPractitioner(id, practitioner)
+                .orElseThrow(() -> new NotFoundException("Justificatif introuvable"));
 
-    String rawPhone = practitioner.getPhoneNumber() != null ? practitioner.getPhoneNumber() : "";
-    if (rawPhone.length() == 10) {
-        // Formats as 0X XX XX XX XX
-        rawPhone = rawPhone.replaceFirst("(\\d{2})(\\d{2})(\\d{2})(\\d{2})(\\d{2})", "$1 $2 $3 $4 $5");
-    }
-    if (!rawPhone.isEmpty()) {
-        document.add(new Paragraph("Tel: " + rawPhone, normalFont));
-    }
+        auditService.logSuccess(
+                AuditEventType.JUSTIFICATION_PDF_DOWNLOAD,
+                "PATIENT",
+                justification.getPatient() != null ? String.valueOf(justification.getPatient().getId()) : null,
+                "Justificatif PDF téléchargé"
+        );
 
-    document.add(new Paragraph(" "));
-    document.add(new LineSeparator(1f, 100, java.awt.Color.LIGHT_GRAY, Element.ALIGN_CENTER, -2));
-    document.add(new Paragraph(" "));
-
-    // Patient & Date info table
-    PdfPTable infoTable = new PdfPTable(2);
-    infoTable.setWidthPercentage(100);
-
-    PdfPCell pCell = new PdfPCell();
-    pCell.setBorder(Rectangle.NO_BORDER);
-    Patient patient = justification.getPatient();
-    pCell.addElement(new Phrase("Patient: " + patient.getFirstname() + " " + patient.getLastname(), subTitleFont));
-    pCell.addElement(new Phrase("Age: " + patient.getAge() + " ans", normalFont));
-    infoTable.addCell(pCell);
-
-    PdfPCell dCell = new PdfPCell();
-    dCell.setBorder(Rectangle.NO_BORDER);
-    Paragraph dateP = new Paragraph("Date: " + justification.getDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), normalFont);
-    dateP.setAlignment(Element.ALIGN_RIGHT);
-    dCell.addElement(dateP);
-    infoTable.addCell(dCell);
-
-    document.add(infoTable);
-    document.add(new Paragraph(" "));
-
-    // UPDATED TITLE SECTION: Now uses the 'title' variable instead of the Enum name
-    String displayTitle;
-    if (justification.getTitle() != null && !justification.getTitle().isBlank()) {
-        displayTitle = justification.getTitle();
-    } else if (justification.getTitle() != null) {
-        // Fallback to Enum name only if title is null
-        displayTitle = justification.getTitle().replace("_", " ");
-    } else {
-        displayTitle = "JUSTIFICATION MEDICALE";
+        // Use the title in the filename (slugified for safety)
+        String fileNameTitle = (justification.getTitle() != null)
+                ? justification.getTitle().toLowerCase().replace(" ", "_")
+                : "justification";
+        pdfCacheService.serve(clinicalPdfService.justificationFingerprint(practitioner, justification), request, response,
+                "inline; filename=" + fileNameTitle + "_" + justification.getId() + ".pdf",
+                () -> clinicalPdfService.justificationPdf(practitioner, justification));
     }
 
-    Paragraph titleParagraph = new Paragraph(displayTitle.toUpperCase(), titleFont);
-    titleParagraph.setAlignment(Element.ALIGN_CENTER);
-    titleParagraph.setSpacingBefore(20);
-    titleParagraph.setSpacingAfter(20);
-    document.add(titleParagraph);
-
-    // Main content
-    Paragraph content = new Paragraph(justification.getFinalContent(), normalFont);
-    content.setLeading(16f); // Adds some line spacing for better readability
-    document.add(content);
-    document.add(new Paragraph(" "));
-
-    // Signature
-    PdfPTable sigTable = new PdfPTable(1);
-    sigTable.setTotalWidth(180);
-    PdfPCell sCell = new PdfPCell(new Phrase("Signature & Cachet\n\n\n___________________", normalFont));
-    sCell.setBorder(Rectangle.NO_BORDER);
-    sCell.setHorizontalAlignment(Element.ALIGN_CENTER);
-    sigTable.addCell(sCell);
-    sigTable.writeSelectedRows(0, -1, 380, 120, writer.getDirectContent());
-
-    document.close();
-}
 }
-
-
@@ -23,6 +23,7 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -55,7 +56,11 @@ import com.cabinetplus.backend.services.LaboratoryAccessService;
 import com.cabinetplus.backend.services.LaboratoryConnectionService;
 import com.cabinetplus.backend.services.ProthesisFilesService;
 import com.cabinetplus.backend.services.ProthesisStlService;
+import com.cabinetplus.backend.services.ProthesisZipService;
 import com.cabinetplus.backend.services.UserService;
+import com.cabinetplus.backend.util.FileDownloadUtil;
+
+import jakarta.servlet.http.HttpServletRequest;
 
 @RestController
 @RequestMapping("/api/lab")
@@ -69,6 +74,7 @@ public class LabPortalController {
     private final PasswordEncoder passwordEncoder;
     private final ProthesisStlService prothesisStlService;
     private final ProthesisFilesService prothesisFilesService;
+    private final ProthesisZipService prothesisZipService;
     private final ProthesisFileRepository prothesisFileRepository;
 
     public LabPortalController(
@@ -80,6 +86,7 @@ public class LabPortalController {
             PasswordEncoder passwordEncoder,
             ProthesisStlService prothesisStlService,
             ProthesisFilesService prothesisFilesService,
+            ProthesisZipService prothesisZipService,
             ProthesisFileRepository prothesisFileRepository
     ) {
         this.userService = userService;
@@ -90,6 +97,7 @@ public class LabPortalController {
         this.passwordEncoder = passwordEncoder;
         this.prothesisStlService = prothesisStlService;
         this.prothesisFilesService = prothesisFilesService;
+        this.prothesisZipService = prothesisZipService;
         this.prothesisFileRepository = prothesisFileRepository;
     }
 
@@ -339,6 +347,7 @@ public class LabPortalController {
     public ResponseEntity<Resource> downloadProthesisStl(
             @PathVariable Long id,
             @RequestParam(name = "download", defaultValue = "true") boolean download,
+            @RequestHeader HttpHeaders requestHeaders,
             Principal principal
     ) {
         User labUser = requireLabUser(principal);
@@ -350,46 +359,36 @@ public class LabPortalController {
                 .filename(filename, StandardCharsets.UTF_8)
                 .build();
 
-        return ResponseEntity.ok()
-                .contentType(mediaType)
-                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
-                .body(resource);
+        return FileDownloadUtil.download(resource, mediaType, disposition, requestHeaders);
     }
 
-    @GetMapping("/protheses/{id}/files.zip")
-    public ResponseEntity<org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody> downloadProthesisFilesZip(
+    @GetMapping("/protheses/{id}/files/{fileId}")
+    public ResponseEntity<Resource> downloadProthesisFile(
             @PathVariable Long id,
+            @PathVariable Long fileId,
+            @RequestParam(name = "download", defaultValue = "true") boolean download,
+            @RequestHeader HttpHeaders requestHeaders,
             Principal principal
     ) {
         User labUser = requireLabUser(principal);
-        String filename = prothesisFilesService.buildZipFilename(id);
-        var sources = prothesisFilesService.buildZipSourcesForLab(id, labUser);
-
-        org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody body = outputStream -> {
-            try (java.util.zip.ZipOutputStream zipOut = new java.util.zip.ZipOutputStream(outputStream, StandardCharsets.UTF_8)) {
-                for (var source : sources) {
-                    String entryName = source.entryName() != null && !source.entryName().isBlank()
-                            ? source.entryName()
-                            : ("file-" + System.nanoTime());
-                    java.util.zip.ZipEntry entry = new java.util.zip.ZipEntry(entryName);
-                    zipOut.putNextEntry(entry);
-                    try (var in = prothesisFilesService.openDecryptedStream(source.encryptedPath())) {
-                        in.transferTo(zipOut);
-                    }
-                    zipOut.closeEntry();
-                }
-                zipOut.finish();
-            }
-        };
+        ProthesisFilesService.FileDownload file = prothesisFilesService.getFileForLab(id, fileId, labUser);
 
-        ContentDisposition disposition = ContentDisposition.attachment()
-                .filename(filename, StandardCharsets.UTF_8)
+        ContentDisposition disposition = (download ? ContentDisposition.attachment() : ContentDisposition.inline())
+                .filename(file.filename(), StandardCharsets.UTF_8)
                 .build();
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType("application/zip"))
-                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
-                .body(body);
+        return FileDownloadUtil.download(file.resource(), file.mediaType(), disposition, requestHeaders);
+    }
+
+    @GetMapping("/protheses/{id}/files.zip")
+    public ResponseEntity<org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody> downloadProthesisFilesZip(
+            @PathVariable Long id,
+            HttpServletRequest request,
+            Principal principal
+    ) {
+        User labUser = requireLabUser(principal);
+        return prothesisZipService.download(
+                prothesisFilesService.buildZipSourcesForLab(id, labUser), prothesisFilesService.buildZipFilename(id), request);
     }
 
     @PutMapping("/payments/{id}/cancel/approve")
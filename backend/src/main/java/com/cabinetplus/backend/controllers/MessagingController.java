@@ -13,15 +13,14 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.cabinetplus.backend.dto.MessagingContactResponse;
-import com.cabinetplus.backend.dto.MessagingPresenceResponse;
 import com.cabinetplus.backend.dto.MessagingMessageCreateRequest;
 import com.cabinetplus.backend.dto.MessagingMessageResponse;
 import com.cabinetplus.backend.dto.MessagingThreadSummaryResponse;
 import com.cabinetplus.backend.exceptions.NotFoundException;
 import com.cabinetplus.backend.models.User;
+import com.cabinetplus.backend.services.MessagingLastSeenService;
 import com.cabinetplus.backend.services.MessagingService;
 import com.cabinetplus.backend.services.UserService;
-import com.cabinetplus.backend.websocket.MessagingRealtimeEvent;
 import com.cabinetplus.backend.websocket.MessagingWebSocketHandler;
 
 import jakarta.validation.Valid;
@@ -37,6 +36,7 @@ public class MessagingController {
     private final MessagingService messagingService;
     private final UserService userService;
     private final MessagingWebSocketHandler messagingWebSocketHandler;
+    private final MessagingLastSeenService lastSeenService;
 
     @GetMapping("/contacts")
     public ResponseEntity<List<MessagingContactResponse>> contacts(Principal principal) {
@@ -101,15 +101,10 @@ public class MessagingController {
         if (user.getId() == null || user.getPublicId() == null) return ResponseEntity.ok().build();
 
         LocalDateTime now = LocalDateTime.now();
-        userService.touchMessagingLastSeen(user, now);
+        lastSeenService.touch(user, now);
 
         try {
-            messagingWebSocketHandler.sendToAll(new MessagingRealtimeEvent(
-                    "PRESENCE_UPDATED",
-                    null,
-                    null,
-                    new MessagingPresenceResponse(user.getPublicId(), true, now)
-            ));
+            messagingWebSocketHandler.publishPresence(user, true, now);
         } catch (Exception ignored) {
             // ignore realtime presence failures
         }
@@ -44,6 +44,7 @@ import com.cabinetplus.backend.services.PatientService;
 import com.cabinetplus.backend.services.PublicIdResolutionService;
 import com.cabinetplus.backend.services.UserService;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 
@@ -536,7 +537,12 @@ public class PatientController {
     }
 
     @GetMapping("/{id}/fiche-pdf")
-    public void generatePatientFiche(@PathVariable String id, HttpServletResponse response, Principal principal) throws Exception {
+    public void generatePatientFiche(
+            @PathVariable String id,
+            HttpServletRequest request,
+            HttpServletResponse response,
+            Principal principal
+    ) throws Exception {
         User clinicUser = getClinicUser(principal);
         Patient patient = publicIdResolutionService.requirePatientOwnedBy(id, clinicUser);
         Long patientId = patient.getId();
@@ -551,7 +557,7 @@ public class PatientController {
         String todayDate = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd_MM_yyyy"));
         String publicId = patient.getPublicId() != null ? patient.getPublicId().toString() : String.valueOf(patientId);
         String fileName = String.format("fiche_patient_%s_%s.pdf", publicId, todayDate);
-        patientFichePdfService.writePatientFichePdf(clinicUser, patient, fileName, response);
+        patientFichePdfService.writePatientFichePdf(clinicUser, patient, fileName, request, response);
     }
 
     @GetMapping("/{id}/fiche-pdf-link")
@@ -0,0 +1,84 @@
+package com.cabinetplus.backend.controllers;
+
+import com.cabinetplus.backend.dto.PdfExportJobResponse;
+import com.cabinetplus.backend.dto.PdfExportRequest;
+import com.cabinetplus.backend.enums.AuditEventType;
+import com.cabinetplus.backend.exceptions.NotFoundException;
+import com.cabinetplus.backend.models.User;
+import com.cabinetplus.backend.services.AuditService;
+import com.cabinetplus.backend.services.PdfExportService;
+import com.cabinetplus.backend.services.UserService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.List;
+
+/**
+ * Bulk PDF exports: submit (202), poll the job, then download its ZIP. Submissions live under the patient and devis
+ * routes so they need the same employee permissions as the documents they export.
+ */
+@RestController
+@RequiredArgsConstructor
+public class PdfExportController {
+
+    private final PdfExportService pdfExportService;
+    private final UserService userService;
+    private final AuditService auditService;
+
+    @PostMapping("/api/patients/{patientId}/pdf-exports")
+    public ResponseEntity<PdfExportJobResponse> exportPatientHistory(@PathVariable String patientId, Principal principal) {
+        User actor = getActor(principal);
+        PdfExportJobResponse job = pdfExportService.submitPatientHistory(patientId, userService.resolveClinicOwner(actor), actor);
+        auditService.logSuccess(AuditEventType.PDF_EXPORT_CREATE, "PDF_EXPORT", job.id(), "Export PDF du dossier patient demande");
+        return ResponseEntity.accepted().body(job);
+    }
+
+    @PostMapping("/api/devises/pdf-exports")
+    public ResponseEntity<PdfExportJobResponse> exportDevis(@Valid @RequestBody PdfExportRequest request, Principal principal) {
+        User actor = getActor(principal);
+        PdfExportJobResponse job = pdfExportService.submitDevisRange(request, userService.resolveClinicOwner(actor), actor);
+        auditService.logSuccess(AuditEventType.PDF_EXPORT_CREATE, "PDF_EXPORT", job.id(), "Export PDF des devis demande");
+        return ResponseEntity.accepted().body(job);
+    }
+
+    @GetMapping("/api/pdf-exports")
+    public List<PdfExportJobResponse> list(Principal principal) {
+        User actor = getActor(principal);
+        return pdfExportService.list(userService.resolveClinicOwner(actor), actor);
+    }
+
+    @GetMapping("/api/pdf-exports/{id}")
+    public PdfExportJobResponse status(@PathVariable String id, Principal principal) {
+        User actor = getActor(principal);
+        return pdfExportService.status(id, userService.resolveClinicOwner(actor), actor);
+    }
+
+    @GetMapping("/api/pdf-exports/{id}/download")
+    public ResponseEntity<StreamingResponseBody> download(@PathVariable String id, Principal principal) {
+        User actor = getActor(principal);
+        PdfExportService.ExportDownload zip = pdfExportService.download(id, userService.resolveClinicOwner(actor), actor);
+        auditService.logSuccess(AuditEventType.PDF_EXPORT_DOWNLOAD, "PDF_EXPORT", id, "Export PDF telecharge");
+
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(zip.filename(), StandardCharsets.UTF_8)
+                .build();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .contentLength(zip.contentLength())
+                .body(zip.body());
+    }
+
+    private User getActor(Principal principal) {
+        return userService.findByPhoneNumber(principal.getName())
+                .orElseThrow(() -> new NotFoundException("Utilisateur introuvable"));
+    }
+}
@@ -2,7 +2,6 @@ package com.cabinetplus.backend.controllers;
 
 import java.security.Principal;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.Comparator;
 import java.util.List;
 
@@ -25,27 +24,17 @@ import com.cabinetplus.backend.dto.PrescriptionResponseDTO;
 import com.cabinetplus.backend.dto.PrescriptionSummaryDTO;
 import com.cabinetplus.backend.enums.AuditEventType;
 import com.cabinetplus.backend.models.Prescription;
-import com.cabinetplus.backend.models.PrescriptionMedication;
 import com.cabinetplus.backend.models.User;
 import com.cabinetplus.backend.services.AuditService;
+import com.cabinetplus.backend.services.ClinicalPdfService;
+import com.cabinetplus.backend.services.PdfCacheService;
 import com.cabinetplus.backend.services.PrescriptionService;
 import com.cabinetplus.backend.services.PublicIdResolutionService;
 import com.cabinetplus.backend.services.UserService;
 import com.cabinetplus.backend.util.PagedQueryUtil;
 import com.cabinetplus.backend.util.PaginationUtil;
-import com.lowagie.text.Chunk;
-import com.lowagie.text.Element;
-import com.lowagie.text.Font;
-import com.lowagie.text.FontFactory;
-import com.lowagie.text.PageSize;
-import com.lowagie.text.Paragraph;
-import com.lowagie.text.Phrase;
-import com.lowagie.text.Rectangle;
-import com.lowagie.text.pdf.PdfPCell;
-import com.lowagie.text.pdf.PdfPTable;
-import com.lowagie.text.pdf.PdfWriter;
-import com.lowagie.text.pdf.draw.LineSeparator;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -59,6 +48,8 @@ public class PrescriptionController {
     private final UserService userService;
     private final PublicIdResolutionService publicIdResolutionService;
     private final AuditService auditService;
+    private final ClinicalPdfService clinicalPdfService;
+    private final PdfCacheService pdfCacheService;
 
     @PostMapping
     public ResponseEntity<PrescriptionResponseDTO> createPrescription(@Valid @RequestBody PrescriptionRequestDTO dto, Principal principal) {
@@ -163,144 +154,29 @@ public class PrescriptionController {
     }
 
     /* ===================== CLEAN & PROFESSIONAL PDF ===================== */
-@GetMapping("/{id}/pdf")
-public void generatePrescriptionPdf(@PathVariable String id, Principal principal, HttpServletResponse response) throws Exception {
+    @GetMapping("/{id}/pdf")
+    public void generatePrescriptionPdf(
+            @PathVariable String id,
+            Principal principal,
+            HttpServletRequest request,
+            HttpServletResponse response) throws Exception {
 
-    User practitioner = getPractitioner(principal);
-    Prescription rx = publicIdResolutionService.requirePrescriptionForPractitionerWithMedications(id, practitioner);
-
-    auditService.logSuccess(
-            AuditEventType.PRESCRIPTION_PDF_DOWNLOAD,
-            "PATIENT",
-            rx != null && rx.getPatient() != null ? String.valueOf(rx.getPatient().getId()) : null,
-            "Ordonnance PDF téléchargée"
-    );
-
-    response.setContentType("application/pdf");
-    response.setHeader("Content-Disposition", "inline; filename=ordonnance_" + rx.getRxId() + ".pdf");
-
-    com.lowagie.text.Document document = new com.lowagie.text.Document(PageSize.A4, 50, 50, 60, 60);
-    PdfWriter writer = PdfWriter.getInstance(document, response.getOutputStream());
-    document.open();
-
-    // Fonts
-    Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 20);
-    Font subTitleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12);
-    Font normalFont = FontFactory.getFont(FontFactory.HELVETICA, 11);
-    Font medFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12);
-    Font italicFont = FontFactory.getFont(FontFactory.HELVETICA_OBLIQUE, 10, java.awt.Color.GRAY);
-    Font genericFont = FontFactory.getFont(FontFactory.HELVETICA_OBLIQUE, 10, new java.awt.Color(70, 70, 70));
-
-    // 1. DYNAMIC HEADER
-    String clinicName = practitioner.getClinicName();
-    if (clinicName != null && !clinicName.isBlank()) {
-        document.add(new Paragraph(clinicName.toUpperCase(), titleFont));
-    }
-    document.add(new Paragraph("Dr. " + practitioner.getFirstname() + " " + practitioner.getLastname(), subTitleFont));
-    
-    if (practitioner.getAddress() != null) {
-        document.add(new Paragraph(practitioner.getAddress(), normalFont));
-    }
-    
-    String rawPhone = (practitioner.getPhoneNumber() != null) ? practitioner.getPhoneNumber() : "";
-    String formattedPhone = rawPhone;
-    if (rawPhone.length() == 10) {
-        formattedPhone = rawPhone.replaceFirst("(\\d{4})(\\d{2})(\\d{2})(\\d{2})", "$1 $2 $3 $4");
-    }
-    
-    if (!formattedPhone.isEmpty()) {
-        document.add(new Paragraph("Tel: " + formattedPhone, normalFont));
-    }
-    
-    document.add(new Paragraph(" "));
-    document.add(new LineSeparator(1f, 100, java.awt.Color.LIGHT_GRAY, Element.ALIGN_CENTER, -2));
-    document.add(new Paragraph(" "));
-
-    // 2. PATIENT & DATE INFO
-    PdfPTable infoTable = new PdfPTable(2);
-    infoTable.setWidthPercentage(100);
-    
-    PdfPCell pCell = new PdfPCell();
-    pCell.setBorder(Rectangle.NO_BORDER);
-    pCell.addElement(new Phrase("Patient: " + rx.getPatient().getFirstname() + " " + rx.getPatient().getLastname(), subTitleFont));
-    pCell.addElement(new Phrase("Age: " + rx.getPatient().getAge() + " ans", normalFont));
-    infoTable.addCell(pCell);
-
-    PdfPCell dCell = new PdfPCell();
-    dCell.setBorder(Rectangle.NO_BORDER);
-    Paragraph dateP = new Paragraph("Date: " + rx.getDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), normalFont);
-    dateP.setAlignment(Element.ALIGN_RIGHT);
-    dCell.addElement(dateP);
-    infoTable.addCell(dCell);
-    
-    document.add(infoTable);
-    document.add(new Paragraph(" "));
-    
-    Paragraph title = new Paragraph("ORDONNANCE", titleFont);
-    title.setAlignment(Element.ALIGN_CENTER);
-    title.setSpacingAfter(20);
-    document.add(title);
-
-    // 3. MEDICATIONS LIST (UPDATED WITH STRENGTH)
-    for (PrescriptionMedication med : rx.getMedications()) {
-        // Build the header string: NAME + STRENGTH
-        String medHeaderStr = "- " + med.getMedication().getName().toUpperCase();
-        
-        // Add strength if it exists
-        if (med.getMedication().getStrength() != null && !med.getMedication().getStrength().isEmpty()) {
-            medHeaderStr += " " + med.getMedication().getStrength();
-        }
-
-        Paragraph mHeader = new Paragraph(medHeaderStr, medFont);
-        
-        if (med.getMedication().getDosageForm() != null) {
-            mHeader.add(new Chunk(" (" + med.getMedication().getDosageForm().toString() + ")", italicFont));
-        }
-        document.add(mHeader);
-
-        if (med.getMedication().getGenericName() != null && !med.getMedication().getGenericName().isEmpty()) {
-            Paragraph gName = new Paragraph("  " + med.getMedication().getGenericName(), genericFont);
-            gName.setSpacingBefore(-2f); 
-            document.add(gName);
-        }
-
-        String rawAmount = med.getAmount();
-        String formattedAmount;
-        try {
-            double val = Double.parseDouble(rawAmount);
-            formattedAmount = (val == (long) val) ? String.format("%d", (long) val) : String.valueOf(val);
-        } catch (Exception e) {
-            formattedAmount = rawAmount;
-        }
-
-        String detailStr = String.format("  %s %s, %s pendant %s", 
-            formattedAmount, med.getUnit(), med.getFrequency(), med.getDuration());
-        
-        document.add(new Paragraph(detailStr, normalFont));
+        User practitioner = getPractitioner(principal);
+        Prescription rx = publicIdResolutionService.requirePrescriptionForPractitionerWithMedications(id, practitioner);
 
-        if (med.getInstructions() != null && !med.getInstructions().isEmpty()) {
-            document.add(new Paragraph("  Note: " + med.getInstructions(), italicFont));
-        }
-        document.add(new Paragraph(" "));
-    }
+        auditService.logSuccess(
+                AuditEventType.PRESCRIPTION_PDF_DOWNLOAD,
+                "PATIENT",
+                rx != null && rx.getPatient() != null ? String.valueOf(rx.getPatient().getId()) : null,
+                "Ordonnance PDF téléchargée"
+        );
 
-    // 4. NOTES
-    if (rx.getNotes() != null && !rx.getNotes().isEmpty()) {
-        document.add(new Paragraph("Notes:", subTitleFont));
-        document.add(new Paragraph(rx.getNotes(), normalFont));
+        pdfCacheService.serve(clinicalPdfService.prescriptionFingerprint(practitioner, rx), request, response,
+                "inline; filename=ordonnance_" + rx.getRxId() + ".pdf",
+                () -> clinicalPdfService.prescriptionPdf(practitioner, rx));
     }
 
-    // 5. SIGNATURE
-    PdfPTable sigTable = new PdfPTable(1);
-    sigTable.setTotalWidth(180);
-    PdfPCell sCell = new PdfPCell(new Phrase("Signature & Cachet\n\n\n___________________", normalFont));
-    sCell.setBorder(Rectangle.NO_BORDER);
-    sCell.setHorizontalAlignment(Element.ALIGN_CENTER);
-    sigTable.addCell(sCell);
-    sigTable.writeSelectedRows(0, -1, 380, 120, writer.getDirectContent());
 
-    document.close();
-}
   private User getPractitioner(Principal principal) {
         return userService.findByPhoneNumber(principal.getName())
                 .orElseThrow(() -> new RuntimeException("Praticien introuvable"));
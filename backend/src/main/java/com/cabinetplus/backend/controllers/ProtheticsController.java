@@ -9,6 +9,7 @@ import com.cabinetplus.backend.repositories.ProthesisFileRepository;
 import com.cabinetplus.backend.services.AuditService;
 import com.cabinetplus.backend.services.*;
 import com.cabinetplus.backend.util.PagedQueryUtil;
+import com.cabinetplus.backend.util.FileDownloadUtil;
 import com.cabinetplus.backend.util.PaginationUtil;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.io.Resource;
@@ -23,7 +24,9 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.time.LocalDate;
@@ -33,8 +36,6 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 @RestController
 @RequestMapping("/api/protheses")
@@ -43,6 +44,8 @@ public class ProtheticsController {
     private final ProthesisService service;
     private final ProthesisStlService prothesisStlService;
     private final ProthesisFilesService prothesisFilesService;
+    private final ProthesisZipService prothesisZipService;
+    private final ResumableUploadService resumableUploadService;
     private final UserService userService;
     private final AuditService auditService;
     private final ProthesisRepository prothesisRepository;
@@ -209,6 +212,69 @@ public class ProtheticsController {
         return ResponseEntity.ok(created);
     }
 
+    @PostMapping("/{id}/files/uploads")
+    public ResponseEntity<UploadSessionResponse> startUpload(
+            @PathVariable Long id,
+            @Valid @RequestBody UploadSessionRequest request,
+            Principal principal
+    ) {
+        User actor = getActor(principal);
+        User user = userService.resolveClinicOwner(actor);
+        return ResponseEntity.ok(resumableUploadService.start(id, request, user, actor));
+    }
+
+    @GetMapping("/{id}/files/uploads/{uploadId}")
+    public ResponseEntity<UploadSessionResponse> getUpload(
+            @PathVariable Long id,
+            @PathVariable String uploadId,
+            Principal principal
+    ) {
+        User user = getClinicUser(principal);
+        return ResponseEntity.ok(resumableUploadService.status(id, uploadId, user));
+    }
+
+    @PutMapping(value = "/{id}/files/uploads/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadSessionResponse> uploadPart(
+            @PathVariable Long id,
+            @PathVariable String uploadId,
+            @RequestParam long offset,
+            HttpServletRequest request,
+            Principal principal
+    ) throws IOException {
+        User user = getClinicUser(principal);
+        return ResponseEntity.ok(resumableUploadService.appendPart(
+                id, uploadId, offset, request.getContentLengthLong(), request.getInputStream(), user));
+    }
+
+    @PostMapping("/{id}/files/uploads/{uploadId}/complete")
+    public ResponseEntity<ProthesisFileItemResponse> completeUpload(
+            @PathVariable Long id,
+            @PathVariable String uploadId,
+            Principal principal
+    ) {
+        User actor = getActor(principal);
+        User user = userService.resolveClinicOwner(actor);
+        ProthesisFileItemResponse created = resumableUploadService.complete(id, uploadId, user, actor);
+        auditService.logSuccess(
+                AuditEventType.PROTHESIS_UPDATE,
+                "PROTHESIS",
+                id != null ? String.valueOf(id) : null,
+                "Fichier televerse"
+        );
+        return ResponseEntity.ok(created);
+    }
+
+    @DeleteMapping("/{id}/files/uploads/{uploadId}")
+    public ResponseEntity<Void> abortUpload(
+            @PathVariable Long id,
+            @PathVariable String uploadId,
+            Principal principal
+    ) {
+        User user = getClinicUser(principal);
+        resumableUploadService.abort(id, uploadId, user);
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("/{id}/files")
     public ResponseEntity<List<ProthesisFileItemResponse>> listFiles(@PathVariable Long id, Principal principal) {
         User actor = getActor(principal);
@@ -231,43 +297,47 @@ public class ProtheticsController {
         return ResponseEntity.noContent().build();
     }
 
-    @GetMapping("/{id}/files.zip")
-    public ResponseEntity<StreamingResponseBody> downloadFilesZip(@PathVariable Long id, Principal principal) {
+    @GetMapping("/{id}/files/{fileId}")
+    public ResponseEntity<Resource> downloadFile(
+            @PathVariable Long id,
+            @PathVariable Long fileId,
+            @RequestParam(name = "download", defaultValue = "true") boolean download,
+            @RequestHeader HttpHeaders requestHeaders,
+            Principal principal
+    ) {
         User user = getClinicUser(principal);
-        String filename = prothesisFilesService.buildZipFilename(id);
-        var sources = prothesisFilesService.buildZipSourcesForDentist(id, user);
-
-        StreamingResponseBody body = outputStream -> {
-            try (ZipOutputStream zipOut = new ZipOutputStream(outputStream, StandardCharsets.UTF_8)) {
-                for (var source : sources) {
-                    String entryName = source.entryName() != null && !source.entryName().isBlank()
-                            ? source.entryName()
-                            : ("file-" + System.nanoTime());
-                    ZipEntry entry = new ZipEntry(entryName);
-                    zipOut.putNextEntry(entry);
-                    try (var in = prothesisFilesService.openDecryptedStream(source.encryptedPath())) {
-                        in.transferTo(zipOut);
-                    }
-                    zipOut.closeEntry();
-                }
-                zipOut.finish();
-            }
-        };
+        ProthesisFilesService.FileDownload file = prothesisFilesService.getFileForDentist(id, fileId, user);
 
-        ContentDisposition disposition = ContentDisposition.attachment()
-                .filename(filename, StandardCharsets.UTF_8)
+        auditService.logSuccess(
+                AuditEventType.PROTHESIS_READ,
+                "PROTHESIS",
+                id != null ? String.valueOf(id) : null,
+                "Fichier telecharge"
+        );
+
+        ContentDisposition disposition = (download ? ContentDisposition.attachment() : ContentDisposition.inline())
+                .filename(file.filename(), StandardCharsets.UTF_8)
                 .build();
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType("application/zip"))
-                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
-                .body(body);
+        return FileDownloadUtil.download(file.resource(), file.mediaType(), disposition, requestHeaders);
+    }
+
+    @GetMapping("/{id}/files.zip")
+    public ResponseEntity<StreamingResponseBody> downloadFilesZip(
+            @PathVariable Long id,
+            HttpServletRequest request,
+            Principal principal
+    ) {
+        User user = getClinicUser(principal);
+        return prothesisZipService.download(
+                prothesisFilesService.buildZipSourcesForDentist(id, user), prothesisFilesService.buildZipFilename(id), request);
     }
 
     @GetMapping("/{id}/stl")
     public ResponseEntity<Resource> downloadStl(
             @PathVariable Long id,
             @RequestParam(name = "download", defaultValue = "true") boolean download,
+            @RequestHeader HttpHeaders requestHeaders,
             Principal principal
     ) {
         User user = getClinicUser(principal);
@@ -286,10 +356,7 @@ public class ProtheticsController {
                 .filename(filename, StandardCharsets.UTF_8)
                 .build();
 
-        return ResponseEntity.ok()
-                .contentType(mediaType)
-                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
-                .body(resource);
+        return FileDownloadUtil.download(resource, mediaType, disposition, requestHeaders);
     }
 
     @PutMapping("/{id}/assign-lab")
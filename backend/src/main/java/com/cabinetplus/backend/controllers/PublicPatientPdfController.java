@@ -21,6 +21,7 @@ import com.cabinetplus.backend.services.AuditService;
 import com.cabinetplus.backend.services.PatientFichePdfService;
 import com.cabinetplus.backend.services.PublicIdResolutionService;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 @RestController
@@ -51,6 +52,7 @@ public class PublicPatientPdfController {
     public void downloadPatientFichePublic(
             @PathVariable String patientPublicId,
             @RequestParam("token") String token,
+            HttpServletRequest request,
             HttpServletResponse response
     ) throws Exception {
         JwtUtil.PublicPatientFichePdfToken claims;
@@ -85,6 +87,6 @@ public class PublicPatientPdfController {
 
         String todayDate = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd_MM_yyyy"));
         String fileName = String.format("fiche_patient_%s_%s.pdf", patientPublicId, todayDate);
-        patientFichePdfService.writePatientFichePdf(clinicOwner, patient, fileName, response);
+        patientFichePdfService.writePatientFichePdf(clinicOwner, patient, fileName, request, response);
     }
 }
@@ -52,6 +52,7 @@ import com.cabinetplus.backend.models.RefreshToken;
 import com.cabinetplus.backend.models.User;
 import com.cabinetplus.backend.repositories.RefreshTokenRepository;
 import com.cabinetplus.backend.security.RefreshTokenHash;
+import com.cabinetplus.backend.security.TokenRevocationEpochs;
 import com.cabinetplus.backend.services.PlanService;
 import com.cabinetplus.backend.services.PlanLimitService;
 import com.cabinetplus.backend.services.SubscriptionService;
@@ -78,6 +79,7 @@ public class UserController {
     private final EmployeeService employeeService;
     private final PublicIdResolutionService publicIdResolutionService;
     private final RefreshTokenRepository refreshTokenRepository;
+    private final TokenRevocationEpochs revocationEpochs;
 
     @Value("${app.cookie.secure:false}")
     private boolean cookieSecure;
@@ -94,7 +96,8 @@ public class UserController {
             AuditService auditService,
             EmployeeService employeeService,
             RefreshTokenRepository refreshTokenRepository,
-            PublicIdResolutionService publicIdResolutionService
+            PublicIdResolutionService publicIdResolutionService,
+            TokenRevocationEpochs revocationEpochs
     ) {
         this.userService = userService;
         this.passwordEncoder = passwordEncoder;
@@ -105,6 +108,7 @@ public class UserController {
         this.employeeService = employeeService;
         this.refreshTokenRepository = refreshTokenRepository;
         this.publicIdResolutionService = publicIdResolutionService;
+        this.revocationEpochs = revocationEpochs;
     }
 
     // ===============================
@@ -576,6 +580,7 @@ public class UserController {
         User saved = userService.save(user);
         if (request.logoutAllOrFalse()) {
             refreshTokenRepository.deleteAllByUser(saved);
+            revocationEpochs.revokeAll(saved.getId());
         }
         auditService.logSuccessAsUser(saved, AuditEventType.USER_PASSWORD_CHANGE, "USER", String.valueOf(saved.getId()), "Mot de passe modifie");
         return saved;
@@ -679,6 +684,7 @@ public class UserController {
         }
 
         refreshTokenRepository.deleteAllByUser(user);
+        revocationEpochs.revokeAll(user.getId());
 
         clearRefreshCookie(response);
 
@@ -0,0 +1,22 @@
+package com.cabinetplus.backend.dto;
+
+import com.cabinetplus.backend.enums.PdfExportKind;
+import com.cabinetplus.backend.enums.PdfExportStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/** State of a bulk PDF export; the ZIP can be downloaded once {@code status} is {@code READY}. */
+public record PdfExportJobResponse(
+        String id,
+        PdfExportKind kind,
+        PdfExportStatus status,
+        LocalDate from,
+        LocalDate to,
+        int documentCount,
+        long sizeBytes,
+        String error,
+        LocalDateTime createdAt,
+        LocalDateTime completedAt,
+        LocalDateTime expiresAt
+) {}
@@ -0,0 +1,14 @@
+package com.cabinetplus.backend.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDate;
+
+/** Date range of a devis export, both days included. */
+public record PdfExportRequest(
+        @NotNull(message = "Date de debut obligatoire")
+        LocalDate from,
+
+        @NotNull(message = "Date de fin obligatoire")
+        LocalDate to
+) {}
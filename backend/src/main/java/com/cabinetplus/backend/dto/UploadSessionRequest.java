@@ -0,0 +1,21 @@
+package com.cabinetplus.backend.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+
+public record UploadSessionRequest(
+        @NotBlank(message = "Nom de fichier obligatoire")
+        @Size(max = 255, message = "Nom de fichier trop long (max 255 caractères)")
+        String filename,
+
+        @Size(max = 1024, message = "Chemin trop long (max 1024 caractères)")
+        String relativePath,
+
+        String contentType,
+
+        @NotNull(message = "Taille obligatoire")
+        @PositiveOrZero(message = "Taille invalide")
+        Long sizeBytes
+) {}
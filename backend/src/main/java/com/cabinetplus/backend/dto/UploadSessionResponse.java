@@ -0,0 +1,16 @@
+package com.cabinetplus.backend.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * State of a resumable upload: the next part starts at {@code receivedBytes} and carries at most {@code partSize}
+ * bytes.
+ */
+public record UploadSessionResponse(
+        String id,
+        String filename,
+        long totalBytes,
+        long receivedBytes,
+        int partSize,
+        LocalDateTime expiresAt
+) {}
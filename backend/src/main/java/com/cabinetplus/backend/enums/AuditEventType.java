@@ -159,5 +159,7 @@ public enum AuditEventType {
     EMPLOYEE_SETUP_COMPLETE,
     AUTH_LOGIN_2FA_SEND,
     AUTH_LOGIN_2FA_VERIFY,
-    SETTINGS_LOGIN_2FA_UPDATE
+    SETTINGS_LOGIN_2FA_UPDATE,
+    PDF_EXPORT_CREATE,
+    PDF_EXPORT_DOWNLOAD
 }
@@ -11,5 +11,8 @@ public enum NotificationType {
 
     LAB_PAYMENT_UPDATED,
     LAB_PAYMENT_CANCELLATION_REQUESTED,
-    LAB_PAYMENT_CANCELLATION_DECIDED
+    LAB_PAYMENT_CANCELLATION_DECIDED,
+
+    PDF_EXPORT_READY,
+    PDF_EXPORT_FAILED
 }
@@ -0,0 +1,6 @@
+package com.cabinetplus.backend.enums;
+
+public enum PdfExportKind {
+    PATIENT_HISTORY,
+    DEVIS_RANGE
+}
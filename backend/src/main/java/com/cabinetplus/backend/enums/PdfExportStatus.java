@@ -0,0 +1,8 @@
+package com.cabinetplus.backend.enums;
+
+public enum PdfExportStatus {
+    QUEUED,
+    RUNNING,
+    READY,
+    FAILED
+}
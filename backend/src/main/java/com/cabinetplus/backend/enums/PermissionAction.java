@@ -0,0 +1,13 @@
+package com.cabinetplus.backend.enums;
+
+/**
+ * Mutating actions checked on top of module access; stored as {@code MODULE_ACTION} (e.g. {@code PATIENTS_CREATE}).
+ */
+public enum PermissionAction {
+    CREATE,
+    UPDATE,
+    DELETE,
+    CANCEL,
+    ARCHIVE,
+    STATUS
+}
@@ -0,0 +1,18 @@
+package com.cabinetplus.backend.enums;
+
+/**
+ * Employee permission modules that gate {@code /api/**} routes (see {@code EmployeeRoutePermissions}).
+ * Names match the strings stored in {@code user_permissions}.
+ */
+public enum PermissionModule {
+    APPOINTMENTS,
+    PATIENTS,
+    DEVIS,
+    CATALOGUE,
+    INVENTORY,
+    PROSTHESES,
+    EXPENSES,
+    LABORATORIES,
+    FOURNISSEURS,
+    SETTINGS
+}
@@ -3,10 +3,12 @@ package com.cabinetplus.backend.models;
 import java.time.LocalDateTime;
 import java.util.Objects;
 
+import com.cabinetplus.backend.security.ClinicPrincipalInvalidationListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.MapsId;
@@ -20,6 +22,7 @@ import org.hibernate.Hibernate;
 
 @Entity
 @Table(name = "dentist_profiles")
+@EntityListeners(ClinicPrincipalInvalidationListener.class)
 @Data
 @ToString(exclude = { "user" })
 @NoArgsConstructor
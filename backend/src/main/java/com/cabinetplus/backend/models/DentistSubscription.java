@@ -4,10 +4,12 @@ import java.time.LocalDateTime;
 
 import com.cabinetplus.backend.enums.BillingCycle;
 import com.cabinetplus.backend.enums.UserPlanStatus;
+import com.cabinetplus.backend.security.ClinicPrincipalInvalidationListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
@@ -22,6 +24,7 @@ import lombok.NoArgsConstructor;
 
 @Entity
 @Table(name = "dentist_subscriptions")
+@EntityListeners(ClinicPrincipalInvalidationListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,74 @@
+package com.cabinetplus.backend.models;
+
+import com.cabinetplus.backend.enums.PdfExportKind;
+import com.cabinetplus.backend.enums.PdfExportStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Bulk PDF export built in the background. Once {@code READY}, the encrypted ZIP is at {@code storageLocation} until
+ * the job expires.
+ */
+@Entity
+@Table(name = "pdf_export_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PdfExportJob {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "owner_id", nullable = false)
+    private User owner;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "created_by")
+    private User createdBy;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private PdfExportKind kind;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "patient_id")
+    private Patient patient;
+
+    @Column(name = "from_date")
+    private LocalDate fromDate;
+
+    @Column(name = "to_date")
+    private LocalDate toDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private PdfExportStatus status;
+
+    @Column(name = "document_count", nullable = false)
+    private int documentCount;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "storage_location", length = 1024)
+    private String storageLocation;
+
+    @Column(length = 500)
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,49 @@
+package com.cabinetplus.backend.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Encrypted upload stored once per clinic and content hash, shared by every row whose {@code path_or_url} points at
+ * {@link #storagePath}. Rows are written by {@code BlobStoreService} only.
+ */
+@Entity
+@Table(name = "stored_blobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredBlob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "owner_id", nullable = false)
+    private User owner;
+
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    @Column(name = "storage_path", columnDefinition = "TEXT", nullable = false)
+    private String storagePath;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "plaintext_bytes", nullable = false)
+    private long plaintextBytes;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "released_at")
+    private LocalDateTime releasedAt;
+}
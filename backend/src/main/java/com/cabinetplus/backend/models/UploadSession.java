@@ -0,0 +1,62 @@
+package com.cabinetplus.backend.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Resumable upload in progress. The received bytes live encrypted in {@link UploadSessionPart}s in blob storage; the
+ * row holds the progress every node agrees on and what is needed to attach the finished file.
+ */
+@Entity
+@Table(name = "upload_sessions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "owner_id", nullable = false)
+    private User owner;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "created_by")
+    private User createdBy;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "prothesis_id", nullable = false)
+    private Prothesis prothesis;
+
+    @Column(nullable = false)
+    private String filename;
+
+    @Column(name = "relative_path", length = 1024)
+    private String relativePath;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "total_bytes", nullable = false)
+    private long totalBytes;
+
+    /** Bytes covered by committed parts; the next part must start here. */
+    @Column(name = "received_bytes", nullable = false)
+    private long receivedBytes;
+
+    /** Set while a node attaches the finished file, so the session is completed or aborted only once. */
+    @Column(name = "completing_since")
+    private LocalDateTime completingSince;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
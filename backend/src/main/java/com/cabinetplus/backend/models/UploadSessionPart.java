@@ -0,0 +1,43 @@
+package com.cabinetplus.backend.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One part of a resumable upload, encrypted on its own at {@code location} in blob storage. The row is written before
+ * the object, so every staged object can be found again; it counts only once {@code committed} together with the
+ * session's progress.
+ */
+@Entity
+@Table(name = "upload_session_parts")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionPart {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "upload_id", nullable = false, length = 36)
+    private String uploadId;
+
+    @Column(name = "start_offset", nullable = false)
+    private long startOffset;
+
+    @Column(name = "length_bytes", nullable = false)
+    private long lengthBytes;
+
+    @Column(nullable = false, length = 1024)
+    private String location;
+
+    @Column(nullable = false)
+    private boolean committed;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
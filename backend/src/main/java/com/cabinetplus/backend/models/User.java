@@ -7,6 +7,8 @@ import java.util.Set;
 import java.util.UUID;
 
 import com.cabinetplus.backend.enums.UserRole;
+import com.cabinetplus.backend.security.ClinicPrincipalInvalidationListener;
+import com.cabinetplus.backend.websocket.PhoneKeyCacheInvalidationListener;
 import com.cabinetplus.backend.util.UuidV7;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -15,6 +17,7 @@ import jakarta.persistence.Column;
 import jakarta.persistence.CollectionTable;
 import jakarta.persistence.ElementCollection;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.FetchType;
@@ -35,6 +38,7 @@ import org.hibernate.Hibernate;
 
 @Entity
 @Table(name = "users")
+@EntityListeners({ ClinicPrincipalInvalidationListener.class, PhoneKeyCacheInvalidationListener.class })
 @Data
 @ToString(exclude = { "passwordHash", "ownerDentist", "userPreferences", "dentistProfile", "dentistSubscription" })
 @NoArgsConstructor
@@ -14,6 +14,8 @@ import java.util.List;
 public interface DeviseRepository extends JpaRepository<Devise, Long> {
     List<Devise> findByPractitioner(User user);
 
+    List<Devise> findByPractitionerAndCreatedAtBetweenOrderByCreatedAtAsc(User practitioner, LocalDateTime from, LocalDateTime to);
+
     @Query("""
         select d
         from Devise d
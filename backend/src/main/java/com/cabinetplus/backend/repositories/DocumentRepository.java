@@ -53,6 +53,7 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
             from Document d
             where d.patient.createdBy = :owner
               and d.recordStatus = 'ACTIVE'
+              and not exists (select 1 from StoredBlob b where b.storagePath = d.pathOrUrl)
             """)
     long sumFileSizeBytesByOwner(@Param("owner") User owner);
 
@@ -25,6 +25,7 @@ public interface JustificationRepository extends JpaRepository<Justification, Lo
 
     List<Justification> findByPatientAndPractitioner(Patient patient, User practitioner);
     List<Justification> findByPatientAndPractitionerAndRecordStatus(Patient patient, User practitioner, RecordStatus recordStatus);
+    List<Justification> findByPatientAndPractitionerInAndRecordStatusOrderByDateAsc(Patient patient, List<User> practitioners, RecordStatus recordStatus);
 
     @Query("""
             select j
@@ -0,0 +1,27 @@
+package com.cabinetplus.backend.repositories;
+
+import com.cabinetplus.backend.enums.PdfExportStatus;
+import com.cabinetplus.backend.models.PdfExportJob;
+import com.cabinetplus.backend.models.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PdfExportJobRepository extends JpaRepository<PdfExportJob, String> {
+
+    Optional<PdfExportJob> findByIdAndOwner(String id, User owner);
+
+    List<PdfExportJob> findTop20ByOwnerAndCreatedByAndExpiresAtAfterOrderByCreatedAtDesc(User owner, User createdBy, LocalDateTime now);
+
+    long countByOwnerAndStatusIn(User owner, Collection<PdfExportStatus> statuses);
+
+    List<PdfExportJob> findTop100ByExpiresAtBeforeOrderByExpiresAtAsc(LocalDateTime cutoff);
+
+    /** Jobs still queued or running long after submission, i.e. left behind by a node that stopped. */
+    List<PdfExportJob> findTop100ByStatusInAndCreatedAtBefore(Collection<PdfExportStatus> statuses, LocalDateTime cutoff);
+}
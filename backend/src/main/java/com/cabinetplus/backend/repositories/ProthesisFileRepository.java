@@ -24,6 +24,7 @@ public interface ProthesisFileRepository extends JpaRepository<ProthesisFile, Lo
             where f.prothesis.practitioner = :owner
               and f.prothesis.recordStatus = 'ACTIVE'
               and f.fileSizeBytes is not null
+              and not exists (select 1 from StoredBlob b where b.storagePath = f.pathOrUrl)
             """)
     long sumFileSizeBytesByOwner(@Param("owner") User owner);
 }
@@ -210,6 +210,7 @@ public interface ProthesisRepository extends JpaRepository<Prothesis, Long> {
             where p.practitioner = :owner
               and p.recordStatus = 'ACTIVE'
               and p.stlFileSizeBytes is not null
+              and not exists (select 1 from StoredBlob b where b.storagePath = p.stlPathOrUrl)
             """)
     long sumStlFileSizeBytesByOwner(@Param("owner") User owner);
 
@@ -0,0 +1,52 @@
+package com.cabinetplus.backend.repositories;
+
+import com.cabinetplus.backend.models.StoredBlob;
+import com.cabinetplus.backend.models.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, Long> {
+
+    /**
+     * Bytes of the owner's blobs still referenced by an active row; each blob counts once however many rows share it.
+     * Blob-backed rows are excluded from the per-table sums.
+     */
+    @Query("""
+            select coalesce(sum(b.sizeBytes), 0)
+            from StoredBlob b
+            where b.owner = :owner
+              and (exists (select 1 from Document d
+                           where d.pathOrUrl = b.storagePath and d.recordStatus = 'ACTIVE')
+                or exists (select 1 from Prothesis p
+                           where p.stlPathOrUrl = b.storagePath and p.recordStatus = 'ACTIVE')
+                or exists (select 1 from ProthesisFile f
+                           where f.pathOrUrl = b.storagePath and f.prothesis.recordStatus = 'ACTIVE'))
+            """)
+    long sumReferencedSizeBytesByOwner(@Param("owner") User owner);
+
+    /**
+     * Non-zero when the blob at {@code storagePath} is still pointed at by cancelled rows only, i.e. left out of
+     * {@link #sumReferencedSizeBytesByOwner}.
+     */
+    @Query("""
+            select count(b)
+            from StoredBlob b
+            where b.storagePath = :storagePath
+              and (exists (select 1 from Document d
+                           where d.pathOrUrl = b.storagePath and d.recordStatus <> 'ACTIVE')
+                or exists (select 1 from Prothesis p
+                           where p.stlPathOrUrl = b.storagePath and p.recordStatus <> 'ACTIVE')
+                or exists (select 1 from ProthesisFile f
+                           where f.pathOrUrl = b.storagePath and f.prothesis.recordStatus <> 'ACTIVE'))
+              and not exists (select 1 from Document d
+                              where d.pathOrUrl = b.storagePath and d.recordStatus = 'ACTIVE')
+              and not exists (select 1 from Prothesis p
+                              where p.stlPathOrUrl = b.storagePath and p.recordStatus = 'ACTIVE')
+              and not exists (select 1 from ProthesisFile f
+                              where f.pathOrUrl = b.storagePath and f.prothesis.recordStatus = 'ACTIVE')
+            """)
+    long countReferencedOnlyByCancelledRows(@Param("storagePath") String storagePath);
+}
@@ -0,0 +1,59 @@
+package com.cabinetplus.backend.repositories;
+
+import com.cabinetplus.backend.models.UploadSessionPart;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadSessionPartRepository extends JpaRepository<UploadSessionPart, Long> {
+
+    List<UploadSessionPart> findByUploadIdAndCommittedTrueOrderByStartOffsetAsc(String uploadId);
+
+    List<UploadSessionPart> findByUploadId(String uploadId);
+
+    /**
+     * Commits part {@code partId} and moves the session's progress from {@code offset} to {@code receivedBytes} in one
+     * statement. Returns {@code 0} when another part got there first, or the session is gone or being completed.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            with advanced as (
+                update upload_sessions
+                set received_bytes = :receivedBytes, expires_at = :expiresAt
+                where id = :uploadId and received_bytes = :offset and completing_since is null
+                returning id
+            )
+            update upload_session_parts p
+            set committed = true
+            from advanced
+            where p.id = :partId and p.upload_id = advanced.id
+            """, nativeQuery = true)
+    int commit(
+            @Param("partId") Long partId,
+            @Param("uploadId") String uploadId,
+            @Param("offset") long offset,
+            @Param("receivedBytes") long receivedBytes,
+            @Param("expiresAt") LocalDateTime expiresAt
+    );
+
+    /**
+     * Parts staged before {@code cutoff} that were never committed, or whose session no longer exists. Newer
+     * uncommitted parts may still be in flight; their request cleans them up.
+     */
+    @Query("""
+            select p from UploadSessionPart p
+            where p.createdAt < :cutoff
+              and (p.committed = false or not exists (select s.id from UploadSession s where s.id = p.uploadId))
+            order by p.id
+            """)
+    List<UploadSessionPart> findAbandoned(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+}
@@ -0,0 +1,57 @@
+package com.cabinetplus.backend.repositories;
+
+import com.cabinetplus.backend.models.UploadSession;
+import com.cabinetplus.backend.models.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    Optional<UploadSession> findByIdAndProthesisId(String id, Long prothesisId);
+
+    List<UploadSession> findTop100ByExpiresAtBeforeOrderByExpiresAtAsc(LocalDateTime cutoff);
+
+    /** Bytes reserved by the owner's unexpired uploads, counted against the plan before they complete. */
+    @Query("""
+            select coalesce(sum(s.totalBytes), 0)
+            from UploadSession s
+            where s.owner = :owner and s.expiresAt > :now
+            """)
+    long sumOpenTotalBytesByOwner(@Param("owner") User owner, @Param("now") LocalDateTime now);
+
+    /** Marks the session as being completed, unless another request already is (or it isn't fully received). */
+    @Modifying
+    @Transactional
+    @Query("""
+            update UploadSession s
+            set s.completingSince = :now
+            where s.id = :id
+              and s.receivedBytes = s.totalBytes
+              and (s.completingSince is null or s.completingSince < :staleBefore)
+            """)
+    int claimCompletion(@Param("id") String id, @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+
+    @Modifying
+    @Transactional
+    @Query("update UploadSession s set s.completingSince = null where s.id = :id")
+    int releaseCompletion(@Param("id") String id);
+
+    /** Deletes the session unless it is being completed; {@code 0} when it is (or is already gone). */
+    @Modifying
+    @Transactional
+    @Query("""
+            delete from UploadSession s
+            where s.id = :id
+              and (s.completingSince is null or s.completingSince < :staleBefore)
+            """)
+    int deleteUnlessCompleting(@Param("id") String id, @Param("staleBefore") LocalDateTime staleBefore);
+}
@@ -0,0 +1,78 @@
+package com.cabinetplus.backend.security;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import com.cabinetplus.backend.enums.UserPlanStatus;
+import com.cabinetplus.backend.enums.UserRole;
+import com.cabinetplus.backend.models.User;
+
+/**
+ * Immutable snapshot of the authenticated user, resolved once per request by {@link JwtAuthenticationFilter}
+ * and carried on the {@code Authentication} so downstream filters and controllers don't reload the user.
+ *
+ * <p>Never holds the password hash: JWT-authenticated requests don't need it, and the snapshot is cached
+ * across requests by {@link ClinicPrincipalCache}.</p>
+ */
+public record ClinicPrincipal(
+        Long userId,
+        String phoneNumber,
+        UserRole role,
+        Long ownerDentistId,
+        Long clinicOwnerId,
+        Set<String> permissions,
+        UserPlanStatus planStatus,
+        boolean phoneVerified,
+        boolean pinConfigured,
+        EmployeePermissionGrants grants
+) implements UserDetails {
+
+    public ClinicPrincipal {
+        permissions = permissions != null ? Set.copyOf(permissions) : Set.of();
+        if (grants == null) {
+            grants = EmployeePermissionGrants.of(permissions);
+        }
+    }
+
+    public static ClinicPrincipal from(User user) {
+        Long ownerDentistId = user.getOwnerDentist() != null ? user.getOwnerDentist().getId() : null;
+        boolean staff = ownerDentistId != null
+                && (user.getRole() == UserRole.EMPLOYEE || user.getRole() == UserRole.DENTIST);
+        return new ClinicPrincipal(
+                user.getId(),
+                user.getPhoneNumber(),
+                user.getRole(),
+                ownerDentistId,
+                staff ? ownerDentistId : user.getId(),
+                user.getPermissions(),
+                user.getPlanStatus(),
+                user.isPhoneVerified(),
+                user.isGestionCabinetPinConfigured(),
+                null
+        );
+    }
+
+    public boolean isStaff() {
+        return role == UserRole.EMPLOYEE || ownerDentistId != null;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return role != null ? List.of(new SimpleGrantedAuthority("ROLE_" + role.name())) : List.of();
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return phoneNumber;
+    }
+}
@@ -0,0 +1,130 @@
+package com.cabinetplus.backend.security;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded, TTL-evicting cache of {@link ClinicPrincipal} snapshots keyed by the JWT subject (phone number).
+ *
+ * <p>Entries are dropped explicitly when the underlying user (or their clinic owner's subscription) changes,
+ * see {@link ClinicPrincipalInvalidationListener}; the TTL only bounds staleness for writes that bypass JPA. When full,
+ * the least recently used snapshot goes. Snapshots are indexed by user and clinic owner so an invalidation touches
+ * only theirs.</p>
+ */
+@Component
+public class ClinicPrincipalCache {
+
+    private record Entry(ClinicPrincipal principal, long expiresAtNanos) {
+    }
+
+    // Access-ordered, so the eldest entry is the least recently used. Guarded by this, like the index.
+    private final LinkedHashMap<String, Entry> entries;
+    // Keys of the snapshots of each user, and of each clinic owner's staff.
+    private final Map<Long, Set<String>> keysByUser = new HashMap<>();
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    public ClinicPrincipalCache(
+            @Value("${app.security.principal-cache.ttl-seconds:60}") long ttlSeconds,
+            @Value("${app.security.principal-cache.max-entries:10000}") int maxEntries
+    ) {
+        this.ttlNanos = Math.max(0L, ttlSeconds) * 1_000_000_000L;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= ClinicPrincipalCache.this.maxEntries) return false;
+                unindex(eldest.getKey(), eldest.getValue().principal());
+                return true;
+            }
+        };
+    }
+
+    public ClinicPrincipal get(String phoneNumber, Function<String, ClinicPrincipal> loader) {
+        if (phoneNumber == null || phoneNumber.isBlank() || ttlNanos == 0L) {
+            return loader.apply(phoneNumber);
+        }
+
+        ClinicPrincipal cached = cached(phoneNumber);
+        if (cached != null) {
+            return cached;
+        }
+
+        ClinicPrincipal loaded = loader.apply(phoneNumber);
+        if (loaded != null) {
+            put(phoneNumber, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Drops every snapshot of the given user, plus snapshots of staff attached to them when the user is a clinic owner
+     * (employees inherit the owner's plan status).
+     */
+    public synchronized void invalidateUserOrClinic(Long userId) {
+        if (userId == null) return;
+        Set<String> keys = keysByUser.remove(userId);
+        if (keys == null) return;
+        for (String key : keys) {
+            Entry removed = entries.remove(key);
+            if (removed != null) unindex(key, removed.principal());
+        }
+    }
+
+    public synchronized void invalidatePhone(String phoneNumber) {
+        if (phoneNumber == null) return;
+        Entry removed = entries.remove(phoneNumber);
+        if (removed != null) unindex(phoneNumber, removed.principal());
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        keysByUser.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized ClinicPrincipal cached(String phoneNumber) {
+        Entry cached = entries.get(phoneNumber);
+        if (cached == null) return null;
+        if (System.nanoTime() - cached.expiresAtNanos() >= 0) {
+            entries.remove(phoneNumber);
+            unindex(phoneNumber, cached.principal());
+            return null;
+        }
+        return cached.principal();
+    }
+
+    private synchronized void put(String phoneNumber, ClinicPrincipal principal) {
+        Entry previous = entries.put(phoneNumber, new Entry(principal, System.nanoTime() + ttlNanos));
+        if (previous != null) unindex(phoneNumber, previous.principal());
+        index(phoneNumber, principal.userId());
+        index(phoneNumber, principal.clinicOwnerId());
+    }
+
+    private void index(String key, Long userId) {
+        if (userId != null) keysByUser.computeIfAbsent(userId, k -> new HashSet<>()).add(key);
+    }
+
+    private void unindex(String key, ClinicPrincipal principal) {
+        unindex(key, principal.userId());
+        unindex(key, principal.clinicOwnerId());
+    }
+
+    private void unindex(String key, Long userId) {
+        if (userId == null) return;
+        Set<String> keys = keysByUser.get(userId);
+        if (keys == null) return;
+        keys.remove(key);
+        if (keys.isEmpty()) keysByUser.remove(userId);
+    }
+}
@@ -0,0 +1,63 @@
+package com.cabinetplus.backend.security;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.cabinetplus.backend.models.DentistProfile;
+import com.cabinetplus.backend.models.DentistSubscription;
+import com.cabinetplus.backend.models.User;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * JPA entity listener that evicts cached {@link ClinicPrincipal} snapshots whenever a user row (role, permissions,
+ * password, PIN...), a clinic profile (owner PIN) or a clinic subscription (plan status) is written.
+ *
+ * <p>Eviction happens immediately and again after commit, so a concurrent request that reloaded the old row
+ * mid-transaction can't keep a stale snapshot around until the TTL expires. The same write marks claims embedded in
+ * previously issued access tokens as stale, see {@link TokenRevocationEpochs}.</p>
+ */
+@Component
+public class ClinicPrincipalInvalidationListener {
+
+    private final ClinicPrincipalCache cache;
+    private final TokenRevocationEpochs revocationEpochs;
+
+    public ClinicPrincipalInvalidationListener(ClinicPrincipalCache cache, TokenRevocationEpochs revocationEpochs) {
+        this.cache = cache;
+        this.revocationEpochs = revocationEpochs;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onWrite(Object entity) {
+        Long id = null;
+        if (entity instanceof User user) {
+            id = user.getId();
+        } else if (entity instanceof DentistSubscription subscription) {
+            id = subscription.getDentistUserId();
+        } else if (entity instanceof DentistProfile profile) {
+            id = profile.getUserId();
+        }
+        invalidateUser(id);
+    }
+
+    /** Same as a write to the user row, for changes JPA may not report (e.g. element collections only). */
+    public void invalidateUser(Long userId) {
+        if (userId == null) return;
+        cache.invalidateUserOrClinic(userId);
+        revocationEpochs.markStale(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidateUserOrClinic(userId);
+                }
+            });
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.cabinetplus.backend.security;
 import com.cabinetplus.backend.models.User;
 import com.cabinetplus.backend.repositories.UserRepository;
 import com.cabinetplus.backend.util.PhoneNumberUtil;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -12,16 +13,16 @@ import org.springframework.stereotype.Service;
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepo;
+    private final ClinicPrincipalCache principalCache;
 
-    public CustomUserDetailsService(UserRepository userRepo) {
+    public CustomUserDetailsService(UserRepository userRepo, ClinicPrincipalCache principalCache) {
         this.userRepo = userRepo;
+        this.principalCache = principalCache;
     }
 
     @Override
     public UserDetails loadUserByUsername(String phoneNumber) throws UsernameNotFoundException {
-        var candidates = PhoneNumberUtil.algeriaStoredCandidates(phoneNumber);
-        User user = userRepo.findFirstByPhoneNumberInOrderByIdAsc(candidates)
-                .orElseThrow(() -> new UsernameNotFoundException("Utilisateur introuvable"));
+        User user = findUser(phoneNumber);
 
         return org.springframework.security.core.userdetails.User
                 .withUsername(user.getPhoneNumber())
@@ -29,5 +30,49 @@ public class CustomUserDetailsService implements UserDetailsService {
                 .roles(user.getRole().name())
                 .build();
     }
-}
 
+    /**
+     * Resolves the principal for an already-verified token subject (no password hash), served from
+     * {@link ClinicPrincipalCache} when warm.
+     */
+    public ClinicPrincipal loadClinicPrincipal(String phoneNumber) throws UsernameNotFoundException {
+        ClinicPrincipal principal = principalCache.get(phoneNumber, phone -> ClinicPrincipal.from(findUser(phone)));
+        if (principal == null) {
+            throw new UsernameNotFoundException("Utilisateur introuvable");
+        }
+        return principal;
+    }
+
+    /**
+     * Returns the {@link ClinicPrincipal} behind an authentication, loading it (through the cache) when the
+     * authentication was built from another kind of principal. Returns {@code null} for unknown users.
+     */
+    public ClinicPrincipal resolveClinicPrincipal(Authentication auth) {
+        if (auth == null) return null;
+        Object principal = auth.getPrincipal();
+        if (principal instanceof ClinicPrincipal cp) {
+            return cp;
+        }
+
+        String username = null;
+        if (principal instanceof UserDetails ud) {
+            username = ud.getUsername();
+        } else if (principal instanceof String s) {
+            username = s;
+        }
+        if (username == null || username.isBlank()) {
+            return null;
+        }
+        try {
+            return loadClinicPrincipal(username);
+        } catch (UsernameNotFoundException ex) {
+            return null;
+        }
+    }
+
+    private User findUser(String phoneNumber) {
+        var candidates = PhoneNumberUtil.algeriaStoredCandidates(phoneNumber);
+        return userRepo.findFirstByPhoneNumberInOrderByIdAsc(candidates)
+                .orElseThrow(() -> new UsernameNotFoundException("Utilisateur introuvable"));
+    }
+}
@@ -0,0 +1,64 @@
+package com.cabinetplus.backend.security;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.cabinetplus.backend.enums.PermissionAction;
+import com.cabinetplus.backend.enums.PermissionModule;
+
+/**
+ * Bitset view of an employee's permission strings: one bit per {@link PermissionModule} and one bit per
+ * module/{@link PermissionAction} pair, so route checks are a mask test instead of string concatenation + set lookups.
+ *
+ * <p>Unknown strings (e.g. {@code LABORATORIES_MESSAGE}, {@code SUPPORT}) are ignored here; they stay available
+ * on {@link ClinicPrincipal#permissions()} for the services that read them.</p>
+ */
+public record EmployeePermissionGrants(long modules, long actions) {
+
+    public static final EmployeePermissionGrants NONE = new EmployeePermissionGrants(0L, 0L);
+
+    private static final int ACTION_COUNT = PermissionAction.values().length;
+    private static final Map<String, EmployeePermissionGrants> TOKENS = new HashMap<>();
+
+    static {
+        if (PermissionModule.values().length * ACTION_COUNT > Long.SIZE) {
+            throw new IllegalStateException("Too many permission module/action pairs for a 64-bit mask");
+        }
+        for (PermissionModule module : PermissionModule.values()) {
+            TOKENS.put(module.name(), new EmployeePermissionGrants(moduleBit(module), 0L));
+            for (PermissionAction action : PermissionAction.values()) {
+                TOKENS.put(module.name() + "_" + action.name(), new EmployeePermissionGrants(0L, actionBit(module, action)));
+            }
+        }
+    }
+
+    public static EmployeePermissionGrants of(Collection<String> permissions) {
+        if (permissions == null || permissions.isEmpty()) return NONE;
+        long modules = 0L;
+        long actions = 0L;
+        for (String permission : permissions) {
+            EmployeePermissionGrants token = permission != null ? TOKENS.get(permission) : null;
+            if (token == null) continue;
+            modules |= token.modules;
+            actions |= token.actions;
+        }
+        return new EmployeePermissionGrants(modules, actions);
+    }
+
+    public static long moduleBit(PermissionModule module) {
+        return 1L << module.ordinal();
+    }
+
+    public static long actionBit(PermissionModule module, PermissionAction action) {
+        return 1L << (module.ordinal() * ACTION_COUNT + action.ordinal());
+    }
+
+    public boolean hasAnyModule(long moduleMask) {
+        return (modules & moduleMask) != 0L;
+    }
+
+    public boolean hasAction(long actionMask) {
+        return (actions & actionMask) != 0L;
+    }
+}
@@ -0,0 +1,274 @@
+package com.cabinetplus.backend.security;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.cabinetplus.backend.enums.PermissionAction;
+import com.cabinetplus.backend.enums.PermissionModule;
+
+/**
+ * Declarative route table for {@link EmployeePermissionsFilter}, compiled once into a character trie.
+ *
+ * <p>Rules are plain {@code startsWith} prefixes (or exact paths); a lookup walks the request URI once and returns
+ * the longest matching rule's pre-built {@link Requirement}. No rule prefix is a prefix of a rule with a different
+ * requirement, so longest-match gives the same answer as the former first-match {@code if} chain.</p>
+ */
+public final class EmployeeRoutePermissions {
+
+    public enum Kind {
+        /** Always allowed for every authenticated user (profile, security, plans...). */
+        UNRESTRICTED,
+        /** Gated module that is always enabled for staff (support, messaging). */
+        OPEN,
+        /** Gated module that is never available to staff (finance, employees, hand payments). */
+        FORBIDDEN,
+        /** Requires one of {@link Requirement#moduleMask()} to read, or the module's action bit to write. */
+        MODULES
+    }
+
+    /**
+     * Interned authorization decision for a route; identical requirements share one instance.
+     */
+    public static final class Requirement {
+        private final Kind kind;
+        private final long moduleMask;
+        private final long[] actionMasks;
+
+        private Requirement(Kind kind, long moduleMask, PermissionModule actionModule) {
+            this.kind = kind;
+            this.moduleMask = moduleMask;
+            this.actionMasks = new long[PermissionAction.values().length];
+            if (actionModule != null) {
+                for (PermissionAction action : PermissionAction.values()) {
+                    actionMasks[action.ordinal()] = EmployeePermissionGrants.actionBit(actionModule, action);
+                }
+            }
+        }
+
+        public Kind kind() {
+            return kind;
+        }
+
+        public long moduleMask() {
+            return moduleMask;
+        }
+
+        public boolean allows(EmployeePermissionGrants grants, PermissionAction action) {
+            return switch (kind) {
+                case UNRESTRICTED, OPEN -> true;
+                case FORBIDDEN -> false;
+                case MODULES -> action == null
+                        ? grants.hasAnyModule(moduleMask)
+                        : grants.hasAction(actionMasks[action.ordinal()]);
+            };
+        }
+    }
+
+    private record Rule(String path, boolean exact, Requirement onGet, Requirement onOther) {
+    }
+
+    private static final Map<String, Requirement> INTERNED = new ConcurrentHashMap<>();
+
+    private static final Requirement UNRESTRICTED = intern(Kind.UNRESTRICTED, 0L, null);
+    private static final Requirement OPEN = intern(Kind.OPEN, 0L, null);
+    private static final Requirement FORBIDDEN = intern(Kind.FORBIDDEN, 0L, null);
+
+    private static final List<Rule> RULES = List.of(
+            // Always allowed
+            exact("/api/users/me", UNRESTRICTED),
+            prefix("/api/users/me/", UNRESTRICTED),
+            prefix("/api/security/", UNRESTRICTED),
+            prefix("/api/verify/", UNRESTRICTED),
+            prefix("/api/plans", UNRESTRICTED),
+            prefix("/api/plan", UNRESTRICTED),
+
+            // Core pages
+            prefix("/api/appointments", module(PermissionModule.APPOINTMENTS)),
+            prefix("/api/patients", module(PermissionModule.PATIENTS)),
+            prefix("/api/devises", module(PermissionModule.DEVIS)),
+            prefix("/api/support", OPEN),
+            prefix("/api/messaging", OPEN),
+
+            // Catalogue
+            prefix("/api/medications", module(PermissionModule.CATALOGUE)),
+            prefix("/api/treatment-catalog", module(PermissionModule.CATALOGUE)),
+            prefix("/api/prothesis-catalog", module(PermissionModule.CATALOGUE)),
+            prefix("/api/justification-content", module(PermissionModule.CATALOGUE)),
+            prefix("/api/materials", module(PermissionModule.CATALOGUE)),
+            // Inventory needs read access to item defaults, but writing remains "CATALOGUE".
+            prefix("/api/item-defaults",
+                    readAnyOf(PermissionModule.CATALOGUE, PermissionModule.INVENTORY),
+                    module(PermissionModule.CATALOGUE)),
+            prefix("/api/disease-catalog", module(PermissionModule.CATALOGUE)),
+            prefix("/api/allergy-catalog", module(PermissionModule.CATALOGUE)),
+
+            // Inventory
+            prefix("/api/items", module(PermissionModule.INVENTORY)),
+
+            // Patient dossier / prostheses tracking (allow reads if either module is enabled)
+            prefix("/api/protheses",
+                    readAnyOf(PermissionModule.PATIENTS, PermissionModule.PROSTHESES),
+                    module(PermissionModule.PROSTHESES)),
+            prefix("/api/payments", module(PermissionModule.PATIENTS)),
+
+            // Gestion cabinet / back-office
+            prefix("/api/finance", FORBIDDEN),
+            prefix("/api/employees", FORBIDDEN),
+            prefix("/api/expenses", module(PermissionModule.EXPENSES)),
+            prefix("/api/laboratories", module(PermissionModule.LABORATORIES)),
+            prefix("/api/fournisseurs", module(PermissionModule.FOURNISSEURS)),
+            prefix("/api/hand-payments", FORBIDDEN),
+
+            // Settings / audit
+            prefix("/api/audit", module(PermissionModule.SETTINGS))
+    );
+
+    private static final EmployeeRoutePermissions DEFAULT = compile(RULES);
+
+    private final Node root;
+
+    private EmployeeRoutePermissions(Node root) {
+        this.root = root;
+    }
+
+    public static EmployeeRoutePermissions defaults() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the requirement of the longest rule matching {@code path}, or {@code null} when the route isn't gated.
+     */
+    public Requirement match(String path, String method) {
+        if (path == null) return null;
+        Rule best = null;
+        Node node = root;
+        int length = path.length();
+        for (int i = 0; i < length && node != null; i++) {
+            node = node.child(path.charAt(i));
+            if (node == null) break;
+            if (node.prefixRule != null) best = node.prefixRule;
+            if (i == length - 1 && node.exactRule != null) best = node.exactRule;
+        }
+        if (best == null) return null;
+        return "GET".equalsIgnoreCase(method) ? best.onGet() : best.onOther();
+    }
+
+    /**
+     * Mutating action implied by the request, or {@code null} for reads (including POST query endpoints).
+     */
+    public static PermissionAction actionFor(String method, String path) {
+        if (method == null) return null;
+        if ("GET".equalsIgnoreCase(method) || "HEAD".equalsIgnoreCase(method) || "OPTIONS".equalsIgnoreCase(method)) {
+            return null;
+        }
+        if (path != null) {
+            boolean byIds = false;
+            boolean cancel = false;
+            boolean archive = false;
+            boolean status = false;
+            int length = path.length();
+            for (int i = path.indexOf('/'); i >= 0 && i + 1 < length; i = path.indexOf('/', i + 1)) {
+                switch (Character.toLowerCase(path.charAt(i + 1))) {
+                    case 'b' -> byIds |= path.regionMatches(true, i, "/by-ids", 0, 7);
+                    case 'c' -> cancel |= path.regionMatches(true, i, "/cancel", 0, 7);
+                    case 'a' -> archive |= path.regionMatches(true, i, "/archive", 0, 8);
+                    case 'u' -> archive |= path.regionMatches(true, i, "/unarchive", 0, 10);
+                    case 's' -> status |= path.regionMatches(true, i, "/status", 0, 7);
+                    default -> {
+                        // not an action segment
+                    }
+                }
+            }
+            // Some endpoints use POST as a read/query operation.
+            if (byIds) return null;
+            if (cancel) return PermissionAction.CANCEL;
+            if (archive) return PermissionAction.ARCHIVE;
+            if (status) return PermissionAction.STATUS;
+        }
+        if ("POST".equalsIgnoreCase(method)) return PermissionAction.CREATE;
+        if ("DELETE".equalsIgnoreCase(method)) return PermissionAction.DELETE;
+        return PermissionAction.UPDATE; // PUT/PATCH and any other mutating method
+    }
+
+    private static EmployeeRoutePermissions compile(List<Rule> rules) {
+        Node root = new Node();
+        for (Rule rule : rules) {
+            Node node = root;
+            for (int i = 0; i < rule.path().length(); i++) {
+                node = node.childOrCreate(rule.path().charAt(i));
+            }
+            if (rule.exact()) {
+                node.exactRule = rule;
+            } else {
+                node.prefixRule = rule;
+            }
+        }
+        return new EmployeeRoutePermissions(root);
+    }
+
+    private static Rule prefix(String path, Requirement requirement) {
+        return new Rule(path, false, requirement, requirement);
+    }
+
+    private static Rule prefix(String path, Requirement onGet, Requirement onOther) {
+        return new Rule(path, false, onGet, onOther);
+    }
+
+    private static Rule exact(String path, Requirement requirement) {
+        return new Rule(path, true, requirement, requirement);
+    }
+
+    private static Requirement module(PermissionModule module) {
+        return intern(Kind.MODULES, EmployeePermissionGrants.moduleBit(module), module);
+    }
+
+    /** GET-only requirement: reads never carry an action, so no action module is needed. */
+    private static Requirement readAnyOf(PermissionModule... modules) {
+        long mask = 0L;
+        for (PermissionModule m : modules) {
+            mask |= EmployeePermissionGrants.moduleBit(m);
+        }
+        return intern(Kind.MODULES, mask, null);
+    }
+
+    private static Requirement intern(Kind kind, long moduleMask, PermissionModule actionModule) {
+        String key = kind + ":" + moduleMask + ":" + actionModule;
+        return INTERNED.computeIfAbsent(key, k -> new Requirement(kind, moduleMask, actionModule));
+    }
+
+    /**
+     * Trie node; children are stored in a dense array indexed by {@code c - lo}, so each step is one bounds check.
+     */
+    private static final class Node {
+        private char lo;
+        private Node[] children = new Node[0];
+        private Rule prefixRule;
+        private Rule exactRule;
+
+        private Node child(char c) {
+            int idx = c - lo;
+            Node[] k = children;
+            return idx >= 0 && idx < k.length ? k[idx] : null;
+        }
+
+        private Node childOrCreate(char c) {
+            Node existing = child(c);
+            if (existing != null) return existing;
+            Node created = new Node();
+            if (children.length == 0) {
+                lo = c;
+                children = new Node[] { created };
+                return created;
+            }
+            char newLo = (char) Math.min(lo, c);
+            char newHi = (char) Math.max(lo + children.length - 1, c);
+            Node[] grown = new Node[newHi - newLo + 1];
+            System.arraycopy(children, 0, grown, lo - newLo, children.length);
+            grown[c - newLo] = created;
+            lo = newLo;
+            children = grown;
+            return created;
+        }
+    }
+}
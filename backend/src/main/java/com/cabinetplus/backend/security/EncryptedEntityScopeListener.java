@@ -0,0 +1,73 @@
+package com.cabinetplus.backend.security;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.event.spi.PreInsertEvent;
+import org.hibernate.event.spi.PreInsertEventListener;
+import org.hibernate.event.spi.PreUpdateEvent;
+import org.hibernate.event.spi.PreUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Opens an {@link EncryptionConverter} entity scope around each row Hibernate writes, so every encrypted column of
+ * that row shares one DEK. Hibernate binds column values (and runs converters) between the pre and post events.
+ *
+ * <p>If a write fails the post event never fires; the scope is then replaced by the next entity's pre event.</p>
+ */
+@Component
+public class EncryptedEntityScopeListener implements
+        PreInsertEventListener, PostInsertEventListener, PreUpdateEventListener, PostUpdateEventListener {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public EncryptedEntityScopeListener(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.PRE_INSERT, this);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.PRE_UPDATE, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+    }
+
+    @Override
+    public boolean onPreInsert(PreInsertEvent event) {
+        EncryptionConverter.beginEntity();
+        return false;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        EncryptionConverter.endEntity();
+    }
+
+    @Override
+    public boolean onPreUpdate(PreUpdateEvent event) {
+        EncryptionConverter.beginEntity();
+        return false;
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        EncryptionConverter.endEntity();
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+}
@@ -9,37 +9,88 @@ import jakarta.persistence.Converter;
 /**
  * Encrypts/decrypts String columns at rest.
  *
- * <p>New values are stored using an envelope format (AES-256-GCM with per-value DEK, wrapped by a KEK).
- * Legacy values (from the previous AES/ECB implementation) are still readable for migration purposes.</p>
+ * <p>New values are stored using the v2 envelope format (AES-256-GCM, one DEK per entity derived from a KEK).
+ * v1 envelopes (per-value wrapped DEK) and legacy values (from the previous AES/ECB implementation) are still
+ * readable for migration purposes.</p>
+ *
+ * <p>Columns written between {@link #beginEntity()} and {@link #endEntity()} on the same thread share one DEK;
+ * {@link EncryptedEntityScopeListener} opens that scope around each entity insert/update.</p>
  *
  * <p>Configure the KEK via:
  * - System property: cabinetplus.crypto.kek-base64
  * - Env var: CABINETPLUS_KMS_KEK_BASE64
  * </p>
+ *
+ * <p>Hibernate creates one converter per mapped attribute, so they all share a single encryptor (and its DEK cache),
+ * sized by {@code cabinetplus.crypto.dek-cache-size} / {@code CABINETPLUS_CRYPTO_DEK_CACHE_SIZE}.</p>
  */
 @Converter
 public class EncryptionConverter implements AttributeConverter<String, String> {
 
-    private volatile EnvelopeStringEncryptor encryptor;
+    private static final int DEFAULT_DEK_CACHE_SIZE = 4096;
+
+    private static volatile EnvelopeStringEncryptor encryptor;
+
+    /** Entity being written on this thread; its key is created with the first encrypted column. */
+    private static final class EntityScope {
+        private EnvelopeStringEncryptor.DataKey key;
+    }
+
+    private static final ThreadLocal<EntityScope> ENTITY_SCOPE = new ThreadLocal<>();
+
+    public static void beginEntity() {
+        ENTITY_SCOPE.set(new EntityScope());
+    }
+
+    public static void endEntity() {
+        ENTITY_SCOPE.remove();
+    }
 
-    private EnvelopeStringEncryptor getEncryptor() {
+    public static EnvelopeStringEncryptor sharedEncryptor() {
+        return getEncryptor();
+    }
+
+    private static EnvelopeStringEncryptor getEncryptor() {
         EnvelopeStringEncryptor current = encryptor;
         if (current != null) {
             return current;
         }
-        synchronized (this) {
+        synchronized (EncryptionConverter.class) {
             if (encryptor == null) {
-                encryptor = new EnvelopeStringEncryptor(EncryptionKeyProvider.getOrLoadKek());
+                encryptor = new EnvelopeStringEncryptor(EncryptionKeyProvider.getOrLoadKek(), dekCacheSize());
             }
             return encryptor;
         }
     }
 
+    private static int dekCacheSize() {
+        String raw = System.getProperty("cabinetplus.crypto.dek-cache-size");
+        if (raw == null || raw.isBlank()) {
+            raw = System.getenv("CABINETPLUS_CRYPTO_DEK_CACHE_SIZE");
+        }
+        if (raw == null || raw.isBlank()) {
+            return DEFAULT_DEK_CACHE_SIZE;
+        }
+        try {
+            return Integer.parseInt(raw.trim());
+        } catch (NumberFormatException ex) {
+            return DEFAULT_DEK_CACHE_SIZE;
+        }
+    }
+
     @Override
     public String convertToDatabaseColumn(String attribute) {
         if (attribute == null) return null;
         if (attribute.isBlank()) return attribute;
-        return getEncryptor().encrypt(attribute);
+        EnvelopeStringEncryptor current = getEncryptor();
+        EntityScope scope = ENTITY_SCOPE.get();
+        if (scope == null) {
+            return current.encrypt(attribute);
+        }
+        if (scope.key == null) {
+            scope.key = current.newDataKey();
+        }
+        return current.encrypt(attribute, scope.key);
     }
 
     @Override
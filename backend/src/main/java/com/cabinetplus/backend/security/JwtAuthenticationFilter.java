@@ -2,9 +2,9 @@ package com.cabinetplus.backend.security;
 
 import java.io.IOException;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -19,10 +19,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final CustomUserDetailsService userDetailsService;
-
-    public JwtAuthenticationFilter(JwtUtil jwtUtil, CustomUserDetailsService userDetailsService) {
+    private final TokenRevocationEpochs revocationEpochs;
+    private final boolean statelessReads;
+
+    public JwtAuthenticationFilter(
+            JwtUtil jwtUtil,
+            CustomUserDetailsService userDetailsService,
+            TokenRevocationEpochs revocationEpochs,
+            @Value("${app.security.stateless-reads.enabled:false}") boolean statelessReads
+    ) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.revocationEpochs = revocationEpochs;
+        this.statelessReads = statelessReads;
     }
 
     @Override
@@ -52,17 +61,23 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         if (header != null && header.startsWith("Bearer ")) {
             String token = header.substring(7);
 
-            if (jwtUtil.validateToken(token)) {
-                String phoneNumber = jwtUtil.extractPhoneNumber(token);
+            JwtUtil.VerifiedToken verified = jwtUtil.verify(token);
+            // Purpose-bound tokens (2FA challenge) never authenticate API calls.
+            if (verified != null && verified.purpose() == null) {
+                String phoneNumber = verified.subject();
 
                 if (phoneNumber != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(phoneNumber);
+                    ClinicPrincipal principal = resolvePrincipal(verified, request.getMethod());
+                    if (principal == null) {
+                        filterChain.doFilter(request, response);
+                        return;
+                    }
 
                     UsernamePasswordAuthenticationToken auth =
                             new UsernamePasswordAuthenticationToken(
-                                    userDetails,
+                                    principal,
                                     null,
-                                    userDetails.getAuthorities()
+                                    principal.getAuthorities()
                             );
                     auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(auth);
@@ -72,4 +87,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Reads (GET/HEAD) trust the principal embedded in the token unless its claims went stale since it was issued;
+     * everything else goes through the (cached) database snapshot. Returns {@code null} for revoked tokens.
+     */
+    private ClinicPrincipal resolvePrincipal(JwtUtil.VerifiedToken verified, String method) {
+        if (statelessReads && ("GET".equals(method) || "HEAD".equals(method))) {
+            ClinicPrincipal fromClaims = jwtUtil.toClinicPrincipal(verified);
+            if (fromClaims != null
+                    && !revocationEpochs.isStale(fromClaims.userId(), fromClaims.clinicOwnerId(), verified.issuedAt())
+                    && !revocationEpochs.isRevoked(fromClaims.userId(), verified.issuedAt())) {
+                return fromClaims;
+            }
+        }
+
+        ClinicPrincipal principal = userDetailsService.loadClinicPrincipal(verified.subject());
+        if (revocationEpochs.isRevoked(principal.userId(), verified.issuedAt())) {
+            return null;
+        }
+        return principal;
+    }
 }
@@ -1,43 +1,120 @@
 package com.cabinetplus.backend.security;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.Key;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
 
+import javax.crypto.SecretKey;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import jakarta.annotation.PostConstruct;
 
+import com.cabinetplus.backend.enums.UserPlanStatus;
 import com.cabinetplus.backend.enums.UserRole;
 import com.cabinetplus.backend.models.User;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 
 @Component
 public class JwtUtil {
 
+    private static final Logger log = LoggerFactory.getLogger(JwtUtil.class);
+
     private static final String PURPOSE_CLAIM = "purpose";
     private static final String PURPOSE_LOGIN_2FA = "LOGIN_2FA";
 
+    // Claims read by the stateless read path (see JwtAuthenticationFilter).
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String OWNER_DENTIST_ID_CLAIM = "ownerDentistId";
+    private static final String PIN_CONFIGURED_CLAIM = "pinConfigured";
+    private static final String PERMISSION_MASK_CLAIM = "perm";
+
     @Value("${jwt.secret:}")
     private String secretKey;
 
+    /** Key id stamped in the header of newly issued tokens. */
+    @Value("${jwt.kid:k1}")
+    private String currentKid;
+
+    /** Retired keys still accepted for verification, as {@code kid:base64secret} pairs separated by commas. */
+    @Value("${jwt.previous-secrets:}")
+    private String previousSecrets;
+
+    /**
+     * Optional properties file with {@code jwt.kid}, {@code jwt.secret} and {@code jwt.previous-secrets}, used instead
+     * of the properties above and re-read periodically (see {@link #reloadKeyFile()}).
+     */
+    @Value("${jwt.key-file:}")
+    private String keyFile;
+
+    private volatile byte[] keyFileContent;
+
     @Value("${jwt.access.expiration-ms}")
     private long accessExpirationMs;
 
     @Value("${jwt.refresh.expiration-ms}")
     private long refreshExpirationMs;
 
+    /**
+     * Immutable snapshot of the signing key and every key still accepted for verification, swapped atomically when
+     * the key file changes. {@code legacyKid} is the key that signed tokens issued before {@code kid} headers existed.
+     */
+    private record KeyRing(String currentKid, SecretKey currentKey, Map<String, SecretKey> keysByKid, String legacyKid) {
+    }
+
+    private volatile KeyRing keyRing;
+
+    // Built once: the resolver reads the current ring, so rotation never needs a new parser.
+    private final JwtParser parser = Jwts.parserBuilder()
+            .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                // jjwt 0.11 declares the header raw, so JwsHeader<?> would not override it.
+                @Override
+                @SuppressWarnings("rawtypes")
+                public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                    return resolveVerificationKey(header.getKeyId());
+                }
+            })
+            .build();
+
     @PostConstruct
     private void initSecret() {
+        if (keyFile != null && !keyFile.isBlank()) {
+            try {
+                keyFileContent = Files.readAllBytes(Path.of(keyFile.trim()));
+            } catch (IOException ex) {
+                throw new IllegalStateException("Cannot read JWT key file (jwt.key-file): " + keyFile, ex);
+            }
+            keyRing = parseKeyFile(keyFileContent, null);
+            return;
+        }
         if (secretKey == null || secretKey.isBlank()) {
             String envSecret = System.getenv("JWT_SECRET");
             secretKey = (envSecret != null && !envSecret.isBlank()) ? envSecret : null;
@@ -45,28 +122,111 @@ public class JwtUtil {
         if (secretKey == null || secretKey.isBlank()) {
             throw new IllegalStateException("Missing JWT secret. Set 'jwt.secret' or env var 'JWT_SECRET' (base64).");
         }
+        keyRing = buildKeyRing(currentKid, secretKey, previousSecrets, null);
+    }
+
+    /**
+     * Re-reads {@code jwt.key-file} when its content changed, so keys rotate without a restart. Every instance reads
+     * the same file, and a file that doesn't parse leaves the current keys in place.
+     *
+     * <p>To rotate: add the new key to {@code jwt.previous-secrets} and wait one reload interval so every instance
+     * accepts it, then make it {@code jwt.kid}/{@code jwt.secret} and move the old one to
+     * {@code jwt.previous-secrets}. Remove the old key once tokens it signed no longer need to verify.</p>
+     */
+    @Scheduled(
+            initialDelayString = "${jwt.key-file-reload-ms:60000}",
+            fixedDelayString = "${jwt.key-file-reload-ms:60000}"
+    )
+    public void reloadKeyFile() {
+        if (keyFile == null || keyFile.isBlank()) return;
+        try {
+            byte[] content = Files.readAllBytes(Path.of(keyFile.trim()));
+            if (Arrays.equals(content, keyFileContent)) return;
+            KeyRing ring = parseKeyFile(content, keyRing.legacyKid());
+            keyRing = ring;
+            keyFileContent = content;
+            log.info("JWT keys reloaded: signing with kid {}, {} key(s) accepted", ring.currentKid(), ring.keysByKid().size());
+        } catch (IOException | IllegalStateException ex) {
+            log.warn("Could not reload JWT keys from {}, keeping the current ones", keyFile, ex);
+        }
+    }
+
+    private static KeyRing parseKeyFile(byte[] content, String legacyKid) {
+        Properties properties = new Properties();
+        try {
+            properties.load(new StringReader(new String(content, StandardCharsets.UTF_8)));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Invalid JWT key file.", ex);
+        }
+        return buildKeyRing(
+                properties.getProperty("jwt.kid"),
+                properties.getProperty("jwt.secret"),
+                properties.getProperty("jwt.previous-secrets"),
+                legacyKid
+        );
+    }
+
+    /** {@code legacyKid} defaults to the signing kid: tokens without a {@code kid} predate rotation. */
+    private static KeyRing buildKeyRing(String kid, String secret, String previous, String legacyKid) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("Missing JWT secret. Set 'jwt.secret' or env var 'JWT_SECRET' (base64).");
+        }
+        String signingKid = (kid == null || kid.isBlank()) ? "k1" : kid.trim();
+
+        Map<String, SecretKey> keys = new LinkedHashMap<>();
+        if (previous != null && !previous.isBlank()) {
+            for (String entry : previous.split(",")) {
+                String trimmed = entry.trim();
+                if (trimmed.isEmpty()) continue;
+                int sep = trimmed.indexOf(':');
+                if (sep <= 0 || sep == trimmed.length() - 1) {
+                    throw new IllegalStateException("Invalid 'jwt.previous-secrets' entry, expected kid:base64secret.");
+                }
+                keys.put(trimmed.substring(0, sep).trim(), decodeKey(trimmed.substring(sep + 1).trim()));
+            }
+        }
+        SecretKey current = decodeKey(secret.trim());
+        keys.put(signingKid, current);
+        return new KeyRing(signingKid, current, Map.copyOf(keys), legacyKid != null ? legacyKid : signingKid);
+    }
 
+    private static SecretKey decodeKey(String base64Secret) {
         byte[] decoded;
         try {
-            decoded = Decoders.BASE64.decode(secretKey);
-        } catch (IllegalArgumentException ex) {
+            decoded = Decoders.BASE64.decode(base64Secret);
+        } catch (RuntimeException ex) {
             throw new IllegalStateException("Invalid base64 for JWT secret (jwt.secret / JWT_SECRET).", ex);
         }
         if (decoded.length < 32) {
             throw new IllegalStateException("JWT secret too short. Provide at least 32 bytes after base64 decoding (256-bit).");
         }
+        return Keys.hmacShaKeyFor(decoded);
     }
 
-    private Key getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+    /** Signs with the current key and stamps its {@code kid}, read from one ring snapshot. */
+    private String signed(JwtBuilder builder) {
+        KeyRing ring = keyRing;
+        return builder
+                .setHeaderParam(JwsHeader.KEY_ID, ring.currentKid())
+                .signWith(ring.currentKey(), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    private Key resolveVerificationKey(String kid) {
+        KeyRing ring = keyRing;
+        SecretKey key = ring.keysByKid().get(kid != null ? kid : ring.legacyKid());
+        if (key == null) {
+            throw new JwtException("Unknown signing key");
+        }
+        return key;
     }
 
     // ============================
     // ACCESS TOKEN GENERATION
     // ============================
     public String generateAccessToken(User user) {
-        return Jwts.builder()
+        ClinicPrincipal principal = ClinicPrincipal.from(user);
+        return signed(Jwts.builder()
                 .setSubject(user.getPhoneNumber())
                 .claim("role", user.getRole().name())
                 .claim("isPhoneVerified", user.isPhoneVerified())
@@ -76,25 +236,27 @@ public class JwtUtil {
                        : (user.getPlanStatus() != null ? user.getPlanStatus().name() : "PENDING"))
                 .claim("planId", user.getPlan() != null ? user.getPlan().getId() : null)
                 .claim("plan", user.getPlan() != null ? Map.of("code", user.getPlan().getCode()) : null)
+                .claim(USER_ID_CLAIM, principal.userId())
+                .claim(OWNER_DENTIST_ID_CLAIM, principal.ownerDentistId())
+                .claim(PIN_CONFIGURED_CLAIM, principal.pinConfigured())
+                .claim(PERMISSION_MASK_CLAIM, principal.isStaff()
+                        ? List.of(principal.grants().modules(), principal.grants().actions())
+                        : null)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + accessExpirationMs))
                 // Assign a JWT ID for traceability (optional for access token)
-                .setId(UUID.randomUUID().toString())
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
-                .compact();
+                .setId(UUID.randomUUID().toString()));
     }
 
     // ============================
     // REFRESH TOKEN GENERATION
     // ============================
     public String generateRefreshToken(String phoneNumber, long customExpirationMs) {
-        return Jwts.builder()
+        return signed(Jwts.builder()
                 .setSubject(phoneNumber)
                 .setId(UUID.randomUUID().toString()) // jti for DB mapping
                 .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + customExpirationMs))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
-                .compact();
+                .setExpiration(new Date(System.currentTimeMillis() + customExpirationMs)));
     }
 
     public String generateRefreshToken(String phoneNumber) {
@@ -111,14 +273,12 @@ public class JwtUtil {
         if (ttlMs <= 0) {
             throw new IllegalArgumentException("ttlMs must be > 0");
         }
-        return Jwts.builder()
+        return signed(Jwts.builder()
                 .setSubject(phoneNumber)
                 .claim(PURPOSE_CLAIM, PURPOSE_LOGIN_2FA)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + ttlMs))
-                .setId(UUID.randomUUID().toString())
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
-                .compact();
+                .setId(UUID.randomUUID().toString()));
     }
 
     public String extractPhoneNumberFromLoginTwoFactorChallenge(String token) {
@@ -150,21 +310,86 @@ public class JwtUtil {
     }
 
     public boolean validateToken(String token) {
+        return verify(token) != null;
+    }
+
+    /**
+     * Parses and HMAC-verifies {@code token} once and returns its claims, or {@code null} when the token is
+     * malformed, expired or not signed by a known key. Prefer this over {@link #validateToken(String)} followed by
+     * an {@code extract*} call, which verifies the signature twice.
+     */
+    public VerifiedToken verify(String token) {
+        if (token == null || token.isBlank()) return null;
+        Claims claims;
         try {
-            parseClaims(token);
-            return true;
+            claims = parseClaims(token).getBody();
         } catch (ExpiredJwtException e) {
-            return false;
+            return null;
         } catch (JwtException | IllegalArgumentException e) {
-            return false;
+            return null;
         }
+        Object planId = claims.get("planId");
+        Object role = claims.get("role");
+        Object planStatus = claims.get("planStatus");
+        Object purpose = claims.get(PURPOSE_CLAIM);
+        return new VerifiedToken(
+                claims.getSubject(),
+                role instanceof String roleName ? roleName : null,
+                planStatus instanceof String status ? status : null,
+                planId instanceof Number n ? n.longValue() : null,
+                purpose instanceof String purposeName ? purposeName : null,
+                claims.getId(),
+                claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null,
+                claims.getExpiration() != null ? claims.getExpiration().toInstant() : null,
+                Collections.unmodifiableMap(claims)
+        );
     }
 
     private Jws<Claims> parseClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token);
+        return parser.parseClaimsJws(token);
+    }
+
+    /**
+     * Rebuilds the principal embedded in an access token, or {@code null} when the token predates these claims.
+     * The snapshot is as old as the token: callers must check {@link TokenRevocationEpochs#isStale} first.
+     */
+    public ClinicPrincipal toClinicPrincipal(VerifiedToken token) {
+        if (token == null || token.purpose() != null || token.subject() == null) return null;
+        Map<String, Object> claims = token.claims();
+        if (!(claims.get(USER_ID_CLAIM) instanceof Number userId)) return null;
+
+        UserRole role;
+        UserPlanStatus planStatus;
+        try {
+            role = token.role() != null ? UserRole.valueOf(token.role()) : null;
+            planStatus = token.planStatus() != null ? UserPlanStatus.valueOf(token.planStatus()) : null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+        if (role == null) return null;
+
+        Long ownerDentistId = claims.get(OWNER_DENTIST_ID_CLAIM) instanceof Number n ? n.longValue() : null;
+        boolean staff = ownerDentistId != null && (role == UserRole.EMPLOYEE || role == UserRole.DENTIST);
+        EmployeePermissionGrants grants = EmployeePermissionGrants.NONE;
+        if (claims.get(PERMISSION_MASK_CLAIM) instanceof List<?> mask
+                && mask.size() == 2
+                && mask.get(0) instanceof Number modules
+                && mask.get(1) instanceof Number actions) {
+            grants = new EmployeePermissionGrants(modules.longValue(), actions.longValue());
+        }
+
+        return new ClinicPrincipal(
+                userId.longValue(),
+                token.subject(),
+                role,
+                ownerDentistId,
+                staff ? ownerDentistId : userId.longValue(),
+                Set.of(),
+                planStatus,
+                Boolean.TRUE.equals(claims.get("isPhoneVerified")),
+                Boolean.TRUE.equals(claims.get(PIN_CONFIGURED_CLAIM)),
+                grants
+        );
     }
 
     public boolean validateRefreshToken(String token) {
@@ -190,15 +415,13 @@ public class JwtUtil {
         }
 
         long ttlMs = ttlSeconds * 1000L;
-        return Jwts.builder()
+        return signed(Jwts.builder()
                 .setSubject("public_patient_fiche_pdf")
                 .claim("patientPublicId", patientPublicId.toString())
                 .claim("ownerDentistId", ownerDentistId)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + ttlMs))
-                .setId(UUID.randomUUID().toString())
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
-                .compact();
+                .setId(UUID.randomUUID().toString()));
     }
 
     public PublicPatientFichePdfToken validatePublicPatientFichePdfToken(String token) {
@@ -206,13 +429,16 @@ public class JwtUtil {
             throw new IllegalArgumentException("token is required");
         }
 
-        Claims claims = parseClaims(token).getBody();
-        if (!"public_patient_fiche_pdf".equals(claims.getSubject())) {
+        VerifiedToken verified = verify(token);
+        if (verified == null) {
+            throw new JwtException("Invalid token");
+        }
+        if (!"public_patient_fiche_pdf".equals(verified.subject())) {
             throw new JwtException("Invalid token subject");
         }
 
-        String patientPublicIdRaw = claims.get("patientPublicId", String.class);
-        Number ownerDentistIdRaw = claims.get("ownerDentistId", Number.class);
+        String patientPublicIdRaw = verified.claims().get("patientPublicId") instanceof String s ? s : null;
+        Number ownerDentistIdRaw = verified.claims().get("ownerDentistId") instanceof Number n ? n : null;
         if (patientPublicIdRaw == null || patientPublicIdRaw.isBlank() || ownerDentistIdRaw == null) {
             throw new JwtException("Missing required claims");
         }
@@ -224,7 +450,25 @@ public class JwtUtil {
             throw new JwtException("Invalid patientPublicId", ex);
         }
 
-        return new PublicPatientFichePdfToken(patientPublicId, ownerDentistIdRaw.longValue(), claims.getExpiration());
+        Date expiresAt = verified.expiresAt() != null ? Date.from(verified.expiresAt()) : null;
+        return new PublicPatientFichePdfToken(patientPublicId, ownerDentistIdRaw.longValue(), expiresAt);
+    }
+
+    /**
+     * Immutable view of a verified token. {@code claims} is a read-only view of every claim, for token kinds
+     * carrying more than the common fields.
+     */
+    public record VerifiedToken(
+            String subject,
+            String role,
+            String planStatus,
+            Long planId,
+            String purpose,
+            String jti,
+            Instant issuedAt,
+            Instant expiresAt,
+            Map<String, Object> claims
+    ) {
     }
 
     public record PublicPatientFichePdfToken(UUID patientPublicId, Long ownerDentistId, Date expiresAt) {
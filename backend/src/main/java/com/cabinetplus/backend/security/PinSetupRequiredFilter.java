@@ -8,14 +8,11 @@ import org.springframework.http.MediaType;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import com.cabinetplus.backend.enums.UserPlanStatus;
 import com.cabinetplus.backend.enums.UserRole;
-import com.cabinetplus.backend.models.User;
-import com.cabinetplus.backend.services.UserService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import jakarta.servlet.FilterChain;
@@ -26,11 +23,11 @@ import jakarta.servlet.http.HttpServletResponse;
 @Component
 public class PinSetupRequiredFilter extends OncePerRequestFilter {
 
-    private final UserService userService;
+    private final CustomUserDetailsService userDetailsService;
     private final ObjectMapper objectMapper;
 
-    public PinSetupRequiredFilter(UserService userService, ObjectMapper objectMapper) {
-        this.userService = userService;
+    public PinSetupRequiredFilter(CustomUserDetailsService userDetailsService, ObjectMapper objectMapper) {
+        this.userDetailsService = userDetailsService;
         this.objectMapper = objectMapper;
     }
 
@@ -56,29 +53,16 @@ public class PinSetupRequiredFilter extends OncePerRequestFilter {
             return;
         }
 
-        String username = null;
-        Object principal = auth.getPrincipal();
-        if (principal instanceof UserDetails ud) {
-            username = ud.getUsername();
-        } else if (principal instanceof String s) {
-            username = s;
-        }
-
-        if (username == null || username.isBlank()) {
-            filterChain.doFilter(request, response);
-            return;
-        }
-
-        User user = userService.findByPhoneNumber(username).orElse(null);
-        if (user == null || user.getRole() == UserRole.ADMIN) {
+        ClinicPrincipal user = userDetailsService.resolveClinicPrincipal(auth);
+        if (user == null || user.role() == UserRole.ADMIN) {
             filterChain.doFilter(request, response);
             return;
         }
 
         // PIN is required per user (dentist or employee) once the clinic subscription is active.
-        boolean enforce = user.isPhoneVerified()
-                && user.getPlanStatus() == UserPlanStatus.ACTIVE
-                && !user.isGestionCabinetPinConfigured();
+        boolean enforce = user.phoneVerified()
+                && user.planStatus() == UserPlanStatus.ACTIVE
+                && !user.pinConfigured();
 
         if (!enforce || isAllowedWhilePinMissing(path)) {
             filterChain.doFilter(request, response);
@@ -0,0 +1,178 @@
+package com.cabinetplus.backend.security;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.cabinetplus.backend.websocket.RealtimeClusterBus;
+import com.cabinetplus.backend.websocket.RealtimeClusterMessage;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Per-user epochs (epoch seconds) compared against an access token's {@code iat}.
+ *
+ * <ul>
+ *     <li><b>stale</b>: the claims embedded in older tokens (role, permissions, plan, PIN...) may be outdated, so
+ *     {@link JwtAuthenticationFilter} must reload the principal instead of trusting them.</li>
+ *     <li><b>revoked</b>: older tokens are rejected outright (logout-all, password change).</li>
+ * </ul>
+ *
+ * <p>Tokens outlive an epoch by at most the access-token lifetime, so entries are pruned after that. Epochs are kept
+ * in memory and relayed to the other instances over the {@link RealtimeClusterBus} once the change commits; receiving
+ * instances also drop their cached principals of that user. Revocations are written to {@code users.tokens_revoked_at}
+ * as well. Whatever is missed while the bus is down is made up for: until it is connected again every token is
+ * treated as stale and revocations are read from the database, and after (re)connecting tokens issued before then stay
+ * stale while recent revocations are reloaded.</p>
+ */
+@Component
+public class TokenRevocationEpochs implements RealtimeClusterBus.Listener {
+
+    private final ConcurrentHashMap<Long, Long> staleSince = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> revokedSince = new ConcurrentHashMap<>();
+    private final JdbcTemplate jdbcTemplate;
+    private final RealtimeClusterBus bus;
+    private final ClinicPrincipalCache principalCache;
+    private final String origin = UUID.randomUUID().toString();
+    private final long retentionSeconds;
+    // Claims of every token issued up to this second are distrusted: messages may have been missed before it.
+    private volatile long staleUntil = nowSeconds();
+
+    public TokenRevocationEpochs(
+            @Value("${jwt.access.expiration-ms:600000}") long accessExpirationMs,
+            JdbcTemplate jdbcTemplate,
+            RealtimeClusterBus bus,
+            ClinicPrincipalCache principalCache
+    ) {
+        // Keep a minute of slack over the token lifetime for clock skew.
+        this.retentionSeconds = Math.max(0L, accessExpirationMs / 1000L) + 60L;
+        this.jdbcTemplate = jdbcTemplate;
+        this.bus = bus;
+        this.principalCache = principalCache;
+        bus.subscribe(this);
+    }
+
+    /** Tokens issued up to now carry outdated claims for {@code userId} (or for staff of clinic {@code userId}). */
+    public void markStale(Long userId) {
+        if (userId == null) return;
+        staleSince.merge(userId, nowSeconds(), Math::max);
+        // Stamped at commit: tokens minted in between may hold the old claims.
+        afterCommit(() -> publish(RealtimeClusterMessage.Type.TOKENS_STALE, userId, nowSeconds()));
+    }
+
+    /** Tokens issued before now are no longer accepted for {@code userId}, on every instance. */
+    public void revokeAll(Long userId) {
+        if (userId == null) return;
+        long now = nowSeconds();
+        revokedSince.merge(userId, now, Math::max);
+        staleSince.merge(userId, now, Math::max);
+        jdbcTemplate.update("update users set tokens_revoked_at = greatest(coalesce(tokens_revoked_at, 0), ?) where id = ?",
+                now, userId);
+        afterCommit(() -> publish(RealtimeClusterMessage.Type.TOKENS_REVOKED, userId, now));
+    }
+
+    public boolean isRevoked(Long userId, Instant issuedAt) {
+        if (before(revokedSince, userId, issuedAt, false)) return true;
+        if (userId == null || bus.isConnected()) return false;
+        List<Long> stored = jdbcTemplate.queryForList("select tokens_revoked_at from users where id = ?", Long.class, userId);
+        if (stored.isEmpty() || stored.get(0) == null) return false;
+        revokedSince.merge(userId, stored.get(0), Math::max);
+        return before(revokedSince, userId, issuedAt, false);
+    }
+
+    /**
+     * Whether claims of a token issued at {@code issuedAt} can't be trusted, either because the user changed or
+     * because their clinic owner did (employees inherit the owner's plan), or because such a change may have been
+     * missed.
+     */
+    public boolean isStale(Long userId, Long clinicOwnerId, Instant issuedAt) {
+        if (!bus.isConnected() || issuedAt == null || issuedAt.getEpochSecond() <= staleUntil) return true;
+        return before(staleSince, userId, issuedAt, true)
+                || (clinicOwnerId != null && !clinicOwnerId.equals(userId) && before(staleSince, clinicOwnerId, issuedAt, true));
+    }
+
+    @Override
+    public void onMessage(RealtimeClusterMessage message) {
+        if (message.type() == null || !message.type().isTokenEpoch() || origin.equals(message.origin())
+                || message.userIds() == null || message.payload() == null) {
+            return;
+        }
+        long epoch;
+        try {
+            epoch = Long.parseLong(message.payload());
+        } catch (NumberFormatException ex) {
+            return;
+        }
+        for (Long userId : message.userIds()) {
+            if (userId == null) continue;
+            if (message.type() == RealtimeClusterMessage.Type.TOKENS_REVOKED) {
+                revokedSince.merge(userId, epoch, Math::max);
+            }
+            staleSince.merge(userId, epoch, Math::max);
+            principalCache.invalidateUserOrClinic(userId);
+        }
+    }
+
+    @PostConstruct
+    public void load() {
+        onConnected();
+    }
+
+    /** Back after a bus outage (or first connected): forget what may have been missed and reload revocations. */
+    @Override
+    public void onConnected() {
+        long now = nowSeconds();
+        staleUntil = now;
+        principalCache.clear();
+        jdbcTemplate.query("select id, tokens_revoked_at from users where tokens_revoked_at >= ?",
+                rs -> { revokedSince.merge(rs.getLong(1), rs.getLong(2), Math::max); }, now - retentionSeconds);
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.revocation-epochs.prune-ms:60000}")
+    public void prune() {
+        long cutoff = nowSeconds() - retentionSeconds;
+        staleSince.values().removeIf(epoch -> epoch < cutoff);
+        revokedSince.values().removeIf(epoch -> epoch < cutoff);
+    }
+
+    private void publish(RealtimeClusterMessage.Type type, Long userId, long epoch) {
+        bus.publish(RealtimeClusterMessage.tokenEpoch(type, origin, userId, epoch));
+    }
+
+    /** Other instances learn of the epoch once the change is visible to them, so they don't reload the old row. */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static boolean before(ConcurrentHashMap<Long, Long> epochs, Long userId, Instant issuedAt, boolean inclusive) {
+        if (userId == null) return false;
+        Long epoch = epochs.get(userId);
+        if (epoch == null) return false;
+        if (issuedAt == null) return true;
+        long iat = issuedAt.getEpochSecond();
+        // iat has one-second precision: a token minted in the same second as a revocation is kept (it is usually the
+        // replacement session), whereas stale checks err on the side of reloading.
+        return inclusive ? iat <= epoch : iat < epoch;
+    }
+
+    private static long nowSeconds() {
+        return Instant.now().getEpochSecond();
+    }
+}
@@ -17,5 +17,18 @@ final class Base64Url {
     static byte[] decode(String value) {
         return DECODER.decode(value);
     }
+
+    /** Decodes {@code value[start, end)} without materializing the substring. */
+    static byte[] decode(String value, int start, int end) {
+        byte[] ascii = new byte[end - start];
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c > 0x7F) {
+                throw new IllegalArgumentException("Illegal base64url character");
+            }
+            ascii[i - start] = (byte) c;
+        }
+        return DECODER.decode(ascii);
+    }
 }
 
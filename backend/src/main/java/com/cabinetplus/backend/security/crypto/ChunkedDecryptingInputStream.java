@@ -0,0 +1,155 @@
+package com.cabinetplus.backend.security.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+
+import com.cabinetplus.backend.storage.StoredObject;
+
+/**
+ * Decrypts CPDOC2 chunks one at a time, so memory stays at two chunk buffers whatever the file size. Every chunk is
+ * authenticated before any of its bytes are returned. When opened on a {@link StoredObject}, {@link #skip(long)} jumps
+ * over whole chunks by reopening the object at the target chunk instead of decrypting them.
+ */
+final class ChunkedDecryptingInputStream extends InputStream {
+
+    private final StoredObject object;
+    private final EncryptedFileIO.ChunkCipher chunkCipher;
+    private final int chunkSize;
+    private final long bodyOffset;
+    private final long chunkCount;
+    private final byte[] sealed;
+    private final byte[] plain;
+
+    private PushbackInputStream source;
+    private long chunkIndex;
+    private int position;
+    private int limit;
+    private boolean finished;
+
+    /**
+     * Sequential stream positioned at the first chunk; the last chunk is detected from the end of {@code source}.
+     */
+    ChunkedDecryptingInputStream(InputStream source, EncryptedFileIO.ChunkCipher chunkCipher, int chunkSize) {
+        this(new PushbackInputStream(source, 1), null, chunkCipher, chunkSize, 0, -1);
+    }
+
+    /**
+     * Random-access stream over {@code object}, whose chunks start at {@code bodyOffset}. Nothing is read until the
+     * first chunk is needed, so a skip right after opening costs no extra request.
+     */
+    ChunkedDecryptingInputStream(StoredObject object, EncryptedFileIO.ChunkCipher chunkCipher, int chunkSize,
+                                 long bodyOffset, long chunkCount) {
+        this(null, object, chunkCipher, chunkSize, bodyOffset, chunkCount);
+    }
+
+    private ChunkedDecryptingInputStream(PushbackInputStream source, StoredObject object,
+                                         EncryptedFileIO.ChunkCipher chunkCipher, int chunkSize,
+                                         long bodyOffset, long chunkCount) {
+        this.source = source;
+        this.object = object;
+        this.chunkCipher = chunkCipher;
+        this.chunkSize = chunkSize;
+        this.bodyOffset = bodyOffset;
+        this.chunkCount = chunkCount;
+        this.sealed = new byte[chunkSize + EncryptedFileIO.GCM_TAG_BYTES];
+        this.plain = new byte[chunkSize];
+    }
+    @Override
+    public int read() throws IOException {
+        if (!fill()) return -1;
+        return plain[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!fill()) return -1;
+        int n = Math.min(len, limit - position);
+        System.arraycopy(plain, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    /**
+     * Skips exactly {@code n} bytes unless the end of the stream is reached first.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) return 0;
+        long remaining = n;
+
+        int buffered = (int) Math.min(remaining, limit - position);
+        position += buffered;
+        remaining -= buffered;
+
+        if (remaining >= chunkSize && object != null && !finished) {
+            // Every chunk but the last holds exactly chunkSize bytes, so whole chunks can be jumped over.
+            long chunks = Math.min(remaining / chunkSize, chunkCount - 1 - chunkIndex);
+            if (chunks > 0) {
+                chunkIndex += chunks;
+                if (source != null) {
+                    source.close();
+                    source = null;
+                }
+                remaining -= chunks * chunkSize;
+            }
+        }
+
+        while (remaining > 0 && fill()) {
+            int step = (int) Math.min(remaining, limit - position);
+            position += step;
+            remaining -= step;
+        }
+        return n - remaining;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (source != null) {
+            source.close();
+        }
+    }
+
+    private boolean fill() throws IOException {
+        while (position >= limit) {
+            if (finished) return false;
+            readChunk();
+        }
+        return true;
+    }
+
+    private void readChunk() throws IOException {
+        if (source == null) {
+            source = new PushbackInputStream(object.open(bodyOffset + chunkIndex * sealed.length, -1L), 1);
+        }
+        int read = EncryptedFileIO.readFully(source, sealed, 0, sealed.length);
+        if (read < EncryptedFileIO.GCM_TAG_BYTES) {
+            throw new IOException("Encrypted document is truncated");
+        }
+        boolean last;
+        if (chunkCount >= 0) {
+            last = chunkIndex == chunkCount - 1;
+        } else if (read < sealed.length) {
+            last = true;
+        } else {
+            int next = source.read();
+            last = next < 0;
+            if (!last) source.unread(next);
+        }
+
+        try {
+            limit = chunkCipher.open(chunkIndex, last, sealed, read, plain);
+        } catch (Exception ex) {
+            throw new IOException("Encrypted document chunk " + chunkIndex + " failed authentication", ex);
+        }
+        position = 0;
+        chunkIndex++;
+        finished = last;
+    }
+}
@@ -2,43 +2,72 @@ package com.cabinetplus.backend.security.crypto;
 
 import org.springframework.core.io.AbstractResource;
 
+import com.cabinetplus.backend.storage.StoredObject;
+
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 
+/**
+ * Stored document decrypted on read. Reports the plaintext length without decrypting, and {@link #getInputStream(long)}
+ * seeks directly to an offset in CPDOC2 files, wherever the file is stored.
+ */
 public final class DecryptingFileResource extends AbstractResource {
 
-    private final Path path;
+    private final StoredObject file;
     private final byte[] kek;
 
     public DecryptingFileResource(Path path, byte[] kek) {
-        this.path = path;
+        this(StoredObject.ofFile(path), kek);
+    }
+
+    public DecryptingFileResource(StoredObject file, byte[] kek) {
+        this.file = file;
         this.kek = kek.clone();
     }
 
     @Override
     public String getDescription() {
-        return "Decrypting resource for " + path;
+        return "Decrypting resource for " + file.location();
     }
 
     @Override
     public String getFilename() {
-        return path.getFileName() != null ? path.getFileName().toString() : null;
+        return file.filename();
+    }
+
+    @Override
+    public boolean exists() {
+        return file.exists();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return EncryptedFileIO.plaintextLength(file);
+    }
+
+    @Override
+    public long lastModified() throws IOException {
+        return file.lastModified();
+    }
+
+    /**
+     * Strong validator for the stored file. Every write produces a new DEK and file, so the encrypted size and
+     * modification time identify the content without hashing it.
+     */
+    public String entityTag() throws IOException {
+        return "\"" + Long.toHexString(file.lastModified()) + "-" + Long.toHexString(file.length()) + "\"";
+    }
+
+    /**
+     * Plaintext stream starting at byte {@code position}.
+     */
+    public InputStream getInputStream(long position) throws IOException {
+        return EncryptedFileIO.openDecryptedStream(file, kek, position);
     }
 
     @Override
     public InputStream getInputStream() throws IOException {
-        InputStream encrypted = Files.newInputStream(path);
-        try {
-            return EncryptedFileIO.openDecryptedStream(encrypted, kek);
-        } catch (RuntimeException ex) {
-            try {
-                encrypted.close();
-            } catch (IOException ignored) {
-            }
-            throw ex;
-        }
+        return getInputStream(0);
     }
 }
-
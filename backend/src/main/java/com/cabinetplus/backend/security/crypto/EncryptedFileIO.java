@@ -2,38 +2,60 @@ package com.cabinetplus.backend.security.crypto;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
-import javax.crypto.CipherOutputStream;
+import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Path;
 import java.security.SecureRandom;
 
+import com.cabinetplus.backend.storage.StoredObject;
+
 /**
- * Simple encrypted file format for stored documents.
+ * Encrypted file format for stored documents.
+ *
+ * <p>CPDOC2 (written) is a segmented AEAD stream that decrypts in constant memory and supports random access:</p>
+ * <ul>
+ * <li>magic (6 bytes) "CPDOC2"</li>
+ * <li>version (1 byte) = 2</li>
+ * <li>chunkSize (4 bytes, big endian): plaintext bytes per chunk</li>
+ * <li>noncePrefixLen (1 byte) = 7</li>
+ * <li>wrappedDekLen (2 bytes, unsigned big endian)</li>
+ * <li>noncePrefix bytes, wrappedDek bytes</li>
+ * <li>chunks: AES-256-GCM of each {@code chunkSize} plaintext slice (the last one may be shorter, or empty), with the
+ * 16-byte tag appended; nonce = noncePrefix || chunkIndex (4 bytes) || lastChunkFlag (1 byte), AAD = header bytes.
+ * The flag makes truncation at a chunk boundary fail authentication.</li>
+ * </ul>
  *
- * File layout:
- * - magic (6 bytes) "CPDOC1"
- * - version (1 byte) = 1
- * - ivLen (1 byte) = 12
- * - wrappedDekLen (2 bytes, unsigned big endian)
- * - iv bytes
- * - wrappedDek bytes
- * - ciphertext bytes (AES-256-GCM, tag appended at end)
+ * <p>CPDOC1 (read-only) is a single GCM stream, which the JDK can only authenticate after buffering it whole:</p>
+ * <ul>
+ * <li>magic (6 bytes) "CPDOC1", version (1 byte) = 1, ivLen (1 byte) = 12</li>
+ * <li>wrappedDekLen (2 bytes, unsigned big endian), iv bytes, wrappedDek bytes</li>
+ * <li>ciphertext bytes (AES-256-GCM, tag appended at end)</li>
+ * </ul>
  */
 public final class EncryptedFileIO {
 
-    private static final byte[] MAGIC = new byte[]{'C', 'P', 'D', 'O', 'C', '1'};
-    private static final int VERSION = 1;
+    private static final byte[] MAGIC_V1 = new byte[]{'C', 'P', 'D', 'O', 'C', '1'};
+    private static final byte[] MAGIC_V2 = new byte[]{'C', 'P', 'D', 'O', 'C', '2'};
+    private static final int VERSION_1 = 1;
+    private static final int VERSION_2 = 2;
     private static final int GCM_TAG_BITS = 128;
+    static final int GCM_TAG_BYTES = GCM_TAG_BITS / 8;
     private static final int IV_BYTES = 12;
     private static final int DEK_BYTES = 32;
+    private static final int NONCE_PREFIX_BYTES = 7;
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final int HEADER_PEEK_BYTES = 1024;
 
     private static final SecureRandom SECURE_RANDOM = new SecureRandom();
 
@@ -41,22 +63,68 @@ public final class EncryptedFileIO {
     }
 
     public static long encryptToStream(InputStream plaintext, OutputStream destination, byte[] kek) throws IOException {
+        return encryptToStream(plaintext, destination, kek, DEFAULT_CHUNK_SIZE);
+    }
+
+    static long encryptToStream(InputStream plaintext, OutputStream destination, byte[] kek, int chunkSize) throws IOException {
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
         byte[] dek = new byte[DEK_BYTES];
         SECURE_RANDOM.nextBytes(dek);
 
-        byte[] iv = new byte[IV_BYTES];
-        SECURE_RANDOM.nextBytes(iv);
+        byte[] noncePrefix = new byte[NONCE_PREFIX_BYTES];
+        SECURE_RANDOM.nextBytes(noncePrefix);
 
         byte[] wrappedDek = AesKeyWrap.wrap(kek, dek);
+        V2Header header = new V2Header(chunkSize, noncePrefix, wrappedDek, null);
+        byte[] headerBytes = header.encode();
 
         try {
-            writeHeader(destination, iv, wrappedDek);
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(dek, "AES"), new GCMParameterSpec(GCM_TAG_BITS, iv));
+            destination.write(headerBytes);
+            ChunkCipher chunkCipher = new ChunkCipher(new SecretKeySpec(dek, "AES"), noncePrefix, headerBytes);
+            byte[] plain = new byte[chunkSize];
+            byte[] sealed = new byte[chunkSize + GCM_TAG_BYTES];
 
-            try (CipherOutputStream cipherOut = new CipherOutputStream(new BufferedOutputStream(destination), cipher)) {
-                return plaintext.transferTo(cipherOut);
+            long total = 0;
+            long chunkIndex = 0;
+            int filled = readFully(plaintext, plain, 0, chunkSize);
+            while (true) {
+                int lookahead = filled == chunkSize ? plaintext.read() : -1;
+                boolean last = lookahead < 0;
+                int sealedLength = chunkCipher.seal(chunkIndex, last, plain, filled, sealed);
+                destination.write(sealed, 0, sealedLength);
+                total += filled;
+                if (last) break;
+
+                chunkIndex++;
+                plain[0] = (byte) lookahead;
+                filled = 1 + readFully(plaintext, plain, 1, chunkSize - 1);
             }
+            destination.flush();
+            return total;
+        } catch (IOException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IllegalStateException("Failed to encrypt document file", ex);
+        }
+    }
+
+    /**
+     * CPDOC2 encryption as an {@link OutputStream}, for content produced by a writer (a ZIP being built) rather than
+     * read from a stream. Output is identical to {@link #encryptToStream}; {@link OutputStream#close()} seals the last
+     * chunk and closes {@code destination}.
+     */
+    public static OutputStream openEncryptingStream(OutputStream destination, byte[] kek) throws IOException {
+        byte[] dek = new byte[DEK_BYTES];
+        SECURE_RANDOM.nextBytes(dek);
+        byte[] noncePrefix = new byte[NONCE_PREFIX_BYTES];
+        SECURE_RANDOM.nextBytes(noncePrefix);
+        byte[] headerBytes = new V2Header(DEFAULT_CHUNK_SIZE, noncePrefix, AesKeyWrap.wrap(kek, dek), null).encode();
+        try {
+            ChunkCipher chunkCipher = new ChunkCipher(new SecretKeySpec(dek, "AES"), noncePrefix, headerBytes);
+            destination.write(headerBytes);
+            return new EncryptingOutputStream(destination, chunkCipher, DEFAULT_CHUNK_SIZE);
         } catch (IOException ex) {
             throw ex;
         } catch (Exception ex) {
@@ -66,7 +134,7 @@ public final class EncryptedFileIO {
 
     public static InputStream openDecryptedStream(InputStream encryptedFile, byte[] kek) throws IOException {
         BufferedInputStream buffered = new BufferedInputStream(encryptedFile);
-        buffered.mark(64);
+        buffered.mark(HEADER_PEEK_BYTES);
 
         Header header;
         try {
@@ -77,18 +145,92 @@ public final class EncryptedFileIO {
         }
 
         try {
-            byte[] dek = AesKeyWrap.unwrap(kek, header.wrappedDek);
+            byte[] dek = AesKeyWrap.unwrap(kek, header.wrappedDek());
+            if (header instanceof V2Header v2) {
+                ChunkCipher chunkCipher = new ChunkCipher(new SecretKeySpec(dek, "AES"), v2.noncePrefix, v2.encoded);
+                return new ChunkedDecryptingInputStream(buffered, chunkCipher, v2.chunkSize);
+            }
+            V1Header v1 = (V1Header) header;
             Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(dek, "AES"), new GCMParameterSpec(GCM_TAG_BITS, header.iv));
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(dek, "AES"), new GCMParameterSpec(GCM_TAG_BITS, v1.iv));
             return new CipherInputStream(buffered, cipher);
         } catch (Exception ex) {
             throw new IllegalStateException("Failed to decrypt document file", ex);
         }
     }
 
+    public static InputStream openDecryptedStream(Path file, byte[] kek, long position) throws IOException {
+        return openDecryptedStream(StoredObject.ofFile(file), kek, position);
+    }
+
+    /**
+     * Opens {@code file} positioned at plaintext offset {@code position}. The returned stream's {@code skip} always
+     * skips the full amount (Spring's range support relies on it); for CPDOC2 files it seeks over whole chunks, so
+     * only the header and the chunks from {@code position} on are read, while CPDOC1 files have to be decrypted from
+     * the start.
+     */
+    public static InputStream openDecryptedStream(StoredObject file, byte[] kek, long position) throws IOException {
+        if (position < 0) {
+            throw new IllegalArgumentException("position must be >= 0");
+        }
+        Header header = peekHeader(file);
+        try {
+            InputStream in;
+            if (header instanceof V2Header v2) {
+                long chunkCount = chunkCount(file.length() - v2.encoded.length, (long) v2.chunkSize + GCM_TAG_BYTES);
+                byte[] dek = AesKeyWrap.unwrap(kek, v2.wrappedDek);
+                ChunkCipher chunkCipher = new ChunkCipher(new SecretKeySpec(dek, "AES"), v2.noncePrefix, v2.encoded);
+                in = new ChunkedDecryptingInputStream(file, chunkCipher, v2.chunkSize, v2.encoded.length, chunkCount);
+            } else {
+                in = new FullySkippingInputStream(openDecryptedStream(file.open(), kek));
+            }
+            try {
+                in.skip(position);
+            } catch (IOException | RuntimeException ex) {
+                in.close();
+                throw ex;
+            }
+            return in;
+        } catch (IOException | RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IllegalStateException("Failed to decrypt document file", ex);
+        }
+    }
+
+    /**
+     * Plaintext size of a stored file, computed from its size and header (no decryption).
+     */
+    public static long plaintextLength(Path file) throws IOException {
+        return plaintextLength(StoredObject.ofFile(file));
+    }
+
+    public static long plaintextLength(StoredObject file) throws IOException {
+        long size = file.length();
+        Header header = peekHeader(file);
+        if (header == null) {
+            return size;
+        }
+        long body = size - header.length();
+        if (header instanceof V2Header v2) {
+            long chunks = chunkCount(body, (long) v2.chunkSize + GCM_TAG_BYTES);
+            return Math.max(0, body - chunks * GCM_TAG_BYTES);
+        }
+        return Math.max(0, body - GCM_TAG_BYTES);
+    }
+
+    /** Header of {@code file}, or {@code null} when it isn't encrypted. Reads only the first bytes. */
+    private static Header peekHeader(StoredObject file) throws IOException {
+        try (BufferedInputStream in = new BufferedInputStream(file.open(0L, HEADER_PEEK_BYTES), HEADER_PEEK_BYTES)) {
+            return readHeader(in);
+        } catch (NotEncryptedFileException ex) {
+            return null;
+        }
+    }
+
     public static boolean isEncryptedFile(InputStream input) throws IOException {
         BufferedInputStream buffered = new BufferedInputStream(input);
-        buffered.mark(64);
+        buffered.mark(HEADER_PEEK_BYTES);
         try {
             readHeader(buffered);
             return true;
@@ -99,46 +241,54 @@ public final class EncryptedFileIO {
         }
     }
 
-    private static void writeHeader(OutputStream out, byte[] iv, byte[] wrappedDek) throws IOException {
-        DataOutputStream dataOut = new DataOutputStream(out);
-        dataOut.write(MAGIC);
-        dataOut.writeByte(VERSION);
-        dataOut.writeByte(iv.length);
-        dataOut.writeShort(wrappedDek.length);
-        dataOut.write(iv);
-        dataOut.write(wrappedDek);
-        dataOut.flush();
+    /** Like {@link #isEncryptedFile(InputStream)}, reading only the header of a stored file. */
+    public static boolean isEncryptedFile(StoredObject file) throws IOException {
+        return peekHeader(file) != null;
+    }
+
+    private static long chunkCount(long body, long encryptedChunk) {
+        // An empty file still has one (empty, final) chunk.
+        return Math.max(1, (body + encryptedChunk - 1) / encryptedChunk);
+    }
+
+    static int readFully(InputStream in, byte[] buffer, int offset, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int read = in.read(buffer, offset + total, length - total);
+            if (read < 0) break;
+            total += read;
+        }
+        return total;
     }
 
     private static Header readHeader(BufferedInputStream in) throws IOException {
         DataInputStream dataIn = new DataInputStream(in);
-        byte[] magic = new byte[MAGIC.length];
+        byte[] magic = new byte[MAGIC_V1.length];
         try {
             dataIn.readFully(magic);
         } catch (EOFException ex) {
             throw new NotEncryptedFileException();
         }
 
-        for (int i = 0; i < MAGIC.length; i++) {
-            if (magic[i] != MAGIC[i]) {
-                throw new NotEncryptedFileException();
-            }
+        boolean v1 = matches(magic, MAGIC_V1);
+        if (!v1 && !matches(magic, MAGIC_V2)) {
+            throw new NotEncryptedFileException();
         }
 
         int version = dataIn.readUnsignedByte();
-        if (version != VERSION) {
+        if (version != (v1 ? VERSION_1 : VERSION_2)) {
             throw new IllegalArgumentException("Unsupported encrypted file version: " + version);
         }
+        return v1 ? readV1Header(dataIn) : readV2Header(dataIn);
+    }
 
+    private static V1Header readV1Header(DataInputStream dataIn) throws IOException {
         int ivLen = dataIn.readUnsignedByte();
         if (ivLen < 8 || ivLen > 32) {
             throw new IllegalArgumentException("Invalid IV length in encrypted file: " + ivLen);
         }
 
-        int wrappedDekLen = dataIn.readUnsignedShort();
-        if (wrappedDekLen <= 0 || wrappedDekLen > 512) {
-            throw new IllegalArgumentException("Invalid wrapped key length in encrypted file: " + wrappedDekLen);
-        }
+        int wrappedDekLen = readWrappedDekLength(dataIn);
 
         byte[] iv = new byte[ivLen];
         dataIn.readFully(iv);
@@ -146,13 +296,211 @@ public final class EncryptedFileIO {
         byte[] wrappedDek = new byte[wrappedDekLen];
         dataIn.readFully(wrappedDek);
 
-        return new Header(iv, wrappedDek);
+        return new V1Header(iv, wrappedDek);
     }
 
-    private record Header(byte[] iv, byte[] wrappedDek) {
+    private static V2Header readV2Header(DataInputStream dataIn) throws IOException {
+        int chunkSize = dataIn.readInt();
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Invalid chunk size in encrypted file: " + chunkSize);
+        }
+        int noncePrefixLen = dataIn.readUnsignedByte();
+        if (noncePrefixLen != NONCE_PREFIX_BYTES) {
+            throw new IllegalArgumentException("Invalid nonce prefix length in encrypted file: " + noncePrefixLen);
+        }
+        int wrappedDekLen = readWrappedDekLength(dataIn);
+
+        byte[] noncePrefix = new byte[noncePrefixLen];
+        dataIn.readFully(noncePrefix);
+
+        byte[] wrappedDek = new byte[wrappedDekLen];
+        dataIn.readFully(wrappedDek);
+
+        V2Header header = new V2Header(chunkSize, noncePrefix, wrappedDek, null);
+        return new V2Header(chunkSize, noncePrefix, wrappedDek, header.encode());
+    }
+
+    private static int readWrappedDekLength(DataInputStream dataIn) throws IOException {
+        int wrappedDekLen = dataIn.readUnsignedShort();
+        if (wrappedDekLen <= 0 || wrappedDekLen > 512) {
+            throw new IllegalArgumentException("Invalid wrapped key length in encrypted file: " + wrappedDekLen);
+        }
+        return wrappedDekLen;
+    }
+
+    private static boolean matches(byte[] actual, byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (actual[i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private sealed interface Header permits V1Header, V2Header {
+        byte[] wrappedDek();
+
+        int length();
+    }
+
+    private record V1Header(byte[] iv, byte[] wrappedDek) implements Header {
+        @Override
+        public int length() {
+            return MAGIC_V1.length + 1 + 1 + 2 + iv.length + wrappedDek.length;
+        }
+    }
+
+    private record V2Header(int chunkSize, byte[] noncePrefix, byte[] wrappedDek, byte[] encoded) implements Header {
+        @Override
+        public int length() {
+            return MAGIC_V2.length + 1 + 4 + 1 + 2 + noncePrefix.length + wrappedDek.length;
+        }
+
+        byte[] encode() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(length());
+            DataOutputStream dataOut = new DataOutputStream(bytes);
+            dataOut.write(MAGIC_V2);
+            dataOut.writeByte(VERSION_2);
+            dataOut.writeInt(chunkSize);
+            dataOut.writeByte(noncePrefix.length);
+            dataOut.writeShort(wrappedDek.length);
+            dataOut.write(noncePrefix);
+            dataOut.write(wrappedDek);
+            dataOut.flush();
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * AES-GCM keyed once per file; each chunk gets its own nonce, so one {@link Cipher} is re-initialised per chunk.
+     */
+    static final class ChunkCipher {
+        private final SecretKey key;
+        private final byte[] nonce = new byte[IV_BYTES];
+        private final byte[] aad;
+        private final Cipher cipher;
+
+        ChunkCipher(SecretKey key, byte[] noncePrefix, byte[] aad) throws Exception {
+            this.key = key;
+            this.aad = aad;
+            this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            System.arraycopy(noncePrefix, 0, nonce, 0, noncePrefix.length);
+        }
+
+        int seal(long chunkIndex, boolean last, byte[] plain, int length, byte[] out) throws Exception {
+            cipher.init(Cipher.ENCRYPT_MODE, key, nonceFor(chunkIndex, last));
+            cipher.updateAAD(aad);
+            return cipher.doFinal(plain, 0, length, out, 0);
+        }
+
+        int open(long chunkIndex, boolean last, byte[] sealed, int length, byte[] out) throws Exception {
+            cipher.init(Cipher.DECRYPT_MODE, key, nonceFor(chunkIndex, last));
+            cipher.updateAAD(aad);
+            return cipher.doFinal(sealed, 0, length, out, 0);
+        }
+
+        private GCMParameterSpec nonceFor(long chunkIndex, boolean last) {
+            if (chunkIndex < 0 || chunkIndex > 0xFFFFFFFFL) {
+                throw new IllegalStateException("Too many chunks");
+            }
+            nonce[NONCE_PREFIX_BYTES] = (byte) (chunkIndex >>> 24);
+            nonce[NONCE_PREFIX_BYTES + 1] = (byte) (chunkIndex >>> 16);
+            nonce[NONCE_PREFIX_BYTES + 2] = (byte) (chunkIndex >>> 8);
+            nonce[NONCE_PREFIX_BYTES + 3] = (byte) chunkIndex;
+            nonce[NONCE_PREFIX_BYTES + 4] = (byte) (last ? 1 : 0);
+            return new GCMParameterSpec(GCM_TAG_BITS, nonce);
+        }
+    }
+
+    /** Buffers one chunk; a full chunk is sealed only once more bytes arrive, so the last one carries the flag. */
+    private static final class EncryptingOutputStream extends OutputStream {
+        private final OutputStream destination;
+        private final ChunkCipher chunkCipher;
+        private final byte[] plain;
+        private final byte[] sealed;
+        private int filled;
+        private long chunkIndex;
+        private boolean closed;
+
+        EncryptingOutputStream(OutputStream destination, ChunkCipher chunkCipher, int chunkSize) {
+            this.destination = destination;
+            this.chunkCipher = chunkCipher;
+            this.plain = new byte[chunkSize];
+            this.sealed = new byte[chunkSize + GCM_TAG_BYTES];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) throw new IOException("Stream closed");
+            while (len > 0) {
+                if (filled == plain.length) {
+                    seal(false);
+                }
+                int n = Math.min(len, plain.length - filled);
+                System.arraycopy(b, off, plain, filled, n);
+                filled += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            destination.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try (destination) {
+                seal(true);
+                destination.flush();
+            }
+        }
+
+        private void seal(boolean last) throws IOException {
+            try {
+                int sealedLength = chunkCipher.seal(chunkIndex, last, plain, filled, sealed);
+                destination.write(sealed, 0, sealedLength);
+            } catch (IOException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new IllegalStateException("Failed to encrypt document file", ex);
+            }
+            chunkIndex++;
+            filled = 0;
+        }
+    }
+
+    private static final class FullySkippingInputStream extends FilterInputStream {
+        FullySkippingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long remaining = n;
+            byte[] discard = null;
+            while (remaining > 0) {
+                long skipped = in.skip(remaining);
+                if (skipped <= 0) {
+                    // CipherInputStream only skips what it has already decrypted.
+                    if (discard == null) discard = new byte[8192];
+                    skipped = in.read(discard, 0, (int) Math.min(remaining, discard.length));
+                    if (skipped < 0) break;
+                }
+                remaining -= skipped;
+            }
+            return n - remaining;
+        }
     }
 
     private static final class NotEncryptedFileException extends RuntimeException {
     }
 }
-
@@ -1,90 +1,231 @@
 package com.cabinetplus.backend.security.crypto;
 
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
- * Encrypts strings using AES-256-GCM with a per-value DEK wrapped by a KEK.
+ * Encrypts strings using AES-256-GCM.
  *
- * Stored format: {@code cpenc:v1:<iv>.<wrappedDek>.<ciphertext>}
- * where components are base64url (no padding).
+ * Stored formats (components are base64url, no padding):
+ * <ul>
+ *     <li>{@code cpenc:v2:<dekSalt>.<iv>.<ciphertext>} (written): the DEK is derived from the KEK and a 16-byte salt
+ *     with HKDF-SHA256. Values encrypted with the same {@link DataKey} (typically every column of one entity) share
+ *     the salt, so a row costs one key derivation and only IV + ciphertext vary per column.</li>
+ *     <li>{@code cpenc:v1:<iv>.<wrappedDek>.<ciphertext>} (read-only): per-value random DEK wrapped by the KEK.</li>
+ * </ul>
+ *
+ * <p>Instances are thread-safe and meant to be shared: ciphers are reused per thread, and DEKs are kept in a bounded
+ * LRU cache keyed by the encoded salt (v2) or wrapped DEK (v1), so re-reading the same rows skips key derivation.</p>
  */
 public final class EnvelopeStringEncryptor {
 
-    private static final String PREFIX = "cpenc:v1:";
+    private static final String PREFIX_V1 = "cpenc:v1:";
+    private static final String PREFIX_V2 = "cpenc:v2:";
+    private static final byte[] HKDF_INFO = "cpenc:v2 dek".getBytes(StandardCharsets.US_ASCII);
+    private static final int SALT_BYTES = 16;
+    private static final String GCM = "AES/GCM/NoPadding";
     private static final int GCM_TAG_BITS = 128;
     private static final int IV_BYTES = 12;
     private static final int DEK_BYTES = 32;
+    private static final int DEFAULT_DEK_CACHE_SIZE = 4096;
 
-    private final byte[] kek;
+    private final SecretKey kek;
+    private final byte[] kekBytes;
     private final SecureRandom secureRandom = new SecureRandom();
+    private final ThreadLocal<Cipher> gcmCipher = ThreadLocal.withInitial(() -> newCipher(GCM));
+    private final ThreadLocal<Cipher> unwrapCipher;
+    private final ThreadLocal<Mac> hmac = ThreadLocal.withInitial(EnvelopeStringEncryptor::newHmac);
+    private final Map<String, SecretKey> dekCache;
 
     public EnvelopeStringEncryptor(byte[] kek) {
-        this.kek = kek.clone();
+        this(kek, DEFAULT_DEK_CACHE_SIZE);
+    }
+
+    public EnvelopeStringEncryptor(byte[] kek, int dekCacheSize) {
+        this.kekBytes = kek.clone();
+        this.kek = new SecretKeySpec(kekBytes, "AES");
+        this.unwrapCipher = ThreadLocal.withInitial(this::initUnwrapCipher);
+        int maxEntries = Math.max(0, dekCacheSize);
+        this.dekCache = maxEntries == 0 ? null : new LinkedHashMap<>(Math.min(maxEntries, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SecretKey> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * DEK shared by the values of one entity, identified in each envelope by its salt.
+     */
+    public static final class DataKey {
+        private final String encodedSalt;
+        private final SecretKey key;
+
+        private DataKey(String encodedSalt, SecretKey key) {
+            this.encodedSalt = encodedSalt;
+            this.key = key;
+        }
+    }
+
+    public DataKey newDataKey() {
+        byte[] salt = new byte[SALT_BYTES];
+        secureRandom.nextBytes(salt);
+        String encodedSalt = Base64Url.encode(salt);
+        DataKey dataKey = new DataKey(encodedSalt, deriveDek(salt));
+        cacheDek(encodedSalt, dataKey.key);
+        return dataKey;
     }
 
     public String encrypt(String plaintext) {
+        return encrypt(plaintext, newDataKey());
+    }
+
+    public String encrypt(String plaintext, DataKey dataKey) {
         byte[] iv = new byte[IV_BYTES];
         secureRandom.nextBytes(iv);
+        byte[] ciphertext = encryptAesGcm(dataKey.key, iv, plaintext.getBytes(StandardCharsets.UTF_8));
 
-        byte[] dek = new byte[DEK_BYTES];
-        secureRandom.nextBytes(dek);
-
-        byte[] wrappedDek = AesKeyWrap.wrap(kek, dek);
-        byte[] ciphertext = encryptAesGcm(dek, iv, plaintext.getBytes(StandardCharsets.UTF_8));
-
-        return PREFIX
+        return PREFIX_V2
+                + dataKey.encodedSalt + "."
                 + Base64Url.encode(iv) + "."
-                + Base64Url.encode(wrappedDek) + "."
                 + Base64Url.encode(ciphertext);
     }
 
     public String decrypt(String envelope) {
-        if (!looksLikeEnvelope(envelope)) {
+        boolean v2 = envelope != null && envelope.startsWith(PREFIX_V2);
+        if (!v2 && !isV1(envelope)) {
             throw new IllegalArgumentException("Value is not a supported envelope");
         }
-        String payload = envelope.substring(PREFIX.length());
-        String[] parts = payload.split("\\.", 3);
-        if (parts.length != 3) {
+        int start = PREFIX_V2.length();
+        int firstDot = envelope.indexOf('.', start);
+        int secondDot = firstDot < 0 ? -1 : envelope.indexOf('.', firstDot + 1);
+        if (secondDot < 0) {
             throw new IllegalArgumentException("Invalid envelope format");
         }
-        byte[] iv = Base64Url.decode(parts[0]);
-        byte[] wrappedDek = Base64Url.decode(parts[1]);
-        byte[] ciphertext = Base64Url.decode(parts[2]);
+        byte[] ciphertext = Base64Url.decode(envelope, secondDot + 1, envelope.length());
+        if (v2) {
+            // cpenc:v2:<salt>.<iv>.<ciphertext>
+            String encodedSalt = envelope.substring(start, firstDot);
+            byte[] iv = Base64Url.decode(envelope, firstDot + 1, secondDot);
+            SecretKey dek = cachedDek(encodedSalt);
+            if (dek == null) {
+                dek = deriveDek(Base64Url.decode(encodedSalt));
+                cacheDek(encodedSalt, dek);
+            }
+            return new String(decryptAesGcm(dek, iv, ciphertext), StandardCharsets.UTF_8);
+        }
 
-        byte[] dek = AesKeyWrap.unwrap(kek, wrappedDek);
-        byte[] plaintextBytes = decryptAesGcm(dek, iv, ciphertext);
-        return new String(plaintextBytes, StandardCharsets.UTF_8);
+        // cpenc:v1:<iv>.<wrappedDek>.<ciphertext>
+        byte[] iv = Base64Url.decode(envelope, start, firstDot);
+        String encodedDek = envelope.substring(firstDot + 1, secondDot);
+        SecretKey dek = cachedDek(encodedDek);
+        if (dek == null) {
+            dek = unwrap(Base64Url.decode(encodedDek));
+            cacheDek(encodedDek, dek);
+        }
+        return new String(decryptAesGcm(dek, iv, ciphertext), StandardCharsets.UTF_8);
     }
 
+    /**
+     * Whether {@code value} is a supported envelope (v1 or v2).
+     */
     public static boolean looksLikeEnvelope(String value) {
-        return value != null && value.startsWith(PREFIX);
+        return value != null && (value.startsWith(PREFIX_V2) || value.startsWith(PREFIX_V1));
+    }
+
+    public static boolean isV1(String value) {
+        return value != null && value.startsWith(PREFIX_V1);
+    }
+
+    /** HKDF-SHA256 (RFC 5869) of the KEK with {@code salt}, one 32-byte output block. */
+    private SecretKey deriveDek(byte[] salt) {
+        try {
+            Mac mac = hmac.get();
+            mac.init(new SecretKeySpec(salt, "HmacSHA256"));
+            byte[] prk = mac.doFinal(kekBytes);
+            mac.init(new SecretKeySpec(prk, "HmacSHA256"));
+            mac.update(HKDF_INFO);
+            mac.update((byte) 1);
+            return new SecretKeySpec(mac.doFinal(), 0, DEK_BYTES, "AES");
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Failed to derive DEK", ex);
+        }
+    }
+
+    private SecretKey cachedDek(String encodedDek) {
+        if (dekCache == null) return null;
+        synchronized (dekCache) {
+            return dekCache.get(encodedDek);
+        }
+    }
+
+    // v1 keys (wrapped DEK, 54 chars) and v2 keys (salt, 22 chars) can't collide.
+    private void cacheDek(String encodedDek, SecretKey dek) {
+        if (dekCache == null) return;
+        synchronized (dekCache) {
+            dekCache.put(encodedDek, dek);
+        }
     }
 
-    private static byte[] encryptAesGcm(byte[] dek, byte[] iv, byte[] plaintext) {
+    private SecretKey unwrap(byte[] wrappedDek) {
         try {
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            SecretKey key = new SecretKeySpec(dek, "AES");
-            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, iv));
+            return (SecretKey) unwrapCipher.get().unwrap(wrappedDek, "AES", Cipher.SECRET_KEY);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Failed to unwrap DEK", ex);
+        }
+    }
+
+    private byte[] encryptAesGcm(SecretKey dek, byte[] iv, byte[] plaintext) {
+        try {
+            Cipher cipher = gcmCipher.get();
+            cipher.init(Cipher.ENCRYPT_MODE, dek, new GCMParameterSpec(GCM_TAG_BITS, iv));
             return cipher.doFinal(plaintext);
         } catch (Exception ex) {
             throw new IllegalStateException("Failed to encrypt value", ex);
         }
     }
 
-    private static byte[] decryptAesGcm(byte[] dek, byte[] iv, byte[] ciphertext) {
+    private byte[] decryptAesGcm(SecretKey dek, byte[] iv, byte[] ciphertext) {
         try {
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            SecretKey key = new SecretKeySpec(dek, "AES");
-            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, iv));
+            Cipher cipher = gcmCipher.get();
+            cipher.init(Cipher.DECRYPT_MODE, dek, new GCMParameterSpec(GCM_TAG_BITS, iv));
             return cipher.doFinal(ciphertext);
         } catch (Exception ex) {
             throw new IllegalStateException("Failed to decrypt value", ex);
         }
     }
-}
 
+    private Cipher initUnwrapCipher() {
+        Cipher cipher = newCipher("AESWrap");
+        try {
+            cipher.init(Cipher.UNWRAP_MODE, kek);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Invalid KEK", ex);
+        }
+        return cipher;
+    }
+
+    private static Mac newHmac() {
+        try {
+            return Mac.getInstance("HmacSHA256");
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("HmacSHA256 unavailable", ex);
+        }
+    }
+
+    private static Cipher newCipher(String transformation) {
+        try {
+            return Cipher.getInstance(transformation);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Cipher unavailable: " + transformation, ex);
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.cabinetplus.backend.services;
+
+import com.cabinetplus.backend.security.crypto.EncryptedFileIO;
+import com.cabinetplus.backend.security.crypto.EncryptionKeyProvider;
+import com.cabinetplus.backend.storage.BlobStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Content-addressed store for encrypted uploads.
+ *
+ * <p>An upload is hashed (SHA-256 of the plaintext) while it is encrypted to a temporary file. If the clinic already
+ * stores the same content, the existing blob gains a reference and the new copy is dropped. Otherwise the file is
+ * handed to the {@link BlobStorage} backend (local disk or a bucket). Owning rows keep pointing at
+ * {@link StoredBlobRef#location()} through their usual {@code path_or_url}, so reads are unchanged.</p>
+ *
+ * <p>Deduplication is scoped to one clinic (owner dentist): sharing blobs across clinics would reveal whether another
+ * clinic holds a given file. Unreferenced blobs are deleted by {@link #reclaim()} after a grace period. Only temporary
+ * files stay on local disk under {@code app.blobs.dir}, which is also the key prefix of stored blobs; parts of
+ * resumable uploads are staged in the backend under {@code <prefix>/incoming/}.</p>
+ */
+@Service
+public class BlobStoreService {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobStoreService.class);
+
+    private static final String TMP_DIR = "tmp";
+    private static final String INCOMING_DIR = "incoming";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlobStorage blobStorage;
+    private final StorageUsageService storageUsageService;
+    private final String blobKeyPrefix;
+    private final Path blobRoot;
+    private final Duration reclaimGrace;
+    private final int reclaimBatchSize;
+
+    public BlobStoreService(
+            JdbcTemplate jdbcTemplate,
+            BlobStorage blobStorage,
+            StorageUsageService storageUsageService,
+            @Value("${app.blobs.dir:uploads/blobs}") String blobDir,
+            @Value("${app.blobs.reclaim-grace-minutes:60}") long reclaimGraceMinutes,
+            @Value("${app.blobs.reclaim-batch-size:200}") int reclaimBatchSize
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blobStorage = blobStorage;
+        this.storageUsageService = storageUsageService;
+        this.blobKeyPrefix = blobDir.replace('\\', '/').replaceAll("/+$", "");
+        this.blobRoot = Paths.get(blobDir).toAbsolutePath().normalize();
+        this.reclaimGrace = Duration.ofMinutes(Math.max(0L, reclaimGraceMinutes));
+        this.reclaimBatchSize = Math.max(1, reclaimBatchSize);
+    }
+
+    /** {@code deduplicated} when the content was already referenced, so it adds nothing to the clinic's usage. */
+    public record StoredBlobRef(String location, long storedBytes, String sha256, boolean deduplicated) {}
+
+    private record Released(long ownerId, long sizeBytes, int previousRefCount) {}
+
+    /**
+     * Stores {@code plaintext} for clinic {@code ownerId} and takes one reference on the resulting blob. Callers
+     * must {@link #release(String)} it if the owning row isn't saved.
+     */
+    public StoredBlobRef store(Long ownerId, InputStream plaintext) throws IOException {
+        if (ownerId == null) {
+            throw new IllegalArgumentException("ownerId is required");
+        }
+        Path tmp = newTempFile();
+        try {
+            MessageDigest sha256 = newSha256();
+            CRC32 crc32 = new CRC32();
+            long plaintextBytes;
+            try (InputStream in = new CheckedInputStream(new DigestInputStream(plaintext, sha256), crc32);
+                 OutputStream out = Files.newOutputStream(tmp)) {
+                plaintextBytes = EncryptedFileIO.encryptToStream(in, out, EncryptionKeyProvider.getOrLoadKek());
+            }
+            return place(ownerId, tmp, HexFormat.of().formatHex(sha256.digest()), plaintextBytes, crc32.getValue());
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Location for a new part of resumable upload {@code uploadId}, in the same backend as the blobs so that any node
+     * can complete the upload. Reclaim leaves staged parts alone; uploads clean up after themselves.
+     */
+    public String stagingLocation(String uploadId) {
+        return blobStorage.locationFor(blobKeyPrefix + "/" + INCOMING_DIR + "/" + uploadId + "/" + UUID.randomUUID());
+    }
+
+    /**
+     * Encrypts {@code plaintext} under a fresh key to {@code location} and returns how many bytes it held. Unlike
+     * {@link #store}, nothing is deduplicated or counted towards the clinic's usage.
+     */
+    public long stage(String location, InputStream plaintext) throws IOException {
+        Path tmp = newTempFile();
+        try {
+            long plaintextBytes;
+            try (InputStream in = plaintext; OutputStream out = Files.newOutputStream(tmp)) {
+                plaintextBytes = EncryptedFileIO.encryptToStream(in, out, EncryptionKeyProvider.getOrLoadKek());
+            }
+            blobStorage.put(location, tmp);
+            return plaintextBytes;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Decrypted content of a part written by {@link #stage}. */
+    public InputStream openStaged(String location) throws IOException {
+        return EncryptedFileIO.openDecryptedStream(blobStorage.object(location), EncryptionKeyProvider.getOrLoadKek(), 0L);
+    }
+
+    /**
+     * Deletes a part written by {@link #stage}. Returns {@code false} only when it could not be deleted (logged), so
+     * the caller keeps what it needs to retry.
+     */
+    public boolean deleteStaged(String location) {
+        try {
+            blobStorage.delete(location);
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Could not delete staged upload part {}", location, ex);
+            return false;
+        }
+    }
+
+    private Path newTempFile() throws IOException {
+        Path tmpDir = blobRoot.resolve(TMP_DIR);
+        Files.createDirectories(tmpDir);
+        return tmpDir.resolve(UUID.randomUUID() + ".part");
+    }
+
+    private StoredBlobRef place(Long ownerId, Path encrypted, String hash, long plaintextBytes, long crc32) throws IOException {
+        StoredBlobRef existing = acquireExisting(ownerId, hash, crc32);
+        if (existing != null) {
+            return counted(ownerId, existing);
+        }
+
+        long storedBytes = Files.size(encrypted);
+        String destination = blobStorage.locationFor(blobKeyPrefix + "/" + hash.substring(0, 2) + "/" + UUID.randomUUID());
+        blobStorage.put(destination, encrypted);
+
+        // Insert, or join a blob another upload of the same content created meanwhile.
+        StoredBlobRef stored = jdbcTemplate.queryForObject("""
+                insert into stored_blobs (owner_id, sha256, storage_path, size_bytes, plaintext_bytes, plaintext_crc32, ref_count, created_at)
+                values (?, ?, ?, ?, ?, ?, 1, now())
+                on conflict (owner_id, sha256)
+                do update set ref_count = stored_blobs.ref_count + 1, released_at = null,
+                    plaintext_crc32 = coalesce(stored_blobs.plaintext_crc32, excluded.plaintext_crc32)
+                returning storage_path, size_bytes, ref_count
+                """,
+                (rs, i) -> new StoredBlobRef(rs.getString(1), rs.getLong(2), hash, rs.getInt(3) > 1),
+                ownerId, hash, destination, storedBytes, plaintextBytes, crc32);
+
+        if (stored == null || !stored.location().equals(destination)) {
+            blobStorage.delete(destination);
+            return stored != null ? new StoredBlobRef(stored.location(), stored.storedBytes(), hash, true) : null;
+        }
+        return counted(ownerId, stored);
+    }
+
+    /** A blob counts towards its clinic's storage usage while at least one row references it. */
+    private StoredBlobRef counted(Long ownerId, StoredBlobRef blob) {
+        if (!blob.deduplicated()) {
+            storageUsageService.add(ownerId, blob.storedBytes());
+        }
+        return blob;
+    }
+
+    /**
+     * Drops one reference on the blob stored at {@code pathOrUrl}. Returns {@code false} when the path isn't a blob
+     * (files written before the blob store, or generated bundles), in which case the caller owns the file.
+     */
+    public boolean release(String pathOrUrl) {
+        if (pathOrUrl == null || pathOrUrl.isBlank()) return false;
+        List<Released> released = jdbcTemplate.query("""
+                with target as (
+                    select id, ref_count from stored_blobs where storage_path = ? for update
+                )
+                update stored_blobs b
+                set ref_count = greatest(b.ref_count - 1, 0),
+                    released_at = case when b.ref_count <= 1 then now() else b.released_at end
+                from target
+                where b.id = target.id
+                returning b.owner_id, b.size_bytes, target.ref_count
+                """,
+                (rs, i) -> new Released(rs.getLong(1), rs.getLong(2), rs.getInt(3)),
+                normalize(pathOrUrl));
+        if (released.isEmpty()) return false;
+        Released blob = released.get(0);
+        if (blob.previousRefCount() == 1) {
+            storageUsageService.releaseBlob(blob.ownerId(), normalize(pathOrUrl), blob.sizeBytes());
+        }
+        return true;
+    }
+
+    /**
+     * CRC-32 of the plaintext of each blob among {@code pathOrUrls}, keyed by the given path. Paths that aren't blobs,
+     * or blobs stored before CRCs were recorded, are missing from the map.
+     */
+    public Map<String, Long> plaintextCrc32(Collection<String> pathOrUrls) {
+        Map<String, String> byLocation = new HashMap<>();
+        for (String pathOrUrl : pathOrUrls) {
+            if (pathOrUrl != null && !pathOrUrl.isBlank()) {
+                byLocation.put(normalize(pathOrUrl), pathOrUrl);
+            }
+        }
+        Map<String, Long> crcs = new HashMap<>();
+        if (byLocation.isEmpty()) return crcs;
+        jdbcTemplate.query(
+                "select storage_path, plaintext_crc32 from stored_blobs where storage_path = any(?) and plaintext_crc32 is not null",
+                rs -> {
+                    String pathOrUrl = byLocation.get(rs.getString(1));
+                    if (pathOrUrl != null) crcs.put(pathOrUrl, rs.getLong(2));
+                },
+                (Object) byLocation.keySet().toArray(String[]::new));
+        return crcs;
+    }
+
+    public boolean isBlob(String pathOrUrl) {
+        if (pathOrUrl == null || pathOrUrl.isBlank()) return false;
+        Integer count = jdbcTemplate.queryForObject(
+                "select count(*) from stored_blobs where storage_path = ?", Integer.class, normalize(pathOrUrl));
+        return count != null && count > 0;
+    }
+
+    /**
+     * Deletes blobs that have had no reference for the grace period, plus temporary files abandoned by interrupted
+     * uploads.
+     */
+    @Scheduled(
+            initialDelayString = "${app.blobs.reclaim-initial-delay-ms:300000}",
+            fixedDelayString = "${app.blobs.reclaim-interval-ms:3600000}"
+    )
+    public int reclaim() {
+        int reclaimed = 0;
+        while (true) {
+            List<String> paths = jdbcTemplate.queryForList("""
+                    delete from stored_blobs
+                    where id in (
+                        select id from stored_blobs
+                        where ref_count = 0 and released_at < now() - make_interval(secs => ?)
+                        order by id
+                        limit ?
+                        for update skip locked
+                    )
+                    returning storage_path
+                    """, String.class, reclaimGrace.toSeconds(), reclaimBatchSize);
+            for (String path : paths) {
+                deleteStored(path);
+            }
+            reclaimed += paths.size();
+            if (paths.size() < reclaimBatchSize) break;
+        }
+        reclaimed += deleteAbandonedTempFiles(Instant.now().minus(reclaimGrace));
+        if (reclaimed > 0) {
+            log.info("Reclaimed {} unreferenced blob file(s)", reclaimed);
+        }
+        return reclaimed;
+    }
+
+    private StoredBlobRef acquireExisting(Long ownerId, String hash, long crc32) {
+        // Blobs stored before CRCs were recorded get theirs from the duplicate.
+        List<StoredBlobRef> rows = jdbcTemplate.query("""
+                update stored_blobs
+                set ref_count = ref_count + 1, released_at = null, plaintext_crc32 = coalesce(plaintext_crc32, ?)
+                where owner_id = ? and sha256 = ?
+                returning storage_path, size_bytes, ref_count
+                """,
+                (rs, i) -> new StoredBlobRef(rs.getString(1), rs.getLong(2), hash, rs.getInt(3) > 1),
+                crc32, ownerId, hash);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private int deleteAbandonedTempFiles(Instant cutoff) {
+        Path tmpDir = blobRoot.resolve(TMP_DIR);
+        if (!Files.isDirectory(tmpDir)) return 0;
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tmpDir, "*.part")) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff) && deleteQuietly(file)) {
+                    deleted++;
+                }
+            }
+        } catch (IOException ex) {
+            log.warn("Could not scan {} for abandoned uploads", tmpDir, ex);
+        }
+        return deleted;
+    }
+
+    /** Deletes a blob and the files generated from it (thumbnails), named {@code <blob>.<suffix>}. */
+    private void deleteStored(String location) {
+        try {
+            blobStorage.delete(location);
+            blobStorage.deleteAll(location + ".");
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Could not delete blob {}", location, ex);
+        }
+    }
+
+    private String normalize(String pathOrUrl) {
+        return blobStorage.object(pathOrUrl).location();
+    }
+
+    private static boolean deleteQuietly(Path path) {
+        try {
+            return Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            log.warn("Could not delete blob file {}", path, ex);
+            return false;
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 unavailable", ex);
+        }
+    }
+}
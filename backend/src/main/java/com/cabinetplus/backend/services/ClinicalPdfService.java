@@ -0,0 +1,211 @@
+package com.cabinetplus.backend.services;
+
+import org.springframework.stereotype.Service;
+
+import com.cabinetplus.backend.models.Devise;
+import com.cabinetplus.backend.models.DeviseItem;
+import com.cabinetplus.backend.models.Justification;
+import com.cabinetplus.backend.models.Patient;
+import com.cabinetplus.backend.models.Prescription;
+import com.cabinetplus.backend.models.PrescriptionMedication;
+import com.cabinetplus.backend.models.User;
+import com.cabinetplus.backend.services.PdfRenderingService.Layout;
+import com.lowagie.text.Chunk;
+import com.lowagie.text.Document;
+import com.lowagie.text.Element;
+import com.lowagie.text.Font;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.Phrase;
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.PdfPCell;
+import com.lowagie.text.pdf.PdfPTable;
+import com.lowagie.text.pdf.PdfWriter;
+
+/**
+ * Devis, ordonnance and justificatif PDFs, with the fingerprint of what each one shows (see {@link PdfCacheService}).
+ * Entities must be loaded with what the PDF reads (devis items, prescription medications, patient).
+ */
+@Service
+public class ClinicalPdfService {
+
+    private final PdfRenderingService rendering;
+    private final PdfCacheService pdfCacheService;
+
+    public ClinicalPdfService(PdfRenderingService rendering, PdfCacheService pdfCacheService) {
+        this.rendering = rendering;
+        this.pdfCacheService = pdfCacheService;
+    }
+
+    public PdfCacheService.Fingerprint devisFingerprint(User practitioner, Devise devise) {
+        PdfCacheService.Fingerprint fingerprint = pdfCacheService.fingerprint("devise")
+                .add(PdfRenderingService.headerFingerprint(practitioner))
+                .add(devise.getId(), devise.getTitle(), devise.getCreatedAt(), devise.getTotalAmount());
+        for (DeviseItem item : devise.getItems()) {
+            fingerprint.add(itemName(item), item.getQuantity(), item.getUnitPrice());
+        }
+        return fingerprint;
+    }
+
+    public byte[] devisPdf(User practitioner, Devise devise) {
+        return rendering.render((document, writer) -> writeDevise(document, writer, practitioner, devise));
+    }
+
+    public PdfCacheService.Fingerprint prescriptionFingerprint(User practitioner, Prescription rx) {
+        PdfCacheService.Fingerprint fingerprint = pdfCacheService.fingerprint("prescription")
+                .add(PdfRenderingService.headerFingerprint(practitioner))
+                .add(rx.getId(), rx.getDate(), rx.getNotes())
+                .add(rx.getPatient().getFirstname(), rx.getPatient().getLastname(), rx.getPatient().getAge());
+        for (PrescriptionMedication med : rx.getMedications()) {
+            fingerprint.add(
+                    med.getMedication().getName(),
+                    med.getMedication().getStrength(),
+                    med.getMedication().getDosageForm(),
+                    med.getMedication().getGenericName(),
+                    med.getAmount(),
+                    med.getUnit(),
+                    med.getFrequency(),
+                    med.getDuration(),
+                    med.getInstructions());
+        }
+        return fingerprint;
+    }
+
+    public byte[] prescriptionPdf(User practitioner, Prescription rx) {
+        return rendering.render((document, writer) -> writePrescription(document, writer, practitioner, rx));
+    }
+
+    public PdfCacheService.Fingerprint justificationFingerprint(User practitioner, Justification justification) {
+        Patient patient = justification.getPatient();
+        return pdfCacheService.fingerprint("justification")
+                .add(PdfRenderingService.headerFingerprint(practitioner))
+                .add(justification.getId(), justification.getTitle(), justification.getDate(), justification.getFinalContent())
+                .add(patient.getFirstname(), patient.getLastname(), patient.getAge());
+    }
+
+    public byte[] justificationPdf(User practitioner, Justification justification) {
+        return rendering.render((document, writer) -> writeJustification(document, writer, practitioner, justification));
+    }
+
+    private void writeDevise(Document document, PdfWriter writer, User practitioner, Devise devise) {
+        Layout layout = Layout.STANDARD;
+        rendering.addClinicHeader(document, practitioner, layout);
+
+        // Devise Title & Date
+        PdfPTable headerTable = new PdfPTable(2);
+        headerTable.setWidthPercentage(100);
+
+        PdfPCell titleCell = new PdfPCell(new Phrase("DEVIS: " + devise.getTitle().toUpperCase(), layout.subtitle));
+        titleCell.setBorder(Rectangle.NO_BORDER);
+        headerTable.addCell(titleCell);
+
+        PdfPCell dateCell = new PdfPCell(new Phrase("Date: " + PdfRenderingService.DATE.format(devise.getCreatedAt()), layout.body));
+        dateCell.setBorder(Rectangle.NO_BORDER);
+        dateCell.setHorizontalAlignment(Element.ALIGN_RIGHT);
+        headerTable.addCell(dateCell);
+
+        document.add(headerTable);
+        document.add(new Paragraph(" "));
+
+        // Items Table
+        PdfRenderingService.Table table = rendering.table(layout, 4, 1, 2, 2)
+                .spacingBefore(10)
+                .boxedHeader("Designation", "Qte", "Prix Unitaire", "Total");
+        for (DeviseItem item : devise.getItems()) {
+            String name = itemName(item);
+            double subtotal = item.getUnitPrice() * item.getQuantity();
+            table.cell(name, layout.body, Element.ALIGN_LEFT)
+                    .cell(String.valueOf(item.getQuantity()), layout.body, Element.ALIGN_CENTER)
+                    .cell(String.format("%,.2f DA", item.getUnitPrice()), layout.body, Element.ALIGN_LEFT)
+                    .cell(String.format("%,.2f DA", subtotal), layout.bodyBold, Element.ALIGN_LEFT);
+        }
+        document.add(table.build());
+
+        // Total Section
+        Paragraph totalP = new Paragraph("\nTOTAL GENERAL: " + String.format("%,.2f DZD", devise.getTotalAmount()), layout.subtitle);
+        totalP.setAlignment(Element.ALIGN_RIGHT);
+        document.add(totalP);
+
+        rendering.addSignature(writer, "Cachet et Signature\n\n\n___________________", layout);
+    }
+
+    private void writePrescription(Document document, PdfWriter writer, User practitioner, Prescription rx) {
+        Layout layout = Layout.STANDARD;
+        Font medFont = layout.subtitle;
+
+        // 1. HEADER & PATIENT
+        rendering.addClinicHeader(document, practitioner, layout);
+        rendering.addPatientAndDate(document, rx.getPatient(), rx.getDate(), layout);
+        rendering.addTitle(document, "ORDONNANCE", 0, 20, layout);
+
+        // 2. MEDICATIONS LIST
+        for (PrescriptionMedication med : rx.getMedications()) {
+            // Build the header string: NAME + STRENGTH
+            String medHeaderStr = "- " + med.getMedication().getName().toUpperCase();
+            if (med.getMedication().getStrength() != null && !med.getMedication().getStrength().isEmpty()) {
+                medHeaderStr += " " + med.getMedication().getStrength();
+            }
+
+            Paragraph mHeader = new Paragraph(medHeaderStr, medFont);
+            if (med.getMedication().getDosageForm() != null) {
+                mHeader.add(new Chunk(" (" + med.getMedication().getDosageForm().toString() + ")", layout.note));
+            }
+            document.add(mHeader);
+
+            if (med.getMedication().getGenericName() != null && !med.getMedication().getGenericName().isEmpty()) {
+                Paragraph gName = new Paragraph("  " + med.getMedication().getGenericName(), layout.muted);
+                gName.setSpacingBefore(-2f);
+                document.add(gName);
+            }
+
+            String rawAmount = med.getAmount();
+            String formattedAmount;
+            try {
+                double val = Double.parseDouble(rawAmount);
+                formattedAmount = (val == (long) val) ? String.format("%d", (long) val) : String.valueOf(val);
+            } catch (Exception e) {
+                formattedAmount = rawAmount;
+            }
+
+            String detailStr = String.format("  %s %s, %s pendant %s",
+                formattedAmount, med.getUnit(), med.getFrequency(), med.getDuration());
+            document.add(new Paragraph(detailStr, layout.body));
+
+            if (med.getInstructions() != null && !med.getInstructions().isEmpty()) {
+                document.add(new Paragraph("  Note: " + med.getInstructions(), layout.note));
+            }
+            document.add(new Paragraph(" "));
+        }
+
+        // 3. NOTES
+        if (rx.getNotes() != null && !rx.getNotes().isEmpty()) {
+            document.add(new Paragraph("Notes:", layout.subtitle));
+            document.add(new Paragraph(rx.getNotes(), layout.body));
+        }
+
+        // 4. SIGNATURE
+        rendering.addSignature(writer, null, layout);
+    }
+
+    private void writeJustification(Document document, PdfWriter writer, User practitioner, Justification justification) {
+        Layout layout = Layout.STANDARD;
+        rendering.addClinicHeader(document, practitioner, layout);
+        rendering.addPatientAndDate(document, justification.getPatient(), justification.getDate(), layout);
+
+        String displayTitle = justification.getTitle() != null && !justification.getTitle().isBlank()
+                ? justification.getTitle()
+                : "JUSTIFICATION MEDICALE";
+        rendering.addTitle(document, displayTitle.toUpperCase(), 20, 20, layout);
+
+        // Main content
+        Paragraph content = new Paragraph(justification.getFinalContent(), layout.body);
+        content.setLeading(16f); // Adds some line spacing for better readability
+        document.add(content);
+        document.add(new Paragraph(" "));
+
+        rendering.addSignature(writer, null, layout);
+    }
+
+    private static String itemName(DeviseItem item) {
+        return item.getTreatmentCatalog() != null ? item.getTreatmentCatalog().getName() : item.getProthesisCatalog().getName();
+    }
+}
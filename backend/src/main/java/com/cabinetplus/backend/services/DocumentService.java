@@ -3,18 +3,19 @@ package com.cabinetplus.backend.services;
 import com.cabinetplus.backend.dto.DocumentResponseDTO;
 import com.cabinetplus.backend.dto.PageResponse;
 import com.cabinetplus.backend.enums.RecordStatus;
+import com.cabinetplus.backend.exceptions.NotFoundException;
 import com.cabinetplus.backend.models.Document;
 import com.cabinetplus.backend.models.Patient;
 import com.cabinetplus.backend.models.User;
 import com.cabinetplus.backend.repositories.DocumentRepository;
 import com.cabinetplus.backend.repositories.PatientRepository;
 import com.cabinetplus.backend.security.crypto.DecryptingFileResource;
-import com.cabinetplus.backend.security.crypto.EncryptedFileIO;
 import com.cabinetplus.backend.security.crypto.EncryptionKeyProvider;
+import com.cabinetplus.backend.storage.BlobStorage;
+import com.cabinetplus.backend.storage.StoredObject;
 import com.cabinetplus.backend.util.PaginationUtil;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.http.MediaTypeFactory;
@@ -23,16 +24,12 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.Set;
-import java.util.UUID;
 
 @Service
 public class DocumentService {
@@ -51,20 +48,29 @@ public class DocumentService {
     private final PatientRepository patientRepository;
     private final PlanLimitService planLimitService;
     private final ReferenceCodeGeneratorService referenceCodeGeneratorService;
-    private final Path uploadRoot;
+    private final BlobStoreService blobStoreService;
+    private final ThumbnailService thumbnailService;
+    private final BlobStorage blobStorage;
+    private final StorageUsageService storageUsageService;
 
     public DocumentService(
             DocumentRepository documentRepository,
             PatientRepository patientRepository,
             PlanLimitService planLimitService,
             ReferenceCodeGeneratorService referenceCodeGeneratorService,
-            @Value("${app.documents.upload-dir:uploads/documents}") String uploadDir
+            BlobStoreService blobStoreService,
+            ThumbnailService thumbnailService,
+            BlobStorage blobStorage,
+            StorageUsageService storageUsageService
     ) {
         this.documentRepository = documentRepository;
         this.patientRepository = patientRepository;
         this.planLimitService = planLimitService;
         this.referenceCodeGeneratorService = referenceCodeGeneratorService;
-        this.uploadRoot = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.blobStoreService = blobStoreService;
+        this.thumbnailService = thumbnailService;
+        this.blobStorage = blobStorage;
+        this.storageUsageService = storageUsageService;
     }
 
     public List<DocumentResponseDTO> findByPatientId(Long patientId, User ownerDentist) {
@@ -144,26 +150,20 @@ public class DocumentService {
         long nextTotalBytes = currentStorageBytes + estimatedStoredBytes;
         planLimitService.assertStorageWithinLimit(ownerDentist, nextTotalBytes);
 
+        BlobStoreService.StoredBlobRef blob = null;
         try {
-            Files.createDirectories(uploadRoot);
-
-            String storedFilename = UUID.randomUUID() + "." + extension;
-            Path destination = uploadRoot.resolve(storedFilename).normalize();
-
-            byte[] kek = EncryptionKeyProvider.getOrLoadKek();
-            try (InputStream in = file.getInputStream(); OutputStream out = Files.newOutputStream(destination)) {
-                EncryptedFileIO.encryptToStream(in, out, kek);
+            try (InputStream in = file.getInputStream()) {
+                blob = blobStoreService.store(patient.getCreatedBy().getId(), in);
             }
-            long storedBytes = Files.size(destination);
 
             Document document = new Document();
             document.setTitle(cleanTitle);
-            document.setFilename(sanitizeFilename(originalFilename, storedFilename));
+            document.setFilename(sanitizeFilename(originalFilename, blobStorage.object(blob.location()).filename()));
             document.setFileType(resolveFileType(file, extension));
-            document.setFileSizeBytes(storedBytes);
+            document.setFileSizeBytes(blob.storedBytes());
             LocalDateTime uploadedAt = LocalDateTime.now();
             document.setUploadedAt(uploadedAt);
-            document.setPathOrUrl(destination.toString());
+            document.setPathOrUrl(blob.location());
             document.setPatient(patient);
             document.setUploadedBy(uploadedBy);
 
@@ -174,16 +174,40 @@ public class DocumentService {
             );
             document.setCode(referenceCodeGeneratorService.generate("PJ", uploadedAt, count));
 
-            return toDto(documentRepository.save(document));
+            DocumentResponseDTO saved = toDto(documentRepository.save(document));
+            thumbnailService.prepare(blob.location(), document.getFileType());
+            return saved;
         } catch (IOException ex) {
+            releaseQuietly(blob);
             throw new RuntimeException("Impossible d'enregistrer la piece jointe", ex);
+        } catch (RuntimeException ex) {
+            releaseQuietly(blob);
+            throw ex;
+        }
+    }
+
+    private void releaseQuietly(BlobStoreService.StoredBlobRef blob) {
+        if (blob == null) return;
+        try {
+            blobStoreService.release(blob.location());
+        } catch (RuntimeException ignored) {
+            // an unreleased reference only delays reclaiming the blob
         }
     }
 
     public Resource getDocumentResource(Long documentId, User ownerDentist) {
         Document document = getOwnedDocument(documentId, ownerDentist);
-        Path path = resolveExistingPath(document);
-        return new DecryptingFileResource(path, EncryptionKeyProvider.getOrLoadKek());
+        StoredObject file = resolveExistingFile(document);
+        return new DecryptingFileResource(file, EncryptionKeyProvider.getOrLoadKek());
+    }
+
+    public Resource getDocumentThumbnail(Long documentId, User ownerDentist, ThumbnailService.Size size) {
+        Document document = getOwnedDocument(documentId, ownerDentist);
+        StoredObject file = resolveExistingFile(document);
+        if (!ThumbnailService.isSupported(resolveMediaType(document, file).toString())) {
+            throw new NotFoundException("Aperçu indisponible");
+        }
+        return thumbnailService.thumbnail(file.location(), size);
     }
 
     public DocumentResponseDTO getDocumentMetadata(Long documentId, User ownerDentist) {
@@ -197,8 +221,15 @@ public class DocumentService {
 
     public MediaType resolveMediaType(Long documentId, User ownerDentist) {
         Document document = getOwnedDocument(documentId, ownerDentist);
-        Path path = resolveExistingPath(document);
-        return MediaTypeFactory.getMediaType(path.getFileName().toString())
+        return resolveMediaType(document, resolveExistingFile(document));
+    }
+
+    private MediaType resolveMediaType(Document document, StoredObject file) {
+        // Blob files carry no extension; the original filename has the same one legacy stored names had.
+        String name = document.getFilename() != null && !document.getFilename().isBlank()
+                ? document.getFilename()
+                : file.filename();
+        return MediaTypeFactory.getMediaType(name)
                 .orElseGet(() -> {
                     if (document.getFileType() == null || document.getFileType().isBlank()) {
                         return MediaType.APPLICATION_OCTET_STREAM;
@@ -220,6 +251,8 @@ public class DocumentService {
             document.setRecordStatus(RecordStatus.CANCELLED);
             document.setCancelledAt(LocalDateTime.now());
             documentRepository.save(document);
+            // The blob may be shared with active rows; let the next read recompute usage.
+            storageUsageService.invalidate(ownerDentist.getId());
         }
     }
 
@@ -238,19 +271,13 @@ public class DocumentService {
         return document;
     }
 
-    private Path resolveExistingPath(Document document) {
-        Path path = resolvePath(document.getPathOrUrl());
-        if (path == null || !Files.exists(path)) {
+    private StoredObject resolveExistingFile(Document document) {
+        String pathOrUrl = document.getPathOrUrl();
+        StoredObject file = pathOrUrl == null || pathOrUrl.isBlank() ? null : blobStorage.object(pathOrUrl);
+        if (file == null || !file.exists()) {
             throw new RuntimeException("Fichier introuvable");
         }
-        return path;
-    }
-
-    private Path resolvePath(String pathOrUrl) {
-        if (pathOrUrl == null || pathOrUrl.isBlank()) {
-            return null;
-        }
-        return Paths.get(pathOrUrl).toAbsolutePath().normalize();
+        return file;
     }
 
     private String resolveFileType(MultipartFile file, String extension) {
@@ -28,6 +28,7 @@ import com.cabinetplus.backend.models.User;
 import com.cabinetplus.backend.repositories.EmployeeRepository;
 import com.cabinetplus.backend.repositories.EmployeeWorkingHoursRepository;
 import com.cabinetplus.backend.repositories.UserRepository;
+import com.cabinetplus.backend.security.ClinicPrincipalInvalidationListener;
 import com.cabinetplus.backend.util.PhoneNumberUtil;
 
 import lombok.RequiredArgsConstructor;
@@ -41,6 +42,7 @@ public class EmployeeService {
     private final PasswordEncoder passwordEncoder;
     private final PlanLimitService planLimitService;
     private final EmployeeSetupCodeService employeeSetupCodeService;
+    private final ClinicPrincipalInvalidationListener clinicPrincipalInvalidation;
 
     // --- Create ---
     public EmployeeResponseDTO saveEmployee(EmployeeRequestDTO dto, User dentist) {
@@ -165,6 +167,8 @@ public class EmployeeService {
                 linkedUser.setEmployeeGestionCabinetPinUpdatedAt(LocalDateTime.now());
             }
             userRepository.save(linkedUser);
+            // Permission-only edits touch just the element collection, which doesn't always fire @PostUpdate.
+            clinicPrincipalInvalidation.invalidateUser(linkedUser.getId());
         }
 
         Employee updated = employeeRepository.save(existing);
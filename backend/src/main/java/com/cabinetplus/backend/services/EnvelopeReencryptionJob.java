@@ -0,0 +1,155 @@
+package com.cabinetplus.backend.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cabinetplus.backend.security.EncryptionConverter;
+import com.cabinetplus.backend.security.crypto.EnvelopeStringEncryptor;
+
+/**
+ * Rewrites {@code cpenc:v1:} column values as {@code cpenc:v2:} in batches, one DEK per row.
+ *
+ * <p>Only values that are already v1 envelopes are touched (plaintext stays as is), and each row is updated only if
+ * its encrypted columns still hold the values that were read, so concurrent edits win. A row that can't be decrypted
+ * is logged and skipped, so it doesn't hold back the rest of its table. Disabled by default.</p>
+ */
+@Component
+public class EnvelopeReencryptionJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(EnvelopeReencryptionJob.class);
+
+    private record EncryptedTable(String name, List<String> columns) {
+    }
+
+    private record Progress(int migrated, int skipped) {
+    }
+
+    // Columns converted to TEXT for envelopes in changelogs 017 and 019.
+    private static final List<EncryptedTable> TABLES = List.of(
+            new EncryptedTable("patients", List.of("firstname", "lastname", "phone", "sex")),
+            new EncryptedTable("users", List.of("firstname", "lastname", "clinic_name")),
+            new EncryptedTable("employees", List.of("first_name", "last_name", "gender", "national_id", "phone", "email", "address")),
+            new EncryptedTable("laboratories", List.of("contact_person", "phone_number", "address")),
+            new EncryptedTable("documents", List.of("title", "filename")),
+            new EncryptedTable("appointments", List.of("notes")),
+            new EncryptedTable("treatments", List.of("notes")),
+            new EncryptedTable("prescriptions", List.of("notes")),
+            new EncryptedTable("protheses", List.of("notes")),
+            new EncryptedTable("expenses", List.of("title", "description")),
+            new EncryptedTable("hand_payments", List.of("notes")),
+            new EncryptedTable("laboratory_payments", List.of("notes")),
+            new EncryptedTable("justifications", List.of("title"))
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.crypto.reencrypt.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.crypto.reencrypt.batch-size:200}")
+    private int batchSize;
+
+    public EnvelopeReencryptionJob(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Scheduled(initialDelayString = "${app.crypto.reencrypt.initial-delay-ms:60000}",
+            fixedDelayString = "${app.crypto.reencrypt.delay-ms:3600000}")
+    public void reencryptV1Envelopes() {
+        if (!enabled) return;
+        int total = 0;
+        int skipped = 0;
+        for (EncryptedTable table : TABLES) {
+            try {
+                Progress progress = migrateTable(table);
+                if (progress.migrated() > 0) {
+                    logger.info("Re-encrypted {} {} rows to envelope v2.", progress.migrated(), table.name());
+                }
+                total += progress.migrated();
+                skipped += progress.skipped();
+            } catch (RuntimeException ex) {
+                logger.warn("Envelope re-encryption of {} stopped: {}", table.name(), ex.getMessage());
+            }
+        }
+        if (total > 0 || skipped > 0) {
+            logger.info("Envelope re-encryption done: rowsMigrated={}, rowsSkipped={}", total, skipped);
+        }
+    }
+
+    private Progress migrateTable(EncryptedTable table) {
+        String columns = String.join(", ", table.columns());
+        String anyV1 = String.join(" OR ", table.columns().stream().map(c -> c + " LIKE 'cpenc:v1:%'").toList());
+        String select = "SELECT id, " + columns + " FROM public." + table.name()
+                + " WHERE id > ? AND (" + anyV1 + ") ORDER BY id LIMIT ?";
+        String update = "UPDATE public." + table.name() + " SET "
+                + String.join(", ", table.columns().stream().map(c -> c + " = ?").toList())
+                + " WHERE id = ? AND "
+                + String.join(" AND ", table.columns().stream().map(c -> c + " IS NOT DISTINCT FROM ?").toList());
+
+        int size = Math.max(1, batchSize);
+        long lastId = 0L;
+        int migrated = 0;
+        int skipped = 0;
+        while (true) {
+            long afterId = lastId;
+            List<Object[]> rows = jdbcTemplate.query(select, (rs, rowNum) -> {
+                Object[] row = new Object[table.columns().size() + 1];
+                row[0] = rs.getLong(1);
+                for (int i = 0; i < table.columns().size(); i++) {
+                    row[i + 1] = rs.getString(i + 2);
+                }
+                return row;
+            }, afterId, size);
+            if (rows.isEmpty()) break;
+
+            List<Object[]> updates = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                try {
+                    updates.add(reencryptRow(row));
+                } catch (RuntimeException ex) {
+                    skipped++;
+                    logger.warn("Envelope re-encryption skipped {} id={}: {}", table.name(), row[0], ex.getMessage());
+                }
+            }
+            if (!updates.isEmpty()) {
+                Integer updated = transactionTemplate.execute(status -> {
+                    int count = 0;
+                    for (int result : jdbcTemplate.batchUpdate(update, updates)) {
+                        count += Math.max(0, result);
+                    }
+                    return count;
+                });
+                migrated += updated != null ? updated : 0;
+            }
+
+            lastId = (Long) rows.get(rows.size() - 1)[0];
+            if (rows.size() < size) break;
+        }
+        return new Progress(migrated, skipped);
+    }
+
+    /** Returns update parameters: new values, id, then the values read (for the compare-and-set). */
+    private static Object[] reencryptRow(Object[] row) {
+        EnvelopeStringEncryptor encryptor = EncryptionConverter.sharedEncryptor();
+        EnvelopeStringEncryptor.DataKey rowKey = encryptor.newDataKey();
+        int columnCount = row.length - 1;
+        Object[] params = new Object[columnCount * 2 + 1];
+        for (int i = 0; i < columnCount; i++) {
+            String value = (String) row[i + 1];
+            params[i] = EnvelopeStringEncryptor.isV1(value) ? encryptor.encrypt(encryptor.decrypt(value), rowKey) : value;
+            params[columnCount + 1 + i] = value;
+        }
+        params[columnCount] = row[0];
+        return params;
+    }
+}
@@ -39,6 +39,7 @@ public class LabPortalService {
     private final RealtimeRecipientsService realtimeRecipientsService;
     private final ApplicationEventPublisher eventPublisher;
     private final NotificationService notificationService;
+    private final StorageUsageService storageUsageService;
 
     public LabPortalService(
             LaboratoryAccessService laboratoryAccessService,
@@ -46,7 +47,8 @@ public class LabPortalService {
             LaboratoryPaymentRepository laboratoryPaymentRepository,
             RealtimeRecipientsService realtimeRecipientsService,
             ApplicationEventPublisher eventPublisher,
-            NotificationService notificationService
+            NotificationService notificationService,
+            StorageUsageService storageUsageService
     ) {
         this.laboratoryAccessService = laboratoryAccessService;
         this.prothesisRepository = prothesisRepository;
@@ -54,6 +56,7 @@ public class LabPortalService {
         this.realtimeRecipientsService = realtimeRecipientsService;
         this.eventPublisher = eventPublisher;
         this.notificationService = notificationService;
+        this.storageUsageService = storageUsageService;
     }
 
     public Page<Prothesis> getMyProthesesPaged(
@@ -196,6 +199,7 @@ public class LabPortalService {
                 p.setRecordStatus(RecordStatus.CANCELLED);
                 p.setCancelledAt(LocalDateTime.now());
                 p.setCancelledBy(labUser);
+                storageUsageService.invalidate(p.getPractitioner() != null ? p.getPractitioner().getId() : null);
             }
             if ((p.getCancelReason() == null || p.getCancelReason().isBlank()) && p.getCancelRequestReason() != null) {
                 p.setCancelReason(p.getCancelRequestReason());
@@ -28,6 +28,7 @@ public class LaboratoryConnectionService {
     private final LaboratoryAccessService laboratoryAccessService;
     private final ProthesisRepository prothesisRepository;
     private final LaboratoryPaymentRepository laboratoryPaymentRepository;
+    private final PresenceAudienceService presenceAudienceService;
 
     public LaboratoryConnectionService(
             LaboratoryRepository laboratoryRepository,
@@ -35,7 +36,8 @@ public class LaboratoryConnectionService {
             PublicIdResolutionService publicIdResolutionService,
             LaboratoryAccessService laboratoryAccessService,
             ProthesisRepository prothesisRepository,
-            LaboratoryPaymentRepository laboratoryPaymentRepository
+            LaboratoryPaymentRepository laboratoryPaymentRepository,
+            PresenceAudienceService presenceAudienceService
     ) {
         this.laboratoryRepository = laboratoryRepository;
         this.laboratoryConnectionRepository = laboratoryConnectionRepository;
@@ -43,6 +45,7 @@ public class LaboratoryConnectionService {
         this.laboratoryAccessService = laboratoryAccessService;
         this.prothesisRepository = prothesisRepository;
         this.laboratoryPaymentRepository = laboratoryPaymentRepository;
+        this.presenceAudienceService = presenceAudienceService;
     }
 
     @Transactional
@@ -114,6 +117,7 @@ public class LaboratoryConnectionService {
         connection.setStatus(LaboratoryConnectionStatus.ACCEPTED);
         connection.setRespondedAt(LocalDateTime.now());
         LaboratoryConnection saved = laboratoryConnectionRepository.save(connection);
+        presenceAudienceService.evictConnection(saved.getDentist(), lab);
 
         Laboratory mergeFrom = saved.getMergeFromLaboratory();
         if (mergeFrom != null && saved.getDentist() != null) {
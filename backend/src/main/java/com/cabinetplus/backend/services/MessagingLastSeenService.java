@@ -0,0 +1,123 @@
+package com.cabinetplus.backend.services;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.cabinetplus.backend.models.User;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Messaging "last seen" times, kept in memory and written to {@code users.messaging_last_seen_at} in periodic JDBC
+ * batches. Connects, disconnects, heartbeats and sent messages only record a timestamp here, so a reconnect storm
+ * after a deploy costs one batched single-column update per user instead of a {@code User} merge per event.
+ *
+ * <p>Readers go through {@link #lastSeenAt(User)}, which also sees times not flushed yet. The update never moves the
+ * column backwards, so a late flush from another instance can't overwrite a newer value.</p>
+ */
+@Service
+public class MessagingLastSeenService {
+
+    private static final Logger log = LoggerFactory.getLogger(MessagingLastSeenService.class);
+
+    private static final String UPDATE_SQL = """
+            update users set messaging_last_seen_at = ?
+            where id = ? and (messaging_last_seen_at is null or messaging_last_seen_at < ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final ConcurrentHashMap<Long, LocalDateTime> pendingByUserId = new ConcurrentHashMap<>();
+
+    public MessagingLastSeenService(
+            JdbcTemplate jdbcTemplate,
+            @Value("${app.messaging.last-seen.flush-batch-size:500}") int batchSize
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /** Records that {@code user} was seen at {@code at} (now when {@code null}); persisted by the next flush. */
+    public void touch(User user, LocalDateTime at) {
+        if (user == null || user.getId() == null) return;
+        LocalDateTime seenAt = at != null ? at : LocalDateTime.now();
+        touch(user.getId(), seenAt);
+        user.setMessagingLastSeenAt(latest(user.getMessagingLastSeenAt(), seenAt));
+    }
+
+    /** Same as {@link #touch(User, LocalDateTime)} for callers that only have the id. */
+    public void touch(Long userId, LocalDateTime at) {
+        if (userId == null) return;
+        pendingByUserId.merge(userId, at != null ? at : LocalDateTime.now(), MessagingLastSeenService::latest);
+    }
+
+    /** Latest of the stored last-seen time and one still waiting to be flushed. */
+    public LocalDateTime lastSeenAt(User user) {
+        if (user == null) return null;
+        LocalDateTime pending = user.getId() != null ? pendingByUserId.get(user.getId()) : null;
+        return latest(user.getMessagingLastSeenAt(), pending);
+    }
+
+    /** Writes the pending times; returns how many users were flushed. */
+    @Scheduled(
+            initialDelayString = "${app.messaging.last-seen.flush-interval-ms:5000}",
+            fixedDelayString = "${app.messaging.last-seen.flush-interval-ms:5000}"
+    )
+    public int flush() {
+        if (pendingByUserId.isEmpty()) return 0;
+        List<Map.Entry<Long, LocalDateTime>> drained = new ArrayList<>(pendingByUserId.size());
+        for (Map.Entry<Long, LocalDateTime> e : pendingByUserId.entrySet()) {
+            // Only removed if untouched since read; a newer time stays for the next flush.
+            if (pendingByUserId.remove(e.getKey(), e.getValue())) {
+                drained.add(Map.entry(e.getKey(), e.getValue()));
+            }
+        }
+        for (int from = 0; from < drained.size(); from += batchSize) {
+            List<Map.Entry<Long, LocalDateTime>> chunk = drained.subList(from, Math.min(drained.size(), from + batchSize));
+            List<Object[]> args = new ArrayList<>(chunk.size());
+            for (Map.Entry<Long, LocalDateTime> e : chunk) {
+                Timestamp seenAt = Timestamp.valueOf(e.getValue());
+                args.add(new Object[] { seenAt, e.getKey(), seenAt });
+            }
+            try {
+                jdbcTemplate.batchUpdate(UPDATE_SQL, args);
+            } catch (RuntimeException ex) {
+                log.warn("Could not persist messaging last-seen times of {} user(s), retrying on next flush", chunk.size(), ex);
+                for (Map.Entry<Long, LocalDateTime> e : chunk) {
+                    pendingByUserId.merge(e.getKey(), e.getValue(), MessagingLastSeenService::latest);
+                }
+            }
+        }
+        return drained.size();
+    }
+
+    int pendingCount() {
+        return pendingByUserId.size();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            log.warn("Could not flush messaging last-seen times on shutdown", ex);
+        }
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return a.isAfter(b) ? a : b;
+    }
+}
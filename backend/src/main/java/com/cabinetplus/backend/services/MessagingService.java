@@ -17,7 +17,6 @@ import org.springframework.web.server.ResponseStatusException;
 import com.cabinetplus.backend.dto.MessagingContactResponse;
 import com.cabinetplus.backend.dto.MessagingMessageCreateRequest;
 import com.cabinetplus.backend.dto.MessagingMessageResponse;
-import com.cabinetplus.backend.dto.MessagingPresenceResponse;
 import com.cabinetplus.backend.dto.MessagingThreadSummaryResponse;
 import com.cabinetplus.backend.events.AdminGroupMessageCreatedEvent;
 import com.cabinetplus.backend.events.MessagingMessageCreatedEvent;
@@ -62,6 +61,7 @@ public class MessagingService {
     private final LaboratoryAccessService laboratoryAccessService;
     private final ApplicationEventPublisher eventPublisher;
     private final MessagingWebSocketHandler messagingWebSocketHandler;
+    private final MessagingLastSeenService lastSeenService;
 
     @Transactional(readOnly = true)
     public List<MessagingContactResponse> listContacts(User actor) {
@@ -117,12 +117,10 @@ public class MessagingService {
         // Notify admins only (avoid leaking internal admin messages to non-admin websocket clients).
         List<User> admins = userRepository.findByRole(UserRole.ADMIN);
         MessagingRealtimeEvent event = new MessagingRealtimeEvent("ADMIN_GROUP_MESSAGE_CREATED", null, res, null);
-        for (User admin : admins) {
-            if (admin == null) continue;
-            String phone = admin.getPhoneNumber();
-            if (phone == null || phone.isBlank()) continue;
-            messagingWebSocketHandler.sendToUser(phone, event);
-        }
+        messagingWebSocketHandler.sendToUsers(admins.stream()
+                .filter(admin -> admin != null && admin.getPhoneNumber() != null && !admin.getPhoneNumber().isBlank())
+                .map(User::getPhoneNumber)
+                .toList(), event);
 
         try {
             List<Long> recipientIds = admins.stream()
@@ -203,22 +201,12 @@ public class MessagingService {
         threadRepository.save(thread);
 
         if (actor != null) {
-            try {
-                actor.setMessagingLastSeenAt(now);
-                userRepository.save(actor);
-            } catch (Exception ignored) {
-                // ignore presence persistence failures
-            }
+            lastSeenService.touch(actor, now);
 
             if (actor.getPublicId() != null) {
                 try {
                     boolean onlineNow = messagingWebSocketHandler.isOnlineForDisplay(actor.getPhoneNumber());
-                    messagingWebSocketHandler.sendToAll(new MessagingRealtimeEvent(
-                            "PRESENCE_UPDATED",
-                            null,
-                            null,
-                            new MessagingPresenceResponse(actor.getPublicId(), onlineNow, now)
-                    ));
+                    messagingWebSocketHandler.publishPresence(actor, onlineNow, now);
                 } catch (Exception ignored) {
                     // ignore presence broadcast failures
                 }
@@ -352,7 +340,7 @@ public class MessagingService {
 
     private MessagingContactResponse toContact(User user, String badge, String meta, Long ownerDentistId) {
         if (user == null) return null;
-        LocalDateTime lastSeenAt = user.getMessagingLastSeenAt();
+        LocalDateTime lastSeenAt = lastSeenService.lastSeenAt(user);
         boolean online = messagingWebSocketHandler.isOnlineForDisplay(user.getPhoneNumber()) || isRecentlySeen(lastSeenAt);
         UUID detailsPublicId = null;
         try {
@@ -480,7 +468,7 @@ public class MessagingService {
         }
 
         boolean otherOnline = other != null && messagingWebSocketHandler.isOnlineForDisplay(other.getPhoneNumber());
-        LocalDateTime otherLastSeenAt = other != null ? other.getMessagingLastSeenAt() : null;
+        LocalDateTime otherLastSeenAt = other != null ? lastSeenService.lastSeenAt(other) : null;
         if (!otherOnline) otherOnline = isRecentlySeen(otherLastSeenAt);
 
         boolean lastMessageFromViewer = false;
@@ -730,7 +718,7 @@ public class MessagingService {
             User labUser = lab != null ? lab.getCreatedBy() : null;
             if (labUser == null || labUser.getPublicId() == null) continue;
             String label = (lab.getName() != null && !lab.getName().isBlank()) ? lab.getName().trim() : fullName(labUser);
-            LocalDateTime lastSeenAt = labUser.getMessagingLastSeenAt();
+            LocalDateTime lastSeenAt = lastSeenService.lastSeenAt(labUser);
             boolean online = messagingWebSocketHandler.isOnlineForDisplay(labUser.getPhoneNumber()) || isRecentlySeen(lastSeenAt);
             out.add(new MessagingContactResponse(
                     labUser.getPublicId(),
@@ -0,0 +1,126 @@
+package com.cabinetplus.backend.services;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Generated PDFs, cached by a fingerprint of everything they show and served with that fingerprint as {@code ETag}.
+ *
+ * <p>Each endpoint feeds the rows it renders into a {@link Fingerprint}. Any change to one of them (a payment added,
+ * a treatment repriced, the clinic renamed...) gives a new fingerprint, so nothing needs invalidating: stale entries
+ * just stop being asked for and age out of the LRU. A browser sending back the current fingerprint gets a 304 without
+ * the PDF being rendered or sent.</p>
+ */
+@Service
+public class PdfCacheService {
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedBytes;
+
+    public PdfCacheService(
+            @Value("${app.pdf.cache.max-bytes:33554432}") long maxBytes,
+            @Value("${app.pdf.cache.max-entry-bytes:2097152}") long maxEntryBytes
+    ) {
+        this.maxBytes = Math.max(0L, maxBytes);
+        this.maxEntryBytes = Math.max(0L, Math.min(maxEntryBytes, this.maxBytes));
+    }
+
+    /** Digest of the values a PDF is rendered from. */
+    public static final class Fingerprint {
+
+        private final MessageDigest digest;
+
+        private Fingerprint(String kind) {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IllegalStateException("SHA-256 unavailable", ex);
+            }
+            add(kind, PdfRenderingService.LAYOUT_VERSION);
+        }
+
+        public Fingerprint add(Object... values) {
+            for (Object value : values) {
+                // Length-prefixed, so ("ab", "c") and ("a", "bc") differ; null differs from "null".
+                String text = value == null ? "" : value.toString();
+                digest.update((byte) (value == null ? 0 : 1));
+                digest.update(Integer.toString(text.length()).getBytes(StandardCharsets.US_ASCII));
+                digest.update((byte) ':');
+                digest.update(text.getBytes(StandardCharsets.UTF_8));
+            }
+            return this;
+        }
+
+        private String etag() {
+            return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        }
+    }
+
+    public Fingerprint fingerprint(String kind) {
+        return new Fingerprint(kind);
+    }
+
+    /**
+     * Answers 304 when the client already has this version, otherwise sends the cached PDF, rendering and caching it
+     * on a miss.
+     */
+    public void serve(
+            Fingerprint fingerprint,
+            HttpServletRequest request,
+            HttpServletResponse response,
+            String contentDisposition,
+            Supplier<byte[]> render
+    ) throws IOException {
+        String etag = fingerprint.etag();
+        // Private: patient data must not land in shared caches; no-cache: always revalidate, which is cheap.
+        response.setHeader("Cache-Control", "private, no-cache");
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+        byte[] pdf = get(etag);
+        if (pdf == null) {
+            pdf = render.get();
+            put(etag, pdf);
+        }
+        response.setContentType("application/pdf");
+        response.setHeader("Content-Disposition", contentDisposition);
+        response.setContentLength(pdf.length);
+        response.getOutputStream().write(pdf);
+    }
+
+    synchronized byte[] get(String etag) {
+        return entries.get(etag);
+    }
+
+    synchronized void put(String etag, byte[] pdf) {
+        if (pdf.length > maxEntryBytes) {
+            return;
+        }
+        byte[] previous = entries.put(etag, pdf);
+        cachedBytes += pdf.length - (previous != null ? previous.length : 0);
+        var eldest = entries.entrySet().iterator();
+        while (cachedBytes > maxBytes && eldest.hasNext()) {
+            cachedBytes -= eldest.next().getValue().length;
+            eldest.remove();
+        }
+    }
+
+    synchronized long cachedBytes() {
+        return cachedBytes;
+    }
+}
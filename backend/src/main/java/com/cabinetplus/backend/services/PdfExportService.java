@@ -0,0 +1,497 @@
+package com.cabinetplus.backend.services;
+
+import com.cabinetplus.backend.dto.PdfExportJobResponse;
+import com.cabinetplus.backend.dto.PdfExportRequest;
+import com.cabinetplus.backend.enums.NotificationType;
+import com.cabinetplus.backend.enums.PdfExportKind;
+import com.cabinetplus.backend.enums.PdfExportStatus;
+import com.cabinetplus.backend.enums.RecordStatus;
+import com.cabinetplus.backend.exceptions.BadRequestException;
+import com.cabinetplus.backend.exceptions.ConflictException;
+import com.cabinetplus.backend.exceptions.NotFoundException;
+import com.cabinetplus.backend.exceptions.TooManyRequestsException;
+import com.cabinetplus.backend.models.Devise;
+import com.cabinetplus.backend.models.Justification;
+import com.cabinetplus.backend.models.Patient;
+import com.cabinetplus.backend.models.PdfExportJob;
+import com.cabinetplus.backend.models.Prescription;
+import com.cabinetplus.backend.models.User;
+import com.cabinetplus.backend.repositories.DeviseRepository;
+import com.cabinetplus.backend.repositories.JustificationRepository;
+import com.cabinetplus.backend.repositories.PatientRepository;
+import com.cabinetplus.backend.repositories.PdfExportJobRepository;
+import com.cabinetplus.backend.repositories.PrescriptionRepository;
+import com.cabinetplus.backend.repositories.UserRepository;
+import com.cabinetplus.backend.security.crypto.EncryptedFileIO;
+import com.cabinetplus.backend.security.crypto.EncryptionKeyProvider;
+import com.cabinetplus.backend.storage.BlobStorage;
+import com.cabinetplus.backend.storage.StoredObject;
+import com.cabinetplus.backend.util.StoredZipWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Bulk PDF exports (a patient's whole file, or the devis of a period) built in the background and delivered as one
+ * ZIP.
+ *
+ * <p>Submitting only records the job and queues it on a small worker pool, so a large export never holds a request
+ * thread; the client polls the job, and its creator is notified when the archive is ready. Each document is loaded
+ * and rendered in its own short read-only transaction, then streamed into a ZIP that is encrypted as it is written
+ * and stored like any other file. The pool, its queue and the number of unfinished jobs per clinic are bounded;
+ * beyond that a submission gets a 429.</p>
+ */
+@Service
+public class PdfExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfExportService.class);
+
+    private static final String EXPORT_PREFIX = "uploads/exports/";
+    private static final Set<PdfExportStatus> UNFINISHED = EnumSet.of(PdfExportStatus.QUEUED, PdfExportStatus.RUNNING);
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final String GENERIC_ERROR = "Export impossible, reessayez plus tard";
+
+    private enum PartKind { FICHE, PRESCRIPTION, JUSTIFICATION, DEVIS }
+
+    /** One PDF of the archive; rendered when its turn comes. */
+    private record Part(PartKind kind, Long id, String name, LocalDateTime date) {}
+
+    /** Failure whose message can be shown to the user as is. */
+    private static final class ExportException extends RuntimeException {
+        ExportException(String message) {
+            super(message);
+        }
+    }
+
+    public record ExportDownload(String filename, long contentLength, StreamingResponseBody body) {}
+
+    private final PdfExportJobRepository jobRepository;
+    private final UserRepository userRepository;
+    private final PatientRepository patientRepository;
+    private final PrescriptionRepository prescriptionRepository;
+    private final JustificationRepository justificationRepository;
+    private final DeviseRepository deviseRepository;
+    private final PublicIdResolutionService publicIdResolutionService;
+    private final ClinicalPdfService clinicalPdfService;
+    private final PatientFichePdfService patientFichePdfService;
+    private final NotificationService notificationService;
+    private final BlobStorage blobStorage;
+    private final TransactionTemplate readOnly;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor workers;
+    private final int maxActivePerClinic;
+    private final int maxDocuments;
+    private final long maxRangeDays;
+    private final Duration ttl;
+    private final Duration staleAfter;
+    // Jobs being built on this node; the cleanup leaves them alone.
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    public PdfExportService(
+            PdfExportJobRepository jobRepository,
+            UserRepository userRepository,
+            PatientRepository patientRepository,
+            PrescriptionRepository prescriptionRepository,
+            JustificationRepository justificationRepository,
+            DeviseRepository deviseRepository,
+            PublicIdResolutionService publicIdResolutionService,
+            ClinicalPdfService clinicalPdfService,
+            PatientFichePdfService patientFichePdfService,
+            NotificationService notificationService,
+            BlobStorage blobStorage,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            @Value("${app.pdf.export.workers:2}") int workerCount,
+            @Value("${app.pdf.export.queue-capacity:20}") int queueCapacity,
+            @Value("${app.pdf.export.max-active-per-clinic:2}") int maxActivePerClinic,
+            @Value("${app.pdf.export.max-documents:500}") int maxDocuments,
+            @Value("${app.pdf.export.max-range-days:366}") long maxRangeDays,
+            @Value("${app.pdf.export.ttl-hours:24}") long ttlHours,
+            @Value("${app.pdf.export.stale-after-minutes:120}") long staleAfterMinutes
+    ) {
+        this.jobRepository = jobRepository;
+        this.userRepository = userRepository;
+        this.patientRepository = patientRepository;
+        this.prescriptionRepository = prescriptionRepository;
+        this.justificationRepository = justificationRepository;
+        this.deviseRepository = deviseRepository;
+        this.publicIdResolutionService = publicIdResolutionService;
+        this.clinicalPdfService = clinicalPdfService;
+        this.patientFichePdfService = patientFichePdfService;
+        this.notificationService = notificationService;
+        this.blobStorage = blobStorage;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        int threads = Math.max(1, workerCount);
+        AtomicInteger sequence = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(
+                threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, queueCapacity)),
+                task -> {
+                    Thread thread = new Thread(task, "pdf-export-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.workers.allowCoreThreadTimeOut(true);
+        this.maxActivePerClinic = Math.max(1, maxActivePerClinic);
+        this.maxDocuments = Math.max(1, maxDocuments);
+        this.maxRangeDays = Math.max(1L, maxRangeDays);
+        this.ttl = Duration.ofHours(Math.max(1L, ttlHours));
+        this.staleAfter = Duration.ofMinutes(Math.max(1L, staleAfterMinutes));
+    }
+
+    /** Fiche, ordonnances and justificatifs of one patient. */
+    public PdfExportJobResponse submitPatientHistory(String patientId, User clinicOwner, User actor) {
+        Patient patient = publicIdResolutionService.requirePatientOwnedBy(patientId, clinicOwner);
+        PdfExportJob job = newJob(PdfExportKind.PATIENT_HISTORY, clinicOwner, actor);
+        job.setPatient(patient);
+        return enqueue(job);
+    }
+
+    /** Devis created between {@code from} and {@code to}, both days included. */
+    public PdfExportJobResponse submitDevisRange(PdfExportRequest request, User clinicOwner, User actor) {
+        if (request.to().isBefore(request.from())) {
+            throw new BadRequestException(Map.of("to", "La date de fin doit suivre la date de debut"));
+        }
+        if (ChronoUnit.DAYS.between(request.from(), request.to()) >= maxRangeDays) {
+            throw new BadRequestException(Map.of("to", "Periode trop longue (max " + maxRangeDays + " jours)"));
+        }
+        PdfExportJob job = newJob(PdfExportKind.DEVIS_RANGE, clinicOwner, actor);
+        job.setFromDate(request.from());
+        job.setToDate(request.to());
+        return enqueue(job);
+    }
+
+    /** The actor's recent exports, newest first. */
+    public List<PdfExportJobResponse> list(User clinicOwner, User actor) {
+        return jobRepository.findTop20ByOwnerAndCreatedByAndExpiresAtAfterOrderByCreatedAtDesc(clinicOwner, actor, LocalDateTime.now())
+                .stream()
+                .map(PdfExportService::toResponse)
+                .toList();
+    }
+
+    public PdfExportJobResponse status(String jobId, User clinicOwner, User actor) {
+        return toResponse(requireJob(jobId, clinicOwner, actor));
+    }
+
+    /** The decrypted ZIP of a {@code READY} job; a {@link ConflictException} while it is still being built. */
+    public ExportDownload download(String jobId, User clinicOwner, User actor) {
+        PdfExportJob job = requireJob(jobId, clinicOwner, actor);
+        if (job.getStatus() != PdfExportStatus.READY || job.getStorageLocation() == null) {
+            throw new ConflictException("Export pas encore pret");
+        }
+        StoredObject archive = blobStorage.object(job.getStorageLocation());
+        if (!archive.exists()) {
+            throw new NotFoundException("Export introuvable");
+        }
+        byte[] kek = EncryptionKeyProvider.getOrLoadKek();
+        StreamingResponseBody body = out -> {
+            try (InputStream in = EncryptedFileIO.openDecryptedStream(archive, kek, 0L)) {
+                in.transferTo(out);
+            }
+        };
+        return new ExportDownload(filename(job), job.getSizeBytes(), body);
+    }
+
+    /** Deletes expired exports, and fails jobs left unfinished by a node that stopped. */
+    @Scheduled(
+            initialDelayString = "${app.pdf.export.cleanup-initial-delay-ms:600000}",
+            fixedDelayString = "${app.pdf.export.cleanup-interval-ms:3600000}"
+    )
+    public int purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        for (PdfExportJob job : jobRepository.findTop100ByStatusInAndCreatedAtBefore(UNFINISHED, now.minus(staleAfter))) {
+            if (!running.contains(job.getId())) {
+                fail(job, GENERIC_ERROR);
+            }
+        }
+
+        int purged = 0;
+        int batchPurged;
+        List<PdfExportJob> expired;
+        do {
+            batchPurged = 0;
+            expired = jobRepository.findTop100ByExpiresAtBeforeOrderByExpiresAtAsc(now);
+            for (PdfExportJob job : expired) {
+                if (job.getStorageLocation() != null) {
+                    try {
+                        blobStorage.delete(job.getStorageLocation());
+                    } catch (IOException ex) {
+                        log.warn("Could not delete export archive {}", job.getStorageLocation(), ex);
+                        continue;
+                    }
+                }
+                jobRepository.delete(job);
+                batchPurged++;
+            }
+            purged += batchPurged;
+        } while (expired.size() == 100 && batchPurged > 0);
+        if (purged > 0) {
+            log.info("Purged {} expired PDF export(s)", purged);
+        }
+        return purged;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private PdfExportJob newJob(PdfExportKind kind, User clinicOwner, User actor) {
+        LocalDateTime now = LocalDateTime.now();
+        PdfExportJob job = new PdfExportJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setOwner(clinicOwner);
+        job.setCreatedBy(actor);
+        job.setKind(kind);
+        job.setStatus(PdfExportStatus.QUEUED);
+        job.setCreatedAt(now);
+        job.setExpiresAt(now.plus(ttl));
+        return job;
+    }
+
+    private PdfExportJobResponse enqueue(PdfExportJob job) {
+        if (jobRepository.countByOwnerAndStatusIn(job.getOwner(), UNFINISHED) >= maxActivePerClinic) {
+            throw new TooManyRequestsException("Un export est deja en cours, reessayez quand il sera termine");
+        }
+        PdfExportJob saved = jobRepository.save(job);
+        try {
+            workers.execute(() -> run(saved.getId()));
+        } catch (RejectedExecutionException ex) {
+            jobRepository.delete(saved);
+            throw new TooManyRequestsException("Trop d'exports en cours, reessayez dans quelques minutes");
+        }
+        return toResponse(saved);
+    }
+
+    void run(String jobId) {
+        PdfExportJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || job.getStatus() != PdfExportStatus.QUEUED) return;
+        running.add(jobId);
+        Path tmp = null;
+        try {
+            job.setStatus(PdfExportStatus.RUNNING);
+            job = jobRepository.save(job);
+
+            List<Part> parts = readOnly.execute(status -> plan(jobId));
+            tmp = Files.createTempFile("pdf-export-", ".part");
+            try (OutputStream out = EncryptedFileIO.openEncryptingStream(Files.newOutputStream(tmp), EncryptionKeyProvider.getOrLoadKek());
+                 StoredZipWriter zip = new StoredZipWriter(out)) {
+                for (Part part : parts) {
+                    byte[] pdf = readOnly.execute(status -> render(part));
+                    long modified = part.date().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                    CRC32 crc = new CRC32();
+                    crc.update(pdf);
+                    zip.putEntry(new StoredZipWriter.Entry(part.name(), pdf.length, crc.getValue(), modified), new ByteArrayInputStream(pdf));
+                }
+            }
+            String location = blobStorage.locationFor(EXPORT_PREFIX + jobId + ".zip");
+            blobStorage.put(location, tmp);
+
+            job.setStatus(PdfExportStatus.READY);
+            job.setDocumentCount(parts.size());
+            job.setSizeBytes(EncryptedFileIO.plaintextLength(blobStorage.object(location)));
+            job.setStorageLocation(location);
+            job.setCompletedAt(LocalDateTime.now());
+            job = jobRepository.save(job);
+            notifyCreator(job);
+        } catch (ExportException ex) {
+            fail(job, ex.getMessage());
+        } catch (Exception ex) {
+            log.warn("PDF export {} failed", jobId, ex);
+            fail(job, GENERIC_ERROR);
+        } finally {
+            running.remove(jobId);
+            deleteQuietly(tmp);
+        }
+    }
+
+    private List<Part> plan(String jobId) {
+        PdfExportJob job = jobRepository.findById(jobId).orElseThrow(() -> new ExportException("Export introuvable"));
+        User owner = job.getOwner();
+        List<User> practitioners = new ArrayList<>(userRepository.findByOwnerDentist(owner));
+        practitioners.add(0, owner);
+
+        List<Part> parts = new ArrayList<>();
+        if (job.getKind() == PdfExportKind.PATIENT_HISTORY) {
+            Patient patient = job.getPatient();
+            if (patient == null) throw new ExportException("Patient introuvable");
+            parts.add(new Part(PartKind.FICHE, patient.getId(), "fiche_patient.pdf", LocalDateTime.now()));
+            for (Prescription rx : prescriptionRepository.findByPatientIdAndPractitionerInAndRecordStatusOrderByDateDesc(
+                    patient.getId(), practitioners, RecordStatus.ACTIVE)) {
+                parts.add(new Part(PartKind.PRESCRIPTION, rx.getId(),
+                        "ordonnances/ordonnance_" + fileDate(rx.getDate()) + "_" + rx.getId() + ".pdf", dateOrNow(rx.getDate())));
+            }
+            for (Justification justification : justificationRepository.findByPatientAndPractitionerInAndRecordStatusOrderByDateAsc(
+                    patient, practitioners, RecordStatus.ACTIVE)) {
+                parts.add(new Part(PartKind.JUSTIFICATION, justification.getId(),
+                        "justificatifs/" + slug(justification.getTitle(), "justificatif") + "_" + justification.getId() + ".pdf",
+                        dateOrNow(justification.getDate())));
+            }
+        } else {
+            for (Devise devise : deviseRepository.findByPractitionerAndCreatedAtBetweenOrderByCreatedAtAsc(
+                    owner, job.getFromDate().atStartOfDay(), job.getToDate().atTime(LocalTime.MAX))) {
+                parts.add(new Part(PartKind.DEVIS, devise.getId(),
+                        "devis/devis_" + slug(devise.getTitle(), "devis") + "_" + devise.getId() + ".pdf", dateOrNow(devise.getCreatedAt())));
+            }
+        }
+        if (parts.isEmpty()) {
+            throw new ExportException("Aucun document a exporter");
+        }
+        if (parts.size() > maxDocuments) {
+            throw new ExportException("Export trop volumineux (max " + maxDocuments + " documents), reduisez la periode");
+        }
+        return parts;
+    }
+
+    private byte[] render(Part part) {
+        return switch (part.kind()) {
+            case FICHE -> {
+                Patient patient = patientRepository.findById(part.id()).orElseThrow(() -> new ExportException("Patient introuvable"));
+                yield patientFichePdfService.renderPatientFiche(patient.getCreatedBy(), patient);
+            }
+            case PRESCRIPTION -> {
+                Prescription rx = prescriptionRepository.findByIdWithMedications(part.id())
+                        .orElseThrow(() -> new ExportException("Ordonnance supprimee pendant l'export, relancez-le"));
+                yield clinicalPdfService.prescriptionPdf(rx.getPractitioner(), rx);
+            }
+            case JUSTIFICATION -> {
+                Justification justification = justificationRepository.findById(part.id())
+                        .orElseThrow(() -> new ExportException("Justificatif supprime pendant l'export, relancez-le"));
+                yield clinicalPdfService.justificationPdf(justification.getPractitioner(), justification);
+            }
+            case DEVIS -> {
+                Devise devise = deviseRepository.findById(part.id())
+                        .orElseThrow(() -> new ExportException("Devis supprime pendant l'export, relancez-le"));
+                yield clinicalPdfService.devisPdf(devise.getPractitioner(), devise);
+            }
+        };
+    }
+
+    private void fail(PdfExportJob job, String error) {
+        if (job == null) return;
+        try {
+            job.setStatus(PdfExportStatus.FAILED);
+            job.setError(error);
+            job.setCompletedAt(LocalDateTime.now());
+            notifyCreator(jobRepository.save(job));
+        } catch (RuntimeException ex) {
+            log.warn("Could not record failure of PDF export {}", job.getId(), ex);
+        }
+    }
+
+    private void notifyCreator(PdfExportJob job) {
+        if (job.getCreatedBy() == null) return;
+        try {
+            User recipient = userRepository.findById(job.getCreatedBy().getId()).orElse(null);
+            if (recipient == null) return;
+            boolean ready = job.getStatus() == PdfExportStatus.READY;
+            String what = job.getKind() == PdfExportKind.PATIENT_HISTORY ? "du dossier patient" : "des devis";
+            notificationService.create(
+                    recipient,
+                    ready ? NotificationType.PDF_EXPORT_READY : NotificationType.PDF_EXPORT_FAILED,
+                    ready ? "Export PDF pret" : "Export PDF echoue",
+                    ready ? "L'export " + what + " (" + job.getDocumentCount() + " document(s)) est pret a telecharger"
+                            : "L'export " + what + " a echoue : " + job.getError(),
+                    null,
+                    objectMapper.writeValueAsString(Map.of("exportId", job.getId(), "status", job.getStatus().name()))
+            );
+        } catch (Exception ex) {
+            log.warn("Could not notify PDF export {}", job.getId(), ex);
+        }
+    }
+
+    private PdfExportJob requireJob(String jobId, User clinicOwner, User actor) {
+        if (jobId == null || clinicOwner == null || actor == null || actor.getId() == null) {
+            throw new NotFoundException("Export introuvable");
+        }
+        // Employees only see the exports they started; the clinic owner sees all of them.
+        return jobRepository.findByIdAndOwner(jobId, clinicOwner)
+                .filter(job -> actor.getId().equals(clinicOwner.getId())
+                        || (job.getCreatedBy() != null && actor.getId().equals(job.getCreatedBy().getId())))
+                .filter(job -> job.getExpiresAt().isAfter(LocalDateTime.now()))
+                .orElseThrow(() -> new NotFoundException("Export introuvable"));
+    }
+
+    private static PdfExportJobResponse toResponse(PdfExportJob job) {
+        return new PdfExportJobResponse(
+                job.getId(),
+                job.getKind(),
+                job.getStatus(),
+                job.getFromDate(),
+                job.getToDate(),
+                job.getDocumentCount(),
+                job.getSizeBytes(),
+                job.getError(),
+                job.getCreatedAt(),
+                job.getCompletedAt(),
+                job.getExpiresAt()
+        );
+    }
+
+    private static String filename(PdfExportJob job) {
+        if (job.getKind() == PdfExportKind.DEVIS_RANGE) {
+            return "devis_" + FILE_DATE.format(job.getFromDate()) + "_" + FILE_DATE.format(job.getToDate()) + ".zip";
+        }
+        return "dossier_patient_" + FILE_DATE.format(job.getCreatedAt()) + ".zip";
+    }
+
+    private static String fileDate(LocalDateTime date) {
+        return date != null ? FILE_DATE.format(date) : "sans_date";
+    }
+
+    private static LocalDateTime dateOrNow(LocalDateTime date) {
+        return date != null ? date : LocalDateTime.now();
+    }
+
+    private static String slug(String title, String fallback) {
+        if (title == null) return fallback;
+        String slug = title.trim().toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", "_").replaceAll("^_+|_+$", "");
+        if (slug.isEmpty()) return fallback;
+        return slug.length() > 60 ? slug.substring(0, 60) : slug;
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            log.warn("Could not delete export temp file {}", path, ex);
+        }
+    }
+}
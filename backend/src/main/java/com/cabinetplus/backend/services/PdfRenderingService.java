@@ -0,0 +1,354 @@
+package com.cabinetplus.backend.services;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.cabinetplus.backend.models.Patient;
+import com.cabinetplus.backend.models.User;
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Element;
+import com.lowagie.text.Font;
+import com.lowagie.text.FontFactory;
+import com.lowagie.text.PageSize;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.Phrase;
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.PdfPCell;
+import com.lowagie.text.pdf.PdfPTable;
+import com.lowagie.text.pdf.PdfWriter;
+import com.lowagie.text.pdf.draw.LineSeparator;
+
+/**
+ * Shared pipeline for the generated PDFs (devis, ordonnances, justificatifs, fiches patient): A4 page setup, fonts,
+ * clinic header, tables and signature block.
+ *
+ * <p>Fonts are created once per {@link Layout}; they are never modified after creation, so documents rendered
+ * concurrently share them. The clinic header lines (upper-cased name, doctor, formatted phone) are kept per clinic and
+ * rebuilt as soon as the profile fields they come from change.</p>
+ */
+@Service
+public class PdfRenderingService {
+
+    public static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    /** Part of every {@link PdfCacheService.Fingerprint}: bump it when the layout changes so cached PDFs are redone. */
+    public static final int LAYOUT_VERSION = 1;
+
+    private static final String SIGNATURE = "Signature & Cachet\n\n\n___________________";
+
+    /** Fonts and separator of a document family. */
+    public enum Layout {
+        /** Letter-style documents: devis, ordonnances, justificatifs. */
+        STANDARD(20, 12, 11, 1f, Color.LIGHT_GRAY),
+        /** Dense tabular reports: fiche patient. */
+        COMPACT(18, 12, 9, 0.5f, Color.BLACK);
+
+        public final Font title;
+        public final Font subtitle;
+        public final Font body;
+        public final Font bodyBold;
+        public final Font note;
+        public final Font muted;
+        private final float separatorWidth;
+        private final Color separatorColor;
+
+        Layout(float titleSize, float subtitleSize, float bodySize, float separatorWidth, Color separatorColor) {
+            this.title = FontFactory.getFont(FontFactory.HELVETICA_BOLD, titleSize);
+            this.subtitle = FontFactory.getFont(FontFactory.HELVETICA_BOLD, subtitleSize);
+            this.body = FontFactory.getFont(FontFactory.HELVETICA, bodySize);
+            this.bodyBold = FontFactory.getFont(FontFactory.HELVETICA_BOLD, bodySize);
+            this.note = FontFactory.getFont(FontFactory.HELVETICA_OBLIQUE, 10, Color.GRAY);
+            this.muted = FontFactory.getFont(FontFactory.HELVETICA_OBLIQUE, 10, new Color(70, 70, 70));
+            this.separatorWidth = separatorWidth;
+            this.separatorColor = separatorColor;
+        }
+    }
+
+    /** Writes the content of a document opened by {@link #render(PdfBody)}. */
+    @FunctionalInterface
+    public interface PdfBody {
+        void write(Document document, PdfWriter writer) throws DocumentException;
+    }
+
+    /** Profile fields the header is built from; a cached header is reused while they are unchanged. */
+    private record HeaderSource(String clinicName, String firstname, String lastname, String address, String phone) {
+        static HeaderSource of(User user) {
+            return new HeaderSource(user.getClinicName(), user.getFirstname(), user.getLastname(), user.getAddress(),
+                    user.getPhoneNumber());
+        }
+    }
+
+    private record ClinicHeader(HeaderSource source, String clinicName, String doctor, String address, String phone) {
+    }
+
+    private final Map<Long, ClinicHeader> headers;
+
+    public PdfRenderingService(@Value("${app.pdf.header-cache-size:1000}") int headerCacheSize) {
+        int maxEntries = Math.max(1, headerCacheSize);
+        this.headers = new LinkedHashMap<>(Math.min(maxEntries, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ClinicHeader> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /** Renders an A4 document and returns its bytes. */
+    public byte[] render(PdfBody body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024);
+        Document document = new Document(PageSize.A4, 50, 50, 60, 60);
+        try {
+            PdfWriter writer = PdfWriter.getInstance(document, out);
+            document.open();
+            body.write(document, writer);
+        } finally {
+            if (document.isOpen()) {
+                document.close();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /** Values the clinic header of {@code clinicUser} is drawn from, for {@link PdfCacheService.Fingerprint}. */
+    public static Object headerFingerprint(User clinicUser) {
+        return HeaderSource.of(clinicUser);
+    }
+
+    /** Clinic name, doctor, address and phone of {@code clinicUser}, followed by a separator. */
+    public void addClinicHeader(Document document, User clinicUser, Layout layout) {
+        ClinicHeader header = clinicHeader(clinicUser);
+        if (header.clinicName() != null) {
+            document.add(new Paragraph(header.clinicName(), layout.title));
+        }
+        document.add(new Paragraph(header.doctor(), layout.subtitle));
+        if (header.address() != null) {
+            document.add(new Paragraph(header.address(), layout.body));
+        }
+        if (header.phone() != null) {
+            document.add(new Paragraph("Tel: " + header.phone(), layout.body));
+        }
+        addSeparator(document, layout);
+    }
+
+    public void addSeparator(Document document, Layout layout) {
+        document.add(new Paragraph(" "));
+        document.add(new LineSeparator(layout.separatorWidth, 100, layout.separatorColor, Element.ALIGN_CENTER, -2));
+        document.add(new Paragraph(" "));
+    }
+
+    /** Patient name and age on the left, {@code date} on the right. */
+    public void addPatientAndDate(Document document, Patient patient, TemporalAccessor date, Layout layout) {
+        PdfPTable infoTable = new PdfPTable(2);
+        infoTable.setWidthPercentage(100);
+
+        PdfPCell patientCell = new PdfPCell();
+        patientCell.setBorder(Rectangle.NO_BORDER);
+        patientCell.addElement(new Phrase("Patient: " + patient.getFirstname() + " " + patient.getLastname(), layout.subtitle));
+        patientCell.addElement(new Phrase("Age: " + patient.getAge() + " ans", layout.body));
+        infoTable.addCell(patientCell);
+
+        PdfPCell dateCell = new PdfPCell();
+        dateCell.setBorder(Rectangle.NO_BORDER);
+        Paragraph dateParagraph = new Paragraph("Date: " + DATE.format(date), layout.body);
+        dateParagraph.setAlignment(Element.ALIGN_RIGHT);
+        dateCell.addElement(dateParagraph);
+        infoTable.addCell(dateCell);
+
+        document.add(infoTable);
+        document.add(new Paragraph(" "));
+    }
+
+    /** Centered title with spacing around it. */
+    public void addTitle(Document document, String title, float spacingBefore, float spacingAfter, Layout layout) {
+        Paragraph paragraph = new Paragraph(title, layout.title);
+        paragraph.setAlignment(Element.ALIGN_CENTER);
+        paragraph.setSpacingBefore(spacingBefore);
+        paragraph.setSpacingAfter(spacingAfter);
+        document.add(paragraph);
+    }
+
+    /** Signature box at the bottom right of the last page. */
+    public void addSignature(PdfWriter writer, String label, Layout layout) {
+        PdfPTable sigTable = new PdfPTable(1);
+        sigTable.setTotalWidth(180);
+        PdfPCell cell = new PdfPCell(new Phrase(label != null ? label : SIGNATURE, layout.body));
+        cell.setBorder(Rectangle.NO_BORDER);
+        cell.setHorizontalAlignment(Element.ALIGN_CENTER);
+        sigTable.addCell(cell);
+        sigTable.writeSelectedRows(0, -1, 380, 120, writer.getDirectContent());
+    }
+
+    /** Signature placed in the flow, after the content. */
+    public void addInlineSignature(Document document, Layout layout) {
+        Paragraph signature = new Paragraph(SIGNATURE, layout.body);
+        signature.setAlignment(Element.ALIGN_CENTER);
+        document.add(signature);
+    }
+
+    public Table table(Layout layout, int columns) {
+        return new Table(layout, new PdfPTable(columns));
+    }
+
+    public Table table(Layout layout, float... relativeWidths) {
+        return new Table(layout, new PdfPTable(relativeWidths));
+    }
+
+    /** Table builder with the two row styles used by the documents. */
+    public static final class Table {
+
+        private final Layout layout;
+        private final PdfPTable table;
+
+        private Table(Layout layout, PdfPTable table) {
+            this.layout = layout;
+            this.table = table;
+            table.setWidthPercentage(100);
+        }
+
+        public Table spacingBefore(float spacing) {
+            table.setSpacingBefore(spacing);
+            return this;
+        }
+
+        public Table widthPercentage(float percentage) {
+            table.setWidthPercentage(percentage);
+            return this;
+        }
+
+        public Table alignRight() {
+            table.setHorizontalAlignment(Element.ALIGN_RIGHT);
+            return this;
+        }
+
+        /** Header repeated on every page, underlined. */
+        public Table header(String... titles) {
+            table.setSplitRows(true);
+            table.setHeaderRows(1);
+            for (String title : titles) {
+                PdfPCell cell = new PdfPCell(new Phrase(title, layout.bodyBold));
+                cell.setBorder(Rectangle.BOTTOM);
+                cell.setBorderWidth(1.2f);
+                cell.setPaddingBottom(8);
+                table.addCell(cell);
+            }
+            return this;
+        }
+
+        /** Header on a gray background, centered. */
+        public Table boxedHeader(String... titles) {
+            for (String title : titles) {
+                PdfPCell cell = new PdfPCell(new Phrase(title, layout.bodyBold));
+                cell.setBackgroundColor(Color.LIGHT_GRAY);
+                cell.setHorizontalAlignment(Element.ALIGN_CENTER);
+                cell.setPadding(5);
+                table.addCell(cell);
+            }
+            return this;
+        }
+
+        /** Row separated from the next by a light line. */
+        public Table row(String... values) {
+            for (String value : values) {
+                PdfPCell cell = new PdfPCell(new Phrase(value, layout.body));
+                cell.setBorder(Rectangle.BOTTOM);
+                cell.setBorderColor(Color.LIGHT_GRAY);
+                cell.setBorderWidth(0.5f);
+                cell.setPaddingTop(6);
+                cell.setPaddingBottom(6);
+                table.addCell(cell);
+            }
+            return this;
+        }
+
+        /** Boxed cell, for tables started with {@link #boxedHeader(String...)}. */
+        public Table cell(String value, Font font, int alignment) {
+            PdfPCell cell = new PdfPCell(new Phrase(value, font));
+            cell.setHorizontalAlignment(alignment);
+            table.addCell(cell);
+            return this;
+        }
+
+        /** Borderless label/value pair. */
+        public Table keyValue(String key, String value, Font keyFont, Font valueFont) {
+            PdfPCell keyCell = new PdfPCell(new Phrase(key, keyFont));
+            keyCell.setBorder(Rectangle.NO_BORDER);
+            keyCell.setPaddingBottom(5);
+            table.addCell(keyCell);
+            PdfPCell valueCell = new PdfPCell(new Phrase(value, valueFont));
+            valueCell.setBorder(Rectangle.NO_BORDER);
+            valueCell.setPaddingBottom(5);
+            table.addCell(valueCell);
+            return this;
+        }
+
+        /** Label/value pair above a top rule, for totals. */
+        public Table totalRow(String key, String value) {
+            for (String text : new String[] { key, value }) {
+                PdfPCell cell = new PdfPCell(new Phrase(text, layout.bodyBold));
+                cell.setBorder(Rectangle.TOP);
+                cell.setPaddingTop(5);
+                table.addCell(cell);
+            }
+            return this;
+        }
+
+        public PdfPTable build() {
+            return table;
+        }
+    }
+
+    private ClinicHeader clinicHeader(User clinicUser) {
+        HeaderSource source = HeaderSource.of(clinicUser);
+        Long id = clinicUser.getId();
+        if (id == null) {
+            return buildHeader(source);
+        }
+        synchronized (headers) {
+            ClinicHeader cached = headers.get(id);
+            if (cached != null && cached.source().equals(source)) {
+                return cached;
+            }
+        }
+        ClinicHeader built = buildHeader(source);
+        synchronized (headers) {
+            headers.put(id, built);
+        }
+        return built;
+    }
+
+    private static ClinicHeader buildHeader(HeaderSource source) {
+        String clinicName = source.clinicName() != null && !source.clinicName().isBlank()
+                ? source.clinicName().toUpperCase()
+                : null;
+        String doctor = "Dr. " + Objects.toString(source.firstname(), "") + " " + Objects.toString(source.lastname(), "");
+        String phone = source.phone() != null && !source.phone().isEmpty() ? formatPhone(source.phone()) : null;
+        return new ClinicHeader(source, clinicName, doctor, source.address(), phone);
+    }
+
+    /** {@code 0555123456} as {@code 05 55 12 34 56}; other formats are kept as stored. */
+    static String formatPhone(String phone) {
+        if (phone.length() != 10) {
+            return phone;
+        }
+        for (int i = 0; i < phone.length(); i++) {
+            if (!Character.isDigit(phone.charAt(i))) {
+                return phone;
+            }
+        }
+        StringBuilder out = new StringBuilder(14);
+        for (int i = 0; i < 10; i += 2) {
+            if (i > 0) out.append(' ');
+            out.append(phone, i, i + 2);
+        }
+        return out.toString();
+    }
+}
@@ -4,11 +4,8 @@ import com.cabinetplus.backend.dto.PlanUsageDto;
 import com.cabinetplus.backend.enums.RecordStatus;
 import com.cabinetplus.backend.models.Plan;
 import com.cabinetplus.backend.models.User;
-import com.cabinetplus.backend.repositories.DocumentRepository;
 import com.cabinetplus.backend.repositories.EmployeeRepository;
 import com.cabinetplus.backend.repositories.PatientRepository;
-import com.cabinetplus.backend.repositories.ProthesisFileRepository;
-import com.cabinetplus.backend.repositories.ProthesisRepository;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -17,22 +14,16 @@ public class PlanLimitService {
 
     private final EmployeeRepository employeeRepository;
     private final PatientRepository patientRepository;
-    private final DocumentRepository documentRepository;
-    private final ProthesisRepository prothesisRepository;
-    private final ProthesisFileRepository prothesisFileRepository;
+    private final StorageUsageService storageUsageService;
 
     public PlanLimitService(
             EmployeeRepository employeeRepository,
             PatientRepository patientRepository,
-            DocumentRepository documentRepository,
-            ProthesisRepository prothesisRepository,
-            ProthesisFileRepository prothesisFileRepository
+            StorageUsageService storageUsageService
     ) {
         this.employeeRepository = employeeRepository;
         this.patientRepository = patientRepository;
-        this.documentRepository = documentRepository;
-        this.prothesisRepository = prothesisRepository;
-        this.prothesisFileRepository = prothesisFileRepository;
+        this.storageUsageService = storageUsageService;
     }
 
     public void assertPatientLimitNotReached(User ownerDentist) {
@@ -73,9 +64,7 @@ public class PlanLimitService {
 
     public long getCurrentStorageBytes(User ownerDentist) {
         requirePlan(ownerDentist);
-        return documentRepository.sumFileSizeBytesByOwner(ownerDentist)
-                + prothesisRepository.sumStlFileSizeBytesByOwner(ownerDentist)
-                + prothesisFileRepository.sumFileSizeBytesByOwner(ownerDentist);
+        return storageUsageService.usedBytes(ownerDentist);
     }
 
     public PlanUsageDto getUsage(User ownerDentist) {
@@ -87,11 +76,7 @@ public class PlanLimitService {
         long patientsUsed = ownerDentist != null
                 ? patientRepository.countByCreatedByAndArchivedAtIsNull(ownerDentist)
                 : 0;
-        long storageUsedBytes = ownerDentist != null
-                ? (documentRepository.sumFileSizeBytesByOwner(ownerDentist)
-                    + prothesisRepository.sumStlFileSizeBytesByOwner(ownerDentist)
-                    + prothesisFileRepository.sumFileSizeBytesByOwner(ownerDentist))
-                : 0;
+        long storageUsedBytes = ownerDentist != null ? storageUsageService.usedBytes(ownerDentist) : 0;
 
         return new PlanUsageDto(
                 plan != null,
@@ -120,9 +105,8 @@ public class PlanLimitService {
         long dentistsUsed = 1;
         long employeesUsed = employeeRepository.countByDentistAndArchivedAtIsNullAndRecordStatus(ownerDentist, RecordStatus.ACTIVE);
         long patientsUsed = patientRepository.countByCreatedByAndArchivedAtIsNull(ownerDentist);
-        long storageUsedBytes = documentRepository.sumFileSizeBytesByOwner(ownerDentist);
-        storageUsedBytes += prothesisRepository.sumStlFileSizeBytesByOwner(ownerDentist);
-        storageUsedBytes += prothesisFileRepository.sumFileSizeBytesByOwner(ownerDentist);
+        // Changing plan is rare: check against exact usage, which also refreshes the counter.
+        long storageUsedBytes = storageUsageService.recompute(ownerDentist);
 
         Long maxDentists = normalizeLimit(targetPlan.getMaxDentists());
         if (maxDentists != null && maxDentists >= 0 && dentistsUsed > maxDentists) {
@@ -0,0 +1,200 @@
+package com.cabinetplus.backend.services;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.cabinetplus.backend.enums.LaboratoryConnectionStatus;
+import com.cabinetplus.backend.enums.RecordStatus;
+import com.cabinetplus.backend.enums.UserRole;
+import com.cabinetplus.backend.models.Laboratory;
+import com.cabinetplus.backend.models.LaboratoryConnection;
+import com.cabinetplus.backend.models.User;
+import com.cabinetplus.backend.repositories.LaboratoryConnectionRepository;
+import com.cabinetplus.backend.repositories.LaboratoryRepository;
+import com.cabinetplus.backend.repositories.UserRepository;
+
+/**
+ * Who gets to see a user's presence: the users that have them as a messaging contact, following the same rules as
+ * {@code MessagingService.requireCanMessage}. Admins see admins; a clinic sees its own members and the labs it is
+ * connected to; a lab sees the owners of its connected clinics and the staff allowed to message labs.
+ *
+ * <p>Audiences are assembled from per-clinic and per-lab entries cached for a short time, so a login wave in one
+ * clinic loads its members once. Lab connections evict their entries when accepted; other changes (new employees,
+ * permissions) show up when the entry expires.</p>
+ */
+@Service
+public class PresenceAudienceService {
+
+    private static final String PERM_EMPLOYEE_MESSAGE_LABS = "LABORATORIES_MESSAGE";
+    private static final String PERM_EMPLOYEE_MESSAGE_LABS_LEGACY = "MESSAGING_LABS";
+
+    private static final String ADMINS_KEY = "admins";
+
+    /** A staff member; those allowed to message labs also see the presence of the clinic's labs and vice versa. */
+    record Member(Long userId, boolean canMessageLabs) {}
+
+    /** A clinic owner, their staff and the users of the labs they are connected to. */
+    record Clinic(Long ownerId, List<Member> staff, List<Long> labUserIds) {}
+
+    private record Entry(Object value, long expiresAt) {}
+
+    private final UserRepository userRepository;
+    private final LaboratoryRepository laboratoryRepository;
+    private final LaboratoryConnectionRepository laboratoryConnectionRepository;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+
+    public PresenceAudienceService(
+            UserRepository userRepository,
+            LaboratoryRepository laboratoryRepository,
+            LaboratoryConnectionRepository laboratoryConnectionRepository,
+            @Value("${app.messaging.presence.audience-ttl-seconds:60}") long ttlSeconds,
+            @Value("${app.messaging.presence.audience-cache-size:5000}") int cacheSize
+    ) {
+        this.userRepository = userRepository;
+        this.laboratoryRepository = laboratoryRepository;
+        this.laboratoryConnectionRepository = laboratoryConnectionRepository;
+        this.ttlMillis = Math.max(0L, ttlSeconds) * 1000L;
+        int maxEntries = Math.max(1, cacheSize);
+        this.entries = new LinkedHashMap<>(Math.min(maxEntries, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /** Ids of the users that should receive {@code subject}'s presence, including their own for their other tabs. */
+    public Set<Long> audienceOf(User subject) {
+        Set<Long> out = new LinkedHashSet<>();
+        if (subject == null || subject.getId() == null || subject.getRole() == null) return out;
+        out.add(subject.getId());
+
+        switch (subject.getRole()) {
+            case ADMIN -> out.addAll(admins());
+            case LAB -> {
+                for (Long ownerId : connectedOwnerIds(subject)) {
+                    Clinic clinic = clinic(ownerId);
+                    if (clinic == null) continue;
+                    out.add(clinic.ownerId());
+                    for (Member m : clinic.staff()) {
+                        if (m.canMessageLabs()) out.add(m.userId());
+                    }
+                }
+            }
+            default -> {
+                boolean isStaff = subject.getRole() == UserRole.EMPLOYEE || subject.getOwnerDentist() != null;
+                User owner = isStaff ? subject.getOwnerDentist() : subject;
+                if (owner == null || owner.getId() == null) break;
+                Clinic clinic = clinic(owner.getId());
+                if (clinic == null) break;
+                if (!isStaff) {
+                    for (Member m : clinic.staff()) out.add(m.userId());
+                    out.addAll(clinic.labUserIds());
+                    break;
+                }
+                // Colleagues and the owner only list staff that finished setting up their account.
+                if (!subject.isAccountSetupCompleted()) break;
+                out.add(clinic.ownerId());
+                for (Member m : clinic.staff()) out.add(m.userId());
+                if (canMessageLabs(subject)) out.addAll(clinic.labUserIds());
+            }
+        }
+        return out;
+    }
+
+    /** Drops the cached entries of both sides of a lab connection. */
+    public void evictConnection(User dentist, Laboratory laboratory) {
+        synchronized (entries) {
+            if (dentist != null && dentist.getId() != null) entries.remove(clinicKey(dentist.getId()));
+            if (laboratory != null && laboratory.getCreatedBy() != null && laboratory.getCreatedBy().getId() != null) {
+                entries.remove(labKey(laboratory.getCreatedBy().getId()));
+            }
+        }
+    }
+
+    private List<Long> admins() {
+        return cached(ADMINS_KEY, () -> {
+            List<Long> ids = new ArrayList<>();
+            for (User admin : userRepository.findByRole(UserRole.ADMIN)) {
+                add(ids, admin);
+            }
+            return List.copyOf(ids);
+        });
+    }
+
+    private List<Long> connectedOwnerIds(User labUser) {
+        if (labUser.getId() == null) return List.of();
+        return cached(labKey(labUser.getId()), () -> {
+            Laboratory lab = laboratoryRepository
+                    .findFirstByCreatedByAndArchivedAtIsNullAndRecordStatusOrderByIdAsc(labUser, RecordStatus.ACTIVE)
+                    .orElse(null);
+            if (lab == null) return List.<Long>of();
+            List<Long> ids = new ArrayList<>();
+            for (LaboratoryConnection c : laboratoryConnectionRepository.findByLaboratoryAndStatusOrderByInvitedAtDesc(
+                    lab, LaboratoryConnectionStatus.ACCEPTED)) {
+                add(ids, c.getDentist());
+            }
+            return List.copyOf(ids);
+        });
+    }
+
+    private Clinic clinic(Long ownerId) {
+        return cached(clinicKey(ownerId), () -> {
+            User owner = userRepository.findById(ownerId).orElse(null);
+            if (owner == null) return null;
+            List<Member> staff = new ArrayList<>();
+            for (User u : userRepository.findByOwnerDentist(owner)) {
+                if (u.getId() != null) staff.add(new Member(u.getId(), canMessageLabs(u)));
+            }
+            List<Long> labUserIds = new ArrayList<>();
+            for (LaboratoryConnection c : laboratoryConnectionRepository.findByDentistAndStatusOrderByInvitedAtDesc(
+                    owner, LaboratoryConnectionStatus.ACCEPTED)) {
+                if (c.getLaboratory() != null) add(labUserIds, c.getLaboratory().getCreatedBy());
+            }
+            return new Clinic(owner.getId(), List.copyOf(staff), List.copyOf(labUserIds));
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T cached(String key, Supplier<T> loader) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt() > now) return (T) entry.value();
+        }
+        // Loaded outside the lock; two threads missing together both load, and the last one wins.
+        T value = loader.get();
+        if (value != null && ttlMillis > 0) {
+            synchronized (entries) {
+                entries.put(key, new Entry(value, now + ttlMillis));
+            }
+        }
+        return value;
+    }
+
+    private static boolean canMessageLabs(User user) {
+        Set<String> perms = user.getPermissions();
+        return perms != null && (perms.contains(PERM_EMPLOYEE_MESSAGE_LABS) || perms.contains(PERM_EMPLOYEE_MESSAGE_LABS_LEGACY));
+    }
+
+    private static void add(List<Long> out, User user) {
+        if (user != null && user.getId() != null && !out.contains(user.getId())) out.add(user.getId());
+    }
+
+    private static String clinicKey(Long ownerId) {
+        return "clinic:" + ownerId;
+    }
+
+    private static String labKey(Long labUserId) {
+        return "lab:" + labUserId;
+    }
+}
@@ -10,24 +10,22 @@ import com.cabinetplus.backend.models.ProthesisFile;
 import com.cabinetplus.backend.models.User;
 import com.cabinetplus.backend.repositories.ProthesisFileRepository;
 import com.cabinetplus.backend.repositories.ProthesisRepository;
-import com.cabinetplus.backend.security.crypto.EncryptedFileIO;
+import com.cabinetplus.backend.security.crypto.DecryptingFileResource;
 import com.cabinetplus.backend.security.crypto.EncryptionKeyProvider;
+import com.cabinetplus.backend.storage.BlobStorage;
+import com.cabinetplus.backend.storage.StoredObject;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -36,10 +34,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 @Service
 public class ProthesisFilesService {
@@ -55,6 +49,9 @@ public class ProthesisFilesService {
     private final ProthesisFileRepository prothesisFileRepository;
     private final PlanLimitService planLimitService;
     private final LaboratoryAccessService laboratoryAccessService;
+    private final BlobStoreService blobStoreService;
+    private final BlobStorage blobStorage;
+    private final StorageUsageService storageUsageService;
     private final Path uploadRoot;
 
     public ProthesisFilesService(
@@ -62,12 +59,18 @@ public class ProthesisFilesService {
             ProthesisFileRepository prothesisFileRepository,
             PlanLimitService planLimitService,
             LaboratoryAccessService laboratoryAccessService,
+            BlobStoreService blobStoreService,
+            BlobStorage blobStorage,
+            StorageUsageService storageUsageService,
             @Value("${app.protheses.files-upload-dir:uploads/protheses/files}") String uploadDir
     ) {
         this.prothesisRepository = prothesisRepository;
         this.prothesisFileRepository = prothesisFileRepository;
         this.planLimitService = planLimitService;
         this.laboratoryAccessService = laboratoryAccessService;
+        this.blobStoreService = blobStoreService;
+        this.blobStorage = blobStorage;
+        this.storageUsageService = storageUsageService;
         this.uploadRoot = Paths.get(uploadDir).toAbsolutePath().normalize();
     }
 
@@ -97,6 +100,42 @@ public class ProthesisFilesService {
         prothesisRepository.touchUpdatedBy(prothesis.getId(), updater, LocalDateTime.now());
     }
 
+    public FileDownload getFileForDentist(Long prothesisId, Long fileId, User ownerDentist) {
+        Prothesis prothesis = requireProthesisOwnedBy(prothesisId, ownerDentist);
+        return toFileDownload(prothesis, fileId);
+    }
+
+    public FileDownload getFileForLab(Long prothesisId, Long fileId, User labUser) {
+        Prothesis prothesis = requireProthesisForLab(prothesisId, labUser);
+        return toFileDownload(prothesis, fileId);
+    }
+
+    private FileDownload toFileDownload(Prothesis prothesis, Long fileId) {
+        if (fileId == null) {
+            throw new NotFoundException("Fichier introuvable");
+        }
+        ProthesisFile file = prothesisFileRepository.findByIdAndProthesisId(fileId, prothesis.getId())
+                .orElseThrow(() -> new NotFoundException("Fichier introuvable"));
+        StoredObject stored = resolveExistingFile(file.getPathOrUrl());
+        String filename = file.getFilename() != null && !file.getFilename().isBlank()
+                ? file.getFilename()
+                : ("fichier_" + file.getId());
+        MediaType mediaType = MediaTypeFactory.getMediaType(filename).orElseGet(() -> {
+            try {
+                return file.getFileType() != null && !file.getFileType().isBlank()
+                        ? MediaType.parseMediaType(file.getFileType())
+                        : MediaType.APPLICATION_OCTET_STREAM;
+            } catch (Exception ignored) {
+                return MediaType.APPLICATION_OCTET_STREAM;
+            }
+        });
+        return new FileDownload(
+                new DecryptingFileResource(stored, EncryptionKeyProvider.getOrLoadKek()),
+                filename,
+                mediaType
+        );
+    }
+
     public ProthesisFileItemResponse uploadItemForDentist(
             Long prothesisId,
             MultipartFile file,
@@ -126,46 +165,57 @@ public class ProthesisFilesService {
         planLimitService.assertStorageWithinLimit(ownerDentist, currentStorageBytes + estimatedStoredBytes);
 
         try {
-            Path prothesisDir = uploadRoot.resolve("prothesis-" + prothesis.getId()).normalize();
-            Files.createDirectories(prothesisDir);
-
-            byte[] kek = EncryptionKeyProvider.getOrLoadKek();
-            LocalDateTime now = LocalDateTime.now();
-
-            List<ProthesisFile> existing = prothesisFileRepository.findByProthesisIdOrderByUploadedAtDesc(prothesis.getId());
-            Set<String> usedNames = new HashSet<>();
-            for (ProthesisFile pf : existing) {
-                String entryName = sanitizeRelativePath(pf.getRelativePath());
-                if (entryName == null || entryName.isBlank()) entryName = pf.getFilename();
-                if (entryName == null || entryName.isBlank()) continue;
-                usedNames.add(entryName);
+            BlobStoreService.StoredBlobRef blob;
+            try (InputStream in = safeFile.getInputStream()) {
+                blob = blobStoreService.store(blobOwnerId(prothesis, ownerDentist), in);
             }
+            ProthesisFile saved = saveItem(prothesis, originalFilename, relativePath, extension,
+                    resolveFileType(safeFile.getContentType(), extension), blob, actor);
 
-            String entryName = sanitizeRelativePath(relativePath);
-            if (entryName == null || entryName.isBlank()) {
-                entryName = sanitizeFilename(originalFilename, "file-" + System.nanoTime() + "." + extension);
-            }
-            entryName = ensureUniqueEntryName(entryName, usedNames);
+            User updater = actor != null ? actor : ownerDentist;
+            prothesisRepository.touchUpdatedBy(prothesis.getId(), updater, LocalDateTime.now());
+            return toItemResponse(saved);
+        } catch (IOException ex) {
+            throw new RuntimeException("Impossible d'enregistrer le fichier", ex);
+        }
+    }
 
-            String storedFilename = UUID.randomUUID() + "." + extension;
-            Path destination = prothesisDir.resolve(storedFilename).normalize();
+    /**
+     * Checks that a resumable upload of {@code sizeBytes} may start: same rules as {@link #uploadItemForDentist},
+     * with {@code reservedBytes} of other unfinished uploads counted against the plan.
+     */
+    public Prothesis checkResumableUpload(Long prothesisId, String filename, long sizeBytes, long reservedBytes, User ownerDentist) {
+        Prothesis prothesis = requireProthesisOwnedBy(prothesisId, ownerDentist);
+        assertProthesisWritable(prothesis);
+        if (sizeBytes < 0 || sizeBytes > MAX_FILE_SIZE_BYTES) {
+            throw new IllegalArgumentException("La taille maximale par fichier est de 200 MB");
+        }
+        validateExtension(extractExtension(filename));
 
-            try (InputStream in = safeFile.getInputStream(); OutputStream out = Files.newOutputStream(destination)) {
-                EncryptedFileIO.encryptToStream(in, out, kek);
-            }
+        long currentStorageBytes = planLimitService.getCurrentStorageBytes(ownerDentist);
+        planLimitService.assertStorageWithinLimit(ownerDentist, currentStorageBytes + reservedBytes + sizeBytes + 256);
+        return prothesis;
+    }
 
-            long storedBytes = Files.size(destination);
+    /** Attaches a completed resumable upload, read from {@code plaintext}, to the prosthesis. */
+    public ProthesisFileItemResponse attachUploadedFile(
+            Long prothesisId,
+            InputStream plaintext,
+            String originalFilename,
+            String relativePath,
+            String contentType,
+            User ownerDentist,
+            User actor
+    ) {
+        Prothesis prothesis = requireProthesisOwnedBy(prothesisId, ownerDentist);
+        assertProthesisWritable(prothesis);
+        String extension = extractExtension(originalFilename);
+        validateExtension(extension);
 
-            ProthesisFile pf = new ProthesisFile();
-            pf.setProthesis(prothesis);
-            pf.setFilename(sanitizeFilename(originalFilename, Paths.get(entryName).getFileName().toString()));
-            pf.setRelativePath(entryName);
-            pf.setFileType(resolveFileType(safeFile, extension));
-            pf.setFileSizeBytes(storedBytes);
-            pf.setUploadedAt(now);
-            pf.setPathOrUrl(destination.toString());
-            pf.setUploadedBy(actor);
-            ProthesisFile saved = prothesisFileRepository.save(pf);
+        try {
+            BlobStoreService.StoredBlobRef blob = blobStoreService.store(blobOwnerId(prothesis, ownerDentist), plaintext);
+            ProthesisFile saved = saveItem(prothesis, originalFilename, relativePath, extension,
+                    resolveFileType(contentType, extension), blob, actor);
 
             User updater = actor != null ? actor : ownerDentist;
             prothesisRepository.touchUpdatedBy(prothesis.getId(), updater, LocalDateTime.now());
@@ -175,6 +225,42 @@ public class ProthesisFilesService {
         }
     }
 
+    private ProthesisFile saveItem(
+            Prothesis prothesis,
+            String originalFilename,
+            String relativePath,
+            String extension,
+            String fileType,
+            BlobStoreService.StoredBlobRef blob,
+            User actor
+    ) {
+        List<ProthesisFile> existing = prothesisFileRepository.findByProthesisIdOrderByUploadedAtDesc(prothesis.getId());
+        Set<String> usedNames = new HashSet<>();
+        for (ProthesisFile pf : existing) {
+            String entryName = sanitizeRelativePath(pf.getRelativePath());
+            if (entryName == null || entryName.isBlank()) entryName = pf.getFilename();
+            if (entryName == null || entryName.isBlank()) continue;
+            usedNames.add(entryName);
+        }
+
+        String entryName = sanitizeRelativePath(relativePath);
+        if (entryName == null || entryName.isBlank()) {
+            entryName = sanitizeFilename(originalFilename, "file-" + System.nanoTime() + "." + extension);
+        }
+        entryName = ensureUniqueEntryName(entryName, usedNames);
+
+        ProthesisFile pf = new ProthesisFile();
+        pf.setProthesis(prothesis);
+        pf.setFilename(sanitizeFilename(originalFilename, Paths.get(entryName).getFileName().toString()));
+        pf.setRelativePath(entryName);
+        pf.setFileType(fileType);
+        pf.setFileSizeBytes(blob.storedBytes());
+        pf.setUploadedAt(LocalDateTime.now());
+        pf.setPathOrUrl(blob.location());
+        pf.setUploadedBy(actor);
+        return saveOrRelease(pf, blob);
+    }
+
     public Prothesis uploadForDentist(
             Long prothesisId,
             MultipartFile[] files,
@@ -206,10 +292,6 @@ public class ProthesisFilesService {
         planLimitService.assertStorageWithinLimit(ownerDentist, currentStorageBytes + estimatedStoredBytes);
 
         try {
-            Path prothesisDir = uploadRoot.resolve("prothesis-" + prothesis.getId()).normalize();
-            Files.createDirectories(prothesisDir);
-
-            byte[] kek = EncryptionKeyProvider.getOrLoadKek();
             List<ProthesisFile> existing = prothesisFileRepository.findByProthesisIdOrderByUploadedAtDesc(prothesis.getId());
             Set<String> usedNames = new HashSet<>();
             for (ProthesisFile pf : existing) {
@@ -232,25 +314,21 @@ public class ProthesisFilesService {
                 }
                 entryName = ensureUniqueEntryName(entryName, usedNames);
 
-                String storedFilename = UUID.randomUUID() + "." + extension;
-                Path destination = prothesisDir.resolve(storedFilename).normalize();
-
-                try (InputStream in = f.getInputStream(); OutputStream out = Files.newOutputStream(destination)) {
-                    EncryptedFileIO.encryptToStream(in, out, kek);
+                BlobStoreService.StoredBlobRef blob;
+                try (InputStream in = f.getInputStream()) {
+                    blob = blobStoreService.store(blobOwnerId(prothesis, ownerDentist), in);
                 }
 
-                long storedBytes = Files.size(destination);
-
                 ProthesisFile pf = new ProthesisFile();
                 pf.setProthesis(prothesis);
                 pf.setFilename(sanitizeFilename(originalFilename, Paths.get(entryName).getFileName().toString()));
                 pf.setRelativePath(entryName);
-                pf.setFileType(resolveFileType(f, extension));
-                pf.setFileSizeBytes(storedBytes);
+                pf.setFileType(resolveFileType(f.getContentType(), extension));
+                pf.setFileSizeBytes(blob.storedBytes());
                 pf.setUploadedAt(now);
-                pf.setPathOrUrl(destination.toString());
+                pf.setPathOrUrl(blob.location());
                 pf.setUploadedBy(actor);
-                prothesisFileRepository.save(pf);
+                saveOrRelease(pf, blob);
             }
 
             User updater = actor != null ? actor : ownerDentist;
@@ -261,37 +339,6 @@ public class ProthesisFilesService {
         }
     }
 
-    public ZipBundleSource findZipBundleForDentist(Long prothesisId, User ownerDentist) {
-        Prothesis prothesis = requireProthesisOwnedBy(prothesisId, ownerDentist);
-        return findZipBundle(prothesis);
-    }
-
-    public ZipBundleSource findZipBundleForLab(Long prothesisId, User labUser) {
-        Prothesis prothesis = requireProthesisForLab(prothesisId, labUser);
-        return findZipBundle(prothesis);
-    }
-
-    private ZipBundleSource findZipBundle(Prothesis prothesis) {
-        if (prothesis == null || prothesis.getId() == null) return null;
-        for (ProthesisFile pf : prothesisFileRepository.findByProthesisIdOrderByUploadedAtDesc(prothesis.getId())) {
-            if (!isZipBundle(pf)) continue;
-            Path path = resolveExistingPath(pf.getPathOrUrl());
-            String filename = pf.getFilename() != null && !pf.getFilename().isBlank()
-                    ? pf.getFilename()
-                    : buildZipFilename(prothesis.getId());
-            return new ZipBundleSource(filename, path);
-        }
-        return null;
-    }
-
-    private boolean isZipBundle(ProthesisFile pf) {
-        if (pf == null) return false;
-        String filename = pf.getFilename() != null ? pf.getFilename().trim().toLowerCase(Locale.ROOT) : "";
-        if (filename.endsWith(".zip")) return true;
-        String fileType = pf.getFileType() != null ? pf.getFileType().trim().toLowerCase(Locale.ROOT) : "";
-        return fileType.contains("zip");
-    }
-
     private ProthesisFileItemResponse toItemResponse(ProthesisFile pf) {
         if (pf == null) {
             return new ProthesisFileItemResponse(null, null, null, null, null, null);
@@ -306,20 +353,32 @@ public class ProthesisFilesService {
         );
     }
 
-    private void cleanupPreviousAttachments(List<ProthesisFile> previous, Path excludePath) {
+    private ProthesisFile saveOrRelease(ProthesisFile pf, BlobStoreService.StoredBlobRef blob) {
+        try {
+            return prothesisFileRepository.save(pf);
+        } catch (RuntimeException ex) {
+            blobStoreService.release(blob.location());
+            throw ex;
+        }
+    }
+
+    private static Long blobOwnerId(Prothesis prothesis, User ownerDentist) {
+        return prothesis.getPractitioner() != null ? prothesis.getPractitioner().getId() : ownerDentist.getId();
+    }
+
+    private void cleanupPreviousAttachments(List<ProthesisFile> previous, String excludeLocation) {
         if (previous == null || previous.isEmpty()) return;
-        Path exclude = excludePath != null ? excludePath.toAbsolutePath().normalize() : null;
+        String exclude = excludeLocation != null ? blobStorage.object(excludeLocation).location() : null;
 
         List<ProthesisFile> deletable = new ArrayList<>();
         for (ProthesisFile pf : previous) {
             try {
-                Path path = resolvePath(pf != null ? pf.getPathOrUrl() : null);
-                if (path == null) continue;
-                path = path.toAbsolutePath().normalize();
-                if (exclude != null && path.equals(exclude)) continue;
-                if (!path.startsWith(uploadRoot)) continue;
-                deletable.add(pf);
-                Files.deleteIfExists(path);
+                StoredObject stored = resolveFile(pf != null ? pf.getPathOrUrl() : null);
+                if (stored == null) continue;
+                if (exclude != null && stored.location().equals(exclude)) continue;
+                if (releaseOrDeleteLegacy(pf, stored)) {
+                    deletable.add(pf);
+                }
             } catch (Exception ignored) {
                 // best-effort cleanup
             }
@@ -334,12 +393,11 @@ public class ProthesisFilesService {
         List<ProthesisFile> deletable = new ArrayList<>();
         for (ProthesisFile pf : attachments) {
             try {
-                Path path = resolvePath(pf != null ? pf.getPathOrUrl() : null);
-                if (path == null) continue;
-                path = path.toAbsolutePath().normalize();
-                if (!path.startsWith(uploadRoot)) continue;
-                deletable.add(pf);
-                Files.deleteIfExists(path);
+                StoredObject stored = resolveFile(pf != null ? pf.getPathOrUrl() : null);
+                if (stored == null) continue;
+                if (releaseOrDeleteLegacy(pf, stored)) {
+                    deletable.add(pf);
+                }
             } catch (Exception ignored) {
                 // best-effort cleanup
             }
@@ -349,69 +407,26 @@ public class ProthesisFilesService {
         }
     }
 
-    private void writeEncryptedZipBundle(
-            Path destination,
-            List<MultipartFile> safeFiles,
-            List<String> relativePaths,
-            byte[] kek
-    ) throws IOException {
-        if (destination == null) throw new IOException("Destination introuvable");
-        if (safeFiles == null || safeFiles.isEmpty()) throw new IOException("Aucun fichier");
-
-        try (OutputStream encryptedOut = Files.newOutputStream(destination)) {
-            PipedOutputStream pipedOut = new PipedOutputStream();
-            PipedInputStream pipedIn = new PipedInputStream(pipedOut, 64 * 1024);
-            AtomicReference<Throwable> zipError = new AtomicReference<>();
-
-            Thread zipThread = new Thread(() -> {
-                try (ZipOutputStream zipOut = new ZipOutputStream(new BufferedOutputStream(pipedOut), StandardCharsets.UTF_8)) {
-                    HashSet<String> usedNames = new HashSet<>();
-                    for (int i = 0; i < safeFiles.size(); i++) {
-                        MultipartFile file = safeFiles.get(i);
-                        String originalFilename = file != null ? file.getOriginalFilename() : null;
-                        String extension = extractExtension(originalFilename);
-                        validateExtension(extension);
-
-                        String entryName = sanitizeRelativePath(safeGet(relativePaths, i));
-                        if (entryName == null || entryName.isBlank()) {
-                            entryName = sanitizeFilename(originalFilename, "file-" + (i + 1) + "." + extension);
-                        }
-                        entryName = ensureUniqueEntryName(entryName, usedNames);
-
-                        ZipEntry entry = new ZipEntry(entryName);
-                        zipOut.putNextEntry(entry);
-                        try (InputStream in = file.getInputStream()) {
-                            in.transferTo(zipOut);
-                        }
-                        zipOut.closeEntry();
-                    }
-                    zipOut.finish();
-                } catch (Throwable ex) {
-                    zipError.set(ex);
-                } finally {
-                    try {
-                        pipedOut.close();
-                    } catch (IOException ignored) {
-                    }
-                }
-            }, "prothesis-files-zip-" + UUID.randomUUID());
-
-            zipThread.setDaemon(true);
-            zipThread.start();
-
-            EncryptedFileIO.encryptToStream(pipedIn, encryptedOut, kek);
-
-            try {
-                zipThread.join();
-            } catch (InterruptedException ex) {
-                Thread.currentThread().interrupt();
-                throw new IOException("Interrupted while zipping files", ex);
-            }
-
-            if (zipError.get() != null) {
-                throw new IOException("Impossible de compresser les fichiers", zipError.get());
-            }
+    /**
+     * Drops the file behind an attachment row. Blob-backed files may be shared with other rows, so only the reference
+     * goes away; files written before the blob store are deleted when they sit under the upload directory. Returns
+     * whether the row can be deleted.
+     */
+    private boolean releaseOrDeleteLegacy(ProthesisFile pf, StoredObject stored) throws IOException {
+        if (blobStoreService.release(stored.location())) {
+            return true;
         }
+        Path legacy = stored.localFile().orElse(null);
+        if (legacy == null || !legacy.startsWith(uploadRoot)) {
+            return false;
+        }
+        Files.deleteIfExists(legacy);
+        Prothesis prothesis = pf.getProthesis();
+        // Files of a cancelled prosthesis are no longer counted.
+        if (prothesis != null && prothesis.getPractitioner() != null && prothesis.getRecordStatus() == RecordStatus.ACTIVE) {
+            storageUsageService.add(prothesis.getPractitioner().getId(), -normalizeBytes(pf.getFileSizeBytes()));
+        }
+        return true;
     }
 
     private String ensureUniqueEntryName(String entryName, Set<String> usedNames) {
@@ -442,23 +457,28 @@ public class ProthesisFilesService {
     }
 
     private List<ZipEntrySource> buildZipSources(Prothesis prothesis) {
-        List<ZipEntrySource> sources = new ArrayList<>();
+        List<ProthesisFile> files = prothesisFileRepository.findByProthesisIdOrderByUploadedAtDesc(prothesis.getId());
+        List<String> paths = new ArrayList<>();
+        files.forEach(pf -> paths.add(pf.getPathOrUrl()));
+        paths.add(prothesis.getStlPathOrUrl());
+        Map<String, Long> crcs = blobStoreService.plaintextCrc32(paths);
 
-        for (ProthesisFile pf : prothesisFileRepository.findByProthesisIdOrderByUploadedAtDesc(prothesis.getId())) {
-            Path path = resolveExistingPath(pf.getPathOrUrl());
+        List<ZipEntrySource> sources = new ArrayList<>();
+        for (ProthesisFile pf : files) {
+            StoredObject stored = resolveExistingFile(pf.getPathOrUrl());
             String entryName = sanitizeRelativePath(pf.getRelativePath());
             if (entryName == null || entryName.isBlank()) {
                 entryName = pf.getFilename();
             }
-            sources.add(new ZipEntrySource(entryName, path));
+            sources.add(new ZipEntrySource(entryName, stored, crcs.get(pf.getPathOrUrl())));
         }
 
         if (prothesis.getStlPathOrUrl() != null && !prothesis.getStlPathOrUrl().isBlank()) {
-            Path path = resolveExistingPath(prothesis.getStlPathOrUrl());
+            StoredObject stored = resolveExistingFile(prothesis.getStlPathOrUrl());
             String entryName = prothesis.getStlFilename() != null && !prothesis.getStlFilename().isBlank()
                     ? prothesis.getStlFilename()
                     : ("prothese_" + prothesis.getId() + ".stl");
-            sources.add(new ZipEntrySource(entryName, path));
+            sources.add(new ZipEntrySource(entryName, stored, crcs.get(prothesis.getStlPathOrUrl())));
         }
 
         return sources;
@@ -468,11 +488,6 @@ public class ProthesisFilesService {
         return "prothese_" + prothesisId + "_fichiers.zip";
     }
 
-    public InputStream openDecryptedStream(Path encryptedFile) throws IOException {
-        byte[] kek = EncryptionKeyProvider.getOrLoadKek();
-        return EncryptedFileIO.openDecryptedStream(Files.newInputStream(encryptedFile), kek);
-    }
-
     private Prothesis requireProthesisOwnedBy(Long id, User ownerDentist) {
         return prothesisRepository.findForResponseById(id)
                 .filter(item -> ownerDentist.getRole() == UserRole.ADMIN
@@ -502,19 +517,19 @@ public class ProthesisFilesService {
         }
     }
 
-    private Path resolveExistingPath(String pathOrUrl) {
-        Path path = resolvePath(pathOrUrl);
-        if (path == null || !Files.exists(path)) {
+    private StoredObject resolveExistingFile(String pathOrUrl) {
+        StoredObject stored = resolveFile(pathOrUrl);
+        if (stored == null || !stored.exists()) {
             throw new NotFoundException("Fichier introuvable");
         }
-        return path;
+        return stored;
     }
 
-    private Path resolvePath(String pathOrUrl) {
+    private StoredObject resolveFile(String pathOrUrl) {
         if (pathOrUrl == null || pathOrUrl.isBlank()) {
             return null;
         }
-        return Paths.get(pathOrUrl).toAbsolutePath().normalize();
+        return blobStorage.object(pathOrUrl);
     }
 
     private void validateExtension(String extension) {
@@ -556,9 +571,9 @@ public class ProthesisFilesService {
         return raw;
     }
 
-    private String resolveFileType(MultipartFile file, String extension) {
-        if (file.getContentType() != null && !file.getContentType().isBlank()) {
-            return file.getContentType();
+    private String resolveFileType(String contentType, String extension) {
+        if (contentType != null && !contentType.isBlank()) {
+            return contentType;
         }
         return MediaTypeFactory.getMediaType("file." + extension)
                 .map(MediaType::toString)
@@ -598,7 +613,13 @@ public class ProthesisFilesService {
         return (int) n;
     }
 
-    public record ZipEntrySource(String entryName, Path encryptedPath) {}
+    /** {@code plaintextCrc32} is {@code null} when it wasn't recorded (files stored before it was); it is then computed. */
+    public record ZipEntrySource(String entryName, StoredObject encryptedFile, Long plaintextCrc32) {
+
+        public ZipEntrySource(String entryName, StoredObject encryptedFile) {
+            this(entryName, encryptedFile, null);
+        }
+    }
 
-    public record ZipBundleSource(String filename, Path encryptedPath) {}
+    public record FileDownload(Resource resource, String filename, MediaType mediaType) {}
 }
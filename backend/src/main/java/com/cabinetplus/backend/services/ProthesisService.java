@@ -40,6 +40,7 @@ public class ProthesisService {
     private final RealtimeRecipientsService realtimeRecipientsService;
     private final ApplicationEventPublisher eventPublisher;
     private final ReferenceCodeGeneratorService referenceCodeGeneratorService;
+    private final StorageUsageService storageUsageService;
 
     public List<Prothesis> findAllByUser(User user) {
         if (user.getRole() == UserRole.ADMIN) {
@@ -712,6 +713,8 @@ public List<Prothesis> findByPatientAndPractitionerIncludingCancelled(Long patie
          if (changed) {
              p.setUpdatedBy(actor != null ? actor : user);
              Prothesis saved = repository.save(p);
+             // Its STL and files no longer count towards the clinic's storage.
+             storageUsageService.invalidate(saved.getPractitioner() != null ? saved.getPractitioner().getId() : null);
              publishProthesisRealtime(saved, "CANCELLED", null);
          }
      }
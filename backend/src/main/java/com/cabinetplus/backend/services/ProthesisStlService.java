@@ -8,9 +8,9 @@ import com.cabinetplus.backend.models.Prothesis;
 import com.cabinetplus.backend.models.User;
 import com.cabinetplus.backend.repositories.ProthesisRepository;
 import com.cabinetplus.backend.security.crypto.DecryptingFileResource;
-import com.cabinetplus.backend.security.crypto.EncryptedFileIO;
 import com.cabinetplus.backend.security.crypto.EncryptionKeyProvider;
-import org.springframework.beans.factory.annotation.Value;
+import com.cabinetplus.backend.storage.BlobStorage;
+import com.cabinetplus.backend.storage.StoredObject;
 import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.http.MediaTypeFactory;
@@ -19,14 +19,10 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.Locale;
 import java.util.Set;
-import java.util.UUID;
 
 @Service
 public class ProthesisStlService {
@@ -37,18 +33,24 @@ public class ProthesisStlService {
     private final ProthesisRepository prothesisRepository;
     private final PlanLimitService planLimitService;
     private final LaboratoryAccessService laboratoryAccessService;
-    private final Path uploadRoot;
+    private final BlobStoreService blobStoreService;
+    private final BlobStorage blobStorage;
+    private final StorageUsageService storageUsageService;
 
     public ProthesisStlService(
             ProthesisRepository prothesisRepository,
             PlanLimitService planLimitService,
             LaboratoryAccessService laboratoryAccessService,
-            @Value("${app.protheses.stl-upload-dir:uploads/protheses/stl}") String uploadDir
+            BlobStoreService blobStoreService,
+            BlobStorage blobStorage,
+            StorageUsageService storageUsageService
     ) {
         this.prothesisRepository = prothesisRepository;
         this.planLimitService = planLimitService;
         this.laboratoryAccessService = laboratoryAccessService;
-        this.uploadRoot = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.blobStoreService = blobStoreService;
+        this.blobStorage = blobStorage;
+        this.storageUsageService = storageUsageService;
     }
 
     public Prothesis uploadForDentist(Long prothesisId, MultipartFile file, User ownerDentist, User actor) {
@@ -59,7 +61,7 @@ public class ProthesisStlService {
 
     public Resource getResourceForDentist(Long prothesisId, User ownerDentist) {
         Prothesis prothesis = requireProthesisOwnedBy(prothesisId, ownerDentist);
-        return toResource(requireExistingStlPath(prothesis));
+        return toResource(requireExistingStlFile(prothesis));
     }
 
     public MediaType getMediaTypeForDentist(Long prothesisId, User ownerDentist) {
@@ -78,7 +80,7 @@ public class ProthesisStlService {
 
     public Resource getResourceForLab(Long prothesisId, User labUser) {
         Prothesis prothesis = requireProthesisForLab(prothesisId, labUser);
-        return toResource(requireExistingStlPath(prothesis));
+        return toResource(requireExistingStlFile(prothesis));
     }
 
     public MediaType getMediaTypeForLab(Long prothesisId, User labUser) {
@@ -115,31 +117,24 @@ public class ProthesisStlService {
         long nextTotalBytes = Math.max(0L, currentStorageBytes - previousStoredBytes) + estimatedStoredBytes;
         planLimitService.assertStorageWithinLimit(ownerDentist, nextTotalBytes);
 
-        Path destination = null;
+        BlobStoreService.StoredBlobRef blob = null;
         String previousPath = prothesis.getStlPathOrUrl();
         try {
-            Files.createDirectories(uploadRoot);
-
-            String storedFilename = UUID.randomUUID() + ".stl";
-            destination = uploadRoot.resolve(storedFilename).normalize();
-
-            byte[] kek = EncryptionKeyProvider.getOrLoadKek();
-            try (InputStream in = file.getInputStream(); OutputStream out = Files.newOutputStream(destination)) {
-                EncryptedFileIO.encryptToStream(in, out, kek);
-             }
-             long storedBytes = Files.size(destination);
+            try (InputStream in = file.getInputStream()) {
+                blob = blobStoreService.store(blobOwnerId(prothesis, ownerDentist), in);
+            }
 
-            String stlFilename = sanitizeFilename(originalFilename, storedFilename);
+            String stlFilename = sanitizeFilename(originalFilename, prothesis.getId() + ".stl");
             String stlFileType = resolveFileType(file, extension);
             LocalDateTime stlUploadedAt = LocalDateTime.now();
-            String stlPathOrUrl = destination.toString();
+            String stlPathOrUrl = blob.location();
             User updater = actor != null ? actor : ownerDentist;
 
             int updated = prothesisRepository.updateStlAttachment(
                     prothesis.getId(),
                     stlFilename,
                     stlFileType,
-                    storedBytes,
+                    blob.storedBytes(),
                     stlUploadedAt,
                     stlPathOrUrl,
                     actor,
@@ -147,17 +142,20 @@ public class ProthesisStlService {
                     LocalDateTime.now()
             );
             if (updated != 1) {
-                deleteBestEffort(stlPathOrUrl);
+                blobStoreService.release(stlPathOrUrl);
                 throw new NotFoundException("Prothese introuvable");
             }
 
-            deleteBestEffort(previousPath);
+            // Re-uploading the same scan yields the same blob; the new reference replaced the old one.
+            releaseOrDelete(previousPath, blobOwnerId(prothesis, ownerDentist), previousStoredBytes);
             return requireProthesisOwnedBy(prothesis.getId(), ownerDentist);
-         } catch (IOException ex) {
-             deleteBestEffort(destination != null ? destination.toString() : null);
-             throw new RuntimeException("Impossible d'enregistrer le fichier STL", ex);
-         }
-     }
+        } catch (IOException ex) {
+            if (blob != null) {
+                blobStoreService.release(blob.location());
+            }
+            throw new RuntimeException("Impossible d'enregistrer le fichier STL", ex);
+        }
+    }
 
     private Prothesis requireProthesisOwnedBy(Long id, User ownerDentist) {
         return prothesisRepository.findForResponseById(id)
@@ -191,20 +189,20 @@ public class ProthesisStlService {
         }
     }
 
-    private Path requireExistingStlPath(Prothesis prothesis) {
+    private StoredObject requireExistingStlFile(Prothesis prothesis) {
         String pathOrUrl = prothesis != null ? prothesis.getStlPathOrUrl() : null;
         if (pathOrUrl == null || pathOrUrl.isBlank()) {
             throw new NotFoundException("Fichier STL introuvable");
         }
-        Path path = Paths.get(pathOrUrl).toAbsolutePath().normalize();
-        if (!Files.exists(path)) {
+        StoredObject file = blobStorage.object(pathOrUrl);
+        if (!file.exists()) {
             throw new NotFoundException("Fichier STL introuvable");
         }
-        return path;
+        return file;
     }
 
-    private Resource toResource(Path path) {
-        return new DecryptingFileResource(path, EncryptionKeyProvider.getOrLoadKek());
+    private Resource toResource(StoredObject file) {
+        return new DecryptingFileResource(file, EncryptionKeyProvider.getOrLoadKek());
     }
 
     private MediaType resolveMediaType(Prothesis prothesis) {
@@ -264,14 +262,21 @@ public class ProthesisStlService {
         return Math.max(0L, bytes);
     }
 
-    private void deleteBestEffort(String previousPathOrUrl) {
+    private static Long blobOwnerId(Prothesis prothesis, User ownerDentist) {
+        // Storage is accounted to the practitioner, which differs from the caller when an admin uploads.
+        return prothesis.getPractitioner() != null ? prothesis.getPractitioner().getId() : ownerDentist.getId();
+    }
+
+    private void releaseOrDelete(String previousPathOrUrl, Long ownerId, long previousBytes) {
         if (previousPathOrUrl == null || previousPathOrUrl.isBlank()) {
             return;
         }
         try {
-            Path previous = Paths.get(previousPathOrUrl).toAbsolutePath().normalize();
-            if (Files.exists(previous)) {
-                Files.delete(previous);
+            if (blobStoreService.release(previousPathOrUrl)) {
+                return;
+            }
+            if (blobStorage.delete(previousPathOrUrl)) {
+                storageUsageService.add(ownerId, -previousBytes);
             }
         } catch (Exception ignored) {
             // best-effort cleanup
@@ -0,0 +1,329 @@
+package com.cabinetplus.backend.services;
+
+import com.cabinetplus.backend.exceptions.TooManyRequestsException;
+import com.cabinetplus.backend.security.crypto.EncryptedFileIO;
+import com.cabinetplus.backend.security.crypto.EncryptionKeyProvider;
+import com.cabinetplus.backend.storage.StoredObject;
+import com.cabinetplus.backend.util.StoredZipWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams the files of a prosthesis case as one ZIP, decrypting each file straight into the response.
+ *
+ * <p>Entries are STORED through {@link StoredZipWriter}, so the archive length is known before writing and sent as
+ * {@code Content-Length}; archives too large for plain ZIP fall back to {@link ZipOutputStream} (ZIP64, chunked).
+ * Each entry's plaintext CRC-32 is the one recorded when the file was stored (computed for older files), so local
+ * headers are complete and streaming unzippers can read the archive.
+ * At most {@code app.protheses.zip.max-concurrent} bundles are written at once. Further requests wait briefly for
+ * a slot, and beyond {@code max-queued} waiting requests the client gets a 429 instead of another busy thread.
+ * In the fallback, entries that are already compressed (zip, DICOM) are STORED rather than deflated a second time.</p>
+ */
+@Service
+public class ProthesisZipService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProthesisZipService.class);
+
+    private static final Set<String> STORED_EXTENSIONS = Set.of(
+            "zip", "dcm", "dicom", "jpg", "jpeg", "png", "gz", "7z", "rar"
+    );
+
+    private final Semaphore slots;
+    private final int maxQueued;
+    private final long queueTimeoutMillis;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalMillis = new AtomicLong();
+    private final AtomicLong maxMillis = new AtomicLong();
+    private final AtomicReference<Stats> lastLoggedStats = new AtomicReference<>();
+
+    public ProthesisZipService(
+            @Value("${app.protheses.zip.max-concurrent:4}") int maxConcurrent,
+            @Value("${app.protheses.zip.max-queued:16}") int maxQueued,
+            @Value("${app.protheses.zip.queue-timeout-ms:5000}") long queueTimeoutMillis
+    ) {
+        this.slots = new Semaphore(Math.max(1, maxConcurrent), true);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.queueTimeoutMillis = Math.max(0L, queueTimeoutMillis);
+    }
+
+    /** Bundling counters: current load plus completed-bundle latency. */
+    public record Stats(int active, int waiting, long completed, long failed, long rejected, long averageMillis, long maxMillis) {}
+
+    public Stats stats() {
+        long done = completed.get() + failed.get();
+        return new Stats(
+                active.get(),
+                waiting.get(),
+                completed.get(),
+                failed.get(),
+                rejected.get(),
+                done > 0 ? totalMillis.get() / done : 0L,
+                maxMillis.get()
+        );
+    }
+
+    /** Logs this node's {@link #stats()} when they changed since the last line, so an idle node stays quiet. */
+    @Scheduled(
+            initialDelayString = "${app.protheses.zip.stats-log-interval-ms:300000}",
+            fixedDelayString = "${app.protheses.zip.stats-log-interval-ms:300000}"
+    )
+    public void logStats() {
+        Stats stats = stats();
+        if (!stats.equals(lastLoggedStats.getAndSet(stats))) {
+            log.info("ZIP bundling {}", stats);
+        }
+    }
+
+    /**
+     * A reserved bundle: {@code abandon} must run when the request ends, since an async request that times out or is
+     * aborted before dispatch never runs the body. It frees the slot only if the body hasn't started (a running body
+     * frees it when done), and the body then refuses to run. Abandoning twice is harmless.
+     */
+    public record ZipDownload(StreamingResponseBody body, long contentLength, Runnable abandon) {}
+
+    /**
+     * {@link #stream} as a {@code files.zip} response named {@code filename}, abandoned when the request ends. Both
+     * portals go through here so that no bundle can leak its slot.
+     */
+    public ResponseEntity<StreamingResponseBody> download(
+            List<ProthesisFilesService.ZipEntrySource> sources,
+            String filename,
+            HttpServletRequest request
+    ) {
+        ZipDownload zip = stream(sources);
+        // Completion also fires on async timeout or client abort, when the body may never run.
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(ProthesisZipService.class.getName(),
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                        zip.abandon().run();
+                    }
+                });
+
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(filename, StandardCharsets.UTF_8)
+                .build();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString());
+        if (zip.contentLength() >= 0) {
+            response.contentLength(zip.contentLength());
+        }
+        return response.body(zip.body());
+    }
+
+    /**
+     * Reserves a bundling slot and returns the body that writes the ZIP, with its length when known ({@code -1}
+     * otherwise); the slot is freed once the body has been written or {@link ZipDownload#abandon()} runs first. Throws
+     * {@link TooManyRequestsException} when no slot frees up in time.
+     */
+    public ZipDownload stream(List<ProthesisFilesService.ZipEntrySource> sources) {
+        acquireSlot();
+        // Planning may decrypt files whose CRC wasn't recorded, so it runs under the slot too.
+        List<PlannedEntry> plan;
+        try {
+            plan = plan(sources, EncryptionKeyProvider.getOrLoadKek());
+        } catch (RuntimeException ex) {
+            releaseSlot();
+            throw ex;
+        }
+        long contentLength = StoredZipWriter.archiveLength(plan.stream().map(PlannedEntry::entry).toList());
+        // Whichever of the body and abandon claims the bundle first owns releasing the slot.
+        AtomicBoolean claimed = new AtomicBoolean();
+        StreamingResponseBody body = out -> {
+            if (!claimed.compareAndSet(false, true)) {
+                throw new IOException("ZIP bundle abandoned before the body was written");
+            }
+            long started = System.nanoTime();
+            boolean ok = false;
+            try {
+                byte[] kek = EncryptionKeyProvider.getOrLoadKek();
+                if (contentLength >= 0) {
+                    writeStored(plan, out, kek);
+                } else {
+                    writeZip(plan, out, kek);
+                }
+                ok = true;
+            } finally {
+                releaseSlot();
+                record(started, ok, plan.size());
+            }
+        };
+        Runnable abandon = () -> {
+            if (claimed.compareAndSet(false, true)) {
+                releaseSlot();
+            }
+        };
+        return new ZipDownload(body, contentLength, abandon);
+    }
+
+    record PlannedEntry(StoredZipWriter.Entry entry, StoredObject encryptedFile) {}
+
+    static List<PlannedEntry> plan(List<ProthesisFilesService.ZipEntrySource> sources, byte[] kek) {
+        List<PlannedEntry> plan = new ArrayList<>(sources.size());
+        Set<String> usedNames = new HashSet<>();
+        int index = 0;
+        for (ProthesisFilesService.ZipEntrySource source : sources) {
+            index++;
+            String name = source.entryName() != null && !source.entryName().isBlank()
+                    ? source.entryName()
+                    : ("file-" + index);
+            name = uniqueName(name, usedNames);
+            try {
+                StoredObject file = source.encryptedFile();
+                long crc32 = source.plaintextCrc32() != null ? source.plaintextCrc32() : plaintextCrc32(file, kek);
+                plan.add(new PlannedEntry(
+                        new StoredZipWriter.Entry(name, EncryptedFileIO.plaintextLength(file), crc32, file.lastModified()),
+                        file));
+            } catch (IOException ex) {
+                throw new RuntimeException("Impossible de préparer l'archive", ex);
+            }
+        }
+        return plan;
+    }
+
+    private static long plaintextCrc32(StoredObject file, byte[] kek) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = EncryptedFileIO.openDecryptedStream(file, kek, 0L)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static String uniqueName(String name, Set<String> usedNames) {
+        String candidate = name;
+        int i = 2;
+        while (!usedNames.add(candidate)) {
+            int dot = name.lastIndexOf('.');
+            candidate = dot > 0
+                    ? name.substring(0, dot) + " (" + i + ")" + name.substring(dot)
+                    : name + " (" + i + ")";
+            i++;
+        }
+        return candidate;
+    }
+
+    static void writeStored(List<PlannedEntry> plan, OutputStream out, byte[] kek) throws IOException {
+        StoredZipWriter zip = new StoredZipWriter(out);
+        for (PlannedEntry planned : plan) {
+            try (InputStream in = EncryptedFileIO.openDecryptedStream(planned.encryptedFile(), kek, 0L)) {
+                zip.putEntry(planned.entry(), in);
+            }
+        }
+        zip.finish();
+    }
+
+    private void acquireSlot() {
+        if (slots.tryAcquire()) {
+            active.incrementAndGet();
+            return;
+        }
+        if (waiting.incrementAndGet() > maxQueued) {
+            waiting.decrementAndGet();
+            reject();
+        }
+        boolean acquired;
+        try {
+            acquired = slots.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+        if (!acquired) {
+            reject();
+        }
+        active.incrementAndGet();
+    }
+
+    private void releaseSlot() {
+        active.decrementAndGet();
+        slots.release();
+    }
+
+    private void reject() {
+        rejected.incrementAndGet();
+        log.warn("ZIP bundle rejected: {} active, {} waiting", active.get(), waiting.get());
+        throw new TooManyRequestsException("Trop de téléchargements en cours, réessayez dans un instant");
+    }
+
+    private void record(long startedNanos, boolean ok, int entries) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+        (ok ? completed : failed).incrementAndGet();
+        totalMillis.addAndGet(millis);
+        maxMillis.accumulateAndGet(millis, Math::max);
+        log.info("ZIP bundle of {} file(s) {} in {} ms ({} active, {} waiting)",
+                entries, ok ? "sent" : "aborted", millis, active.get(), waiting.get());
+    }
+
+    static void writeZip(List<PlannedEntry> plan, OutputStream out, byte[] kek) throws IOException {
+        try (ZipOutputStream zipOut = new ZipOutputStream(out, StandardCharsets.UTF_8)) {
+            for (PlannedEntry planned : plan) {
+                String entryName = planned.entry().name();
+                ZipEntry entry = new ZipEntry(entryName);
+                entry.setTime(planned.entry().lastModifiedMillis());
+                if (isStored(entryName)) {
+                    // STORED needs size and CRC up front; both were planned.
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(planned.entry().size());
+                    entry.setCompressedSize(planned.entry().size());
+                    entry.setCrc(planned.entry().crc32());
+                }
+                zipOut.putNextEntry(entry);
+                try (InputStream in = EncryptedFileIO.openDecryptedStream(planned.encryptedFile(), kek, 0L)) {
+                    in.transferTo(zipOut);
+                }
+                zipOut.closeEntry();
+            }
+            zipOut.finish();
+        }
+    }
+
+    static boolean isStored(String entryName) {
+        int dot = entryName.lastIndexOf('.');
+        if (dot < 0 || dot == entryName.length() - 1) return false;
+        return STORED_EXTENSIONS.contains(entryName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,312 @@
+package com.cabinetplus.backend.services;
+
+import com.cabinetplus.backend.dto.ProthesisFileItemResponse;
+import com.cabinetplus.backend.dto.UploadSessionRequest;
+import com.cabinetplus.backend.dto.UploadSessionResponse;
+import com.cabinetplus.backend.exceptions.ConflictException;
+import com.cabinetplus.backend.exceptions.NotFoundException;
+import com.cabinetplus.backend.models.Prothesis;
+import com.cabinetplus.backend.models.UploadSession;
+import com.cabinetplus.backend.models.UploadSessionPart;
+import com.cabinetplus.backend.models.User;
+import com.cabinetplus.backend.repositories.UploadSessionPartRepository;
+import com.cabinetplus.backend.repositories.UploadSessionRepository;
+import com.cabinetplus.backend.storage.BoundedInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Resumable uploads of large prosthesis files (STL, DICOM): start a session, send parts at increasing offsets, then
+ * complete it.
+ *
+ * <p>Each part is encrypted on its own, under a fresh key, and staged in the {@link BlobStoreService} backend, so any
+ * node can take the next part or complete the upload. Progress is the session's {@code receivedBytes}, which only
+ * moves when a part is fully staged; after a dropped connection the client reads the session and resumes there.
+ * Completing streams the parts in order into the blob store. The plan storage limit is checked when the session
+ * starts, counting the owner's other unfinished uploads, so a large upload isn't refused once it has been sent.</p>
+ */
+@Service
+public class ResumableUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ResumableUploadService.class);
+
+    private static final int PURGE_BATCH_SIZE = 100;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadSessionPartRepository uploadSessionPartRepository;
+    private final ProthesisFilesService prothesisFilesService;
+    private final BlobStoreService blobStoreService;
+    private final int partSize;
+    private final Duration sessionTtl;
+    private final Duration completeTimeout;
+
+    public ResumableUploadService(
+            UploadSessionRepository uploadSessionRepository,
+            UploadSessionPartRepository uploadSessionPartRepository,
+            ProthesisFilesService prothesisFilesService,
+            BlobStoreService blobStoreService,
+            @Value("${app.uploads.part-size-bytes:8388608}") long partSizeBytes,
+            @Value("${app.uploads.session-ttl-hours:24}") long sessionTtlHours,
+            @Value("${app.uploads.complete-timeout-minutes:30}") long completeTimeoutMinutes
+    ) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.uploadSessionPartRepository = uploadSessionPartRepository;
+        this.prothesisFilesService = prothesisFilesService;
+        this.blobStoreService = blobStoreService;
+        this.partSize = (int) Math.min(Math.max(partSizeBytes, 64L * 1024), 64L * 1024 * 1024);
+        this.sessionTtl = Duration.ofHours(Math.max(1L, sessionTtlHours));
+        this.completeTimeout = Duration.ofMinutes(Math.max(1L, completeTimeoutMinutes));
+    }
+
+    public UploadSessionResponse start(Long prothesisId, UploadSessionRequest request, User ownerDentist, User actor) {
+        LocalDateTime now = LocalDateTime.now();
+        long sizeBytes = request.sizeBytes() != null ? request.sizeBytes() : -1L;
+        long reservedBytes = uploadSessionRepository.sumOpenTotalBytesByOwner(ownerDentist, now);
+        Prothesis prothesis = prothesisFilesService.checkResumableUpload(
+                prothesisId, request.filename(), sizeBytes, reservedBytes, ownerDentist);
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setOwner(ownerDentist);
+        session.setCreatedBy(actor);
+        session.setProthesis(prothesis);
+        session.setFilename(Paths.get(request.filename().trim()).getFileName().toString());
+        session.setRelativePath(request.relativePath());
+        session.setContentType(request.contentType());
+        session.setTotalBytes(sizeBytes);
+        session.setCreatedAt(now);
+        session.setExpiresAt(now.plus(sessionTtl));
+
+        return toResponse(uploadSessionRepository.save(session));
+    }
+
+    public UploadSessionResponse status(Long prothesisId, String uploadId, User ownerDentist) {
+        return toResponse(requireSession(prothesisId, uploadId, ownerDentist));
+    }
+
+    /**
+     * Stages {@code length} bytes of {@code body} at {@code offset}, which must be the session's current
+     * {@code receivedBytes}; otherwise a {@link ConflictException} tells the client to re-read the session. A part
+     * that ends early is dropped, and must be sent again whole.
+     */
+    public UploadSessionResponse appendPart(
+            Long prothesisId,
+            String uploadId,
+            long offset,
+            long length,
+            InputStream body,
+            User ownerDentist
+    ) {
+        UploadSession session = requireSession(prothesisId, uploadId, ownerDentist);
+        long total = session.getTotalBytes();
+        if (length < 0) {
+            throw new IllegalArgumentException("Taille de la partie obligatoire (Content-Length)");
+        }
+        if (length > partSize) {
+            throw new IllegalArgumentException("Partie trop grande (max " + partSize + " octets)");
+        }
+        if (offset + length > total) {
+            throw new IllegalArgumentException("La partie depasse la taille du fichier");
+        }
+        if (offset != session.getReceivedBytes() || session.getCompletingSince() != null) {
+            throw new ConflictException("Reprendre l'envoi a l'octet " + session.getReceivedBytes());
+        }
+
+        // The row comes first, so the staged object is always found again if this request dies midway.
+        UploadSessionPart part = uploadSessionPartRepository.save(new UploadSessionPart(
+                null, session.getId(), offset, length, blobStoreService.stagingLocation(session.getId()), false,
+                LocalDateTime.now()));
+        boolean committed = false;
+        try {
+            long staged = blobStoreService.stage(part.getLocation(), new BoundedInputStream(body, length));
+            if (staged != length) {
+                throw new IllegalArgumentException("Partie incomplete, reprendre l'envoi");
+            }
+            LocalDateTime expiresAt = LocalDateTime.now().plus(sessionTtl);
+            if (uploadSessionPartRepository.commit(part.getId(), session.getId(), offset, offset + length, expiresAt) == 0) {
+                throw new ConflictException("Une autre partie a ete recue a cet octet, relire l'envoi");
+            }
+            committed = true;
+            session.setReceivedBytes(offset + length);
+            session.setExpiresAt(expiresAt);
+            return toResponse(session);
+        } catch (IOException ex) {
+            throw new RuntimeException("Impossible d'enregistrer la partie", ex);
+        } finally {
+            if (!committed) {
+                discardPart(part);
+            }
+        }
+    }
+
+    public ProthesisFileItemResponse complete(Long prothesisId, String uploadId, User ownerDentist, User actor) {
+        UploadSession session = requireSession(prothesisId, uploadId, ownerDentist);
+        if (session.getReceivedBytes() != session.getTotalBytes()) {
+            throw new ConflictException("Envoi incomplet : "
+                    + session.getReceivedBytes() + " / " + session.getTotalBytes() + " octets recus");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (uploadSessionRepository.claimCompletion(session.getId(), now, now.minus(completeTimeout)) == 0) {
+            throw new ConflictException("Cet envoi est deja en cours de finalisation");
+        }
+
+        ProthesisFileItemResponse created;
+        try (InputStream plaintext = openParts(session)) {
+            created = prothesisFilesService.attachUploadedFile(
+                    prothesisId,
+                    plaintext,
+                    session.getFilename(),
+                    session.getRelativePath(),
+                    session.getContentType(),
+                    ownerDentist,
+                    actor
+            );
+        } catch (IOException | RuntimeException ex) {
+            uploadSessionRepository.releaseCompletion(session.getId());
+            if (ex instanceof RuntimeException runtime) throw runtime;
+            throw new RuntimeException("Impossible de finaliser l'envoi", ex);
+        }
+        uploadSessionRepository.deleteById(session.getId());
+        discardParts(session.getId());
+        return created;
+    }
+
+    public void abort(Long prothesisId, String uploadId, User ownerDentist) {
+        UploadSession session = requireSession(prothesisId, uploadId, ownerDentist);
+        if (!discard(session.getId(), LocalDateTime.now())) {
+            throw new ConflictException("Cet envoi est en cours de finalisation");
+        }
+    }
+
+    /** Drops expired sessions, and staged parts left behind by interrupted requests or deleted sessions. */
+    @Scheduled(
+            initialDelayString = "${app.uploads.cleanup-initial-delay-ms:600000}",
+            fixedDelayString = "${app.uploads.cleanup-interval-ms:3600000}"
+    )
+    public int purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        int sessions = 0;
+        List<UploadSession> expired;
+        do {
+            expired = uploadSessionRepository.findTop100ByExpiresAtBeforeOrderByExpiresAtAsc(now);
+            int skipped = 0;
+            for (UploadSession session : expired) {
+                if (discard(session.getId(), now)) {
+                    sessions++;
+                } else {
+                    skipped++;
+                }
+            }
+            if (skipped == expired.size()) break;
+        } while (expired.size() == PURGE_BATCH_SIZE);
+
+        int parts = 0;
+        List<UploadSessionPart> abandoned;
+        do {
+            abandoned = uploadSessionPartRepository.findAbandoned(now.minus(sessionTtl), PageRequest.of(0, PURGE_BATCH_SIZE));
+            int removed = 0;
+            for (UploadSessionPart part : abandoned) {
+                if (discardPart(part)) removed++;
+            }
+            parts += removed;
+            if (removed == 0) break;
+        } while (abandoned.size() == PURGE_BATCH_SIZE);
+
+        if (sessions + parts > 0) {
+            log.info("Purged {} abandoned upload(s) and {} staged part(s)", sessions, parts);
+        }
+        return sessions + parts;
+    }
+
+    private UploadSession requireSession(Long prothesisId, String uploadId, User ownerDentist) {
+        if (uploadId == null || prothesisId == null || ownerDentist == null || ownerDentist.getId() == null) {
+            throw new NotFoundException("Envoi introuvable");
+        }
+        return uploadSessionRepository.findByIdAndProthesisId(uploadId, prothesisId)
+                .filter(session -> session.getOwner() != null && ownerDentist.getId().equals(session.getOwner().getId()))
+                .filter(session -> session.getExpiresAt() == null || session.getExpiresAt().isAfter(LocalDateTime.now()))
+                .orElseThrow(() -> new NotFoundException("Envoi introuvable"));
+    }
+
+    /** Deletes the session and its parts, unless it is being completed. */
+    private boolean discard(String uploadId, LocalDateTime now) {
+        if (uploadSessionRepository.deleteUnlessCompleting(uploadId, now.minus(completeTimeout)) == 0) {
+            return false;
+        }
+        discardParts(uploadId);
+        return true;
+    }
+
+    /** Committed parts only: uncommitted ones belong to a request still in flight, or are purged later. */
+    private void discardParts(String uploadId) {
+        for (UploadSessionPart part : uploadSessionPartRepository.findByUploadIdAndCommittedTrueOrderByStartOffsetAsc(uploadId)) {
+            discardPart(part);
+        }
+    }
+
+    private boolean discardPart(UploadSessionPart part) {
+        if (!blobStoreService.deleteStaged(part.getLocation())) {
+            return false;
+        }
+        uploadSessionPartRepository.deleteById(part.getId());
+        return true;
+    }
+
+    /** The session's plaintext, read part after part; each part is opened only when the previous one is done. */
+    private InputStream openParts(UploadSession session) {
+        List<UploadSessionPart> parts =
+                uploadSessionPartRepository.findByUploadIdAndCommittedTrueOrderByStartOffsetAsc(session.getId());
+        long expected = 0L;
+        for (UploadSessionPart part : parts) {
+            if (part.getStartOffset() != expected) break;
+            expected += part.getLengthBytes();
+        }
+        if (expected != session.getTotalBytes()) {
+            throw new IllegalStateException("Parties manquantes pour l'envoi " + session.getId());
+        }
+
+        Iterator<UploadSessionPart> remaining = parts.iterator();
+        return new SequenceInputStream(new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return remaining.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                try {
+                    return blobStoreService.openStaged(remaining.next().getLocation());
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        });
+    }
+
+    private UploadSessionResponse toResponse(UploadSession session) {
+        return new UploadSessionResponse(
+                session.getId(),
+                session.getFilename(),
+                session.getTotalBytes(),
+                session.getReceivedBytes(),
+                partSize,
+                session.getExpiresAt()
+        );
+    }
+}
@@ -0,0 +1,153 @@
+package com.cabinetplus.backend.services;
+
+import com.cabinetplus.backend.models.User;
+import com.cabinetplus.backend.repositories.DocumentRepository;
+import com.cabinetplus.backend.repositories.ProthesisFileRepository;
+import com.cabinetplus.backend.repositories.ProthesisRepository;
+import com.cabinetplus.backend.repositories.StoredBlobRepository;
+import com.cabinetplus.backend.repositories.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Storage used by each clinic, kept in {@code storage_usage} so the limit check before an upload reads one row instead
+ * of summing every file the clinic owns.
+ *
+ * <p>The blob store adjusts the counter when a blob gains its first reference or loses its last one, except for blobs
+ * only cancelled rows still point at, which the counter no longer includes. Changes touching
+ * many files at once (cancelling a document or a prosthesis) drop the row instead, and the next read recomputes it
+ * from the file tables. {@link #reconcile()} recomputes rows periodically to absorb any drift, e.g. from an upload
+ * racing a recomputation.</p>
+ */
+@Service
+public class StorageUsageService {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageUsageService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DocumentRepository documentRepository;
+    private final ProthesisRepository prothesisRepository;
+    private final ProthesisFileRepository prothesisFileRepository;
+    private final StoredBlobRepository storedBlobRepository;
+    private final UserRepository userRepository;
+    private final Duration reconcileMaxAge;
+    private final int reconcileBatchSize;
+
+    public StorageUsageService(
+            JdbcTemplate jdbcTemplate,
+            DocumentRepository documentRepository,
+            ProthesisRepository prothesisRepository,
+            ProthesisFileRepository prothesisFileRepository,
+            StoredBlobRepository storedBlobRepository,
+            UserRepository userRepository,
+            @Value("${app.storage.usage.reconcile-max-age-minutes:360}") long reconcileMaxAgeMinutes,
+            @Value("${app.storage.usage.reconcile-batch-size:200}") int reconcileBatchSize
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.documentRepository = documentRepository;
+        this.prothesisRepository = prothesisRepository;
+        this.prothesisFileRepository = prothesisFileRepository;
+        this.storedBlobRepository = storedBlobRepository;
+        this.userRepository = userRepository;
+        this.reconcileMaxAge = Duration.ofMinutes(Math.max(0L, reconcileMaxAgeMinutes));
+        this.reconcileBatchSize = Math.max(1, reconcileBatchSize);
+    }
+
+    /** Bytes currently stored by the clinic, from its counter; computed and saved on first use. */
+    public long usedBytes(User ownerDentist) {
+        if (ownerDentist.getId() != null) {
+            List<Long> rows = jdbcTemplate.queryForList(
+                    "select used_bytes from storage_usage where owner_id = ?", Long.class, ownerDentist.getId());
+            if (!rows.isEmpty() && rows.get(0) != null) {
+                return rows.get(0);
+            }
+        }
+        return recompute(ownerDentist);
+    }
+
+    /** Exact usage summed from the file tables; also resets the clinic's counter to it. */
+    public long recompute(User ownerDentist) {
+        // Deduplicated uploads are counted once, from their blob; other rows by their own size.
+        long used = documentRepository.sumFileSizeBytesByOwner(ownerDentist)
+                + prothesisRepository.sumStlFileSizeBytesByOwner(ownerDentist)
+                + prothesisFileRepository.sumFileSizeBytesByOwner(ownerDentist)
+                + storedBlobRepository.sumReferencedSizeBytesByOwner(ownerDentist);
+        if (ownerDentist.getId() != null) {
+            jdbcTemplate.update("""
+                    insert into storage_usage (owner_id, used_bytes, updated_at, reconciled_at)
+                    values (?, ?, now(), now())
+                    on conflict (owner_id)
+                    do update set used_bytes = excluded.used_bytes, updated_at = now(), reconciled_at = now()
+                    """, ownerDentist.getId(), used);
+        }
+        return used;
+    }
+
+    /**
+     * Adds {@code deltaBytes} (negative when files go away) to the clinic's counter. Without a counter yet there is
+     * nothing to do: the first read computes usage including this change.
+     */
+    public void add(Long ownerId, long deltaBytes) {
+        if (ownerId == null || deltaBytes == 0) return;
+        jdbcTemplate.update("""
+                update storage_usage
+                set used_bytes = greatest(used_bytes + ?, 0), updated_at = now()
+                where owner_id = ?
+                """, deltaBytes, ownerId);
+    }
+
+    /**
+     * Subtracts a blob that just lost its last reference. A blob that only cancelled rows still point at is skipped:
+     * the recomputation that followed their cancellation already left it out.
+     */
+    public void releaseBlob(Long ownerId, String storagePath, long sizeBytes) {
+        if (ownerId == null || sizeBytes <= 0) return;
+        if (storagePath != null && storedBlobRepository.countReferencedOnlyByCancelledRows(storagePath) > 0) return;
+        add(ownerId, -sizeBytes);
+    }
+
+    /** Drops the clinic's counter so the next read recomputes it. */
+    public void invalidate(Long ownerId) {
+        if (ownerId == null) return;
+        jdbcTemplate.update("delete from storage_usage where owner_id = ?", ownerId);
+    }
+
+    /** Recomputes the counters not reconciled for {@code app.storage.usage.reconcile-max-age-minutes}. */
+    @Scheduled(
+            initialDelayString = "${app.storage.usage.reconcile-initial-delay-ms:600000}",
+            fixedDelayString = "${app.storage.usage.reconcile-interval-ms:900000}"
+    )
+    public int reconcile() {
+        List<Long> ownerIds = jdbcTemplate.queryForList("""
+                select owner_id from storage_usage
+                where reconciled_at < now() - make_interval(secs => ?)
+                order by reconciled_at
+                limit ?
+                """, Long.class, reconcileMaxAge.toSeconds(), reconcileBatchSize);
+        int drifted = 0;
+        for (Long ownerId : ownerIds) {
+            try {
+                List<Long> before = jdbcTemplate.queryForList(
+                        "select used_bytes from storage_usage where owner_id = ?", Long.class, ownerId);
+                long after = recompute(userRepository.getReferenceById(ownerId));
+                if (!before.isEmpty() && before.get(0) != after) {
+                    drifted++;
+                    log.debug("Storage usage of clinic {} corrected from {} to {} bytes", ownerId, before.get(0), after);
+                }
+            } catch (RuntimeException ex) {
+                log.warn("Could not reconcile storage usage of clinic {}", ownerId, ex);
+            }
+        }
+        if (drifted > 0) {
+            log.info("Reconciled storage usage of {} clinic(s), {} had drifted", ownerIds.size(), drifted);
+        }
+        return ownerIds.size();
+    }
+}
@@ -1,23 +1,38 @@
 package com.cabinetplus.backend.services;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Locale;
 import java.util.UUID;
-import java.util.Comparator;
-import java.util.stream.Stream;
 
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.cabinetplus.backend.exceptions.BadRequestException;
+import com.cabinetplus.backend.security.crypto.DecryptingFileResource;
+import com.cabinetplus.backend.security.crypto.EncryptedFileIO;
+import com.cabinetplus.backend.security.crypto.EncryptionKeyProvider;
+import com.cabinetplus.backend.storage.BlobStorage;
+import com.cabinetplus.backend.storage.StoredObject;
 
 @Service
 public class SupportAttachmentStorageService {
 
     private static final long MAX_IMAGE_BYTES = 5L * 1024L * 1024L;
+    private static final Path SUPPORT_DIR = Paths.get("uploads", "support");
+
+    private final BlobStorage blobStorage;
+
+    public SupportAttachmentStorageService(BlobStorage blobStorage) {
+        this.blobStorage = blobStorage;
+    }
 
     public record StoredAttachment(
             String path,
@@ -48,53 +63,78 @@ public class SupportAttachmentStorageService {
         String extension = inferExtension(originalName, contentType);
         String fileName = UUID.randomUUID() + extension;
 
-        Path baseDir = Paths.get(System.getProperty("user.dir"), "uploads", "support", "thread-" + threadId);
+        String storedPath = SUPPORT_DIR.resolve("thread-" + threadId).resolve(fileName).toString().replace("\\", "/");
+        Path tmp = null;
         try {
-            Files.createDirectories(baseDir);
-            Path target = baseDir.resolve(fileName);
-            file.transferTo(target);
+            tmp = Files.createTempFile("support-", ".part");
+            // Encrypted like patient documents; images may show patient data.
+            try (InputStream in = file.getInputStream(); OutputStream out = Files.newOutputStream(tmp)) {
+                EncryptedFileIO.encryptToStream(in, out, EncryptionKeyProvider.getOrLoadKek());
+            }
+            blobStorage.put(blobStorage.locationFor(storedPath), tmp);
         } catch (IOException ex) {
             throw new BadRequestException(java.util.Map.of("_", "Erreur lors de l'enregistrement de l'image"));
+        } finally {
+            deleteQuietly(tmp);
         }
 
         return new StoredAttachment(
-                Paths.get("uploads", "support", "thread-" + threadId, fileName).toString().replace("\\", "/"),
+                storedPath,
                 contentType,
                 originalName,
                 size
         );
     }
 
-    public byte[] loadBytes(String storedPath) throws IOException {
-        if (storedPath == null || storedPath.isBlank()) return null;
+    /**
+     * Streams a stored attachment: encrypted files are decrypted on the fly, and images stored in plaintext before
+     * attachments were encrypted (only ever on local disk) are served as they are.
+     */
+    public Resource loadResource(String storedPath) throws IOException {
+        StoredObject stored = blobStorage.object(resolveStoredLocation(storedPath));
+        if (EncryptedFileIO.isEncryptedFile(stored)) {
+            return new DecryptingFileResource(stored, EncryptionKeyProvider.getOrLoadKek());
+        }
+        Path legacy = stored.localFile().orElseThrow(() -> new NoSuchFileException(storedPath));
+        return new FileSystemResource(legacy);
+    }
+
+    /**
+     * Storage location of an existing attachment, refusing anything outside the support uploads folder.
+     */
+    public String resolveStoredLocation(String storedPath) throws IOException {
+        if (storedPath == null || storedPath.isBlank()) {
+            throw new NoSuchFileException("Attachment path is empty");
+        }
         Path relative = Paths.get(storedPath);
         if (relative.isAbsolute()) {
             throw new IOException("Invalid path");
         }
-
-        Path base = Paths.get(System.getProperty("user.dir"), "uploads", "support").normalize();
-        Path p = Paths.get(System.getProperty("user.dir")).resolve(relative).normalize();
-        if (!p.startsWith(base)) {
+        relative = relative.normalize();
+        if (!relative.startsWith(SUPPORT_DIR)) {
             throw new IOException("Invalid path");
         }
-        return Files.readAllBytes(p);
+        String location = blobStorage.locationFor(relative.toString().replace("\\", "/"));
+        if (!blobStorage.object(location).exists()) {
+            throw new NoSuchFileException(storedPath);
+        }
+        return location;
     }
 
     public void deleteThreadFolder(Long threadId) {
         if (threadId == null) return;
-        Path base = Paths.get(System.getProperty("user.dir"), "uploads", "support").normalize();
-        Path dir = Paths.get(System.getProperty("user.dir"), "uploads", "support", "thread-" + threadId).normalize();
-        if (!dir.startsWith(base)) return;
-        if (!Files.exists(dir)) return;
-        try (Stream<Path> walk = Files.walk(dir)) {
-            walk.sorted(Comparator.reverseOrder())
-                    .forEach(p -> {
-                        try {
-                            Files.deleteIfExists(p);
-                        } catch (IOException ignored) {
-                            // ignore
-                        }
-                    });
+        String dir = SUPPORT_DIR.resolve("thread-" + threadId).toString().replace("\\", "/");
+        try {
+            blobStorage.deleteAll(blobStorage.locationFor(dir) + "/");
+        } catch (IOException ignored) {
+            // ignore
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) return;
+        try {
+            Files.deleteIfExists(path);
         } catch (IOException ignored) {
             // ignore
         }
@@ -46,6 +46,8 @@ public class SupportService {
     private final LaboratoryRepository laboratoryRepository;
     private final ApplicationEventPublisher eventPublisher;
     private final MessagingWebSocketHandler messagingWebSocketHandler;
+    private final MessagingLastSeenService lastSeenService;
+    private final ThumbnailService thumbnailService;
 
     @Transactional
     public List<SupportThreadSummaryResponse> listMyThreads(User actor) {
@@ -225,6 +227,7 @@ public class SupportService {
         message.setAttachmentSize(stored.size());
         message.setCreatedAt(LocalDateTime.now());
         SupportMessage saved = messageRepository.save(message);
+        prepareThumbnails(stored);
 
         thread.setUpdatedAt(LocalDateTime.now());
         if (thread.getFirstMessageAt() == null) {
@@ -314,6 +317,7 @@ public class SupportService {
         message.setAttachmentSize(stored.size());
         message.setCreatedAt(LocalDateTime.now());
         SupportMessage saved = messageRepository.save(message);
+        prepareThumbnails(stored);
 
         thread.setUpdatedAt(LocalDateTime.now());
         if (thread.getFirstMessageAt() == null) {
@@ -360,14 +364,33 @@ public class SupportService {
                 .orElseThrow(() -> new NotFoundException("Message introuvable"));
     }
 
-    public byte[] loadAttachmentBytes(String storedPath) {
+    public org.springframework.core.io.Resource loadAttachment(String storedPath) {
         try {
-            return attachmentStorageService.loadBytes(storedPath);
+            return attachmentStorageService.loadResource(storedPath);
         } catch (java.io.IOException ex) {
             throw new NotFoundException("Pièce jointe introuvable");
         }
     }
 
+    public org.springframework.core.io.Resource loadAttachmentThumbnail(SupportMessage message, ThumbnailService.Size size) {
+        if (message.getAttachmentPath() == null || !ThumbnailService.isSupported(message.getAttachmentContentType())) {
+            throw new NotFoundException("Aperçu indisponible");
+        }
+        try {
+            return thumbnailService.thumbnail(attachmentStorageService.resolveStoredLocation(message.getAttachmentPath()), size);
+        } catch (java.io.IOException ex) {
+            throw new NotFoundException("Pièce jointe introuvable");
+        }
+    }
+
+    private void prepareThumbnails(SupportAttachmentStorageService.StoredAttachment stored) {
+        try {
+            thumbnailService.prepare(attachmentStorageService.resolveStoredLocation(stored.path()), stored.contentType());
+        } catch (java.io.IOException ignored) {
+            // built on first request instead
+        }
+    }
+
     public List<SupportThreadSummaryResponse> adminListThreads(String query, User admin) {
         requireAdminUser(admin);
         String q = query != null ? query.trim().toLowerCase() : "";
@@ -687,11 +710,11 @@ public class SupportService {
         User lastSender = lastMessage != null ? lastMessage.getSender() : null;
         String lastSenderRole = lastSender != null && lastSender.getRole() != null ? lastSender.getRole().name() : null;
 
-        LocalDateTime ownerLastSeenAt = owner != null ? owner.getMessagingLastSeenAt() : null;
+        LocalDateTime ownerLastSeenAt = owner != null ? lastSeenService.lastSeenAt(owner) : null;
         boolean ownerOnline = owner != null
                 && (messagingWebSocketHandler.isOnlineForDisplay(owner.getPhoneNumber()) || isRecentlySeen(ownerLastSeenAt));
 
-        LocalDateTime lastClinicSenderLastSeenAt = lastClinicSender != null ? lastClinicSender.getMessagingLastSeenAt() : null;
+        LocalDateTime lastClinicSenderLastSeenAt = lastClinicSender != null ? lastSeenService.lastSeenAt(lastClinicSender) : null;
         boolean lastClinicSenderOnline = lastClinicSender != null
                 && (messagingWebSocketHandler.isOnlineForDisplay(lastClinicSender.getPhoneNumber()) || isRecentlySeen(lastClinicSenderLastSeenAt));
 
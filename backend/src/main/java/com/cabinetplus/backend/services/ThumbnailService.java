@@ -0,0 +1,291 @@
+package com.cabinetplus.backend.services;
+
+import com.cabinetplus.backend.exceptions.NotFoundException;
+import com.cabinetplus.backend.exceptions.TooManyRequestsException;
+import com.cabinetplus.backend.security.crypto.DecryptingFileResource;
+import com.cabinetplus.backend.security.crypto.EncryptedFileIO;
+import com.cabinetplus.backend.security.crypto.EncryptionKeyProvider;
+import com.cabinetplus.backend.storage.BlobStorage;
+import com.cabinetplus.backend.storage.StoredObject;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JPEG previews of stored images, so list views don't download and decrypt full-resolution files.
+ *
+ * <p>A thumbnail is stored encrypted next to its original as {@code <original>.thumb-<px>}. It is generated on first
+ * request, or ahead of time after an upload, by a small bounded worker pool; concurrent requests for the same
+ * thumbnail share one generation. Blob reclaim and thread folder deletion remove thumbnails with their original.</p>
+ */
+@Service
+public class ThumbnailService {
+
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailService.class);
+
+    private static final Set<String> SUPPORTED_TYPES = Set.of(
+            "image/jpeg", "image/jpg", "image/png", "image/gif", "image/bmp", "image/tiff"
+    );
+    private static final float JPEG_QUALITY = 0.8f;
+    // Larger images are left alone rather than decoded (decompression bombs).
+    private static final long MAX_SOURCE_PIXELS = 100_000_000L;
+
+    public enum Size {
+        SMALL(160),
+        MEDIUM(480);
+
+        private final int pixels;
+
+        Size(int pixels) {
+            this.pixels = pixels;
+        }
+
+        public int pixels() {
+            return pixels;
+        }
+
+        public static Size parse(String value) {
+            if (value == null || value.isBlank()) return SMALL;
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Taille d'aperçu invalide");
+            }
+        }
+    }
+
+    private final BlobStorage blobStorage;
+    private final ThreadPoolExecutor workers;
+    private final long waitMillis;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    public ThumbnailService(
+            BlobStorage blobStorage,
+            @Value("${app.thumbnails.workers:2}") int workerCount,
+            @Value("${app.thumbnails.queue-capacity:64}") int queueCapacity,
+            @Value("${app.thumbnails.wait-ms:10000}") long waitMillis
+    ) {
+        this.blobStorage = blobStorage;
+        int threads = Math.max(1, workerCount);
+        AtomicInteger sequence = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(
+                threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, queueCapacity)),
+                task -> {
+                    Thread thread = new Thread(task, "thumbnail-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.workers.allowCoreThreadTimeOut(true);
+        this.waitMillis = Math.max(0L, waitMillis);
+    }
+
+    public static boolean isSupported(String contentType) {
+        if (contentType == null || contentType.isBlank()) return false;
+        try {
+            MediaType type = MediaType.parseMediaType(contentType);
+            return SUPPORTED_TYPES.contains((type.getType() + "/" + type.getSubtype()).toLowerCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Thumbnail of {@code original}, generating it if needed. Throws {@link TooManyRequestsException} when the
+     * workers are saturated or generation takes longer than the configured wait; the client retries later.
+     */
+    public Resource thumbnail(String original, Size size) {
+        String thumbnail = thumbnailLocation(original, size);
+        if (!isFresh(original, thumbnail)) {
+            CompletableFuture<String> generation = submit(original, thumbnail, size);
+            if (generation == null) {
+                throw new TooManyRequestsException("Aperçu en cours de préparation, réessayez");
+            }
+            try {
+                generation.get(waitMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                throw new TooManyRequestsException("Aperçu en cours de préparation, réessayez");
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new TooManyRequestsException("Aperçu en cours de préparation, réessayez");
+            } catch (ExecutionException ex) {
+                throw new NotFoundException("Aperçu indisponible");
+            }
+        }
+        return new DecryptingFileResource(blobStorage.object(thumbnail), EncryptionKeyProvider.getOrLoadKek());
+    }
+
+    /**
+     * Queues generation of every size for a freshly stored image. Dropped silently when the pool is busy; the
+     * thumbnail is then built on first request.
+     */
+    public void prepare(String original, String contentType) {
+        if (!isSupported(contentType)) return;
+        for (Size size : Size.values()) {
+            String thumbnail = thumbnailLocation(original, size);
+            if (!isFresh(original, thumbnail)) {
+                submit(original, thumbnail, size);
+            }
+        }
+    }
+
+    static String thumbnailLocation(String original, Size size) {
+        return original + ".thumb-" + size.pixels();
+    }
+
+    private CompletableFuture<String> submit(String original, String thumbnail, Size size) {
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(thumbnail, created);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    generate(original, thumbnail, size.pixels());
+                    created.complete(thumbnail);
+                } catch (Throwable ex) {
+                    log.warn("Could not build thumbnail for {}: {}", original, ex.getMessage());
+                    created.completeExceptionally(ex);
+                } finally {
+                    inFlight.remove(thumbnail, created);
+                }
+            });
+            return created;
+        } catch (RejectedExecutionException ex) {
+            inFlight.remove(thumbnail, created);
+            return null;
+        }
+    }
+
+    private boolean isFresh(String original, String thumbnail) {
+        try {
+            StoredObject thumb = blobStorage.object(thumbnail);
+            return thumb.exists() && thumb.lastModified() >= blobStorage.object(original).lastModified();
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    void generate(String original, String thumbnail, int maxPixels) throws IOException {
+        BufferedImage source;
+        try (InputStream in = EncryptedFileIO.openDecryptedStream(blobStorage.object(original), EncryptionKeyProvider.getOrLoadKek(), 0L);
+             ImageInputStream images = ImageIO.createImageInputStream(in)) {
+            source = decodeSubsampled(images, maxPixels);
+        }
+
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        writeJpeg(scale(source, maxPixels), jpeg);
+
+        Path tmp = Files.createTempFile("thumbnail-", ".part");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                EncryptedFileIO.encryptToStream(new ByteArrayInputStream(jpeg.toByteArray()), out, EncryptionKeyProvider.getOrLoadKek());
+            }
+            blobStorage.put(thumbnail, tmp);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Decodes only every n-th pixel when the image is much larger than the thumbnail, which keeps memory and CPU
+     * proportional to the output rather than to the camera resolution.
+     */
+    private static BufferedImage decodeSubsampled(ImageInputStream images, int maxPixels) throws IOException {
+        if (images == null) throw new IOException("Unreadable image");
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(images);
+        if (!readers.hasNext()) throw new IOException("Unsupported image format");
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(images, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            if ((long) width * height > MAX_SOURCE_PIXELS) {
+                throw new IOException("Image too large for a thumbnail");
+            }
+            // Keep at least twice the target resolution so the final resize stays smooth.
+            int step = Math.max(1, Math.max(width, height) / (2 * maxPixels));
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(step, step, 0, 0);
+            return reader.read(0, param);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage source, int maxPixels) {
+        double ratio = Math.min(1.0, (double) maxPixels / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // JPEG has no alpha: flatten transparent PNGs onto white.
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private static void writeJpeg(BufferedImage image, OutputStream out) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+}
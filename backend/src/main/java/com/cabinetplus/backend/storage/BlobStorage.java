@@ -0,0 +1,31 @@
+package com.cabinetplus.backend.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Where uploaded files live: the local file system by default ({@link FileSystemBlobStorage}), or an S3-compatible
+ * bucket shared by every backend node ({@link S3BlobStorage}).
+ *
+ * <p>Files are addressed by <em>location</em>, the string kept in {@code path_or_url} columns: an absolute path for
+ * local files, {@code s3://bucket/key} for objects. New files get theirs from {@link #locationFor(String)}; existing
+ * locations keep working whichever backend wrote them, so switching backend doesn't orphan older rows. Callers
+ * encrypt into a local temporary file and hand it over with {@link #put}.</p>
+ */
+public interface BlobStorage {
+
+    /** Location for a new file stored under {@code key}, a relative path such as {@code uploads/blobs/ab/<uuid>}. */
+    String locationFor(String key);
+
+    /** Handle on the file at {@code location}; nothing is read until it is used. */
+    StoredObject object(String location);
+
+    /** Stores the local file {@code source} at {@code location}, replacing any previous file. {@code source} is consumed. */
+    void put(String location, Path source) throws IOException;
+
+    /** Deletes the file at {@code location}; {@code false} if there was none. */
+    boolean delete(String location) throws IOException;
+
+    /** Deletes every file whose location starts with {@code locationPrefix}, and returns how many there were. */
+    int deleteAll(String locationPrefix) throws IOException;
+}
@@ -0,0 +1,101 @@
+package com.cabinetplus.backend.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Files on local disk, the default backend. Keys resolve against {@code root} (the working directory), which keeps
+ * the layout and the absolute paths stored before this abstraction existed.
+ */
+public class FileSystemBlobStorage implements BlobStorage {
+
+    private static final Logger log = LoggerFactory.getLogger(FileSystemBlobStorage.class);
+
+    private final Path root;
+
+    public FileSystemBlobStorage(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public String locationFor(String key) {
+        return resolve(key).toString();
+    }
+
+    @Override
+    public StoredObject object(String location) {
+        return StoredObject.ofFile(resolve(location));
+    }
+
+    @Override
+    public void put(String location, Path source) throws IOException {
+        Path target = resolve(location);
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public boolean delete(String location) throws IOException {
+        return Files.deleteIfExists(resolve(location));
+    }
+
+    @Override
+    public int deleteAll(String locationPrefix) throws IOException {
+        boolean directory = locationPrefix.endsWith("/") || locationPrefix.endsWith(File.separator);
+        Path prefix = resolve(locationPrefix);
+        if (directory) {
+            return deleteTree(prefix);
+        }
+        Path dir = prefix.getParent();
+        if (dir == null || !Files.isDirectory(dir)) return 0;
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir,
+                entry -> entry.getFileName().toString().startsWith(prefix.getFileName().toString()))) {
+            for (Path file : files) {
+                deleted += deleteTree(file);
+            }
+        }
+        return deleted;
+    }
+
+    private int deleteTree(Path start) throws IOException {
+        if (!Files.exists(start)) return 0;
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(start)) {
+            paths = walk.sorted(Comparator.reverseOrder()).toList();
+        }
+        int deleted = 0;
+        for (Path path : paths) {
+            try {
+                boolean file = Files.isRegularFile(path);
+                if (Files.deleteIfExists(path) && file) deleted++;
+            } catch (IOException ex) {
+                log.warn("Could not delete {}", path, ex);
+            }
+        }
+        return deleted;
+    }
+
+    private Path resolve(String keyOrLocation) {
+        Path path = Paths.get(keyOrLocation);
+        return (path.isAbsolute() ? path : root.resolve(path)).normalize();
+    }
+}
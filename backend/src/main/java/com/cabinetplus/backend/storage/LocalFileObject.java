@@ -0,0 +1,67 @@
+package com.cabinetplus.backend.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+final class LocalFileObject implements StoredObject {
+
+    private final Path path;
+
+    LocalFileObject(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public String location() {
+        return path.toString();
+    }
+
+    @Override
+    public String filename() {
+        return path.getFileName() != null ? path.getFileName().toString() : null;
+    }
+
+    @Override
+    public boolean exists() {
+        return Files.isRegularFile(path);
+    }
+
+    @Override
+    public long length() throws IOException {
+        return Files.size(path);
+    }
+
+    @Override
+    public long lastModified() throws IOException {
+        return Files.getLastModifiedTime(path).toMillis();
+    }
+
+    @Override
+    public InputStream open(long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            channel.position(offset);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+        InputStream in = Channels.newInputStream(channel);
+        return length < 0 ? in : new BoundedInputStream(in, length);
+    }
+
+    @Override
+    public Optional<Path> localFile() {
+        return Optional.of(path);
+    }
+
+    @Override
+    public String toString() {
+        return location();
+    }
+}
@@ -0,0 +1,386 @@
+package com.cabinetplus.backend.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Files in an S3-compatible bucket (AWS S3, MinIO, Cloudflare R2...), so several backend nodes share storage.
+ *
+ * <p>Large files are sent with multipart upload, and reads use {@code Range} requests so a download or a ZIP entry
+ * only fetches the chunks it needs. Locations this backend doesn't own (absolute paths written by
+ * {@link FileSystemBlobStorage}) are served from local disk, so existing files stay readable after switching.</p>
+ */
+public class S3BlobStorage implements BlobStorage {
+
+    private static final Logger log = LoggerFactory.getLogger(S3BlobStorage.class);
+
+    private static final String SCHEME = "s3://";
+    // S3 rejects parts under 5 MiB (except the last one).
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final int MAX_PARTS = 10_000;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(5);
+
+    public record Settings(
+            URI endpoint,
+            String region,
+            String bucket,
+            String accessKey,
+            String secretKey,
+            String keyPrefix,
+            boolean pathStyle,
+            long multipartThresholdBytes,
+            long partSizeBytes
+    ) {}
+
+    private final Settings settings;
+    private final String keyPrefix;
+    private final long partSize;
+    private final S3RequestSigner signer;
+    private final BlobStorage local;
+    private final HttpClient http;
+
+    public S3BlobStorage(Settings settings, BlobStorage local) {
+        if (settings.bucket() == null || settings.bucket().isBlank()) {
+            throw new IllegalArgumentException("app.storage.s3.bucket is required");
+        }
+        this.settings = settings;
+        this.keyPrefix = normalizeKey(settings.keyPrefix() != null ? settings.keyPrefix() : "");
+        this.partSize = Math.max(MIN_PART_SIZE, settings.partSizeBytes());
+        this.signer = new S3RequestSigner(settings.accessKey(), settings.secretKey(), settings.region());
+        this.local = local;
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    @Override
+    public String locationFor(String key) {
+        String normalized = normalizeKey(key);
+        return SCHEME + settings.bucket() + "/" + (keyPrefix.isEmpty() ? "" : keyPrefix + "/") + normalized;
+    }
+
+    @Override
+    public StoredObject object(String location) {
+        if (!isOwn(location)) {
+            return local.object(location);
+        }
+        return new S3Object(keyOf(location));
+    }
+
+    @Override
+    public void put(String location, Path source) throws IOException {
+        if (!isOwn(location)) {
+            local.put(location, source);
+            return;
+        }
+        String key = keyOf(location);
+        long size = Files.size(source);
+        if (size > Math.max(settings.multipartThresholdBytes(), MIN_PART_SIZE)) {
+            putMultipart(key, source, size);
+        } else {
+            send("PUT", key, null, HttpRequest.BodyPublishers.ofFile(source), Map.of(), 200);
+        }
+        Files.deleteIfExists(source);
+    }
+
+    @Override
+    public boolean delete(String location) throws IOException {
+        if (!isOwn(location)) {
+            return local.delete(location);
+        }
+        String key = keyOf(location);
+        // S3 answers 204 whether or not the key existed.
+        boolean existed = new S3Object(key).exists();
+        if (existed) {
+            send("DELETE", key, null, HttpRequest.BodyPublishers.noBody(), Map.of(), 204, 200);
+        }
+        return existed;
+    }
+
+    @Override
+    public int deleteAll(String locationPrefix) throws IOException {
+        if (!isOwn(locationPrefix)) {
+            return local.deleteAll(locationPrefix);
+        }
+        String prefix = locationPrefix.substring(bucketRoot().length());
+        int deleted = 0;
+        String token = null;
+        do {
+            String query = "list-type=2&prefix=" + S3RequestSigner.encode(prefix, false)
+                    + (token != null ? "&continuation-token=" + S3RequestSigner.encode(token, false) : "");
+            HttpResponse<byte[]> response = send("GET", "", query, HttpRequest.BodyPublishers.noBody(), Map.of(), 200);
+            Document listing = parse(response.body());
+            NodeList keys = listing.getElementsByTagName("Key");
+            for (int i = 0; i < keys.getLength(); i++) {
+                send("DELETE", keys.item(i).getTextContent(), null, HttpRequest.BodyPublishers.noBody(), Map.of(), 204, 200);
+                deleted++;
+            }
+            boolean truncated = "true".equals(text(listing, "IsTruncated"));
+            token = truncated ? text(listing, "NextContinuationToken") : null;
+        } while (token != null);
+        return deleted;
+    }
+
+    private void putMultipart(String key, Path source, long size) throws IOException {
+        long part = Math.max(partSize, (size + MAX_PARTS - 1) / MAX_PARTS);
+        HttpResponse<byte[]> created = send("POST", key, "uploads=", HttpRequest.BodyPublishers.noBody(), Map.of(), 200);
+        String uploadId = text(parse(created.body()), "UploadId");
+        if (uploadId == null || uploadId.isBlank()) {
+            throw new IOException("S3 multipart upload for " + key + " returned no upload id");
+        }
+        String uploadQuery = "uploadId=" + S3RequestSigner.encode(uploadId, false);
+        try {
+            StringBuilder complete = new StringBuilder("<CompleteMultipartUpload>");
+            int number = 1;
+            for (long offset = 0; offset < size; offset += part, number++) {
+                long length = Math.min(part, size - offset);
+                long from = offset;
+                HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.fromPublisher(
+                        HttpRequest.BodyPublishers.ofInputStream(() -> openSlice(source, from, length)), length);
+                HttpResponse<byte[]> uploaded = send("PUT", key, "partNumber=" + number + "&" + uploadQuery, body, Map.of(), 200);
+                String etag = uploaded.headers().firstValue("ETag")
+                        .orElseThrow(() -> new IOException("S3 part upload for " + key + " returned no ETag"));
+                complete.append("<Part><PartNumber>").append(number).append("</PartNumber><ETag>")
+                        .append(etag.replace("&", "&amp;").replace("\"", "&quot;")).append("</ETag></Part>");
+            }
+            complete.append("</CompleteMultipartUpload>");
+            HttpResponse<byte[]> done = send("POST", key, uploadQuery,
+                    HttpRequest.BodyPublishers.ofString(complete.toString()), Map.of("Content-Type", "application/xml"), 200);
+            // Completion can fail after a 200, with the error in the body.
+            if (new String(done.body(), StandardCharsets.UTF_8).contains("<Error>")) {
+                throw new IOException("S3 multipart upload for " + key + " failed: " + snippet(done.body()));
+            }
+        } catch (IOException | RuntimeException ex) {
+            try {
+                send("DELETE", key, uploadQuery, HttpRequest.BodyPublishers.noBody(), Map.of(), 204, 200);
+            } catch (IOException abortFailure) {
+                log.warn("Could not abort multipart upload of {}", key, abortFailure);
+            }
+            throw ex;
+        }
+    }
+
+    private static InputStream openSlice(Path source, long offset, long length) {
+        try {
+            FileChannel channel = FileChannel.open(source, StandardOpenOption.READ);
+            channel.position(offset);
+            return new BoundedInputStream(Channels.newInputStream(channel), length);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not read " + source, ex);
+        }
+    }
+
+    private HttpResponse<byte[]> send(String method, String key, String query, HttpRequest.BodyPublisher body,
+                                      Map<String, String> headers, int... expected) throws IOException {
+        HttpRequest request = request(method, key, query, body, headers).timeout(REQUEST_TIMEOUT).build();
+        HttpResponse<byte[]> response = execute(request, HttpResponse.BodyHandlers.ofByteArray());
+        for (int status : expected) {
+            if (response.statusCode() == status) return response;
+        }
+        throw new IOException("S3 " + method + " " + key + " failed with " + response.statusCode() + ": " + snippet(response.body()));
+    }
+
+    private HttpRequest.Builder request(String method, String key, String query, HttpRequest.BodyPublisher body,
+                                        Map<String, String> headers) {
+        URI uri = uri(key, query);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).method(method, body);
+        signer.sign(method, uri, ZonedDateTime.now()).forEach(builder::header);
+        headers.forEach(builder::header);
+        return builder;
+    }
+
+    private <T> HttpResponse<T> execute(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return http.send(request, handler);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("S3 request interrupted");
+        }
+    }
+
+    private URI uri(String key, String query) {
+        URI endpoint = settings.endpoint();
+        String base = endpoint.toString().replaceAll("/+$", "");
+        String encodedKey = S3RequestSigner.encode(key, true);
+        String url;
+        if (settings.pathStyle()) {
+            url = base + "/" + settings.bucket() + "/" + encodedKey;
+        } else {
+            url = endpoint.getScheme() + "://" + settings.bucket() + "." + endpoint.getRawAuthority() + "/" + encodedKey;
+        }
+        return URI.create(query != null ? url + "?" + query : url);
+    }
+
+    private boolean isOwn(String location) {
+        return location != null && location.startsWith(bucketRoot());
+    }
+
+    private String bucketRoot() {
+        return SCHEME + settings.bucket() + "/";
+    }
+
+    private String keyOf(String location) {
+        return normalizeKey(location.substring(bucketRoot().length()));
+    }
+
+    private static String normalizeKey(String key) {
+        String normalized = key.replace('\\', '/');
+        while (normalized.startsWith("/")) normalized = normalized.substring(1);
+        while (normalized.endsWith("/")) normalized = normalized.substring(0, normalized.length() - 1);
+        for (String segment : normalized.split("/")) {
+            if (segment.equals("..") || segment.equals(".")) {
+                throw new IllegalArgumentException("Invalid storage key: " + key);
+            }
+        }
+        return normalized;
+    }
+
+    private static Document parse(byte[] xml) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setExpandEntityReferences(false);
+            return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+        } catch (Exception ex) {
+            throw new IOException("Unreadable S3 response", ex);
+        }
+    }
+
+    private static String text(Document document, String tag) {
+        NodeList nodes = document.getElementsByTagName(tag);
+        return nodes.getLength() > 0 ? nodes.item(0).getTextContent() : null;
+    }
+
+    private static String snippet(byte[] body) {
+        String text = body != null ? new String(body, StandardCharsets.UTF_8) : "";
+        return text.length() > 300 ? text.substring(0, 300) : text;
+    }
+
+    private final class S3Object implements StoredObject {
+
+        private final String key;
+        private long length = -1;
+        private long lastModified;
+
+        S3Object(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String location() {
+            return bucketRoot() + key;
+        }
+
+        @Override
+        public String filename() {
+            int slash = key.lastIndexOf('/');
+            return slash >= 0 ? key.substring(slash + 1) : key;
+        }
+
+        @Override
+        public boolean exists() {
+            try {
+                head();
+                return true;
+            } catch (IOException ex) {
+                return false;
+            }
+        }
+
+        @Override
+        public long length() throws IOException {
+            head();
+            return length;
+        }
+
+        @Override
+        public long lastModified() throws IOException {
+            head();
+            return lastModified;
+        }
+
+        @Override
+        public InputStream open(long offset, long count) throws IOException {
+            if (count == 0) {
+                return InputStream.nullInputStream();
+            }
+            HttpRequest.Builder builder = request("GET", key, null, HttpRequest.BodyPublishers.noBody(), Map.of());
+            if (offset > 0 || count > 0) {
+                builder.header("Range", "bytes=" + offset + "-" + (count > 0 ? String.valueOf(offset + count - 1) : ""));
+            }
+            HttpResponse<InputStream> response = execute(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+            int status = response.statusCode();
+            if (status == 200 || status == 206) {
+                InputStream body = response.body();
+                // A server ignoring Range sends the whole object.
+                if (status == 200 && offset > 0) {
+                    body.skipNBytes(offset);
+                }
+                return count > 0 ? new BoundedInputStream(body, count) : body;
+            }
+            byte[] error;
+            try (InputStream body = response.body()) {
+                error = body.readNBytes(300);
+            }
+            if (status == 416) {
+                return InputStream.nullInputStream();
+            }
+            if (status == 404) {
+                throw new NoSuchFileException(location());
+            }
+            throw new IOException("S3 GET " + key + " failed with " + status + ": " + snippet(error));
+        }
+
+        private void head() throws IOException {
+            if (length >= 0) return;
+            HttpRequest request = request("HEAD", key, null, HttpRequest.BodyPublishers.noBody(), Map.of())
+                    .timeout(REQUEST_TIMEOUT).build();
+            HttpResponse<Void> response = execute(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() == 404) {
+                throw new NoSuchFileException(location());
+            }
+            if (response.statusCode() != 200) {
+                throw new IOException("S3 HEAD " + key + " failed with " + response.statusCode());
+            }
+            lastModified = response.headers().firstValue("Last-Modified")
+                    .map(value -> ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME.withLocale(Locale.ROOT)).toInstant().toEpochMilli())
+                    .orElse(0L);
+            length = response.headers().firstValueAsLong("Content-Length").orElse(0L);
+        }
+
+        @Override
+        public String toString() {
+            return location();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "S3BlobStorage[" + settings.endpoint() + ", bucket " + settings.bucket() + "]";
+    }
+}
@@ -0,0 +1,41 @@
+package com.cabinetplus.backend.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * A stored file readable from any offset, so encrypted files can be decrypted from the chunk holding a requested
+ * range without fetching what comes before it.
+ */
+public interface StoredObject {
+
+    /** Canonical location, comparable with the locations stored in the database. */
+    String location();
+
+    String filename();
+
+    boolean exists();
+
+    /** Size in bytes; {@link java.nio.file.NoSuchFileException} when the file doesn't exist. */
+    long length() throws IOException;
+
+    long lastModified() throws IOException;
+
+    /** Stream of {@code length} bytes from {@code offset}, or up to the end when {@code length} is negative. */
+    InputStream open(long offset, long length) throws IOException;
+
+    default InputStream open() throws IOException {
+        return open(0L, -1L);
+    }
+
+    /** The file on local disk, for callers that can use it directly. */
+    default Optional<Path> localFile() {
+        return Optional.empty();
+    }
+
+    static StoredObject ofFile(Path path) {
+        return new LocalFileObject(path.toAbsolutePath().normalize());
+    }
+}
@@ -0,0 +1,110 @@
+package com.cabinetplus.backend.util;
+
+import java.io.IOException;
+
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import com.cabinetplus.backend.security.crypto.DecryptingFileResource;
+
+/**
+ * Download responses for stored files with {@code ETag}, {@code Last-Modified} and byte-range support.
+ *
+ * <p>Spring MVC turns a {@link Resource} body into {@code 206}/{@code 416} responses for {@code Range} requests and
+ * answers {@code If-None-Match}/{@code If-Modified-Since} with {@code 304}; {@link DecryptingFileResource} seeks to the
+ * requested window instead of decrypting from byte 0. {@code If-Range} isn't handled by Spring, so a stale validator
+ * is answered here with the full file.</p>
+ */
+public final class FileDownloadUtil {
+
+    private FileDownloadUtil() {}
+
+    public static ResponseEntity<Resource> download(
+            Resource resource,
+            MediaType mediaType,
+            ContentDisposition disposition,
+            HttpHeaders requestHeaders
+    ) {
+        return download(resource, mediaType, disposition, requestHeaders, null);
+    }
+
+    /**
+     * As {@link #download(Resource, MediaType, ContentDisposition, HttpHeaders)}, with a {@code Cache-Control} for
+     * files browsers may keep (otherwise Spring Security's {@code no-store} default applies).
+     */
+    public static ResponseEntity<Resource> download(
+            Resource resource,
+            MediaType mediaType,
+            ContentDisposition disposition,
+            HttpHeaders requestHeaders,
+            CacheControl cacheControl
+    ) {
+        String etag = entityTag(resource);
+        long lastModified = lastModified(resource);
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (etag != null) builder.eTag(etag);
+        if (lastModified > 0) builder.lastModified(lastModified);
+        if (cacheControl != null) builder.cacheControl(cacheControl);
+
+        if (requestHeaders != null
+                && requestHeaders.getFirst(HttpHeaders.RANGE) != null
+                && !ifRangeMatches(requestHeaders, etag, lastModified)) {
+            // A plain InputStreamResource body is exempt from Spring's range processing.
+            try {
+                builder.contentLength(resource.contentLength());
+            } catch (IOException ignored) {
+                // streamed without a length
+            }
+            return builder.body(new InputStreamResource(resource));
+        }
+        return builder.body(resource);
+    }
+
+    static boolean ifRangeMatches(HttpHeaders requestHeaders, String etag, long lastModified) {
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange == null || ifRange.isBlank()) return true;
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // Only strong validators may be used with ranges.
+            return etag != null && ifRange.equals(etag);
+        }
+        try {
+            long date = requestHeaders.getFirstDate(HttpHeaders.IF_RANGE);
+            return lastModified > 0 && date >= 0 && date / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    private static String entityTag(Resource resource) {
+        try {
+            if (resource instanceof DecryptingFileResource decrypting) {
+                return decrypting.entityTag();
+            }
+            if (resource.isFile()) {
+                // Unencrypted files: same mtime/size validator as the decrypting resource.
+                return "\"" + Long.toHexString(resource.lastModified()) + "-" + Long.toHexString(resource.contentLength()) + "\"";
+            }
+            return null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private static long lastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+}
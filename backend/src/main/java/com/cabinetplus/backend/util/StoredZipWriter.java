@@ -0,0 +1,193 @@
+package com.cabinetplus.backend.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a ZIP whose entries are all STORED, one entry at a time, without buffering or seeking.
+ *
+ * <p>Sizes and CRC-32 are declared up front, so every local header is complete, which streaming readers such as
+ * {@link java.util.zip.ZipInputStream} require for STORED entries, and the archive length is known before the first
+ * byte ({@link #archiveLength(List)}). The CRC is checked again while copying. Archives that
+ * would need ZIP64 (an entry or the whole archive over 4 GiB, or more than 65535 entries) are not supported, and
+ * {@link #archiveLength(List)} returns {@code -1} for them.</p>
+ */
+public final class StoredZipWriter implements Closeable {
+
+    /** {@code crc32} is the CRC-32 of the content. */
+    public record Entry(String name, long size, long crc32, long lastModifiedMillis) {
+    }
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+
+    private static final int LOCAL_HEADER_BYTES = 30;
+    private static final int CENTRAL_HEADER_BYTES = 46;
+    private static final int END_BYTES = 22;
+
+    private static final int VERSION = 20;
+    // Bit 11: UTF-8 names.
+    private static final int FLAGS = 0x0800;
+    private static final long MAX_32 = 0xFFFFFFFFL;
+    private static final int MAX_ENTRIES = 0xFFFF;
+
+    private final OutputStream out;
+    private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+    private final byte[] buffer = new byte[64 * 1024];
+    private long offset;
+    private int entries;
+    private boolean finished;
+
+    public StoredZipWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Exact size of the archive {@link StoredZipWriter} writes for {@code entries}, or {@code -1} when it would need
+     * ZIP64.
+     */
+    public static long archiveLength(List<Entry> entries) {
+        if (entries.size() > MAX_ENTRIES) return -1;
+        long length = 0;
+        long centralBytes = 0;
+        for (Entry entry : entries) {
+            if (entry.size() < 0 || entry.size() > MAX_32 || length > MAX_32) return -1;
+            int nameBytes = nameBytes(entry.name()).length;
+            length += LOCAL_HEADER_BYTES + nameBytes + entry.size();
+            centralBytes += CENTRAL_HEADER_BYTES + nameBytes;
+        }
+        if (length > MAX_32 || centralBytes > MAX_32) return -1;
+        return length + centralBytes + END_BYTES;
+    }
+
+    /**
+     * Copies exactly {@code entry.size()} bytes of {@code content} as the next entry. Fails if the content is
+     * shorter or longer, or doesn't match the declared CRC, since the headers would no longer match it.
+     */
+    public void putEntry(Entry entry, InputStream content) throws IOException {
+        if (finished) throw new IOException("Archive already finished");
+        if (entries >= MAX_ENTRIES || entry.size() > MAX_32 || offset > MAX_32) {
+            throw new IOException("Archive too large for ZIP without ZIP64");
+        }
+        byte[] name = nameBytes(entry.name());
+        long dosTime = dosTime(entry.lastModifiedMillis());
+        long headerOffset = offset;
+
+        byte[] header = new byte[LOCAL_HEADER_BYTES];
+        putInt(header, 0, LOCAL_HEADER);
+        putShort(header, 4, VERSION);
+        putShort(header, 6, FLAGS);
+        putShort(header, 8, 0);
+        putInt(header, 10, dosTime);
+        putInt(header, 14, entry.crc32());
+        putInt(header, 18, entry.size());
+        putInt(header, 22, entry.size());
+        putShort(header, 26, name.length);
+        putShort(header, 28, 0);
+        write(header);
+        write(name);
+
+        CRC32 crc = new CRC32();
+        long remaining = entry.size();
+        while (remaining > 0) {
+            int n = content.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (n < 0) throw new IOException("Entry " + entry.name() + " is shorter than declared");
+            crc.update(buffer, 0, n);
+            out.write(buffer, 0, n);
+            remaining -= n;
+        }
+        offset += entry.size();
+        if (content.read() != -1) throw new IOException("Entry " + entry.name() + " is longer than declared");
+
+        if (crc.getValue() != entry.crc32()) {
+            throw new IOException("Entry " + entry.name() + " does not match its declared CRC-32");
+        }
+
+        byte[] central = new byte[CENTRAL_HEADER_BYTES];
+        putInt(central, 0, CENTRAL_HEADER);
+        putShort(central, 4, VERSION);
+        putShort(central, 6, VERSION);
+        putShort(central, 8, FLAGS);
+        putShort(central, 10, 0);
+        putInt(central, 12, dosTime);
+        putInt(central, 16, crc.getValue());
+        putInt(central, 20, entry.size());
+        putInt(central, 24, entry.size());
+        putShort(central, 28, name.length);
+        putInt(central, 42, headerOffset);
+        centralDirectory.write(central);
+        centralDirectory.write(name);
+        entries++;
+    }
+
+    /** Writes the central directory. Does not close the underlying stream. */
+    public void finish() throws IOException {
+        if (finished) return;
+        finished = true;
+        long centralOffset = offset;
+        long centralSize = centralDirectory.size();
+        centralDirectory.writeTo(out);
+        offset += centralSize;
+        if (centralOffset > MAX_32 || centralSize > MAX_32) {
+            throw new IOException("Archive too large for ZIP without ZIP64");
+        }
+
+        byte[] end = new byte[END_BYTES];
+        putInt(end, 0, END_OF_CENTRAL_DIRECTORY);
+        putShort(end, 8, entries);
+        putShort(end, 10, entries);
+        putInt(end, 12, centralSize);
+        putInt(end, 16, centralOffset);
+        write(end);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        out.write(bytes);
+        offset += bytes.length;
+    }
+
+    private static byte[] nameBytes(String name) {
+        return name.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long dosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(Math.max(millis, 0L)), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (time.getYear() - 1980) << 25)
+                | ((long) time.getMonthValue() << 21)
+                | ((long) time.getDayOfMonth() << 16)
+                | ((long) time.getHour() << 11)
+                | ((long) time.getMinute() << 5)
+                | (time.getSecond() >> 1);
+    }
+
+    private static void putShort(byte[] bytes, int at, int value) {
+        bytes[at] = (byte) value;
+        bytes[at + 1] = (byte) (value >>> 8);
+    }
+
+    private static void putInt(byte[] bytes, int at, long value) {
+        bytes[at] = (byte) value;
+        bytes[at + 1] = (byte) (value >>> 8);
+        bytes[at + 2] = (byte) (value >>> 16);
+        bytes[at + 3] = (byte) (value >>> 24);
+    }
+}
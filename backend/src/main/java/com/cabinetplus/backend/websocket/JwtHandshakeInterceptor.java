@@ -8,14 +8,15 @@ import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.server.HandshakeInterceptor;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import com.cabinetplus.backend.security.ClinicPrincipal;
 import com.cabinetplus.backend.security.CustomUserDetailsService;
 import com.cabinetplus.backend.security.JwtUtil;
+import com.cabinetplus.backend.security.TokenRevocationEpochs;
 
 @Component
 public class JwtHandshakeInterceptor implements HandshakeInterceptor {
@@ -24,10 +25,16 @@ public class JwtHandshakeInterceptor implements HandshakeInterceptor {
 
     private final JwtUtil jwtUtil;
     private final CustomUserDetailsService userDetailsService;
+    private final TokenRevocationEpochs revocationEpochs;
 
-    public JwtHandshakeInterceptor(JwtUtil jwtUtil, CustomUserDetailsService userDetailsService) {
+    public JwtHandshakeInterceptor(
+            JwtUtil jwtUtil,
+            CustomUserDetailsService userDetailsService,
+            TokenRevocationEpochs revocationEpochs
+    ) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.revocationEpochs = revocationEpochs;
     }
 
     @Override
@@ -38,19 +45,24 @@ public class JwtHandshakeInterceptor implements HandshakeInterceptor {
             @NonNull Map<String, Object> attributes
     ) {
         String token = extractToken(request);
-        if (token == null || token.isBlank() || !jwtUtil.validateToken(token)) {
+        JwtUtil.VerifiedToken verified = jwtUtil.verify(token);
+        if (verified == null || verified.purpose() != null) {
             response.setStatusCode(HttpStatus.UNAUTHORIZED);
             return false;
         }
 
-        String phone = jwtUtil.extractPhoneNumber(token);
+        String phone = verified.subject();
         if (phone == null || phone.isBlank()) {
             response.setStatusCode(HttpStatus.UNAUTHORIZED);
             return false;
         }
 
-        UserDetails userDetails = userDetailsService.loadUserByUsername(phone);
-        var auth = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+        ClinicPrincipal principal = userDetailsService.loadClinicPrincipal(phone);
+        if (revocationEpochs.isRevoked(principal.userId(), verified.issuedAt())) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
         attributes.put(AUTH_ATTR, auth);
         return true;
     }
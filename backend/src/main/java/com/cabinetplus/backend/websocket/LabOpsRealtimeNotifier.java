@@ -36,12 +36,9 @@ public class LabOpsRealtimeNotifier {
                 event.laboratoryPublicId()
         );
 
-        for (String phone : safePhones(event.clinicPhones())) {
-            webSocketHandler.sendToUser(phone, payload);
-        }
-        for (String phone : safePhones(event.labPhones())) {
-            webSocketHandler.sendToUser(phone, payload);
-        }
+        Set<String> phones = safePhones(event.clinicPhones());
+        phones.addAll(safePhones(event.labPhones()));
+        webSocketHandler.sendToUsers(phones, payload);
     }
 
     private Set<String> safePhones(Set<String> phones) {
@@ -0,0 +1,20 @@
+package com.cabinetplus.backend.websocket;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/** Single-instance deployments: nothing to tell anyone. */
+@Component
+@ConditionalOnProperty(name = "app.realtime.cluster.bus", havingValue = "none")
+public class LocalRealtimeClusterBus implements RealtimeClusterBus {
+
+    @Override
+    public void publish(RealtimeClusterMessage message) {
+        // no other instance
+    }
+
+    @Override
+    public void subscribe(Listener listener) {
+        // no other instance
+    }
+}
@@ -1,16 +1,30 @@
 package com.cabinetplus.backend.websocket;
 
-import java.nio.charset.StandardCharsets;
+import java.security.Principal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
@@ -19,36 +33,83 @@ import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import com.cabinetplus.backend.dto.MessagingPresenceResponse;
 import com.cabinetplus.backend.models.User;
-import com.cabinetplus.backend.repositories.UserRepository;
+import com.cabinetplus.backend.security.ClinicPrincipal;
+import com.cabinetplus.backend.services.MessagingLastSeenService;
+import com.cabinetplus.backend.services.PresenceAudienceService;
 import com.cabinetplus.backend.services.UserService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import jakarta.annotation.PreDestroy;
 
+/**
+ * Realtime channel ({@code /ws/messaging}). Events are encoded once on the caller's thread, then handed to a single
+ * fan-out thread that queues the shared frame on each recipient's {@link OutboundWebSocketSession}; the socket writes
+ * happen on a sender pool. Callers (often request threads in AFTER_COMMIT listeners) never wait on a client.
+ *
+ * <p>Sessions are registered by user id, taken from the handshake principal. Events addressed by phone are mapped to
+ * user ids through {@link PhoneKeyCache}, so routing does not touch the database once the cache is warm.</p>
+ *
+ * <p>With several instances, every event is also relayed through the {@link RealtimeCluster} to the instances its
+ * recipients are connected to, and "online" means connected to any instance.</p>
+ *
+ * <p>Presence goes only to the user's {@linkplain PresenceAudienceService audience}. A reconnect within the offline
+ * grace period is not announced, and a user already announced in the same state is not announced again until the
+ * re-announce interval has passed, so flapping connections and heartbeats don't turn into a stream of updates.</p>
+ */
 @Component
 public class MessagingWebSocketHandler extends TextWebSocketHandler {
 
+    private static final Logger log = LoggerFactory.getLogger(MessagingWebSocketHandler.class);
+
     private static final long OFFLINE_GRACE_MS = 60_000L;
 
     private final ObjectMapper objectMapper;
     private final MessagingWebSocketSessionRegistry sessionRegistry;
     private final UserService userService;
-    private final UserRepository userRepository;
+    private final MessagingLastSeenService lastSeenService;
+    private final PresenceAudienceService presenceAudienceService;
+    private final PhoneKeyCache phoneKeyCache;
+    private final RealtimeCluster realtimeCluster;
 
     private final ScheduledExecutorService scheduler;
-    private final ConcurrentHashMap<String, ScheduledFuture<?>> pendingOfflineByPhone = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, LocalDateTime> pendingLastSeenAtByPhone = new ConcurrentHashMap<>();
+    // One thread, so events reach each session in the order they were sent.
+    private final ThreadPoolExecutor fanOut;
+    // Writes queued frames; a session is drained by at most one task at a time.
+    private final ThreadPoolExecutor senders;
+    private final OutboundWebSocketSession.Limits sendLimits;
+    private final OutboundWebSocketSession.Counters counters = new OutboundWebSocketSession.Counters();
+    private final AtomicLong rejectedFanOuts = new AtomicLong();
+    private final AtomicLong coalescedPresenceUpdates = new AtomicLong();
+    private final AtomicReference<Stats> lastLoggedStats = new AtomicReference<>();
+    private final long presenceReannounceMillis;
+    private final ConcurrentHashMap<Long, ScheduledFuture<?>> pendingOfflineByUserId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Announcement> lastAnnouncedByUserId = new ConcurrentHashMap<>();
+
+    private record Announcement(boolean online, long atMillis) {}
 
     public MessagingWebSocketHandler(
             ObjectMapper objectMapper,
             MessagingWebSocketSessionRegistry sessionRegistry,
             UserService userService,
-            UserRepository userRepository
+            MessagingLastSeenService lastSeenService,
+            PresenceAudienceService presenceAudienceService,
+            PhoneKeyCache phoneKeyCache,
+            RealtimeCluster realtimeCluster,
+            @Value("${app.websocket.fanout-queue-capacity:10000}") int fanOutQueueCapacity,
+            @Value("${app.websocket.sender-threads:4}") int senderThreads,
+            @Value("${app.websocket.send-queue-max-frames:256}") int maxQueuedFrames,
+            @Value("${app.websocket.send-buffer-bytes:1048576}") long maxQueuedBytes,
+            @Value("${app.websocket.send-time-limit-ms:10000}") long sendTimeLimitMillis,
+            @Value("${app.websocket.presence-reannounce-ms:30000}") long presenceReannounceMillis
     ) {
         this.objectMapper = objectMapper;
         this.sessionRegistry = sessionRegistry;
         this.userService = userService;
-        this.userRepository = userRepository;
+        this.lastSeenService = lastSeenService;
+        this.presenceAudienceService = presenceAudienceService;
+        this.phoneKeyCache = phoneKeyCache;
+        this.realtimeCluster = realtimeCluster;
+        this.presenceReannounceMillis = Math.max(0L, presenceReannounceMillis);
 
         this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
             private final AtomicInteger n = new AtomicInteger(1);
@@ -61,115 +122,225 @@ public class MessagingWebSocketHandler extends TextWebSocketHandler {
                 return t;
             }
         });
+        this.fanOut = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, fanOutQueueCapacity)), daemonThreads("messaging-fanout-"));
+        int threads = Math.max(1, senderThreads);
+        // Unbounded queue: it holds at most one drain task per session.
+        this.senders = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("messaging-send-"));
+        this.sendLimits = new OutboundWebSocketSession.Limits(
+                Math.max(1, maxQueuedFrames),
+                Math.max(1L, maxQueuedBytes),
+                Math.max(1L, sendTimeLimitMillis));
+        realtimeCluster.onRemoteEvent((userIds, payload) -> deliverLocally(userIds, new TextMessage(payload)));
+        if (this.presenceReannounceMillis > 0) {
+            this.scheduler.scheduleWithFixedDelay(this::forgetStaleAnnouncements,
+                    this.presenceReannounceMillis, this.presenceReannounceMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger n = new AtomicInteger(1);
+        return r -> {
+            Thread t = new Thread(r, prefix + n.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        if (session == null || session.getPrincipal() == null || session.getPrincipal().getName() == null) {
+        Long userId = session != null ? resolveUserId(session.getPrincipal()) : null;
+        if (userId == null) {
             if (session != null && session.isOpen()) {
                 session.close(CloseStatus.NOT_ACCEPTABLE.withReason("Missing principal"));
             }
             return;
         }
-        String rawPhone = session.getPrincipal().getName();
-        String phoneKey = resolveCanonicalPhone(rawPhone);
-        try {
-            session.getAttributes().put(MessagingWebSocketSessionRegistry.PHONE_KEY_ATTR, phoneKey);
-        } catch (Exception ignored) {
-            // ignore
+        session.getAttributes().put(MessagingWebSocketSessionRegistry.USER_ID_ATTR, userId);
+        boolean onlineElsewhere = realtimeCluster.isOnlineElsewhere(userId);
+        if (sessionRegistry.add(new OutboundWebSocketSession(session, senders, sendLimits, counters))) {
+            realtimeCluster.localOnline(userId);
         }
-        sessionRegistry.add(session);
-        notifyPresenceOnline(phoneKey);
+        notifyPresenceOnline(userId, onlineElsewhere);
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
-        sessionRegistry.remove(session);
-        scheduleOfflineIfNeeded(resolvePhoneKey(session));
+        discard(session);
+        scheduleOfflineIfNeeded(MessagingWebSocketSessionRegistry.userIdOf(session));
     }
 
     @Override
     public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
-        sessionRegistry.remove(session);
-        scheduleOfflineIfNeeded(resolvePhoneKey(session));
+        discard(session);
+        scheduleOfflineIfNeeded(MessagingWebSocketSessionRegistry.userIdOf(session));
         if (session != null && session.isOpen()) {
             session.close(CloseStatus.SERVER_ERROR);
         }
     }
 
+    /** Whether the user has a session open on any instance. */
     public boolean isOnline(String phone) {
-        if (phone == null || phone.isBlank()) return false;
-        String key = resolveCanonicalPhone(phone);
-        if (sessionRegistry.isOnline(key)) return true;
-        return !key.equals(phone) && sessionRegistry.isOnline(phone);
+        return isOnline(userIdOf(phone));
     }
 
     public boolean isOnlineForDisplay(String phone) {
-        if (phone == null || phone.isBlank()) return false;
-        String key = resolveCanonicalPhone(phone);
-        if (sessionRegistry.isOnline(key)) return true;
-        if (!key.equals(phone) && sessionRegistry.isOnline(phone)) return true;
-        return pendingOfflineByPhone.containsKey(key);
+        Long userId = userIdOf(phone);
+        if (userId == null) return false;
+        return isOnline(userId) || pendingOfflineByUserId.containsKey(userId);
+    }
+
+    private boolean isOnline(Long userId) {
+        return sessionRegistry.isOnline(userId) || realtimeCluster.isOnlineElsewhere(userId);
     }
 
     public void sendToUser(String phone, Object event) {
         if (phone == null || phone.isBlank() || event == null) return;
-        String key = resolveCanonicalPhone(phone);
-        Set<WebSocketSession> sessions = sessionRegistry.getSessions(key);
-        if (sessions.isEmpty() && !key.equals(phone)) {
-            sessions = sessionRegistry.getSessions(phone);
+        sendToUsers(List.of(phone), event);
+    }
+
+    /** Sends one event to several users, encoding it once. */
+    public void sendToUsers(Collection<String> phones, Object event) {
+        if (phones == null || phones.isEmpty() || event == null) return;
+        // Resolved here so the fan-out thread never waits on a cache miss.
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (String phone : phones) {
+            Long userId = userIdOf(phone);
+            if (userId != null) userIds.add(userId);
         }
-        if (sessions.isEmpty()) return;
-        try {
-            byte[] bytes = objectMapper.writeValueAsBytes(event);
-            TextMessage msg = new TextMessage(new String(bytes, StandardCharsets.UTF_8));
-            for (WebSocketSession s : sessions) {
-                try {
-                    if (s != null && s.isOpen()) s.sendMessage(msg);
-                } catch (Exception ignored) {
-                    // ignore individual socket failures
-                }
-            }
-        } catch (Exception ignored) {
-            // ignore serialization failures
+        sendToUserIds(userIds, event);
+    }
+
+    /** Sends one event to the sessions of several users, by user id, on this instance and the others. */
+    public void sendToUserIds(Collection<Long> userIds, Object event) {
+        if (userIds == null || userIds.isEmpty() || event == null) return;
+        TextMessage msg = encode(event);
+        if (msg == null) return;
+        List<Long> recipients = List.copyOf(userIds);
+        deliverLocally(recipients, msg);
+        realtimeCluster.publishEvent(recipients, msg.getPayload());
+    }
+
+    /**
+     * Announces {@code user}'s presence to the users who have them as a contact. Skipped when the same state was
+     * announced less than the re-announce interval ago.
+     */
+    public void publishPresence(User user, boolean online, LocalDateTime at) {
+        if (user == null || user.getId() == null || user.getPublicId() == null) return;
+        long now = System.currentTimeMillis();
+        Announcement previous = lastAnnouncedByUserId.get(user.getId());
+        if (previous != null && previous.online() == online && now - previous.atMillis() < presenceReannounceMillis) {
+            coalescedPresenceUpdates.incrementAndGet();
+            return;
         }
+        lastAnnouncedByUserId.put(user.getId(), new Announcement(online, now));
+        sendToUserIds(presenceAudienceService.audienceOf(user), new MessagingRealtimeEvent(
+                "PRESENCE_UPDATED",
+                null,
+                null,
+                new MessagingPresenceResponse(user.getPublicId(), online, at)
+        ));
     }
 
     public void sendToAll(MessagingRealtimeEvent event) {
-        if (event == null) return;
-        Set<WebSocketSession> sessions = sessionRegistry.getAllSessions();
-        if (sessions.isEmpty()) return;
-        try {
-            byte[] bytes = objectMapper.writeValueAsBytes(event);
-            TextMessage msg = new TextMessage(new String(bytes, StandardCharsets.UTF_8));
-            for (WebSocketSession s : sessions) {
-                try {
-                    if (s != null && s.isOpen()) s.sendMessage(msg);
-                } catch (Exception ignored) {
-                    // ignore individual socket failures
+        sendToAll((Object) event);
+    }
+
+    public void sendToAll(Object payload) {
+        if (payload == null) return;
+        TextMessage msg = encode(payload);
+        if (msg == null) return;
+        deliverLocally(null, msg);
+        realtimeCluster.publishEvent(null, msg.getPayload());
+    }
+
+    /** Queues {@code msg} on the sessions connected here of {@code userIds}, or of everyone when {@code null}. */
+    private void deliverLocally(List<Long> userIds, TextMessage msg) {
+        fanOut(() -> {
+            Collection<OutboundWebSocketSession> sessions;
+            if (userIds == null) {
+                sessions = sessionRegistry.getAllSessions();
+            } else {
+                sessions = new ArrayList<>();
+                for (Long userId : userIds) {
+                    sessions.addAll(sessionRegistry.getSessions(userId));
                 }
             }
+            for (OutboundWebSocketSession s : sessions) {
+                s.send(msg);
+            }
+        });
+    }
+
+    /** Outgoing traffic: frames waiting in session queues, and how many were sent or dropped since startup. */
+    public record Stats(
+            int sessions,
+            int queuedFrames,
+            int maxSessionQueuedFrames,
+            int pendingFanOuts,
+            long sentFrames,
+            long droppedFrames,
+            long slowSessionsClosed,
+            long rejectedFanOuts,
+            long coalescedPresenceUpdates
+    ) {}
+
+    public Stats stats() {
+        int sessions = 0;
+        int queued = 0;
+        int max = 0;
+        for (OutboundWebSocketSession s : sessionRegistry.getAllSessions()) {
+            int depth = s.queuedFrames();
+            sessions++;
+            queued += depth;
+            max = Math.max(max, depth);
+        }
+        return new Stats(
+                sessions,
+                queued,
+                max,
+                fanOut.getQueue().size(),
+                counters.sent.get(),
+                counters.dropped.get(),
+                counters.closedSlow.get(),
+                rejectedFanOuts.get(),
+                coalescedPresenceUpdates.get()
+        );
+    }
+
+    /** Logs this node's {@link #stats()} when they changed since the last line, so an idle node stays quiet. */
+    @Scheduled(
+            initialDelayString = "${app.websocket.stats-log-interval-ms:300000}",
+            fixedDelayString = "${app.websocket.stats-log-interval-ms:300000}"
+    )
+    public void logStats() {
+        Stats stats = stats();
+        if (!stats.equals(lastLoggedStats.getAndSet(stats))) {
+            log.info("WebSocket outbound {}", stats);
+        }
+    }
+
+    /**
+     * One frame shared by every recipient. Built from bytes so its payload length is known without re-encoding the
+     * text for each session's buffer accounting.
+     */
+    private TextMessage encode(Object event) {
+        try {
+            return new TextMessage(objectMapper.writeValueAsBytes(event));
         } catch (Exception ignored) {
             // ignore serialization failures
+            return null;
         }
     }
 
-    public void sendToAll(Object payload) {
-        if (payload == null) return;
-        Set<WebSocketSession> sessions = sessionRegistry.getAllSessions();
-        if (sessions.isEmpty()) return;
+    private void fanOut(Runnable task) {
         try {
-            byte[] bytes = objectMapper.writeValueAsBytes(payload);
-            TextMessage msg = new TextMessage(new String(bytes, StandardCharsets.UTF_8));
-            for (WebSocketSession s : sessions) {
-                try {
-                    if (s != null && s.isOpen()) s.sendMessage(msg);
-                } catch (Exception ignored) {
-                    // ignore individual socket failures
-                }
+            fanOut.execute(task);
+        } catch (RejectedExecutionException ex) {
+            if (rejectedFanOuts.getAndIncrement() % 100 == 0) {
+                log.warn("WebSocket fan-out queue full, dropping events ({} so far)", rejectedFanOuts.get());
             }
-        } catch (Exception ignored) {
-            // ignore serialization failures
         }
     }
 
@@ -177,102 +348,87 @@ public class MessagingWebSocketHandler extends TextWebSocketHandler {
     public void shutdownPresenceScheduler() {
         try {
             scheduler.shutdownNow();
+            fanOut.shutdownNow();
+            senders.shutdownNow();
         } catch (Exception ignored) {
             // ignore
         }
     }
 
-    private void notifyPresenceOnline(String phone) {
-        if (phone == null || phone.isBlank()) return;
-        cancelPendingOffline(phone);
-
-        userService.findByPhoneNumber(phone).ifPresent(user -> {
-            if (user.getPublicId() == null) return;
-            LocalDateTime now = LocalDateTime.now();
-            user.setMessagingLastSeenAt(now);
-            try {
-                userRepository.save(user);
-            } catch (Exception ignored) {
-                // ignore persistence failures
-            }
-            sendToAll(new MessagingRealtimeEvent(
-                    "PRESENCE_UPDATED",
-                    null,
-                    null,
-                    new MessagingPresenceResponse(user.getPublicId(), true, now)
-            ));
-        });
+    private void notifyPresenceOnline(Long userId, boolean onlineElsewhere) {
+        // Back within the grace period, or still connected to another instance: no offline was announced.
+        boolean reconnected = cancelPendingOffline(userId);
+        LocalDateTime now = LocalDateTime.now();
+        lastSeenService.touch(userId, now);
+        if (reconnected || onlineElsewhere) {
+            coalescedPresenceUpdates.incrementAndGet();
+            return;
+        }
+        userService.findById(userId).ifPresent(user -> publishPresence(user, true, now));
     }
 
-    private void cancelPendingOffline(String phone) {
-        if (phone == null || phone.isBlank()) return;
-        ScheduledFuture<?> f = pendingOfflineByPhone.remove(phone);
-        pendingLastSeenAtByPhone.remove(phone);
-        if (f != null) {
-            try {
-                f.cancel(false);
-            } catch (Exception ignored) {
-                // ignore
-            }
+    /** Cancels a scheduled offline announcement; {@code true} if one was pending. */
+    private boolean cancelPendingOffline(Long userId) {
+        ScheduledFuture<?> f = pendingOfflineByUserId.remove(userId);
+        if (f == null) return false;
+        try {
+            f.cancel(false);
+        } catch (Exception ignored) {
+            // ignore
         }
+        return true;
     }
 
-    private void scheduleOfflineIfNeeded(String phone) {
-        if (phone == null || phone.isBlank()) return;
-        if (sessionRegistry.isOnline(phone)) return;
-        if (pendingOfflineByPhone.containsKey(phone)) return;
+    private void forgetStaleAnnouncements() {
+        long cutoff = System.currentTimeMillis() - presenceReannounceMillis;
+        lastAnnouncedByUserId.values().removeIf(a -> a.atMillis() < cutoff);
+    }
 
-        LocalDateTime disconnectedAt = LocalDateTime.now();
-        pendingLastSeenAtByPhone.put(phone, disconnectedAt);
+    private void scheduleOfflineIfNeeded(Long userId) {
+        if (userId == null) return;
+        if (isOnline(userId)) return;
+        if (pendingOfflineByUserId.containsKey(userId)) return;
 
-        userService.findByPhoneNumber(phone).ifPresent(user -> {
-            user.setMessagingLastSeenAt(disconnectedAt);
-            userRepository.save(user);
-        });
+        LocalDateTime disconnectedAt = LocalDateTime.now();
+        lastSeenService.touch(userId, disconnectedAt);
 
         ScheduledFuture<?> f = scheduler.schedule(() -> {
             try {
-                if (sessionRegistry.isOnline(phone)) return;
-                LocalDateTime lastSeenAt = pendingLastSeenAtByPhone.getOrDefault(phone, disconnectedAt);
-
-                userService.findByPhoneNumber(phone).ifPresent(user -> {
-                    if (user.getPublicId() == null) return;
-                    sendToAll(new MessagingRealtimeEvent(
-                            "PRESENCE_UPDATED",
-                            null,
-                            null,
-                            new MessagingPresenceResponse(user.getPublicId(), false, lastSeenAt)
-                    ));
-                });
+                if (isOnline(userId)) return;
+                userService.findById(userId).ifPresent(user -> publishPresence(user, false, disconnectedAt));
             } finally {
-                pendingOfflineByPhone.remove(phone);
-                pendingLastSeenAtByPhone.remove(phone);
+                pendingOfflineByUserId.remove(userId);
             }
         }, OFFLINE_GRACE_MS, TimeUnit.MILLISECONDS);
 
-        pendingOfflineByPhone.put(phone, f);
+        pendingOfflineByUserId.put(userId, f);
     }
 
-    private String resolvePhoneKey(WebSocketSession session) {
-        if (session == null) return null;
-        try {
-            Object v = session.getAttributes() != null ? session.getAttributes().get(MessagingWebSocketSessionRegistry.PHONE_KEY_ATTR) : null;
-            if (v instanceof String s && !s.isBlank()) return s;
-        } catch (Exception ignored) {
-            // ignore
+    private void discard(WebSocketSession session) {
+        OutboundWebSocketSession outbound = sessionRegistry.remove(session);
+        if (outbound == null) return;
+        outbound.discard();
+        Long userId = MessagingWebSocketSessionRegistry.userIdOf(session);
+        if (sessionRegistry.getSessions(userId).isEmpty()) {
+            realtimeCluster.localOffline(userId);
         }
-        try {
-            return session.getPrincipal() != null ? session.getPrincipal().getName() : null;
-        } catch (Exception ignored) {
-            return null;
+    }
+
+    /**
+     * User id of a handshake principal. The JWT interceptor puts a {@link ClinicPrincipal} there, which already carries
+     * the id and stored phone; any other principal is resolved by name.
+     */
+    private Long resolveUserId(Principal principal) {
+        if (principal == null) return null;
+        if (principal instanceof Authentication auth && auth.getPrincipal() instanceof ClinicPrincipal cp && cp.userId() != null) {
+            phoneKeyCache.remember(cp.userId(), cp.phoneNumber());
+            phoneKeyCache.remember(cp.userId(), principal.getName());
+            return cp.userId();
         }
+        return userIdOf(principal.getName());
     }
 
-    private String resolveCanonicalPhone(String phone) {
-        if (phone == null || phone.isBlank()) return phone;
-        return userService.findByPhoneNumber(phone)
-                .map(User::getPhoneNumber)
-                .filter(v -> v != null && !v.isBlank())
-                .orElse(phone);
+    private Long userIdOf(String phone) {
+        return phoneKeyCache.userId(phone, p -> userService.findByPhoneNumber(p).orElse(null));
     }
 }
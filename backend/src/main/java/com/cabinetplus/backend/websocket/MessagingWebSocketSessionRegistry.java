@@ -1,6 +1,7 @@
 package com.cabinetplus.backend.websocket;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -8,56 +9,78 @@ import java.util.concurrent.CopyOnWriteArraySet;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.WebSocketSession;
 
+/** Open sessions by user id, the id being stored on the session at handshake. */
 @Component
 public class MessagingWebSocketSessionRegistry {
 
-    public static final String PHONE_KEY_ATTR = "messagingPhoneKey";
+    public static final String USER_ID_ATTR = "messagingUserId";
 
-    private final ConcurrentHashMap<String, CopyOnWriteArraySet<WebSocketSession>> sessionsByPhone = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, CopyOnWriteArraySet<OutboundWebSocketSession>> sessionsByUserId = new ConcurrentHashMap<>();
 
-    public void add(WebSocketSession session) {
-        if (session == null) return;
-        String phone = session.getAttributes() != null ? (String) session.getAttributes().get(PHONE_KEY_ATTR) : null;
-        if (phone == null || phone.isBlank()) {
-            phone = session.getPrincipal() != null ? session.getPrincipal().getName() : null;
-        }
-        if (phone == null || phone.isBlank()) return;
-        sessionsByPhone.computeIfAbsent(phone, k -> new CopyOnWriteArraySet<>()).add(session);
+    /** Registers {@code outbound}; {@code true} if it is the user's first session here. */
+    boolean add(OutboundWebSocketSession outbound) {
+        if (outbound == null) return false;
+        Long userId = userIdOf(outbound.session());
+        if (userId == null) return false;
+        boolean[] first = { false };
+        sessionsByUserId.compute(userId, (k, set) -> {
+            if (set == null) {
+                set = new CopyOnWriteArraySet<>();
+                first[0] = true;
+            }
+            set.add(outbound);
+            return set;
+        });
+        return first[0];
     }
 
-    public void remove(WebSocketSession session) {
-        if (session == null) return;
-        String phone = session.getAttributes() != null ? (String) session.getAttributes().get(PHONE_KEY_ATTR) : null;
-        if (phone == null || phone.isBlank()) {
-            phone = session.getPrincipal() != null ? session.getPrincipal().getName() : null;
+    /** Unregisters {@code session} and returns its outbound side, or {@code null} if it wasn't registered. */
+    OutboundWebSocketSession remove(WebSocketSession session) {
+        if (session == null) return null;
+        Long userId = userIdOf(session);
+        if (userId == null) return null;
+        Set<OutboundWebSocketSession> set = sessionsByUserId.get(userId);
+        if (set == null) return null;
+        OutboundWebSocketSession removed = null;
+        for (OutboundWebSocketSession outbound : set) {
+            if (outbound.id().equals(session.getId()) && set.remove(outbound)) {
+                removed = outbound;
+            }
         }
-        if (phone == null || phone.isBlank()) return;
-        Set<WebSocketSession> set = sessionsByPhone.get(phone);
-        if (set == null) return;
-        set.remove(session);
-        if (set.isEmpty()) sessionsByPhone.remove(phone);
+        // Dropped atomically with the emptiness check so a concurrent add can't land in a detached set.
+        sessionsByUserId.computeIfPresent(userId, (k, current) -> current.isEmpty() ? null : current);
+        return removed;
     }
 
-    public boolean isOnline(String phone) {
-        if (phone == null || phone.isBlank()) return false;
-        Set<WebSocketSession> set = sessionsByPhone.get(phone);
+    public boolean isOnline(Long userId) {
+        if (userId == null) return false;
+        Set<OutboundWebSocketSession> set = sessionsByUserId.get(userId);
         if (set == null || set.isEmpty()) return false;
-        return set.stream().anyMatch(s -> s != null && s.isOpen());
+        return set.stream().anyMatch(OutboundWebSocketSession::isOpen);
+    }
+
+    Set<OutboundWebSocketSession> getSessions(Long userId) {
+        if (userId == null) return Set.of();
+        Set<OutboundWebSocketSession> set = sessionsByUserId.get(userId);
+        return set != null ? set : Set.of();
     }
 
-    public Set<WebSocketSession> getSessions(String phone) {
-        if (phone == null || phone.isBlank()) return Set.of();
-        Set<WebSocketSession> set = sessionsByPhone.get(phone);
-        if (set == null) return Set.of();
-        return Set.copyOf(set);
+    /** Users with at least one session registered here. */
+    Set<Long> onlineUserIds() {
+        return Set.copyOf(sessionsByUserId.keySet());
     }
 
-    public Set<WebSocketSession> getAllSessions() {
-        Set<WebSocketSession> out = new HashSet<>();
-        for (Set<WebSocketSession> set : sessionsByPhone.values()) {
-            if (set == null || set.isEmpty()) continue;
+    /** Snapshot of every registered session. */
+    List<OutboundWebSocketSession> getAllSessions() {
+        List<OutboundWebSocketSession> out = new ArrayList<>();
+        for (Set<OutboundWebSocketSession> set : sessionsByUserId.values()) {
             out.addAll(set);
         }
-        return Set.copyOf(out);
+        return out;
+    }
+
+    static Long userIdOf(WebSocketSession session) {
+        if (session == null || session.getAttributes() == null) return null;
+        return session.getAttributes().get(USER_ID_ATTR) instanceof Long id ? id : null;
     }
 }
@@ -0,0 +1,169 @@
+package com.cabinetplus.backend.websocket;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * Sending side of one WebSocket session. Frames are queued without blocking the caller and written in order by a task
+ * on the sender pool, one session at a time.
+ *
+ * <p>A session that falls behind is closed rather than buffered without bound. That happens when too many frames or
+ * bytes are queued, or when a frame has been stuck in the socket for longer than the send time limit. The client
+ * reconnects and reloads its state, which is cheaper than queueing for it or stalling a sender thread. Unlike
+ * Spring's {@code ConcurrentWebSocketSessionDecorator}, the write never runs on the thread that queues the frame.</p>
+ */
+final class OutboundWebSocketSession {
+
+    record Limits(int maxFrames, long maxBytes, long sendTimeLimitMillis) {}
+
+    /** Counters shared by every session of a handler. */
+    static final class Counters {
+        final AtomicLong sent = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final AtomicLong closedSlow = new AtomicLong();
+    }
+
+    private final WebSocketSession session;
+    private final Executor sender;
+    private final Limits limits;
+    private final Counters counters;
+
+    private final ConcurrentLinkedQueue<TextMessage> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedFrames = new AtomicInteger();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // When the frame being written started, 0 while idle.
+    private volatile long sendStartedAt;
+
+    OutboundWebSocketSession(WebSocketSession session, Executor sender, Limits limits, Counters counters) {
+        this.session = session;
+        this.sender = sender;
+        this.limits = limits;
+        this.counters = counters;
+    }
+
+    WebSocketSession session() {
+        return session;
+    }
+
+    String id() {
+        return session.getId();
+    }
+
+    boolean isOpen() {
+        return !closed.get() && session.isOpen();
+    }
+
+    int queuedFrames() {
+        return queuedFrames.get();
+    }
+
+    /** Queues {@code message}; {@code false} if the session is closed or was just closed for being too slow. */
+    boolean send(TextMessage message) {
+        if (!isOpen()) return false;
+        long started = sendStartedAt;
+        if (started != 0 && System.currentTimeMillis() - started > limits.sendTimeLimitMillis()) {
+            closeSlow(1);
+            return false;
+        }
+        int length = message.getPayloadLength();
+        int frames = queuedFrames.incrementAndGet();
+        long bytes = queuedBytes.addAndGet(length);
+        if (frames > limits.maxFrames() || bytes > limits.maxBytes()) {
+            queuedFrames.decrementAndGet();
+            queuedBytes.addAndGet(-length);
+            closeSlow(1);
+            return false;
+        }
+        queue.add(message);
+        scheduleDrain();
+        return true;
+    }
+
+    /** Stops sending; frames still queued are counted as dropped. */
+    void discard() {
+        if (closed.compareAndSet(false, true)) {
+            counters.dropped.addAndGet(clear());
+        }
+    }
+
+    private void scheduleDrain() {
+        if (!draining.compareAndSet(false, true)) return;
+        try {
+            sender.execute(this::drain);
+        } catch (RejectedExecutionException ex) {
+            draining.set(false);
+            closeSlow(0);
+        }
+    }
+
+    private void drain() {
+        try {
+            TextMessage message;
+            while (!closed.get() && (message = queue.poll()) != null) {
+                queuedFrames.decrementAndGet();
+                queuedBytes.addAndGet(-message.getPayloadLength());
+                sendStartedAt = System.currentTimeMillis();
+                try {
+                    session.sendMessage(message);
+                    counters.sent.incrementAndGet();
+                } catch (Exception ex) {
+                    counters.dropped.incrementAndGet();
+                    discard();
+                    closeQuietly(CloseStatus.SERVER_ERROR);
+                    return;
+                } finally {
+                    sendStartedAt = 0;
+                }
+            }
+        } finally {
+            draining.set(false);
+            // A frame queued after the last poll but before the flag was cleared would otherwise wait for the next one.
+            if (!closed.get() && !queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+    }
+
+    /**
+     * Marks the session closed right away; the close itself runs on the sender pool, since it waits for any write in
+     * progress and the caller is usually fanning out to other sessions.
+     */
+    private void closeSlow(int rejectedFrames) {
+        if (!closed.compareAndSet(false, true)) return;
+        counters.dropped.addAndGet(rejectedFrames + clear());
+        counters.closedSlow.incrementAndGet();
+        try {
+            sender.execute(() -> closeQuietly(CloseStatus.SESSION_NOT_RELIABLE));
+        } catch (RejectedExecutionException ex) {
+            closeQuietly(CloseStatus.SESSION_NOT_RELIABLE);
+        }
+    }
+
+    private int clear() {
+        int dropped = 0;
+        while (queue.poll() != null) {
+            dropped++;
+        }
+        queuedFrames.set(0);
+        queuedBytes.set(0);
+        return dropped;
+    }
+
+    private void closeQuietly(CloseStatus status) {
+        try {
+            if (session.isOpen()) session.close(status);
+        } catch (Exception ignored) {
+            // already closing
+        }
+    }
+}
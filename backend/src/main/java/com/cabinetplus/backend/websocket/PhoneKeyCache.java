@@ -0,0 +1,117 @@
+package com.cabinetplus.backend.websocket;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.cabinetplus.backend.models.User;
+import com.cabinetplus.backend.util.PhoneNumberUtil;
+
+/**
+ * Bounded, TTL-evicting map from any stored variant of a phone number ({@code 0XXXXXXXXX} or {@code +213XXXXXXXXX},
+ * see {@link PhoneNumberUtil#algeriaStoredCandidates}) to the id of the user it belongs to. Realtime events are
+ * addressed by phone but routed by user id; this keeps that translation out of the database.
+ *
+ * <p>When full, the least recently used phone goes; expired ones are dropped when read. A write to a user drops their
+ * mappings through {@link PhoneKeyCacheInvalidationListener}, found through a per-user index rather than a scan, so
+ * a changed phone number is looked up again. Unknown phones are not cached.</p>
+ */
+@Component
+public class PhoneKeyCache {
+
+    private record Entry(Long userId, long expiresAtNanos) {
+    }
+
+    // Access-ordered, so the eldest entry is the least recently used. Guarded by this, like the index.
+    private final LinkedHashMap<String, Entry> entries;
+    private final Map<Long, Set<String>> phonesByUser = new HashMap<>();
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    public PhoneKeyCache(
+            @Value("${app.websocket.phone-key-cache.ttl-seconds:600}") long ttlSeconds,
+            @Value("${app.websocket.phone-key-cache.max-entries:20000}") int maxEntries
+    ) {
+        this.ttlNanos = Math.max(0L, ttlSeconds) * 1_000_000_000L;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= PhoneKeyCache.this.maxEntries) return false;
+                unindex(eldest.getKey(), eldest.getValue().userId());
+                return true;
+            }
+        };
+    }
+
+    /** User id behind {@code phone}, loaded through {@code loader} on a miss; {@code null} for unknown phones. */
+    public Long userId(String phone, Function<String, User> loader) {
+        if (phone == null || phone.isBlank()) return null;
+        Long cached = cached(phone);
+        if (cached != null) {
+            return cached;
+        }
+        User user = loader.apply(phone);
+        if (user == null || user.getId() == null) return null;
+        remember(user.getId(), user.getPhoneNumber());
+        put(phone, user.getId());
+        return user.getId();
+    }
+
+    /** Maps every stored variant of {@code phone} to {@code userId}. */
+    public void remember(Long userId, String phone) {
+        if (userId == null || phone == null || phone.isBlank()) return;
+        put(phone, userId);
+        for (String candidate : PhoneNumberUtil.algeriaStoredCandidates(phone)) {
+            put(candidate, userId);
+        }
+    }
+
+    public synchronized void invalidateUser(Long userId) {
+        if (userId == null) return;
+        Set<String> phones = phonesByUser.remove(userId);
+        if (phones == null) return;
+        for (String phone : phones) {
+            entries.remove(phone);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized Long cached(String phone) {
+        Entry cached = entries.get(phone);
+        if (cached == null) return null;
+        if (System.nanoTime() - cached.expiresAtNanos() >= 0) {
+            entries.remove(phone);
+            unindex(phone, cached.userId());
+            return null;
+        }
+        return cached.userId();
+    }
+
+    private synchronized void put(String phone, Long userId) {
+        if (ttlNanos == 0L || phone == null || phone.isBlank()) return;
+        Entry previous = entries.put(phone, new Entry(userId, System.nanoTime() + ttlNanos));
+        if (previous != null && !previous.userId().equals(userId)) {
+            unindex(phone, previous.userId());
+        }
+        phonesByUser.computeIfAbsent(userId, k -> new HashSet<>()).add(phone);
+    }
+
+    private void unindex(String phone, Long userId) {
+        Set<String> phones = phonesByUser.get(userId);
+        if (phones == null) return;
+        phones.remove(phone);
+        if (phones.isEmpty()) {
+            phonesByUser.remove(userId);
+        }
+    }
+}
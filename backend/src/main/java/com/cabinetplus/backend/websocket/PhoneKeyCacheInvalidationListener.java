@@ -0,0 +1,46 @@
+package com.cabinetplus.backend.websocket;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.cabinetplus.backend.models.User;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * JPA entity listener that drops a user's {@link PhoneKeyCache} mappings whenever the user row is written, so a
+ * changed or reassigned phone number is looked up again.
+ *
+ * <p>Hibernate instantiates entity listeners itself; the cache is injected here so the eviction reaches the singleton
+ * the realtime handler routes with. Eviction happens immediately and again after commit, like
+ * {@link com.cabinetplus.backend.security.ClinicPrincipalInvalidationListener}.</p>
+ */
+@Component
+public class PhoneKeyCacheInvalidationListener {
+
+    private final PhoneKeyCache cache;
+
+    public PhoneKeyCacheInvalidationListener(PhoneKeyCache cache) {
+        this.cache = cache;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onWrite(Object entity) {
+        if (!(entity instanceof User user) || user.getId() == null) return;
+        Long userId = user.getId();
+        cache.invalidateUser(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidateUser(userId);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.cabinetplus.backend.websocket;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * {@link RealtimeClusterBus} over PostgreSQL {@code LISTEN/NOTIFY}, so several instances share realtime traffic
+ * through the database they already use.
+ *
+ * <p>One connection is held for {@code LISTEN} by a daemon thread, which reconnects with a pause when it breaks. It is
+ * opened from the datasource settings but outside the pool, so it never takes a pooled connection away from requests.
+ * Notifications are sent from a single publisher thread in publication order. NOTIFY payloads are limited to 8000
+ * bytes: a larger message is stored in {@code realtime_cluster_payloads} and only its id is sent.</p>
+ */
+@Component
+@ConditionalOnProperty(name = "app.realtime.cluster.bus", havingValue = "postgres", matchIfMissing = true)
+public class PostgresRealtimeClusterBus implements RealtimeClusterBus {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgresRealtimeClusterBus.class);
+
+    static final String CHANNEL = "cabinetplus_realtime";
+    // Below the 8000-byte NOTIFY limit.
+    static final int MAX_INLINE_BYTES = 7500;
+    private static final String REF_PREFIX = "#";
+
+    private final DataSourceProperties dataSourceProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final long pollMillis;
+    private final long reconnectDelayMillis;
+    private final long payloadRetentionSeconds;
+    private final ThreadPoolExecutor publisher;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong droppedPublications = new AtomicLong();
+    private volatile boolean running = true;
+    private volatile boolean connected;
+    private Thread listenerThread;
+
+    public PostgresRealtimeClusterBus(
+            DataSourceProperties dataSourceProperties,
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            @Value("${app.realtime.cluster.publish-queue-capacity:10000}") int publishQueueCapacity,
+            @Value("${app.realtime.cluster.poll-ms:5000}") long pollMillis,
+            @Value("${app.realtime.cluster.reconnect-delay-ms:5000}") long reconnectDelayMillis,
+            @Value("${app.realtime.cluster.payload-retention-seconds:300}") long payloadRetentionSeconds
+    ) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.pollMillis = Math.max(100L, pollMillis);
+        this.reconnectDelayMillis = Math.max(100L, reconnectDelayMillis);
+        this.payloadRetentionSeconds = Math.max(60L, payloadRetentionSeconds);
+        this.publisher = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, publishQueueCapacity)), r -> {
+                    Thread t = new Thread(r, "realtime-cluster-publish");
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @PostConstruct
+    public void start() {
+        listenerThread = new Thread(this::listen, "realtime-cluster-listen");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @Override
+    public void publish(RealtimeClusterMessage message) {
+        if (message == null) return;
+        try {
+            publisher.execute(() -> send(message));
+        } catch (RejectedExecutionException ex) {
+            if (droppedPublications.getAndIncrement() % 100 == 0) {
+                log.warn("Realtime cluster publish queue full, dropping messages ({} so far)", droppedPublications.get());
+            }
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void subscribe(Listener listener) {
+        if (listener != null) listeners.add(listener);
+    }
+
+    /** Deletes stored payloads every instance has had time to read. */
+    @Scheduled(fixedDelayString = "${app.realtime.cluster.payload-cleanup-ms:60000}")
+    public void deleteExpiredPayloads() {
+        try {
+            jdbcTemplate.update("delete from realtime_cluster_payloads where created_at < now() - make_interval(secs => ?)",
+                    payloadRetentionSeconds);
+        } catch (RuntimeException ex) {
+            log.debug("Could not delete expired realtime cluster payloads", ex);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        publisher.shutdownNow();
+        if (listenerThread != null) listenerThread.interrupt();
+    }
+
+    private void send(RealtimeClusterMessage message) {
+        try {
+            String json = objectMapper.writeValueAsString(message);
+            String notification = json;
+            if (json.getBytes(StandardCharsets.UTF_8).length > MAX_INLINE_BYTES) {
+                Long id = jdbcTemplate.queryForObject(
+                        "insert into realtime_cluster_payloads (payload) values (?) returning id", Long.class, json);
+                notification = REF_PREFIX + id;
+            }
+            jdbcTemplate.queryForList("select pg_notify(?, ?)", CHANNEL, notification);
+        } catch (Exception ex) {
+            log.warn("Could not publish {} realtime message to the cluster", message.type(), ex);
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = openListenConnection()) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                log.info("Listening for realtime cluster messages on channel {}", CHANNEL);
+                connected = true;
+                for (Listener listener : listeners) {
+                    listener.onConnected();
+                }
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications((int) pollMillis);
+                    if (notifications == null || notifications.length == 0) {
+                        // Idle: make sure the connection is still alive rather than waiting on a dead socket.
+                        try (Statement ping = connection.createStatement()) {
+                            ping.execute("select 1");
+                        }
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        dispatch(notification.getParameter());
+                    }
+                }
+            } catch (SQLException | RuntimeException ex) {
+                connected = false;
+                if (!running) return;
+                log.warn("Realtime cluster listener disconnected, retrying in {} ms", reconnectDelayMillis, ex);
+                try {
+                    Thread.sleep(reconnectDelayMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private Connection openListenConnection() throws SQLException {
+        Properties properties = new Properties();
+        String username = dataSourceProperties.determineUsername();
+        String password = dataSourceProperties.determinePassword();
+        if (username != null) properties.setProperty("user", username);
+        if (password != null) properties.setProperty("password", password);
+        properties.setProperty("ApplicationName", "cabinetplus-realtime-listen");
+        properties.setProperty("tcpKeepAlive", "true");
+        // Longer than a poll, so only a connection that stopped answering times out.
+        properties.setProperty("socketTimeout", Long.toString(pollMillis / 1000 + 30));
+        return DriverManager.getConnection(dataSourceProperties.determineUrl(), properties);
+    }
+
+    private void dispatch(String notification) {
+        if (notification == null || notification.isBlank()) return;
+        RealtimeClusterMessage message;
+        try {
+            String json = notification;
+            if (notification.startsWith(REF_PREFIX)) {
+                long id = Long.parseLong(notification.substring(REF_PREFIX.length()));
+                List<String> rows = jdbcTemplate.queryForList(
+                        "select payload from realtime_cluster_payloads where id = ?", String.class, id);
+                if (rows.isEmpty()) return;
+                json = rows.get(0);
+            }
+            message = objectMapper.readValue(json, RealtimeClusterMessage.class);
+        } catch (Exception ex) {
+            log.debug("Ignoring unreadable realtime cluster message", ex);
+            return;
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.onMessage(message);
+            } catch (RuntimeException ex) {
+                log.warn("Realtime cluster listener failed on {} message", message.type(), ex);
+            }
+        }
+    }
+}
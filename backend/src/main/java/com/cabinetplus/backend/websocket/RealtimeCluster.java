@@ -0,0 +1,165 @@
+package com.cabinetplus.backend.websocket;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * This instance's view of the other backend instances: which users are connected to each of them, and the relay of
+ * events to their sessions through the {@link RealtimeClusterBus}.
+ *
+ * <p>Each instance announces users whose first session opens or last session closes, and sends a snapshot of all its
+ * connected users every {@code app.realtime.cluster.snapshot-interval-ms} to correct anything missed. An instance not
+ * heard from for {@code app.realtime.cluster.node-timeout-ms} is assumed gone with its users. Events are only relayed
+ * when a recipient is connected elsewhere; receiving instances deliver them to their own sessions only.</p>
+ */
+@Component
+public class RealtimeCluster implements RealtimeClusterBus.Listener {
+
+    private static final class NodeView {
+        final Set<Long> userIds = ConcurrentHashMap.newKeySet();
+        volatile long lastHeardAt;
+    }
+
+    private final RealtimeClusterBus bus;
+    private final MessagingWebSocketSessionRegistry sessionRegistry;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final long nodeTimeoutMillis;
+    private final int snapshotChunkSize;
+    private final ConcurrentHashMap<String, NodeView> nodes = new ConcurrentHashMap<>();
+    private volatile BiConsumer<List<Long>, String> remoteEventHandler = (userIds, payload) -> { };
+
+    public RealtimeCluster(
+            RealtimeClusterBus bus,
+            MessagingWebSocketSessionRegistry sessionRegistry,
+            @Value("${app.realtime.cluster.node-timeout-ms:45000}") long nodeTimeoutMillis,
+            @Value("${app.realtime.cluster.snapshot-chunk-size:500}") int snapshotChunkSize
+    ) {
+        this.bus = bus;
+        this.sessionRegistry = sessionRegistry;
+        this.nodeTimeoutMillis = Math.max(1L, nodeTimeoutMillis);
+        this.snapshotChunkSize = Math.max(1, snapshotChunkSize);
+        bus.subscribe(this);
+    }
+
+    @PostConstruct
+    public void join() {
+        onConnected();
+    }
+
+    String nodeId() {
+        return nodeId;
+    }
+
+    /** Where events relayed by other instances go: recipients ({@code null} for everyone) and the encoded event. */
+    void onRemoteEvent(BiConsumer<List<Long>, String> handler) {
+        this.remoteEventHandler = handler;
+    }
+
+    /** Relays an encoded event to the instances where one of {@code userIds} ({@code null}: anyone) is connected. */
+    void publishEvent(Collection<Long> userIds, String payload) {
+        if (payload == null) return;
+        if (userIds == null) {
+            if (hasLiveNodes()) bus.publish(RealtimeClusterMessage.event(nodeId, null, payload));
+            return;
+        }
+        List<Long> remote = new ArrayList<>();
+        for (Long userId : userIds) {
+            if (isOnlineElsewhere(userId)) remote.add(userId);
+        }
+        if (!remote.isEmpty()) {
+            bus.publish(RealtimeClusterMessage.event(nodeId, remote, payload));
+        }
+    }
+
+    void localOnline(Long userId) {
+        if (userId == null) return;
+        bus.publish(RealtimeClusterMessage.presence(RealtimeClusterMessage.Type.ONLINE, nodeId, List.of(userId), false));
+    }
+
+    void localOffline(Long userId) {
+        if (userId == null) return;
+        bus.publish(RealtimeClusterMessage.presence(RealtimeClusterMessage.Type.OFFLINE, nodeId, List.of(userId), false));
+    }
+
+    /** Whether {@code userId} has a session on another live instance. */
+    public boolean isOnlineElsewhere(Long userId) {
+        if (userId == null) return false;
+        long cutoff = System.currentTimeMillis() - nodeTimeoutMillis;
+        for (NodeView view : nodes.values()) {
+            if (view.lastHeardAt >= cutoff && view.userIds.contains(userId)) return true;
+        }
+        return false;
+    }
+
+    /** Other instances heard from recently. */
+    public int liveNodes() {
+        long cutoff = System.currentTimeMillis() - nodeTimeoutMillis;
+        int live = 0;
+        for (NodeView view : nodes.values()) {
+            if (view.lastHeardAt >= cutoff) live++;
+        }
+        return live;
+    }
+
+    /** Sends the users connected here, replacing what other instances know of this one, and forgets silent instances. */
+    @Scheduled(
+            initialDelayString = "${app.realtime.cluster.snapshot-interval-ms:15000}",
+            fixedDelayString = "${app.realtime.cluster.snapshot-interval-ms:15000}"
+    )
+    public void publishSnapshot() {
+        long cutoff = System.currentTimeMillis() - nodeTimeoutMillis;
+        nodes.values().removeIf(view -> view.lastHeardAt < cutoff);
+
+        List<Long> userIds = new ArrayList<>(sessionRegistry.onlineUserIds());
+        int from = 0;
+        do {
+            List<Long> chunk = List.copyOf(userIds.subList(from, Math.min(userIds.size(), from + snapshotChunkSize)));
+            bus.publish(RealtimeClusterMessage.presence(RealtimeClusterMessage.Type.ONLINE, nodeId, chunk, from == 0));
+            from += snapshotChunkSize;
+        } while (from < userIds.size());
+    }
+
+    @Override
+    public void onMessage(RealtimeClusterMessage message) {
+        if (message == null || message.type() == null || message.origin() == null || nodeId.equals(message.origin())
+                || message.type().isTokenEpoch()) {
+            return;
+        }
+        NodeView view = nodes.computeIfAbsent(message.origin(), k -> new NodeView());
+        view.lastHeardAt = System.currentTimeMillis();
+        List<Long> userIds = message.userIds() != null ? message.userIds() : List.of();
+        switch (message.type()) {
+            case EVENT -> {
+                if (message.payload() != null) remoteEventHandler.accept(message.userIds(), message.payload());
+            }
+            case ONLINE -> {
+                if (message.reset()) view.userIds.clear();
+                view.userIds.addAll(userIds);
+            }
+            case OFFLINE -> userIds.forEach(view.userIds::remove);
+            case SYNC -> publishSnapshot();
+        }
+    }
+
+    /** Joining, or back after a bus outage: ask for everyone's state and send ours. */
+    @Override
+    public void onConnected() {
+        bus.publish(RealtimeClusterMessage.sync(nodeId));
+        publishSnapshot();
+    }
+
+    private boolean hasLiveNodes() {
+        return liveNodes() > 0;
+    }
+}
@@ -0,0 +1,30 @@
+package com.cabinetplus.backend.websocket;
+
+/**
+ * Transport between backend instances for {@link RealtimeClusterMessage}s. Chosen with {@code app.realtime.cluster.bus}:
+ * {@code postgres} ({@link PostgresRealtimeClusterBus}, the default) or {@code none} for a single instance.
+ *
+ * <p>Implementations deliver every published message to the listeners of every instance, the publishing one included
+ * (listeners skip their own messages), in publication order per publisher. {@link #publish} must not block the
+ * caller.</p>
+ */
+public interface RealtimeClusterBus {
+
+    interface Listener {
+
+        void onMessage(RealtimeClusterMessage message);
+
+        /** Called when the bus (re)connects; messages may have been missed while it was down. */
+        default void onConnected() {
+        }
+    }
+
+    void publish(RealtimeClusterMessage message);
+
+    /** Whether messages from other instances are currently being received; always true without other instances. */
+    default boolean isConnected() {
+        return true;
+    }
+
+    void subscribe(Listener listener);
+}
@@ -0,0 +1,44 @@
+package com.cabinetplus.backend.websocket;
+
+import java.util.List;
+
+/**
+ * What backend instances tell each other about realtime traffic.
+ *
+ * <ul>
+ *   <li>{@code EVENT}: an encoded event ({@code payload}) for {@code userIds}, or for everyone when {@code null}.</li>
+ *   <li>{@code ONLINE} / {@code OFFLINE}: users whose first session opened / last session closed on {@code origin}.
+ *       With {@code reset}, the list replaces everything known about {@code origin} (first chunk of a snapshot).</li>
+ *   <li>{@code SYNC}: asks every other instance to send a snapshot of its connected users.</li>
+ *   <li>{@code TOKENS_STALE} / {@code TOKENS_REVOKED}: access tokens of {@code userIds} issued up to the epoch second in
+ *       {@code payload} carry outdated claims / are refused, see
+ *       {@link com.cabinetplus.backend.security.TokenRevocationEpochs}.</li>
+ * </ul>
+ */
+public record RealtimeClusterMessage(Type type, String origin, List<Long> userIds, String payload, boolean reset) {
+
+    public enum Type {
+        EVENT, ONLINE, OFFLINE, SYNC, TOKENS_STALE, TOKENS_REVOKED;
+
+        /** Token epochs come from {@link com.cabinetplus.backend.security.TokenRevocationEpochs}, not from a node. */
+        public boolean isTokenEpoch() {
+            return this == TOKENS_STALE || this == TOKENS_REVOKED;
+        }
+    }
+
+    static RealtimeClusterMessage event(String origin, List<Long> userIds, String payload) {
+        return new RealtimeClusterMessage(Type.EVENT, origin, userIds, payload, false);
+    }
+
+    static RealtimeClusterMessage presence(Type type, String origin, List<Long> userIds, boolean reset) {
+        return new RealtimeClusterMessage(type, origin, userIds, null, reset);
+    }
+
+    static RealtimeClusterMessage sync(String origin) {
+        return new RealtimeClusterMessage(Type.SYNC, origin, null, null, false);
+    }
+
+    public static RealtimeClusterMessage tokenEpoch(Type type, String origin, Long userId, long epochSeconds) {
+        return new RealtimeClusterMessage(type, origin, List.of(userId), Long.toString(epochSeconds), false);
+    }
+}
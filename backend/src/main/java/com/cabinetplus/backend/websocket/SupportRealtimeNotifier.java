@@ -25,24 +25,20 @@ public class SupportRealtimeNotifier {
         if (event == null) return;
 
         SupportRealtimeEvent clinicPayload = new SupportRealtimeEvent("SUPPORT_MESSAGE_CREATED", event.clinicThread(), event.clinicMessage());
-        for (String phone : safePhones(event.clinicPhones())) {
-            webSocketHandler.sendToUser(phone, clinicPayload);
-        }
+        webSocketHandler.sendToUsers(safePhones(event.clinicPhones()), clinicPayload);
 
-        Set<String> withMessage = new HashSet<>(safePhones(event.adminPhonesWithMessage()));
-        for (String phone : safePhones(event.adminPhones())) {
-            if (withMessage.contains(phone)) {
-                webSocketHandler.sendToUser(
-                        phone,
-                        new SupportRealtimeEvent("SUPPORT_MESSAGE_CREATED", event.adminThread(), event.adminMessage())
-                );
-            } else {
-                webSocketHandler.sendToUser(
-                        phone,
-                        new SupportRealtimeEvent("SUPPORT_THREAD_UPDATED", event.adminThread(), null)
-                );
-            }
-        }
+        Set<String> withMessage = safePhones(event.adminPhonesWithMessage());
+        Set<String> withoutMessage = safePhones(event.adminPhones());
+        withMessage.retainAll(withoutMessage);
+        withoutMessage.removeAll(withMessage);
+        webSocketHandler.sendToUsers(
+                withMessage,
+                new SupportRealtimeEvent("SUPPORT_MESSAGE_CREATED", event.adminThread(), event.adminMessage())
+        );
+        webSocketHandler.sendToUsers(
+                withoutMessage,
+                new SupportRealtimeEvent("SUPPORT_THREAD_UPDATED", event.adminThread(), null)
+        );
     }
 
     @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
@@ -50,14 +46,10 @@ public class SupportRealtimeNotifier {
         if (event == null) return;
 
         SupportRealtimeEvent clinicPayload = new SupportRealtimeEvent("SUPPORT_CLAIM_UPDATED", event.clinicThread(), event.clinicMessage());
-        for (String phone : safePhones(event.clinicPhones())) {
-            webSocketHandler.sendToUser(phone, clinicPayload);
-        }
+        webSocketHandler.sendToUsers(safePhones(event.clinicPhones()), clinicPayload);
 
         SupportRealtimeEvent adminPayload = new SupportRealtimeEvent("SUPPORT_CLAIM_UPDATED", event.adminThread(), event.adminMessage());
-        for (String phone : safePhones(event.adminPhones())) {
-            webSocketHandler.sendToUser(phone, adminPayload);
-        }
+        webSocketHandler.sendToUsers(safePhones(event.adminPhones()), adminPayload);
     }
 
     private Set<String> safePhones(List<String> phones) {
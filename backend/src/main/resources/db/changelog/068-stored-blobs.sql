@@ -0,0 +1,20 @@
+create table if not exists stored_blobs (
+    id bigserial primary key,
+    owner_id bigint not null references users(id) on delete cascade,
+    sha256 varchar(64) not null,
+    storage_path text not null,
+    size_bytes bigint not null,
+    plaintext_bytes bigint not null,
+    ref_count integer not null default 0,
+    created_at timestamp not null default now(),
+    released_at timestamp
+);
+
+create unique index if not exists ux_stored_blobs_owner_sha256 on stored_blobs(owner_id, sha256);
+create unique index if not exists ux_stored_blobs_storage_path on stored_blobs(storage_path);
+create index if not exists idx_stored_blobs_unreferenced on stored_blobs(released_at) where ref_count = 0;
+
+-- Storage usage joins owning rows to their blob by path.
+create index if not exists idx_documents_path_or_url on documents(path_or_url);
+create index if not exists idx_prothesis_files_path_or_url on prothesis_files(path_or_url);
+create index if not exists idx_protheses_stl_path_or_url on protheses(stl_path_or_url);
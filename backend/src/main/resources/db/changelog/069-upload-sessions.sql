@@ -0,0 +1,15 @@
+create table if not exists upload_sessions (
+    id varchar(36) primary key,
+    owner_id bigint not null references users(id) on delete cascade,
+    created_by bigint references users(id) on delete set null,
+    prothesis_id bigint not null references protheses(id) on delete cascade,
+    filename varchar(255) not null,
+    relative_path varchar(1024),
+    content_type varchar(255),
+    total_bytes bigint not null,
+    created_at timestamp not null default now(),
+    expires_at timestamp not null
+);
+
+create index if not exists idx_upload_sessions_owner on upload_sessions(owner_id);
+create index if not exists idx_upload_sessions_expires_at on upload_sessions(expires_at);
@@ -0,0 +1,9 @@
+-- Per-clinic storage usage, maintained on upload/delete and recomputed from the file tables by a periodic job.
+create table if not exists storage_usage (
+    owner_id bigint primary key references users(id) on delete cascade,
+    used_bytes bigint not null default 0,
+    updated_at timestamp not null default now(),
+    reconciled_at timestamp not null default now()
+);
+
+create index if not exists idx_storage_usage_reconciled_at on storage_usage(reconciled_at);
@@ -0,0 +1,20 @@
+create table if not exists pdf_export_jobs (
+    id varchar(36) primary key,
+    owner_id bigint not null references users(id) on delete cascade,
+    created_by bigint references users(id) on delete set null,
+    kind varchar(30) not null,
+    patient_id bigint references patients(id) on delete cascade,
+    from_date date,
+    to_date date,
+    status varchar(20) not null,
+    document_count integer not null default 0,
+    size_bytes bigint not null default 0,
+    storage_location varchar(1024),
+    error varchar(500),
+    created_at timestamp not null default now(),
+    completed_at timestamp,
+    expires_at timestamp not null
+);
+
+create index if not exists idx_pdf_export_jobs_owner on pdf_export_jobs(owner_id, created_at);
+create index if not exists idx_pdf_export_jobs_expires_at on pdf_export_jobs(expires_at);
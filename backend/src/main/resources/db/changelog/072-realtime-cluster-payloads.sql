@@ -0,0 +1,8 @@
+-- Realtime events too large for a NOTIFY payload; peers read them by id. Rows are deleted after a few minutes.
+create table if not exists realtime_cluster_payloads (
+    id bigserial primary key,
+    payload text not null,
+    created_at timestamp not null default now()
+);
+
+create index if not exists idx_realtime_cluster_payloads_created_at on realtime_cluster_payloads(created_at);
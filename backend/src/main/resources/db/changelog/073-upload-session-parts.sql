@@ -0,0 +1,16 @@
+alter table upload_sessions add column if not exists received_bytes bigint not null default 0;
+alter table upload_sessions add column if not exists completing_since timestamp;
+
+-- Parts staged in blob storage; no foreign key, so parts of deleted sessions are still found and cleaned up.
+create table if not exists upload_session_parts (
+    id bigserial primary key,
+    upload_id varchar(36) not null,
+    start_offset bigint not null,
+    length_bytes bigint not null,
+    location varchar(1024) not null,
+    committed boolean not null default false,
+    created_at timestamp not null default now()
+);
+
+create index if not exists idx_upload_session_parts_upload on upload_session_parts(upload_id, start_offset);
+create index if not exists idx_upload_session_parts_created_at on upload_session_parts(created_at) where committed = false;
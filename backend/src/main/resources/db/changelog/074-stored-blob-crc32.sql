@@ -0,0 +1,2 @@
+-- CRC-32 of the plaintext, so ZIP bundles can write complete STORED local headers. Null for blobs stored before it.
+alter table stored_blobs add column if not exists plaintext_crc32 bigint;
@@ -0,0 +1,2 @@
+-- Epoch second before which a user's access tokens are refused (logout-all, password change), shared by every instance.
+alter table users add column if not exists tokens_revoked_at bigint;
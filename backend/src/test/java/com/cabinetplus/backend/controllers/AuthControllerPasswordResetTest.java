@@ -25,6 +25,7 @@ import com.cabinetplus.backend.repositories.LaboratoryRepository;
 import com.cabinetplus.backend.repositories.RefreshTokenRepository;
 import com.cabinetplus.backend.repositories.UserRepository;
 import com.cabinetplus.backend.security.JwtUtil;
+import com.cabinetplus.backend.security.TokenRevocationEpochs;
 import com.cabinetplus.backend.services.AuditService;
 import com.cabinetplus.backend.services.LaboratoryService;
 import com.cabinetplus.backend.services.PhoneVerificationService;
@@ -58,6 +59,7 @@ class AuthControllerPasswordResetTest {
                 passwordEncoder,
                 auditService,
                 phoneVerificationService,
+                mock(TokenRevocationEpochs.class),
                 environment
         );
 
@@ -7,6 +7,7 @@ import com.cabinetplus.backend.repositories.LaboratoryRepository;
 import com.cabinetplus.backend.repositories.RefreshTokenRepository;
 import com.cabinetplus.backend.repositories.UserRepository;
 import com.cabinetplus.backend.security.JwtUtil;
+import com.cabinetplus.backend.security.TokenRevocationEpochs;
 import com.cabinetplus.backend.services.AuditService;
 import com.cabinetplus.backend.services.LaboratoryService;
 import com.cabinetplus.backend.services.PhoneVerificationService;
@@ -68,6 +69,7 @@ class AuthControllerTest {
                 passwordEncoder,
                 auditService,
                 phoneVerificationService,
+                mock(TokenRevocationEpochs.class),
                 environment
         );
 
@@ -206,6 +208,7 @@ class AuthControllerTest {
                 passwordEncoder,
                 auditService,
                 phoneVerificationService,
+                mock(TokenRevocationEpochs.class),
                 environment
         );
 
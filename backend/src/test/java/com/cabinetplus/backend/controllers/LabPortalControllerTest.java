@@ -0,0 +1,119 @@
+package com.cabinetplus.backend.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Principal;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.context.request.async.StandardServletAsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.cabinetplus.backend.enums.UserRole;
+import com.cabinetplus.backend.models.User;
+import com.cabinetplus.backend.repositories.LaboratoryRepository;
+import com.cabinetplus.backend.repositories.ProthesisFileRepository;
+import com.cabinetplus.backend.security.crypto.EncryptedFileIO;
+import com.cabinetplus.backend.security.crypto.EncryptionKeyProvider;
+import com.cabinetplus.backend.services.LabPortalService;
+import com.cabinetplus.backend.services.LaboratoryAccessService;
+import com.cabinetplus.backend.services.LaboratoryConnectionService;
+import com.cabinetplus.backend.services.ProthesisFilesService;
+import com.cabinetplus.backend.services.ProthesisStlService;
+import com.cabinetplus.backend.services.ProthesisZipService;
+import com.cabinetplus.backend.services.UserService;
+import com.cabinetplus.backend.storage.StoredObject;
+
+import jakarta.servlet.AsyncEvent;
+
+class LabPortalControllerTest {
+
+    private static final Principal LAB = () -> "lab";
+
+    @TempDir
+    Path tempDir;
+
+    private final ProthesisZipService prothesisZipService = new ProthesisZipService(1, 0, 50);
+    private LabPortalController controller;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        UserService userService = mock(UserService.class);
+        ProthesisFilesService prothesisFilesService = mock(ProthesisFilesService.class);
+        controller = new LabPortalController(
+                userService,
+                mock(LaboratoryAccessService.class),
+                mock(LaboratoryConnectionService.class),
+                mock(LabPortalService.class),
+                mock(LaboratoryRepository.class),
+                mock(PasswordEncoder.class),
+                mock(ProthesisStlService.class),
+                prothesisFilesService,
+                prothesisZipService,
+                mock(ProthesisFileRepository.class)
+        );
+
+        User labUser = new User();
+        labUser.setId(9L);
+        labUser.setRole(UserRole.LAB);
+        when(userService.findByPhoneNumber("lab")).thenReturn(Optional.of(labUser));
+        when(prothesisFilesService.buildZipFilename(1L)).thenReturn("prothese_1_fichiers.zip");
+        when(prothesisFilesService.buildZipSourcesForLab(eq(1L), eq(labUser))).thenReturn(List.of(
+                new ProthesisFilesService.ZipEntrySource("arcade.stl", encrypted("solid arcade\nendsolid"))));
+    }
+
+    @Test
+    void filesZipThatTimesOutBeforeDispatchFreesItsSlot() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseEntity<StreamingResponseBody> entity = controller.downloadProthesisFilesZip(1L, request, LAB);
+        assertEquals(1, prothesisZipService.stats().active());
+
+        // As Spring MVC runs the body, except that the request ends before the task is ever executed.
+        StandardServletAsyncWebRequest asyncRequest = new StandardServletAsyncWebRequest(request, response);
+        WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+        asyncManager.setAsyncWebRequest(asyncRequest);
+        asyncManager.setTaskExecutor(task -> { });
+        asyncManager.startCallableProcessing(() -> {
+            entity.getBody().writeTo(response.getOutputStream());
+            return null;
+        });
+        asyncRequest.onComplete(new AsyncEvent(request.getAsyncContext()));
+
+        assertEquals(0, prothesisZipService.stats().active());
+        assertThrows(IOException.class, () -> entity.getBody().writeTo(OutputStream.nullOutputStream()));
+        controller.downloadProthesisFilesZip(1L, new MockHttpServletRequest(), LAB).getBody()
+                .writeTo(OutputStream.nullOutputStream());
+        assertEquals(0, prothesisZipService.stats().active());
+    }
+
+    private StoredObject encrypted(String content) throws Exception {
+        Path file = Files.createTempFile(tempDir, "blob", "");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            EncryptedFileIO.encryptToStream(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), out,
+                    EncryptionKeyProvider.getOrLoadKek());
+        }
+        return StoredObject.ofFile(file);
+    }
+}
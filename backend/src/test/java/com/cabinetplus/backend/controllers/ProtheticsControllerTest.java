@@ -1,13 +1,31 @@
 package com.cabinetplus.backend.controllers;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.converter.ResourceRegionHttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.RequestPostProcessor;
@@ -15,38 +33,54 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 
 import com.cabinetplus.backend.exceptions.GlobalExceptionHandler;
+import com.cabinetplus.backend.models.User;
 import com.cabinetplus.backend.repositories.ProthesisRepository;
+import com.cabinetplus.backend.security.crypto.DecryptingFileResource;
+import com.cabinetplus.backend.security.crypto.EncryptedFileIO;
 import com.cabinetplus.backend.repositories.ProthesisFileRepository;
 import com.cabinetplus.backend.services.AuditService;
 import com.cabinetplus.backend.services.CancellationSecurityService;
 import com.cabinetplus.backend.services.ProthesisService;
 import com.cabinetplus.backend.services.ProthesisFilesService;
 import com.cabinetplus.backend.services.ProthesisStlService;
+import com.cabinetplus.backend.services.ProthesisZipService;
 import com.cabinetplus.backend.services.PublicIdResolutionService;
+import com.cabinetplus.backend.services.ResumableUploadService;
 import com.cabinetplus.backend.services.UserService;
 
 import static org.mockito.Mockito.mock;
 
 class ProtheticsControllerTest {
 
+    private static final byte[] KEK = new byte[32];
+
     private MockMvc mockMvc;
+    private UserService userService;
+    private AuditService auditService;
+    private ProthesisStlService prothesisStlService;
+
+    @TempDir
+    Path tempDir;
 
     @BeforeEach
     void setUp() {
         ProthesisService prothesisService = mock(ProthesisService.class);
-        UserService userService = mock(UserService.class);
-        AuditService auditService = mock(AuditService.class);
+        userService = mock(UserService.class);
+        auditService = mock(AuditService.class);
         ProthesisRepository prothesisRepository = mock(ProthesisRepository.class);
         PublicIdResolutionService publicIdResolutionService = mock(PublicIdResolutionService.class);
         CancellationSecurityService cancellationSecurityService = mock(CancellationSecurityService.class);
-        ProthesisStlService prothesisStlService = mock(ProthesisStlService.class);
+        prothesisStlService = mock(ProthesisStlService.class);
         ProthesisFilesService prothesisFilesService = mock(ProthesisFilesService.class);
         ProthesisFileRepository prothesisFileRepository = mock(ProthesisFileRepository.class);
+        ResumableUploadService resumableUploadService = mock(ResumableUploadService.class);
 
         ProtheticsController controller = new ProtheticsController(
                 prothesisService,
                 prothesisStlService,
                 prothesisFilesService,
+                new ProthesisZipService(2, 2, 1000),
+                resumableUploadService,
                 userService,
                 auditService,
                 prothesisRepository,
@@ -61,7 +95,10 @@ class ProtheticsControllerTest {
         mockMvc = MockMvcBuilders
                 .standaloneSetup(controller)
                 .setControllerAdvice(new GlobalExceptionHandler())
-                .setMessageConverters(new MappingJackson2HttpMessageConverter())
+                .setMessageConverters(
+                        new MappingJackson2HttpMessageConverter(),
+                        new ResourceHttpMessageConverter(),
+                        new ResourceRegionHttpMessageConverter())
                 .setValidator(validator)
                 .build();
     }
@@ -114,6 +151,74 @@ class ProtheticsControllerTest {
                 .andExpect(jsonPath("$.fieldErrors.labCost").exists());
     }
 
+    @Test
+    void downloadStlServesRequestedRangeOfEncryptedFile() throws Exception {
+        byte[] stl = givenEncryptedStl(300_000);
+
+        mockMvc.perform(get("/api/protheses/1/stl")
+                        .with(userPrincipal("dentist"))
+                        .header(HttpHeaders.RANGE, "bytes=200000-200999"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 200000-200999/" + stl.length))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(content().bytes(Arrays.copyOfRange(stl, 200_000, 201_000)));
+
+        // Every download is audited, whatever range it asks for.
+        verify(auditService).logSuccess(any(), any(), any(), any());
+    }
+
+    @Test
+    void downloadStlHonoursValidators() throws Exception {
+        byte[] stl = givenEncryptedStl(5_000);
+        String etag = mockMvc.perform(get("/api/protheses/1/stl").with(userPrincipal("dentist")))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, stl.length))
+                .andExpect(content().bytes(stl))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/protheses/1/stl")
+                        .with(userPrincipal("dentist"))
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(get("/api/protheses/1/stl")
+                        .with(userPrincipal("dentist"))
+                        .header(HttpHeaders.RANGE, "bytes=100-")
+                        .header(HttpHeaders.IF_RANGE, etag))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes(Arrays.copyOfRange(stl, 100, stl.length)));
+
+        mockMvc.perform(get("/api/protheses/1/stl")
+                        .with(userPrincipal("dentist"))
+                        .header(HttpHeaders.RANGE, "bytes=100-")
+                        .header(HttpHeaders.IF_RANGE, "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(stl));
+
+        mockMvc.perform(get("/api/protheses/1/stl")
+                        .with(userPrincipal("dentist"))
+                        .header(HttpHeaders.RANGE, "bytes=9000-9100"))
+                .andExpect(status().isRequestedRangeNotSatisfiable());
+    }
+
+    private byte[] givenEncryptedStl(int size) throws Exception {
+        byte[] stl = new byte[size];
+        new Random(size).nextBytes(stl);
+        Path file = tempDir.resolve("scan.stl.enc");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            EncryptedFileIO.encryptToStream(new ByteArrayInputStream(stl), out, KEK);
+        }
+
+        User dentist = new User();
+        when(userService.findByPhoneNumber("dentist")).thenReturn(Optional.of(dentist));
+        when(userService.resolveClinicOwner(dentist)).thenReturn(dentist);
+        when(prothesisStlService.getResourceForDentist(1L, dentist)).thenReturn(new DecryptingFileResource(file, KEK));
+        when(prothesisStlService.getMediaTypeForDentist(1L, dentist)).thenReturn(MediaType.APPLICATION_OCTET_STREAM);
+        when(prothesisStlService.getFilenameForDentist(1L, dentist)).thenReturn("scan.stl");
+        return stl;
+    }
+
     private static RequestPostProcessor userPrincipal(String username) {
         return request -> {
             request.setUserPrincipal(() -> username);
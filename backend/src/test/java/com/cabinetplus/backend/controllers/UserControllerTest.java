@@ -11,6 +11,7 @@ import com.cabinetplus.backend.services.PlanLimitService;
 import com.cabinetplus.backend.services.PlanService;
 import com.cabinetplus.backend.services.PublicIdResolutionService;
 import com.cabinetplus.backend.services.SubscriptionService;
+import com.cabinetplus.backend.security.TokenRevocationEpochs;
 import com.cabinetplus.backend.services.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -62,7 +63,8 @@ class UserControllerTest {
                 auditService,
                 employeeService,
                 refreshTokenRepository,
-                publicIdResolutionService
+                publicIdResolutionService,
+                mock(TokenRevocationEpochs.class)
         );
 
         LocalValidatorFactoryBean validator = new LocalValidatorFactoryBean();
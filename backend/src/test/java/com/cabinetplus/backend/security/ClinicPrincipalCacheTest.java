@@ -0,0 +1,107 @@
+package com.cabinetplus.backend.security;
+
+import com.cabinetplus.backend.enums.UserPlanStatus;
+import com.cabinetplus.backend.enums.UserRole;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ClinicPrincipalCacheTest {
+
+    private static ClinicPrincipal principal(Long id, String phone, Long ownerId) {
+        return new ClinicPrincipal(
+                id,
+                phone,
+                ownerId != null ? UserRole.EMPLOYEE : UserRole.DENTIST,
+                ownerId,
+                ownerId != null ? ownerId : id,
+                Set.of("PATIENTS"),
+                UserPlanStatus.ACTIVE,
+                true,
+                true,
+                null
+        );
+    }
+
+    @Test
+    void warmLookupDoesNotCallLoader() {
+        ClinicPrincipalCache cache = new ClinicPrincipalCache(60, 100);
+        AtomicInteger loads = new AtomicInteger();
+
+        ClinicPrincipal first = cache.get("0550000001", p -> {
+            loads.incrementAndGet();
+            return principal(1L, p, null);
+        });
+        ClinicPrincipal second = cache.get("0550000001", p -> {
+            loads.incrementAndGet();
+            return principal(1L, p, null);
+        });
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidatingOwnerDropsStaffEntries() {
+        ClinicPrincipalCache cache = new ClinicPrincipalCache(60, 100);
+        cache.get("0550000001", p -> principal(1L, p, null));
+        cache.get("0550000002", p -> principal(2L, p, 1L));
+        cache.get("0550000003", p -> principal(3L, p, null));
+
+        cache.invalidateUserOrClinic(1L);
+
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void sizeStaysBounded() {
+        ClinicPrincipalCache cache = new ClinicPrincipalCache(60, 2);
+        cache.get("0550000001", p -> principal(1L, p, null));
+        cache.get("0550000002", p -> principal(2L, p, null));
+        cache.get("0550000003", p -> principal(3L, p, null));
+
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedSnapshotWhenFull() {
+        ClinicPrincipalCache cache = new ClinicPrincipalCache(60, 2);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("0550000001", p -> principal(1L, p, null));
+        cache.get("0550000002", p -> principal(2L, p, 1L));
+        cache.get("0550000001", p -> principal(1L, p, null));
+
+        cache.get("0550000003", p -> principal(3L, p, null));
+        cache.get("0550000001", p -> {
+            loads.incrementAndGet();
+            return principal(1L, p, null);
+        });
+
+        assertEquals(0, loads.get());
+        assertEquals(2, cache.size());
+        // The evicted staff snapshot is gone from the owner's index as well.
+        cache.invalidateUserOrClinic(1L);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void zeroTtlDisablesCaching() {
+        ClinicPrincipalCache cache = new ClinicPrincipalCache(0, 100);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("0550000001", p -> {
+            loads.incrementAndGet();
+            return principal(1L, p, null);
+        });
+        cache.get("0550000001", p -> {
+            loads.incrementAndGet();
+            return principal(1L, p, null);
+        });
+
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,57 @@
+package com.cabinetplus.backend.security;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Legacy string rules vs the compiled route table + permission bitset, over {@link LegacyEmployeeRouteRules#REQUEST_MIX}.
+ *
+ * <p>Run with: {@code mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main
+ * -Dexec.args=EmployeePermissionsFilterBenchmark}</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmployeePermissionsFilterBenchmark {
+
+    private final Set<String> permissions = Set.of(
+            "SUPPORT", "APPOINTMENTS", "PATIENTS", "DEVIS", "PROSTHESES",
+            "APPOINTMENTS_CREATE", "APPOINTMENTS_UPDATE", "APPOINTMENTS_CANCEL",
+            "PATIENTS_CREATE", "PATIENTS_UPDATE", "DEVIS_CREATE", "PROSTHESES_STATUS"
+    );
+    private final EmployeePermissionGrants grants = EmployeePermissionGrants.of(permissions);
+    private final EmployeeRoutePermissions routes = EmployeeRoutePermissions.defaults();
+
+    @Benchmark
+    public void legacyStringRules(Blackhole bh) {
+        for (String[] request : LegacyEmployeeRouteRules.REQUEST_MIX) {
+            bh.consume(LegacyEmployeeRouteRules.allowed(request[0], request[1], permissions));
+        }
+    }
+
+    @Benchmark
+    public void compiledRouteTable(Blackhole bh) {
+        for (String[] request : LegacyEmployeeRouteRules.REQUEST_MIX) {
+            EmployeeRoutePermissions.Requirement required = routes.match(request[1], request[0]);
+            if (required == null || required.kind() == EmployeeRoutePermissions.Kind.UNRESTRICTED) {
+                bh.consume(required);
+                continue;
+            }
+            bh.consume(required.allows(grants, EmployeeRoutePermissions.actionFor(request[0], request[1])));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.cabinetplus.backend.security;
+
+import com.cabinetplus.backend.enums.PermissionAction;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EmployeeRoutePermissionsTest {
+
+    private static final List<Set<String>> PERMISSION_SETS = List.of(
+            Set.of(),
+            Set.of("SUPPORT"),
+            Set.of("SUPPORT", "APPOINTMENTS", "PATIENTS", "APPOINTMENTS_CREATE", "APPOINTMENTS_UPDATE", "APPOINTMENTS_CANCEL"),
+            Set.of("PATIENTS", "PATIENTS_CREATE", "PATIENTS_ARCHIVE", "PATIENTS_DELETE", "DEVIS", "DEVIS_CANCEL"),
+            Set.of("INVENTORY", "INVENTORY_UPDATE", "CATALOGUE_CREATE"),
+            Set.of("PROSTHESES", "PROSTHESES_STATUS", "LABORATORIES", "LABORATORIES_CREATE", "LABORATORIES_MESSAGE"),
+            Set.of("CATALOGUE", "CATALOGUE_DELETE", "EXPENSES", "FOURNISSEURS", "SETTINGS")
+    );
+
+    @Test
+    void compiledTableMatchesLegacyRulesOnRequestMix() {
+        EmployeeRoutePermissions routes = EmployeeRoutePermissions.defaults();
+        for (Set<String> permissions : PERMISSION_SETS) {
+            EmployeePermissionGrants grants = EmployeePermissionGrants.of(permissions);
+            for (String[] request : LegacyEmployeeRouteRules.REQUEST_MIX) {
+                String method = request[0];
+                String path = request[1];
+
+                Boolean expected = LegacyEmployeeRouteRules.allowed(method, path, permissions);
+                EmployeeRoutePermissions.Requirement required = routes.match(path, method);
+                Boolean actual = required == null || required.kind() == EmployeeRoutePermissions.Kind.UNRESTRICTED
+                        ? null
+                        : required.allows(grants, EmployeeRoutePermissions.actionFor(method, path));
+
+                assertEquals(expected, actual, method + " " + path + " with " + permissions);
+            }
+        }
+    }
+
+    @Test
+    void postQueryEndpointsAreReads() {
+        assertNull(EmployeeRoutePermissions.actionFor("POST", "/api/patients/by-ids"));
+        assertEquals(PermissionAction.CREATE, EmployeeRoutePermissions.actionFor("POST", "/api/patients"));
+        assertEquals(PermissionAction.CANCEL, EmployeeRoutePermissions.actionFor("PUT", "/api/devises/1/CANCEL"));
+    }
+}
@@ -0,0 +1,134 @@
+package com.cabinetplus.backend.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decrypting a 100-row page of encrypted names through {@link EncryptionConverter#convertToEntityAttribute}.
+ * {@code previousImplementation} replays the former per-value work (new ciphers, regex split, key unwrap) on the
+ * same v1 page; {@code converterV2} reads rows written in the current format. The {@code *Write} benchmarks encrypt
+ * one four-column patient row.
+ *
+ * <p>Run with: {@code mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main
+ * -Dexec.args=EncryptionConverterBenchmark}</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dcabinetplus.crypto.kek-base64=bgNrqmRxdm2ou9lOrIJLJBJQe4pVbOMuQ47gPGHkipo=")
+@State(Scope.Benchmark)
+public class EncryptionConverterBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+    private static final String[] ENTITY_COLUMNS = {"Amina", "Benali", "0550123456", "F"};
+
+    private final EncryptionConverter converter = new EncryptionConverter();
+    private final String[] pageV1 = new String[PAGE_SIZE];
+    private final String[] pageV2 = new String[PAGE_SIZE];
+    private final SecureRandom random = new SecureRandom();
+    private SecretKey kek;
+
+    @Setup
+    public void setUp() throws Exception {
+        kek = new SecretKeySpec(Base64.getDecoder().decode(System.getProperty("cabinetplus.crypto.kek-base64")), "AES");
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            pageV1[i] = legacyEncrypt("Patient " + i);
+            pageV2[i] = converter.convertToDatabaseColumn("Patient " + i);
+        }
+    }
+
+    @Benchmark
+    public void converterV1(Blackhole bh) {
+        for (String value : pageV1) {
+            bh.consume(converter.convertToEntityAttribute(value));
+        }
+    }
+
+    @Benchmark
+    public void converterV2(Blackhole bh) {
+        for (String value : pageV2) {
+            bh.consume(converter.convertToEntityAttribute(value));
+        }
+    }
+
+    @Benchmark
+    public void previousImplementation(Blackhole bh) throws Exception {
+        for (String value : pageV1) {
+            bh.consume(legacyDecrypt(value));
+        }
+    }
+
+    @Benchmark
+    public void writeEntityV2(Blackhole bh) {
+        EncryptionConverter.beginEntity();
+        try {
+            for (String column : ENTITY_COLUMNS) {
+                bh.consume(converter.convertToDatabaseColumn(column));
+            }
+        } finally {
+            EncryptionConverter.endEntity();
+        }
+    }
+
+    @Benchmark
+    public void previousEntityWrite(Blackhole bh) throws Exception {
+        for (String column : ENTITY_COLUMNS) {
+            bh.consume(legacyEncrypt(column));
+        }
+    }
+
+    private String legacyEncrypt(String plaintext) throws Exception {
+        byte[] iv = new byte[12];
+        random.nextBytes(iv);
+        byte[] dek = new byte[32];
+        random.nextBytes(dek);
+
+        Cipher wrap = Cipher.getInstance("AESWrap");
+        wrap.init(Cipher.WRAP_MODE, kek);
+        byte[] wrappedDek = wrap.wrap(new SecretKeySpec(dek, "AES"));
+
+        Cipher gcm = Cipher.getInstance("AES/GCM/NoPadding");
+        gcm.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(dek, "AES"), new GCMParameterSpec(128, iv));
+        byte[] ciphertext = gcm.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return "cpenc:v1:" + encoder.encodeToString(iv) + "." + encoder.encodeToString(wrappedDek) + "."
+                + encoder.encodeToString(ciphertext);
+    }
+
+    private String legacyDecrypt(String envelope) throws Exception {
+        String[] parts = envelope.substring("cpenc:v1:".length()).split("\\.", 3);
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        byte[] iv = decoder.decode(parts[0]);
+        byte[] wrappedDek = decoder.decode(parts[1]);
+        byte[] ciphertext = decoder.decode(parts[2]);
+
+        Cipher unwrap = Cipher.getInstance("AESWrap");
+        unwrap.init(Cipher.UNWRAP_MODE, kek);
+        byte[] dek = ((SecretKey) unwrap.unwrap(wrappedDek, "AES", Cipher.SECRET_KEY)).getEncoded();
+
+        Cipher gcm = Cipher.getInstance("AES/GCM/NoPadding");
+        gcm.init(Cipher.DECRYPT_MODE, new SecretKeySpec(dek, "AES"), new GCMParameterSpec(128, iv));
+        return new String(gcm.doFinal(ciphertext), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,84 @@
+package com.cabinetplus.backend.security;
+
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * Per-request JWT work done by {@link JwtAuthenticationFilter}: {@code validateToken} + {@code extractPhoneNumber}.
+ * {@code perCallParser} replays the former implementation (decode the secret and build a parser on every call).
+ *
+ * <p>Run with: {@code mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main
+ * -Dexec.args=JwtUtilBenchmark}</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtUtilBenchmark {
+
+    private final String secret = Base64.getEncoder().encodeToString(new byte[] {
+            1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+            17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32
+    });
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secretKey", secret);
+        ReflectionTestUtils.setField(jwtUtil, "currentKid", "k1");
+        ReflectionTestUtils.setField(jwtUtil, "previousSecrets", "");
+        ReflectionTestUtils.setField(jwtUtil, "refreshExpirationMs", 3_600_000L);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "initSecret");
+        token = jwtUtil.generateRefreshToken("0550000000");
+    }
+
+    @Benchmark
+    public void perCallParser(Blackhole bh) {
+        boolean valid;
+        try {
+            legacyParse(token);
+            valid = true;
+        } catch (JwtException | IllegalArgumentException e) {
+            valid = false;
+        }
+        bh.consume(valid);
+        bh.consume(legacyParse(token).getBody().getSubject());
+    }
+
+    @Benchmark
+    public void sharedParser(Blackhole bh) {
+        bh.consume(jwtUtil.validateToken(token));
+        bh.consume(jwtUtil.extractPhoneNumber(token));
+    }
+
+    private Jws<Claims> legacyParse(String jwt) {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret)))
+                .build()
+                .parseClaimsJws(jwt);
+    }
+}
@@ -0,0 +1,247 @@
+package com.cabinetplus.backend.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.cabinetplus.backend.enums.UserPlanStatus;
+import com.cabinetplus.backend.enums.UserRole;
+import com.cabinetplus.backend.models.User;
+import com.cabinetplus.backend.websocket.RealtimeClusterBus;
+import com.cabinetplus.backend.websocket.RealtimeClusterMessage;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+class JwtUtilTest {
+
+    private static final String SECRET_1 = secret((byte) 1);
+    private static final String SECRET_2 = secret((byte) 2);
+
+    @TempDir
+    Path dir;
+
+    private Path keyFile;
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setUp() {
+        keyFile = dir.resolve("jwt-keys.properties");
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secretKey", SECRET_1);
+        ReflectionTestUtils.setField(jwtUtil, "currentKid", "k1");
+        ReflectionTestUtils.setField(jwtUtil, "previousSecrets", "");
+        ReflectionTestUtils.setField(jwtUtil, "refreshExpirationMs", 60_000L);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "initSecret");
+    }
+
+    @Test
+    void keyFileRotationKeepsPreviousKeyVerifiableUntilRetired() throws Exception {
+        JwtUtil fromFile = withKeyFile("jwt.kid=k1\njwt.secret=" + SECRET_1 + "\n");
+        String oldToken = fromFile.generateRefreshToken("0550000001");
+
+        writeKeyFile("jwt.kid=k2\njwt.secret=" + SECRET_2 + "\njwt.previous-secrets=k1:" + SECRET_1 + "\n");
+        fromFile.reloadKeyFile();
+        String newToken = fromFile.generateRefreshToken("0550000002");
+
+        assertTrue(fromFile.validateToken(oldToken));
+        assertEquals("0550000002", fromFile.extractPhoneNumber(newToken));
+        assertTrue(jwtUtil.validateToken(oldToken));
+        assertFalse(jwtUtil.validateToken(newToken), "k2 is unknown to an instance without the file");
+
+        writeKeyFile("jwt.kid=k2\njwt.secret=" + SECRET_2 + "\n");
+        fromFile.reloadKeyFile();
+        assertFalse(fromFile.validateToken(oldToken));
+        assertTrue(fromFile.validateToken(newToken));
+    }
+
+    @Test
+    void anUnreadableKeyFileKeepsTheCurrentKeys() throws Exception {
+        JwtUtil fromFile = withKeyFile("jwt.kid=k1\njwt.secret=" + SECRET_1 + "\n");
+        String token = fromFile.generateRefreshToken("0550000006");
+
+        writeKeyFile("jwt.kid=k2\njwt.secret=tooshort\n");
+        fromFile.reloadKeyFile();
+
+        assertTrue(fromFile.validateToken(token));
+        assertTrue(jwtUtil.validateToken(fromFile.generateRefreshToken("0550000006")));
+    }
+
+    @Test
+    void tokensWithoutKidVerifyAgainstTheBootKey() throws Exception {
+        String legacy = Jwts.builder()
+                .setSubject("0550000003")
+                .signWith(Keys.hmacShaKeyFor(Base64.getDecoder().decode(SECRET_1)), SignatureAlgorithm.HS256)
+                .compact();
+        JwtUtil fromFile = withKeyFile("jwt.kid=k1\njwt.secret=" + SECRET_1 + "\n");
+
+        writeKeyFile("jwt.kid=k2\njwt.secret=" + SECRET_2 + "\njwt.previous-secrets=k1:" + SECRET_1 + "\n");
+        fromFile.reloadKeyFile();
+
+        assertEquals("0550000003", fromFile.extractPhoneNumber(legacy));
+    }
+
+    @Test
+    void previousSecretsAreAcceptedAtStartup() {
+        JwtUtil k2 = new JwtUtil();
+        ReflectionTestUtils.setField(k2, "secretKey", SECRET_2);
+        ReflectionTestUtils.setField(k2, "currentKid", "k2");
+        ReflectionTestUtils.setField(k2, "previousSecrets", "");
+        ReflectionTestUtils.setField(k2, "refreshExpirationMs", 60_000L);
+        ReflectionTestUtils.invokeMethod(k2, "initSecret");
+        String issuedByK1 = jwtUtil.generateRefreshToken("0550000004");
+        String token = k2.generateRefreshToken("0550000004");
+
+        JwtUtil restarted = new JwtUtil();
+        ReflectionTestUtils.setField(restarted, "secretKey", secret((byte) 3));
+        ReflectionTestUtils.setField(restarted, "currentKid", "k3");
+        ReflectionTestUtils.setField(restarted, "previousSecrets", "k2:" + SECRET_2);
+        ReflectionTestUtils.invokeMethod(restarted, "initSecret");
+
+        assertTrue(restarted.validateToken(token));
+        assertFalse(restarted.validateToken(issuedByK1));
+    }
+
+    @Test
+    void verifyReturnsClaimsInOnePassAndNullForInvalidTokens() {
+        String challenge = jwtUtil.generateLoginTwoFactorChallengeToken("0550000005", 60_000L);
+
+        JwtUtil.VerifiedToken verified = jwtUtil.verify(challenge);
+
+        assertEquals("0550000005", verified.subject());
+        assertEquals("LOGIN_2FA", verified.purpose());
+        assertTrue(verified.expiresAt().isAfter(Instant.now()));
+        assertNull(jwtUtil.verify(challenge + "x"));
+        assertNull(jwtUtil.verify(" "));
+    }
+
+    @Test
+    void accessTokenCarriesEnoughClaimsToRebuildTheEmployeePrincipal() {
+        ReflectionTestUtils.setField(jwtUtil, "accessExpirationMs", 60_000L);
+        User owner = new User();
+        owner.setId(1L);
+        owner.setRole(UserRole.DENTIST);
+        owner.setPlanStatus(UserPlanStatus.ACTIVE);
+        User employee = new User();
+        employee.setId(7L);
+        employee.setPhoneNumber("0550000007");
+        employee.setRole(UserRole.EMPLOYEE);
+        employee.setOwnerDentist(owner);
+        employee.setPhoneVerified(true);
+        employee.setPermissions(Set.of("PATIENTS", "PATIENTS_UPDATE"));
+
+        ClinicPrincipal fromClaims = jwtUtil.toClinicPrincipal(jwtUtil.verify(jwtUtil.generateAccessToken(employee)));
+
+        ClinicPrincipal expected = ClinicPrincipal.from(employee);
+        assertEquals(expected.grants(), fromClaims.grants());
+        assertEquals(1L, fromClaims.clinicOwnerId());
+        assertEquals(7L, fromClaims.userId());
+        assertEquals(UserPlanStatus.ACTIVE, fromClaims.planStatus());
+        assertTrue(fromClaims.phoneVerified());
+        assertNull(jwtUtil.toClinicPrincipal(jwtUtil.verify(jwtUtil.generateRefreshToken("0550000007"))));
+    }
+
+    @Test
+    void epochsRejectOrReloadTokensIssuedBeforeThem() {
+        TokenRevocationEpochs epochs = epochs(mock(JdbcTemplate.class), connectedBus(), new ClinicPrincipalCache(60, 10));
+        Instant issued = Instant.now().minusSeconds(5);
+
+        assertFalse(epochs.isStale(7L, 1L, issued));
+        epochs.markStale(1L);
+        assertTrue(epochs.isStale(7L, 1L, issued));
+        assertFalse(epochs.isRevoked(7L, issued));
+
+        epochs.revokeAll(7L);
+        assertTrue(epochs.isRevoked(7L, issued));
+        assertFalse(epochs.isRevoked(7L, Instant.now().plusSeconds(1)));
+    }
+
+    @Test
+    void epochsReachOtherInstancesOrAreReadFromTheDatabase() {
+        Instant issued = Instant.now().minusSeconds(5);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        RealtimeClusterBus busA = connectedBus();
+        TokenRevocationEpochs a = epochs(jdbcTemplate, busA, new ClinicPrincipalCache(60, 10));
+        ClinicPrincipalCache cacheB = new ClinicPrincipalCache(60, 10);
+        User user = new User();
+        user.setId(7L);
+        user.setPhoneNumber("0550000007");
+        user.setRole(UserRole.DENTIST);
+        cacheB.get("0550000007", phone -> ClinicPrincipal.from(user));
+        TokenRevocationEpochs b = epochs(mock(JdbcTemplate.class), connectedBus(), cacheB);
+
+        a.revokeAll(7L);
+        verify(jdbcTemplate).update(startsWith("update users set tokens_revoked_at"), any(), eq(7L));
+        ArgumentCaptor<RealtimeClusterMessage> published = ArgumentCaptor.forClass(RealtimeClusterMessage.class);
+        verify(busA).publish(published.capture());
+        b.onMessage(published.getValue());
+
+        assertTrue(b.isRevoked(7L, issued));
+        assertTrue(b.isStale(7L, 7L, issued));
+        assertEquals(0, cacheB.size(), "the other instance reloads the user");
+
+        // Without the bus, every token is reloaded and revocations come from the database.
+        RealtimeClusterBus down = mock(RealtimeClusterBus.class);
+        JdbcTemplate database = mock(JdbcTemplate.class);
+        when(database.queryForList(anyString(), eq(Long.class), eq(7L))).thenReturn(List.of(Instant.now().getEpochSecond()));
+        TokenRevocationEpochs c = epochs(database, down, new ClinicPrincipalCache(60, 10));
+        assertTrue(c.isStale(8L, null, Instant.now().plusSeconds(5)));
+        assertTrue(c.isRevoked(7L, issued));
+    }
+
+    private static RealtimeClusterBus connectedBus() {
+        RealtimeClusterBus bus = mock(RealtimeClusterBus.class);
+        when(bus.isConnected()).thenReturn(true);
+        return bus;
+    }
+
+    private static TokenRevocationEpochs epochs(JdbcTemplate jdbcTemplate, RealtimeClusterBus bus, ClinicPrincipalCache cache) {
+        TokenRevocationEpochs epochs = new TokenRevocationEpochs(600_000L, jdbcTemplate, bus, cache);
+        // As if the bus had been connected long before the tokens under test were issued.
+        ReflectionTestUtils.setField(epochs, "staleUntil", 0L);
+        return epochs;
+    }
+
+    private JwtUtil withKeyFile(String content) throws Exception {
+        writeKeyFile(content);
+        JwtUtil fromFile = new JwtUtil();
+        ReflectionTestUtils.setField(fromFile, "keyFile", keyFile.toString());
+        ReflectionTestUtils.setField(fromFile, "refreshExpirationMs", 60_000L);
+        ReflectionTestUtils.invokeMethod(fromFile, "initSecret");
+        return fromFile;
+    }
+
+    private void writeKeyFile(String content) throws Exception {
+        Files.writeString(keyFile, content);
+    }
+
+    private static String secret(byte fill) {
+        byte[] bytes = new byte[32];
+        Arrays.fill(bytes, fill);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,151 @@
+package com.cabinetplus.backend.security;
+
+import java.util.Set;
+
+/**
+ * String-based permission check as it was implemented inline in {@link EmployeePermissionsFilter} before the
+ * compiled {@link EmployeeRoutePermissions} table; kept as the reference for parity tests and benchmarks.
+ */
+final class LegacyEmployeeRouteRules {
+
+    private LegacyEmployeeRouteRules() {
+    }
+
+    /** Returns {@code null} when the filter would let the request through without a check. */
+    static Boolean allowed(String method, String path, Set<String> permissions) {
+        if (isAlwaysAllowed(path)) return null;
+        String required = requiredPermission(method, path);
+        if (required == null) return null;
+
+        boolean allowedBase;
+        if ("SUPPORT".equals(required) || "MESSAGING".equals(required)) {
+            allowedBase = true;
+        } else if ("GESTION_CABINET".equals(required)) {
+            allowedBase = false;
+        } else if ("CATALOGUE_OR_INVENTORY".equals(required)) {
+            allowedBase = permissions != null && (permissions.contains("CATALOGUE") || permissions.contains("INVENTORY"));
+        } else if ("PROTHESIS_ANY".equals(required)) {
+            allowedBase = permissions != null && (permissions.contains("PATIENTS") || permissions.contains("PROSTHESES"));
+        } else {
+            allowedBase = permissions != null && permissions.contains(required);
+        }
+
+        String action = requiredAction(method, path);
+        if (action != null && !"GESTION_CABINET".equals(required) && !"SUPPORT".equals(required) && !"MESSAGING".equals(required)) {
+            String module = moduleForAction(required);
+            String actionKey = module != null ? (module + "_" + action) : null;
+            allowedBase = actionKey != null && permissions != null && permissions.contains(actionKey);
+        }
+        return allowedBase;
+    }
+
+    private static boolean isAlwaysAllowed(String path) {
+        if (path == null) return true;
+        return "/api/users/me".equals(path)
+                || path.startsWith("/api/users/me/")
+                || path.startsWith("/api/security/")
+                || path.startsWith("/api/verify/")
+                || path.startsWith("/api/plans")
+                || path.startsWith("/api/plan");
+    }
+
+    private static String requiredPermission(String method, String path) {
+        if (path.startsWith("/api/appointments")) return "APPOINTMENTS";
+        if (path.startsWith("/api/patients")) return "PATIENTS";
+        if (path.startsWith("/api/devises")) return "DEVIS";
+        if (path.startsWith("/api/support")) return "SUPPORT";
+        if (path.startsWith("/api/messaging")) return "MESSAGING";
+        if (path.startsWith("/api/medications")) return "CATALOGUE";
+        if (path.startsWith("/api/treatment-catalog")) return "CATALOGUE";
+        if (path.startsWith("/api/prothesis-catalog")) return "CATALOGUE";
+        if (path.startsWith("/api/justification-content")) return "CATALOGUE";
+        if (path.startsWith("/api/materials")) return "CATALOGUE";
+        if (path.startsWith("/api/item-defaults")) {
+            return "GET".equalsIgnoreCase(method) ? "CATALOGUE_OR_INVENTORY" : "CATALOGUE";
+        }
+        if (path.startsWith("/api/disease-catalog")) return "CATALOGUE";
+        if (path.startsWith("/api/allergy-catalog")) return "CATALOGUE";
+        if (path.startsWith("/api/items")) return "INVENTORY";
+        if (path.startsWith("/api/protheses")) {
+            return "GET".equalsIgnoreCase(method) ? "PROTHESIS_ANY" : "PROSTHESES";
+        }
+        if (path.startsWith("/api/payments")) return "PATIENTS";
+        if (path.startsWith("/api/finance")) return "GESTION_CABINET";
+        if (path.startsWith("/api/employees")) return "GESTION_CABINET";
+        if (path.startsWith("/api/expenses")) return "EXPENSES";
+        if (path.startsWith("/api/laboratories")) return "LABORATORIES";
+        if (path.startsWith("/api/fournisseurs")) return "FOURNISSEURS";
+        if (path.startsWith("/api/hand-payments")) return "GESTION_CABINET";
+        if (path.startsWith("/api/audit")) return "SETTINGS";
+        if (path.startsWith("/api/users/me/")) return "SETTINGS";
+        return null;
+    }
+
+    private static String requiredAction(String method, String path) {
+        if (method == null) return null;
+        if ("GET".equalsIgnoreCase(method) || "HEAD".equalsIgnoreCase(method) || "OPTIONS".equalsIgnoreCase(method)) {
+            return null;
+        }
+        if (path != null) {
+            String p = path.toLowerCase();
+            if (p.contains("/by-ids")) return null;
+            if (p.contains("/cancel")) return "CANCEL";
+            if (p.contains("/archive") || p.contains("/unarchive")) return "ARCHIVE";
+            if (p.contains("/status")) return "STATUS";
+        }
+        if ("POST".equalsIgnoreCase(method)) return "CREATE";
+        if ("DELETE".equalsIgnoreCase(method)) return "DELETE";
+        return "UPDATE";
+    }
+
+    private static String moduleForAction(String required) {
+        if (required == null) return null;
+        if ("CATALOGUE_OR_INVENTORY".equals(required)) return "CATALOGUE";
+        if ("PROTHESIS_ANY".equals(required)) return "PROSTHESES";
+        return required;
+    }
+
+    /** Realistic request mix (method, URI) used by the parity test and the benchmark. */
+    static final String[][] REQUEST_MIX = {
+            {"GET", "/api/appointments"},
+            {"GET", "/api/appointments/day/2026-10-17"},
+            {"POST", "/api/appointments"},
+            {"PUT", "/api/appointments/42/cancel"},
+            {"PUT", "/api/appointments/42/status"},
+            {"GET", "/api/patients"},
+            {"GET", "/api/patients/0192b3c4-aaaa-7bbb-8ccc-123456789abc"},
+            {"POST", "/api/patients"},
+            {"POST", "/api/patients/by-ids"},
+            {"PUT", "/api/patients/17/archive"},
+            {"PUT", "/api/patients/17/unarchive"},
+            {"DELETE", "/api/patients/17"},
+            {"GET", "/api/payments/patient/17"},
+            {"POST", "/api/payments"},
+            {"GET", "/api/devises"},
+            {"POST", "/api/devises/9/Cancel"},
+            {"GET", "/api/protheses"},
+            {"HEAD", "/api/protheses/5/stl"},
+            {"PATCH", "/api/protheses/5/status"},
+            {"GET", "/api/item-defaults"},
+            {"POST", "/api/item-defaults"},
+            {"GET", "/api/items"},
+            {"PUT", "/api/items/3"},
+            {"GET", "/api/treatment-catalog"},
+            {"DELETE", "/api/medications/8"},
+            {"GET", "/api/finance/cards"},
+            {"GET", "/api/employees"},
+            {"POST", "/api/hand-payments/create"},
+            {"GET", "/api/expenses"},
+            {"POST", "/api/laboratories/2/payments"},
+            {"GET", "/api/fournisseurs"},
+            {"GET", "/api/audit/logs"},
+            {"GET", "/api/support/threads"},
+            {"POST", "/api/messaging/threads/4/messages"},
+            {"GET", "/api/users/me"},
+            {"PUT", "/api/users/me/preferences"},
+            {"POST", "/api/security/pin/verify"},
+            {"GET", "/api/plans"},
+            {"GET", "/api/notifications"},
+            {"GET", "/api/planning-unknown"},
+    };
+}
@@ -0,0 +1,177 @@
+package com.cabinetplus.backend.security.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EncryptedFileIOTest {
+
+    private static final byte[] KEK = filled((byte) 7, 32);
+    private static final int CHUNK = 1000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsAcrossChunkBoundaries() throws Exception {
+        for (int size : new int[] {0, 1, CHUNK - 1, CHUNK, CHUNK + 1, 3 * CHUNK, 3 * CHUNK + 17}) {
+            byte[] plain = random(size);
+            byte[] encrypted = encrypt(plain);
+
+            try (InputStream in = EncryptedFileIO.openDecryptedStream(new ByteArrayInputStream(encrypted), KEK)) {
+                assertArrayEquals(plain, in.readAllBytes(), "size " + size);
+            }
+
+            Path file = write(encrypted);
+            assertEquals(size, EncryptedFileIO.plaintextLength(file), "size " + size);
+            try (InputStream in = new DecryptingFileResource(file, KEK).getInputStream()) {
+                assertArrayEquals(plain, in.readAllBytes(), "size " + size);
+            }
+        }
+    }
+
+    @Test
+    void opensAtAnyPlaintextOffset() throws Exception {
+        byte[] plain = random(3 * CHUNK + 17);
+        Path file = write(encrypt(plain));
+        DecryptingFileResource resource = new DecryptingFileResource(file, KEK);
+
+        for (int offset : new int[] {0, 5, CHUNK - 1, CHUNK, 2 * CHUNK + 3, 3 * CHUNK, plain.length - 1, plain.length, plain.length + 10}) {
+            try (InputStream in = resource.getInputStream(offset)) {
+                byte[] expected = Arrays.copyOfRange(plain, Math.min(offset, plain.length), plain.length);
+                assertArrayEquals(expected, in.readAllBytes(), "offset " + offset);
+            }
+        }
+    }
+
+    @Test
+    void readsLegacyCpdoc1AndPlainFiles() throws Exception {
+        byte[] plain = random(2500);
+        Path legacy = write(legacyEncrypt(plain));
+
+        assertEquals(plain.length, EncryptedFileIO.plaintextLength(legacy));
+        try (InputStream in = new DecryptingFileResource(legacy, KEK).getInputStream(1200)) {
+            assertArrayEquals(Arrays.copyOfRange(plain, 1200, plain.length), in.readAllBytes());
+        }
+
+        Path unencrypted = write(plain);
+        assertEquals(plain.length, EncryptedFileIO.plaintextLength(unencrypted));
+        try (InputStream in = new DecryptingFileResource(unencrypted, KEK).getInputStream(10)) {
+            assertArrayEquals(Arrays.copyOfRange(plain, 10, plain.length), in.readAllBytes());
+        }
+    }
+
+    @Test
+    void rejectsTamperedAndTruncatedFiles() throws Exception {
+        byte[] encrypted = encrypt(random(3 * CHUNK));
+
+        byte[] tampered = encrypted.clone();
+        tampered[tampered.length - CHUNK - 40] ^= 1;
+        assertThrows(IOException.class, () -> readAll(tampered));
+
+        // Dropping the whole last chunk leaves a valid-looking chunk boundary.
+        byte[] truncated = Arrays.copyOf(encrypted, encrypted.length - (CHUNK + EncryptedFileIO.GCM_TAG_BYTES));
+        assertThrows(IOException.class, () -> readAll(truncated));
+
+        byte[] cut = Arrays.copyOf(encrypted, encrypted.length - 5);
+        assertThrows(IOException.class, () -> readAll(cut));
+    }
+
+    @Test
+    void writesCpdoc2() throws Exception {
+        byte[] encrypted = encrypt(random(10));
+        assertEquals("CPDOC2", new String(encrypted, 0, 6, StandardCharsets.US_ASCII));
+        assertTrue(EncryptedFileIO.isEncryptedFile(new ByteArrayInputStream(encrypted)));
+    }
+
+    @Test
+    void encryptsWhatIsWrittenToTheEncryptingStream() throws Exception {
+        int chunk = EncryptedFileIO.DEFAULT_CHUNK_SIZE;
+        for (int size : new int[] {0, 1, chunk, chunk + 1, 2 * chunk}) {
+            byte[] plain = random(size);
+            ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+            try (var out = EncryptedFileIO.openEncryptingStream(encrypted, KEK)) {
+                // Uneven writes, so chunk boundaries fall inside them.
+                for (int offset = 0; offset < size; offset += 777) {
+                    out.write(plain, offset, Math.min(777, size - offset));
+                }
+            }
+
+            Path file = write(encrypted.toByteArray());
+            assertEquals(size, EncryptedFileIO.plaintextLength(file), "size " + size);
+            assertArrayEquals(plain, readAll(encrypted.toByteArray()), "size " + size);
+            byte[] truncated = Arrays.copyOf(encrypted.toByteArray(), encrypted.size() - 1);
+            assertThrows(IOException.class, () -> readAll(truncated), "size " + size);
+        }
+    }
+
+    private static byte[] readAll(byte[] encrypted) throws IOException {
+        try (InputStream in = EncryptedFileIO.openDecryptedStream(new ByteArrayInputStream(encrypted), KEK)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] encrypt(byte[] plain) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = EncryptedFileIO.encryptToStream(new ByteArrayInputStream(plain), out, KEK, CHUNK);
+        assertEquals(plain.length, written);
+        return out.toByteArray();
+    }
+
+    /** CPDOC1 layout as written before chunking was introduced. */
+    private static byte[] legacyEncrypt(byte[] plain) throws Exception {
+        byte[] iv = filled((byte) 1, 12);
+        byte[] dek = filled((byte) 2, 32);
+        byte[] wrapped = AesKeyWrap.wrap(KEK, dek);
+        Cipher gcm = Cipher.getInstance("AES/GCM/NoPadding");
+        gcm.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(dek, "AES"), new GCMParameterSpec(128, iv));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(new byte[] {'C', 'P', 'D', 'O', 'C', '1'});
+        out.writeByte(1);
+        out.writeByte(iv.length);
+        out.writeShort(wrapped.length);
+        out.write(iv);
+        out.write(wrapped);
+        out.write(gcm.doFinal(plain));
+        return bytes.toByteArray();
+    }
+
+    private Path write(byte[] bytes) throws IOException {
+        Path file = Files.createTempFile(dir, "doc", ".bin");
+        Files.write(file, bytes);
+        return file;
+    }
+
+    private static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] filled(byte value, int length) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+}
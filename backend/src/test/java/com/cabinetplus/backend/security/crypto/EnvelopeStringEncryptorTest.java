@@ -0,0 +1,89 @@
+package com.cabinetplus.backend.security.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+
+class EnvelopeStringEncryptorTest {
+
+    private static final byte[] KEK = filled((byte) 7, 32);
+
+    @Test
+    void roundTripsWithAndWithoutDekCache() {
+        EnvelopeStringEncryptor cached = new EnvelopeStringEncryptor(KEK, 2);
+        EnvelopeStringEncryptor uncached = new EnvelopeStringEncryptor(KEK, 0);
+
+        for (String value : new String[] {"Benali", "Amina", "Élodie ✓", "x"}) {
+            String envelope = cached.encrypt(value);
+            assertEquals(value, cached.decrypt(envelope));
+            assertEquals(value, cached.decrypt(envelope));
+            assertEquals(value, uncached.decrypt(envelope));
+        }
+        assertNotEquals(cached.encrypt("same"), cached.encrypt("same"));
+    }
+
+    @Test
+    void readsEnvelopesWrittenByThePreviousImplementation() throws Exception {
+        byte[] iv = filled((byte) 1, 12);
+        byte[] dek = filled((byte) 2, 32);
+        byte[] wrapped = AesKeyWrap.wrap(KEK, dek);
+        Cipher gcm = Cipher.getInstance("AES/GCM/NoPadding");
+        gcm.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(dek, "AES"), new GCMParameterSpec(128, iv));
+        byte[] ciphertext = gcm.doFinal("0550123456".getBytes(StandardCharsets.UTF_8));
+        String envelope = "cpenc:v1:" + Base64Url.encode(iv) + "." + Base64Url.encode(wrapped) + "." + Base64Url.encode(ciphertext);
+
+        assertEquals("0550123456", new EnvelopeStringEncryptor(KEK).decrypt(envelope));
+    }
+
+    @Test
+    void valuesOfOneEntityShareTheirDekSalt() {
+        EnvelopeStringEncryptor encryptor = new EnvelopeStringEncryptor(KEK, 0);
+        EnvelopeStringEncryptor.DataKey rowKey = encryptor.newDataKey();
+
+        String firstname = encryptor.encrypt("Amina", rowKey);
+        String lastname = encryptor.encrypt("Benali", rowKey);
+
+        assertTrue(firstname.startsWith("cpenc:v2:"));
+        assertEquals(salt(firstname), salt(lastname));
+        assertNotEquals(salt(firstname), salt(encryptor.encrypt("Amina")));
+        assertEquals("Benali", new EnvelopeStringEncryptor(KEK).decrypt(lastname));
+    }
+
+    @Test
+    void v2EnvelopesAreShorterThanV1() {
+        String v2 = new EnvelopeStringEncryptor(KEK).encrypt("0550123456");
+        String v1 = "cpenc:v1:" + Base64Url.encode(new byte[12]) + "." + Base64Url.encode(new byte[40]) + "."
+                + Base64Url.encode(new byte["0550123456".length() + 16]);
+
+        assertEquals(v1.length() - 32, v2.length());
+    }
+
+    @Test
+    void rejectsMalformedEnvelopes() {
+        EnvelopeStringEncryptor encryptor = new EnvelopeStringEncryptor(KEK);
+
+        assertThrows(IllegalArgumentException.class, () -> encryptor.decrypt("cpenc:v1:abc.def"));
+        assertThrows(IllegalArgumentException.class, () -> encryptor.decrypt("plain"));
+        assertThrows(IllegalArgumentException.class, () -> encryptor.decrypt("cpenc:v2:abc"));
+    }
+
+    private static String salt(String envelope) {
+        return envelope.substring("cpenc:v2:".length(), envelope.indexOf('.'));
+    }
+
+    private static byte[] filled(byte value, int length) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+}
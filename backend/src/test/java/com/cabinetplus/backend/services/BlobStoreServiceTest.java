@@ -0,0 +1,146 @@
+package com.cabinetplus.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.cabinetplus.backend.security.crypto.EncryptedFileIO;
+import com.cabinetplus.backend.security.crypto.EncryptionKeyProvider;
+import com.cabinetplus.backend.storage.FileSystemBlobStorage;
+
+class BlobStoreServiceTest {
+
+    private static final byte[] SCAN = "solid scan\nfacet normal 0 0 1\nendsolid".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path blobDir;
+
+    private JdbcTemplate jdbcTemplate;
+    private StorageUsageService storageUsageService;
+    private BlobStoreService service;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        storageUsageService = mock(StorageUsageService.class);
+        service = new BlobStoreService(jdbcTemplate, new FileSystemBlobStorage(blobDir), storageUsageService, blobDir.toString(), 60, 200);
+    }
+
+    @Test
+    void storesNewContentOnceEncrypted() throws Exception {
+        givenNoExistingBlob();
+        when(jdbcTemplate.queryForObject(anyString(), ArgumentMatchers.<RowMapper<BlobStoreService.StoredBlobRef>>any(),
+                any(), any(), any(), any(), any(), any()))
+                .thenAnswer(inv -> new BlobStoreService.StoredBlobRef(
+                        inv.getArgument(4), inv.getArgument(5), inv.getArgument(3), false));
+
+        BlobStoreService.StoredBlobRef blob = service.store(7L, new ByteArrayInputStream(SCAN));
+
+        assertFalse(blob.deduplicated());
+        Path stored = Paths.get(blob.location());
+        assertTrue(stored.startsWith(blobDir));
+        assertEquals(Files.size(stored), blob.storedBytes());
+        try (InputStream in = EncryptedFileIO.openDecryptedStream(Files.newInputStream(stored), EncryptionKeyProvider.getOrLoadKek())) {
+            assertArrayEquals(SCAN, in.readAllBytes());
+        }
+        verify(storageUsageService).add(7L, blob.storedBytes());
+        CRC32 crc = new CRC32();
+        crc.update(SCAN);
+        verify(jdbcTemplate).queryForObject(anyString(), ArgumentMatchers.<RowMapper<BlobStoreService.StoredBlobRef>>any(),
+                eq(7L), any(), any(), any(), eq((long) SCAN.length), eq(crc.getValue()));
+        assertTempDirEmpty();
+    }
+
+    @Test
+    void duplicateContentReusesExistingBlob() throws Exception {
+        String existing = blobDir.resolve("ab").resolve("existing").toString();
+        when(jdbcTemplate.query(anyString(), ArgumentMatchers.<RowMapper<BlobStoreService.StoredBlobRef>>any(), any(), any(), any()))
+                .thenAnswer(inv -> List.of(new BlobStoreService.StoredBlobRef(existing, 123L, inv.getArgument(4), true)));
+
+        BlobStoreService.StoredBlobRef blob = service.store(7L, new ByteArrayInputStream(SCAN));
+
+        assertTrue(blob.deduplicated());
+        assertEquals(existing, blob.location());
+        assertEquals(123L, blob.storedBytes());
+        verify(jdbcTemplate, never()).queryForObject(anyString(),
+                ArgumentMatchers.<RowMapper<BlobStoreService.StoredBlobRef>>any(), any(), any(), any(), any(), any(), any());
+        verify(storageUsageService, never()).add(any(), anyLong());
+        assertTempDirEmpty();
+    }
+
+    @Test
+    void concurrentUploadOfSameContentKeepsTheWinnersFile() throws Exception {
+        givenNoExistingBlob();
+        String winner = blobDir.resolve("ab").resolve("winner").toString();
+        when(jdbcTemplate.queryForObject(anyString(), ArgumentMatchers.<RowMapper<BlobStoreService.StoredBlobRef>>any(),
+                any(), any(), any(), any(), any(), any()))
+                .thenAnswer(inv -> new BlobStoreService.StoredBlobRef(winner, 99L, inv.getArgument(3), false));
+
+        BlobStoreService.StoredBlobRef blob = service.store(7L, new ByteArrayInputStream(SCAN));
+
+        assertTrue(blob.deduplicated());
+        assertEquals(winner, blob.location());
+        try (Stream<Path> files = Files.walk(blobDir)) {
+            assertEquals(0, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void releasingTheLastReferenceFreesTheClinicsUsage() throws Exception {
+        givenReleasedBlob(7L, 500L, 1);
+        assertTrue(service.release(blobDir.resolve("ab/last").toString()));
+        verify(storageUsageService).releaseBlob(eq(7L), anyString(), eq(500L));
+
+        givenReleasedBlob(7L, 500L, 2);
+        assertTrue(service.release(blobDir.resolve("ab/shared").toString()));
+        verify(storageUsageService, times(1)).releaseBlob(any(), any(), anyLong());
+    }
+
+    private void givenReleasedBlob(long ownerId, long sizeBytes, int previousRefCount) throws Exception {
+        ResultSet row = mock(ResultSet.class);
+        when(row.getLong(1)).thenReturn(ownerId);
+        when(row.getLong(2)).thenReturn(sizeBytes);
+        when(row.getInt(3)).thenReturn(previousRefCount);
+        when(jdbcTemplate.query(anyString(), ArgumentMatchers.<RowMapper<Object>>any(), any(Object[].class)))
+                .thenAnswer(inv -> List.of(inv.<RowMapper<Object>>getArgument(1).mapRow(row, 0)));
+    }
+
+    private void givenNoExistingBlob() {
+        when(jdbcTemplate.query(anyString(), ArgumentMatchers.<RowMapper<BlobStoreService.StoredBlobRef>>any(), any(), any(), any()))
+                .thenReturn(List.of());
+    }
+
+    private void assertTempDirEmpty() throws Exception {
+        try (Stream<Path> files = Files.list(blobDir.resolve("tmp"))) {
+            assertEquals(0, files.count());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.cabinetplus.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cabinetplus.backend.security.EncryptionConverter;
+import com.cabinetplus.backend.security.crypto.EncryptionKeyProvider;
+
+class EnvelopeReencryptionJobTest {
+
+    @Test
+    void aRowThatCannotBeDecryptedIsSkippedAndTheNextOnesAreMigrated() throws Exception {
+        List<Object[]> patients = List.of(
+                patient(1L, v1("Amina")),
+                patient(2L, "cpenc:v1:AAAAAAAAAAAAAAAA.AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA.AAAA"),
+                patient(3L, v1("Karim")));
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(), any())).thenReturn(List.of());
+        // One row per batch, so the poisoned row is a batch of its own that must not stop the scan.
+        when(jdbcTemplate.query(contains("FROM public.patients "), any(RowMapper.class), any(), any())).thenAnswer(inv -> {
+            long afterId = inv.getArgument(2);
+            return patients.stream().filter(row -> (Long) row[0] > afterId).limit(1).toList();
+        });
+        List<Object[]> updates = new ArrayList<>();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(inv -> {
+            List<Object[]> batch = inv.getArgument(1);
+            updates.addAll(batch);
+            return new int[batch.size()];
+        });
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(inv -> ((TransactionCallback<?>) inv.getArgument(0)).doInTransaction(null));
+
+        EnvelopeReencryptionJob job = new EnvelopeReencryptionJob(jdbcTemplate, transactionTemplate);
+        ReflectionTestUtils.setField(job, "enabled", true);
+        ReflectionTestUtils.setField(job, "batchSize", 1);
+        job.reencryptV1Envelopes();
+
+        assertEquals(2, updates.size());
+        // Parameters: the four new values, the id, then the four values read.
+        assertEquals(1L, updates.get(0)[4]);
+        assertEquals(3L, updates.get(1)[4]);
+        String migrated = (String) updates.get(1)[0];
+        assertTrue(migrated.startsWith("cpenc:v2:"));
+        assertEquals("Karim", EncryptionConverter.sharedEncryptor().decrypt(migrated));
+    }
+
+    private static Object[] patient(long id, String firstname) {
+        return new Object[] {id, firstname, null, null, null};
+    }
+
+    /** Same layout as envelopes written before v2: cpenc:v1:iv.wrappedDek.ciphertext. */
+    private static String v1(String value) throws Exception {
+        SecureRandom random = new SecureRandom();
+        byte[] iv = new byte[12];
+        byte[] dek = new byte[32];
+        random.nextBytes(iv);
+        random.nextBytes(dek);
+        Cipher wrap = Cipher.getInstance("AESWrap");
+        wrap.init(Cipher.WRAP_MODE, new SecretKeySpec(EncryptionKeyProvider.getOrLoadKek(), "AES"));
+        byte[] wrapped = wrap.wrap(new SecretKeySpec(dek, "AES"));
+        Cipher gcm = Cipher.getInstance("AES/GCM/NoPadding");
+        gcm.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(dek, "AES"), new GCMParameterSpec(128, iv));
+        byte[] ciphertext = gcm.doFinal(value.getBytes(StandardCharsets.UTF_8));
+        Base64.Encoder base64 = Base64.getUrlEncoder().withoutPadding();
+        return "cpenc:v1:" + base64.encodeToString(iv) + "." + base64.encodeToString(wrapped) + "."
+                + base64.encodeToString(ciphertext);
+    }
+}
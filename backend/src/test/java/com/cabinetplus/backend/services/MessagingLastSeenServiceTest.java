@@ -0,0 +1,104 @@
+package com.cabinetplus.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.cabinetplus.backend.models.User;
+
+class MessagingLastSeenServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 5, 4, 9, 0);
+
+    private JdbcTemplate jdbcTemplate;
+    private MessagingLastSeenService service;
+    private final List<List<Object[]>> batches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            List<Object[]> args = invocation.getArgument(1);
+            batches.add(new ArrayList<>(args));
+            return new int[args.size()];
+        });
+        service = new MessagingLastSeenService(jdbcTemplate, 2);
+    }
+
+    @Test
+    void keepsTheLatestTimePerUserAndWritesNothingUntilFlushed() {
+        User user = user(1L);
+
+        service.touch(user, T0.plusMinutes(2));
+        service.touch(user, T0);
+
+        assertEquals(T0.plusMinutes(2), service.lastSeenAt(user));
+        assertEquals(T0.plusMinutes(2), user.getMessagingLastSeenAt());
+        assertEquals(1, service.pendingCount());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void readsSeeTimesThatAreNotFlushedYet() {
+        User touched = user(1L);
+        service.touch(touched, T0.plusMinutes(5));
+        User loadedElsewhere = user(1L);
+        loadedElsewhere.setMessagingLastSeenAt(T0);
+
+        assertEquals(T0.plusMinutes(5), service.lastSeenAt(loadedElsewhere));
+    }
+
+    @Test
+    void flushesEveryPendingUserInBatchesOfSingleColumnUpdates() {
+        service.touch(user(1L), T0);
+        service.touch(user(2L), T0.plusSeconds(1));
+        service.touch(user(3L), T0.plusSeconds(2));
+
+        assertEquals(3, service.flush());
+
+        assertEquals(2, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals(1, batches.get(1).size());
+        Object[] first = batches.get(0).stream().filter(row -> row[1].equals(1L)).findFirst().orElseThrow();
+        assertArrayEquals(new Object[] { Timestamp.valueOf(T0), 1L, Timestamp.valueOf(T0) }, first);
+        assertEquals(0, service.pendingCount());
+        assertEquals(0, service.flush());
+    }
+
+    @Test
+    void keepsTimesForTheNextFlushWhenTheUpdateFails() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(new int[] { 1 });
+        service.touch(user(1L), T0);
+
+        service.flush();
+        assertEquals(1, service.pendingCount());
+
+        service.flush();
+        assertEquals(0, service.pendingCount());
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList());
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
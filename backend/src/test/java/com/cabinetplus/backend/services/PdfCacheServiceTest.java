@@ -0,0 +1,85 @@
+package com.cabinetplus.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class PdfCacheServiceTest {
+
+    private static final byte[] PDF = "%PDF-1.4 fiche".getBytes();
+
+    private final PdfCacheService cache = new PdfCacheService(64, 32);
+    private final AtomicInteger renders = new AtomicInteger();
+
+    @Test
+    void rendersOnceAndAnswersNotModifiedToTheSameVersion() throws Exception {
+        MockHttpServletResponse first = serve(fiche(1500.0), null);
+        String etag = first.getHeader("ETag");
+
+        MockHttpServletResponse again = serve(fiche(1500.0), null);
+        MockHttpServletResponse revalidated = serve(fiche(1500.0), etag);
+
+        assertEquals(200, first.getStatus());
+        assertArrayEquals(PDF, first.getContentAsByteArray());
+        assertEquals(PDF.length, first.getContentLength());
+        assertEquals("private, no-cache", first.getHeader("Cache-Control"));
+        assertArrayEquals(PDF, again.getContentAsByteArray());
+        assertEquals(304, revalidated.getStatus());
+        assertEquals(0, revalidated.getContentAsByteArray().length);
+        assertEquals(1, renders.get());
+    }
+
+    @Test
+    void anyChangedRowGivesANewVersion() throws Exception {
+        String etag = serve(fiche(1500.0), null).getHeader("ETag");
+
+        MockHttpServletResponse afterPayment = serve(fiche(2000.0), etag);
+
+        assertEquals(200, afterPayment.getStatus());
+        assertNotEquals(etag, afterPayment.getHeader("ETag"));
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntriesBeyondTheByteBudget() {
+        cache.put("a", new byte[30]);
+        cache.put("b", new byte[30]);
+        cache.get("a");
+        cache.put("c", new byte[30]);
+        cache.put("huge", new byte[40]);
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertNull(cache.get("huge"));
+        assertEquals(60, cache.cachedBytes());
+    }
+
+    private PdfCacheService.Fingerprint fiche(double paid) {
+        return cache.fingerprint("patient-fiche")
+                .add(LocalDate.of(2026, 3, 1), 12L, "Amina", "Benali")
+                .add(7L, LocalDate.of(2026, 2, 20), "CASH", paid);
+    }
+
+    private MockHttpServletResponse serve(PdfCacheService.Fingerprint fingerprint, String ifNoneMatch) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/patients/12/fiche-pdf");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        cache.serve(fingerprint, request, response, "attachment; filename=\"fiche.pdf\"", () -> {
+            renders.incrementAndGet();
+            return PDF;
+        });
+        return response;
+    }
+}
@@ -0,0 +1,217 @@
+package com.cabinetplus.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.cabinetplus.backend.dto.PdfExportRequest;
+import com.cabinetplus.backend.enums.NotificationType;
+import com.cabinetplus.backend.enums.PdfExportKind;
+import com.cabinetplus.backend.enums.PdfExportStatus;
+import com.cabinetplus.backend.exceptions.BadRequestException;
+import com.cabinetplus.backend.exceptions.NotFoundException;
+import com.cabinetplus.backend.exceptions.TooManyRequestsException;
+import com.cabinetplus.backend.models.Devise;
+import com.cabinetplus.backend.models.PdfExportJob;
+import com.cabinetplus.backend.models.User;
+import com.cabinetplus.backend.repositories.DeviseRepository;
+import com.cabinetplus.backend.repositories.JustificationRepository;
+import com.cabinetplus.backend.repositories.PatientRepository;
+import com.cabinetplus.backend.repositories.PdfExportJobRepository;
+import com.cabinetplus.backend.repositories.PrescriptionRepository;
+import com.cabinetplus.backend.repositories.UserRepository;
+import com.cabinetplus.backend.security.crypto.EncryptedFileIO;
+import com.cabinetplus.backend.security.crypto.EncryptionKeyProvider;
+import com.cabinetplus.backend.storage.FileSystemBlobStorage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class PdfExportServiceTest {
+
+    @TempDir
+    Path blobDir;
+
+    private PdfExportJobRepository jobRepository;
+    private UserRepository userRepository;
+    private DeviseRepository deviseRepository;
+    private ClinicalPdfService clinicalPdfService;
+    private NotificationService notificationService;
+    private PdfExportService service;
+    private User owner;
+    private User assistant;
+
+    @BeforeEach
+    void setUp() {
+        jobRepository = mock(PdfExportJobRepository.class);
+        userRepository = mock(UserRepository.class);
+        deviseRepository = mock(DeviseRepository.class);
+        clinicalPdfService = mock(ClinicalPdfService.class);
+        notificationService = mock(NotificationService.class);
+        when(jobRepository.save(any(PdfExportJob.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        service = new PdfExportService(
+                jobRepository,
+                userRepository,
+                mock(PatientRepository.class),
+                mock(PrescriptionRepository.class),
+                mock(JustificationRepository.class),
+                deviseRepository,
+                mock(PublicIdResolutionService.class),
+                clinicalPdfService,
+                mock(PatientFichePdfService.class),
+                notificationService,
+                new FileSystemBlobStorage(blobDir),
+                mock(PlatformTransactionManager.class),
+                new ObjectMapper(),
+                1, 1, 2, 3, 31, 24, 120);
+
+        owner = user(1L);
+        assistant = user(2L);
+        when(userRepository.findById(2L)).thenReturn(Optional.of(assistant));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void buildsAnEncryptedZipOfEveryDevisAndNotifiesItsCreator() throws Exception {
+        PdfExportJob job = devisJob();
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        Devise first = devise(10L, "Bridge céramique");
+        Devise second = devise(11L, "Détartrage");
+        when(deviseRepository.findByPractitionerAndCreatedAtBetweenOrderByCreatedAtAsc(eq(owner), any(), any()))
+                .thenReturn(List.of(first, second));
+        when(deviseRepository.findById(10L)).thenReturn(Optional.of(first));
+        when(deviseRepository.findById(11L)).thenReturn(Optional.of(second));
+        when(clinicalPdfService.devisPdf(owner, first)).thenReturn("%PDF-10".getBytes());
+        when(clinicalPdfService.devisPdf(owner, second)).thenReturn("%PDF-11".getBytes());
+
+        service.run(job.getId());
+
+        assertEquals(PdfExportStatus.READY, job.getStatus());
+        assertEquals(2, job.getDocumentCount());
+        Path zip = blobDir.resolve("export.zip");
+        try (InputStream in = EncryptedFileIO.openDecryptedStream(Path.of(job.getStorageLocation()), EncryptionKeyProvider.getOrLoadKek(), 0L)) {
+            Files.copy(in, zip);
+        }
+        assertEquals(Files.size(zip), job.getSizeBytes());
+        List<String> names = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        try (ZipFile archive = new ZipFile(zip.toFile())) {
+            for (ZipEntry entry : Collections.list(archive.entries())) {
+                names.add(entry.getName());
+                try (InputStream content = archive.getInputStream(entry)) {
+                    contents.add(new String(content.readAllBytes()));
+                }
+            }
+        }
+        assertEquals(List.of("devis/devis_bridge_céramique_10.pdf", "devis/devis_détartrage_11.pdf"), names);
+        assertEquals(List.of("%PDF-10", "%PDF-11"), contents);
+        // Streaming readers need the sizes and CRC in each local header.
+        List<String> streamed = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(zip))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                streamed.add(new String(in.readAllBytes()));
+            }
+        }
+        assertEquals(contents, streamed);
+        verify(notificationService).create(eq(assistant), eq(NotificationType.PDF_EXPORT_READY), anyString(), anyString(), any(), anyString());
+    }
+
+    @Test
+    void failsWithAReadableReasonWhenThereAreTooManyDocuments() {
+        PdfExportJob job = devisJob();
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        List<Devise> many = List.of(devise(1L, "a"), devise(2L, "b"), devise(3L, "c"), devise(4L, "d"));
+        when(deviseRepository.findByPractitionerAndCreatedAtBetweenOrderByCreatedAtAsc(eq(owner), any(), any())).thenReturn(many);
+
+        service.run(job.getId());
+
+        assertEquals(PdfExportStatus.FAILED, job.getStatus());
+        assertEquals("Export trop volumineux (max 3 documents), reduisez la periode", job.getError());
+        assertNull(job.getStorageLocation());
+        verify(clinicalPdfService, never()).devisPdf(any(), any());
+        verify(notificationService).create(eq(assistant), eq(NotificationType.PDF_EXPORT_FAILED), anyString(), anyString(), any(), anyString());
+    }
+
+    @Test
+    void rejectsInvalidRangesAndClinicsWithTooManyUnfinishedExports() {
+        LocalDate day = LocalDate.of(2026, 3, 1);
+        assertThrows(BadRequestException.class,
+                () -> service.submitDevisRange(new PdfExportRequest(day, day.minusDays(1)), owner, assistant));
+        assertThrows(BadRequestException.class,
+                () -> service.submitDevisRange(new PdfExportRequest(day, day.plusDays(31)), owner, assistant));
+
+        when(jobRepository.countByOwnerAndStatusIn(eq(owner), any())).thenReturn(2L);
+        assertThrows(TooManyRequestsException.class,
+                () -> service.submitDevisRange(new PdfExportRequest(day, day.plusDays(30)), owner, assistant));
+        verify(jobRepository, never()).save(any());
+    }
+
+    @Test
+    void onlyTheCreatorAndTheClinicOwnerSeeAnExport() {
+        PdfExportJob job = devisJob();
+        when(jobRepository.findByIdAndOwner(job.getId(), owner)).thenReturn(Optional.of(job));
+
+        assertEquals(job.getId(), service.status(job.getId(), owner, assistant).id());
+        assertEquals(job.getId(), service.status(job.getId(), owner, owner).id());
+        assertThrows(NotFoundException.class, () -> service.status(job.getId(), owner, user(3L)));
+    }
+
+    private PdfExportJob devisJob() {
+        LocalDateTime now = LocalDateTime.now();
+        PdfExportJob job = new PdfExportJob();
+        job.setId("job-1");
+        job.setOwner(owner);
+        job.setCreatedBy(assistant);
+        job.setKind(PdfExportKind.DEVIS_RANGE);
+        job.setStatus(PdfExportStatus.QUEUED);
+        job.setFromDate(LocalDate.of(2026, 1, 1));
+        job.setToDate(LocalDate.of(2026, 1, 31));
+        job.setCreatedAt(now);
+        job.setExpiresAt(now.plusHours(24));
+        return job;
+    }
+
+    private Devise devise(Long id, String title) {
+        Devise devise = new Devise();
+        devise.setId(id);
+        devise.setTitle(title);
+        devise.setPractitioner(owner);
+        devise.setCreatedAt(LocalDateTime.of(2026, 1, 15, 10, 0));
+        return devise;
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,92 @@
+package com.cabinetplus.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import com.cabinetplus.backend.enums.UserRole;
+import com.cabinetplus.backend.models.User;
+import com.cabinetplus.backend.services.PdfRenderingService.Layout;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+
+class PdfRenderingServiceTest {
+
+    private final PdfRenderingService service = new PdfRenderingService(10);
+
+    @Test
+    void headerFollowsProfileChanges() throws Exception {
+        User clinic = clinic();
+
+        String first = text(service.render((document, writer) -> service.addClinicHeader(document, clinic, Layout.STANDARD)));
+        clinic.setClinicName("Cabinet Dentaire Nour");
+        String second = text(service.render((document, writer) -> service.addClinicHeader(document, clinic, Layout.STANDARD)));
+
+        assertTrue(first.contains("CABINET AMINA"));
+        assertTrue(first.contains("Tel: 05 55 12 34 56"));
+        assertTrue(second.contains("CABINET DENTAIRE NOUR"));
+        assertFalse(second.contains("CABINET AMINA"));
+    }
+
+    @Test
+    void rendersConcurrentDocumentsWithSharedFonts() throws Exception {
+        User clinic = clinic();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> pdfs = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                int n = i;
+                pdfs.add(pool.submit(() -> service.render((document, writer) -> {
+                    service.addClinicHeader(document, clinic, Layout.COMPACT);
+                    document.add(service.table(Layout.COMPACT, 2, 1).header("ACTE", "MONTANT").row("Detartrage " + n, "2000 DZD").build());
+                    service.addSignature(writer, null, Layout.COMPACT);
+                })));
+            }
+            for (int i = 0; i < pdfs.size(); i++) {
+                byte[] pdf = pdfs.get(i).get();
+                assertEquals("%PDF", new String(pdf, 0, 4, StandardCharsets.US_ASCII));
+                assertTrue(text(pdf).contains("Detartrage " + i));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void formatsTenDigitPhonesByPairs() {
+        assertEquals("05 55 12 34 56", PdfRenderingService.formatPhone("0555123456"));
+        assertEquals("+213555123456", PdfRenderingService.formatPhone("+213555123456"));
+        assertEquals("05551234ab", PdfRenderingService.formatPhone("05551234ab"));
+    }
+
+    private static User clinic() {
+        User clinic = new User();
+        clinic.setId(42L);
+        clinic.setRole(UserRole.DENTIST);
+        clinic.setClinicName("Cabinet Amina");
+        clinic.setFirstname("Amina");
+        clinic.setLastname("Benali");
+        clinic.setAddress("12 rue Didouche Mourad, Alger");
+        clinic.setPhoneNumber("0555123456");
+        return clinic;
+    }
+
+    private static String text(byte[] pdf) throws IOException {
+        PdfReader reader = new PdfReader(pdf);
+        try {
+            return new PdfTextExtractor(reader).getTextFromPage(1);
+        } finally {
+            reader.close();
+        }
+    }
+}
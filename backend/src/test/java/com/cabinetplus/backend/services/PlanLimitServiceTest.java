@@ -7,11 +7,14 @@ import com.cabinetplus.backend.repositories.EmployeeRepository;
 import com.cabinetplus.backend.repositories.PatientRepository;
 import com.cabinetplus.backend.repositories.ProthesisFileRepository;
 import com.cabinetplus.backend.repositories.ProthesisRepository;
+import com.cabinetplus.backend.repositories.StoredBlobRepository;
+import com.cabinetplus.backend.repositories.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -36,11 +39,22 @@ class PlanLimitServiceTest {
     @Mock
     private ProthesisFileRepository prothesisFileRepository;
 
+    @Mock
+    private StoredBlobRepository storedBlobRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private UserRepository userRepository;
+
     private PlanLimitService service;
 
     @BeforeEach
     void setUp() {
-        service = new PlanLimitService(employeeRepository, patientRepository, documentRepository, prothesisRepository, prothesisFileRepository);
+        StorageUsageService storageUsageService = new StorageUsageService(jdbcTemplate, documentRepository, prothesisRepository,
+                prothesisFileRepository, storedBlobRepository, userRepository, 360, 200);
+        service = new PlanLimitService(employeeRepository, patientRepository, storageUsageService);
     }
 
     @Test
@@ -0,0 +1,133 @@
+package com.cabinetplus.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.cabinetplus.backend.enums.LaboratoryConnectionStatus;
+import com.cabinetplus.backend.enums.RecordStatus;
+import com.cabinetplus.backend.enums.UserRole;
+import com.cabinetplus.backend.models.Laboratory;
+import com.cabinetplus.backend.models.LaboratoryConnection;
+import com.cabinetplus.backend.models.User;
+import com.cabinetplus.backend.repositories.LaboratoryConnectionRepository;
+import com.cabinetplus.backend.repositories.LaboratoryRepository;
+import com.cabinetplus.backend.repositories.UserRepository;
+
+class PresenceAudienceServiceTest {
+
+    private UserRepository userRepository;
+    private LaboratoryRepository laboratoryRepository;
+    private LaboratoryConnectionRepository connectionRepository;
+    private PresenceAudienceService service;
+
+    private User owner;
+    private User assistant;
+    private User newcomer;
+    private User labUser;
+    private User otherOwner;
+    private Laboratory lab;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        laboratoryRepository = mock(LaboratoryRepository.class);
+        connectionRepository = mock(LaboratoryConnectionRepository.class);
+        service = new PresenceAudienceService(userRepository, laboratoryRepository, connectionRepository, 60, 100);
+
+        owner = user(1L, "0500000001", UserRole.DENTIST, null, true);
+        assistant = user(2L, "0500000002", UserRole.EMPLOYEE, owner, true);
+        assistant.setPermissions(Set.of("LABORATORIES_MESSAGE"));
+        newcomer = user(3L, "0500000003", UserRole.EMPLOYEE, owner, false);
+        labUser = user(4L, "0500000004", UserRole.LAB, null, true);
+        otherOwner = user(5L, "0500000005", UserRole.DENTIST, null, true);
+        lab = new Laboratory();
+        lab.setId(40L);
+        lab.setCreatedBy(labUser);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(owner));
+        when(userRepository.findByOwnerDentist(owner)).thenReturn(List.of(assistant, newcomer));
+        when(connectionRepository.findByDentistAndStatusOrderByInvitedAtDesc(owner, LaboratoryConnectionStatus.ACCEPTED))
+                .thenReturn(List.of(connection(owner, lab)));
+        when(laboratoryRepository.findFirstByCreatedByAndArchivedAtIsNullAndRecordStatusOrderByIdAsc(labUser, RecordStatus.ACTIVE))
+                .thenReturn(Optional.of(lab));
+        when(connectionRepository.findByLaboratoryAndStatusOrderByInvitedAtDesc(lab, LaboratoryConnectionStatus.ACCEPTED))
+                .thenReturn(List.of(connection(owner, lab)));
+    }
+
+    @Test
+    void anOwnerIsSeenByTheirWholeStaffAndConnectedLabs() {
+        assertEquals(Set.of(1L, 2L, 3L, 4L), service.audienceOf(owner));
+    }
+
+    @Test
+    void staffAreSeenByTheClinicAndByLabsOnlyWhenAllowedToMessageThem() {
+        assertEquals(Set.of(2L, 1L, 3L, 4L), service.audienceOf(assistant));
+
+        assistant.setPermissions(Set.of());
+        service.evictConnection(owner, lab);
+        assertEquals(Set.of(2L, 1L, 3L), service.audienceOf(assistant));
+    }
+
+    @Test
+    void staffWhoHaveNotFinishedSetupAreNotListedByAnyone() {
+        assertEquals(Set.of(3L), service.audienceOf(newcomer));
+    }
+
+    @Test
+    void aLabIsSeenByConnectedOwnersAndTheStaffAllowedToMessageLabs() {
+        assertEquals(Set.of(4L, 1L, 2L), service.audienceOf(labUser));
+        assertFalse(service.audienceOf(labUser).contains(otherOwner.getId()));
+    }
+
+    @Test
+    void adminsOnlySeeEachOther() {
+        User admin = user(6L, "0500000006", UserRole.ADMIN, null, true);
+        User otherAdmin = user(7L, "0500000007", UserRole.ADMIN, null, true);
+        when(userRepository.findByRole(UserRole.ADMIN)).thenReturn(List.of(admin, otherAdmin));
+
+        assertEquals(Set.of(6L, 7L), service.audienceOf(admin));
+    }
+
+    @Test
+    void aClinicIsLoadedOnceForAllOfItsMembersUntilEvicted() {
+        service.audienceOf(owner);
+        service.audienceOf(assistant);
+        service.audienceOf(newcomer);
+        service.audienceOf(labUser);
+        verify(userRepository, times(1)).findByOwnerDentist(any());
+
+        service.evictConnection(owner, lab);
+        service.audienceOf(owner);
+        verify(userRepository, times(2)).findByOwnerDentist(any());
+    }
+
+    private static LaboratoryConnection connection(User dentist, Laboratory laboratory) {
+        LaboratoryConnection connection = new LaboratoryConnection();
+        connection.setDentist(dentist);
+        connection.setLaboratory(laboratory);
+        connection.setStatus(LaboratoryConnectionStatus.ACCEPTED);
+        return connection;
+    }
+
+    private static User user(Long id, String phone, UserRole role, User ownerDentist, boolean setupCompleted) {
+        User user = new User();
+        user.setId(id);
+        user.setPhoneNumber(phone);
+        user.setRole(role);
+        user.setOwnerDentist(ownerDentist);
+        user.setAccountSetupCompleted(setupCompleted);
+        return user;
+    }
+}
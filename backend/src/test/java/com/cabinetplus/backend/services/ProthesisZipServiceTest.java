@@ -0,0 +1,174 @@
+package com.cabinetplus.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.cabinetplus.backend.exceptions.TooManyRequestsException;
+import com.cabinetplus.backend.security.crypto.EncryptedFileIO;
+import com.cabinetplus.backend.security.crypto.EncryptionKeyProvider;
+import com.cabinetplus.backend.storage.StoredObject;
+
+class ProthesisZipServiceTest {
+
+    private static final byte[] SCAN = "solid scan\nfacet normal 0 0 1\nendsolid".repeat(50).getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ARCHIVE = {'P', 'K', 3, 4, 9, 8, 7, 6, 5};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void streamsStoredEntriesWithAKnownLength() throws Exception {
+        ProthesisZipService service = new ProthesisZipService(1, 0, 50);
+        // The first CRC was recorded when the file was stored; the others are computed.
+        List<ProthesisFilesService.ZipEntrySource> sources = List.of(
+                new ProthesisFilesService.ZipEntrySource("arcade.stl", encrypted(SCAN), crc32(SCAN)),
+                new ProthesisFilesService.ZipEntrySource("arcade.stl", encrypted(ARCHIVE)),
+                new ProthesisFilesService.ZipEntrySource(null, encrypted(new byte[0]))
+        );
+
+        ProthesisZipService.ZipDownload download = service.stream(sources);
+        Path zipFile = dir.resolve("case.zip");
+        try (OutputStream out = Files.newOutputStream(zipFile)) {
+            download.body().writeTo(out);
+        }
+
+        assertEquals(Files.size(zipFile), download.contentLength());
+        try (ZipFile zip = new ZipFile(zipFile.toFile())) {
+            assertEquals(ZipEntry.STORED, zip.getEntry("arcade.stl").getMethod());
+            assertArrayEquals(SCAN, zip.getInputStream(zip.getEntry("arcade.stl")).readAllBytes());
+            assertArrayEquals(ARCHIVE, zip.getInputStream(zip.getEntry("arcade (2).stl")).readAllBytes());
+            assertEquals(0, zip.getEntry("file-3").getSize());
+        }
+        // Streaming readers only see the local headers.
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(zipFile))) {
+            ZipEntry arcade = in.getNextEntry();
+            assertNotNull(arcade);
+            assertEquals(ZipEntry.STORED, arcade.getMethod());
+            assertArrayEquals(SCAN, in.readAllBytes());
+            assertEquals("arcade (2).stl", in.getNextEntry().getName());
+            assertArrayEquals(ARCHIVE, in.readAllBytes());
+            assertEquals("file-3", in.getNextEntry().getName());
+            assertEquals(0, in.readAllBytes().length);
+            assertNull(in.getNextEntry());
+        }
+    }
+
+    @Test
+    void fallbackStoresCompressedFormatsAndDeflatesTheRest() throws Exception {
+        List<ProthesisFilesService.ZipEntrySource> sources = List.of(
+                new ProthesisFilesService.ZipEntrySource("arcade.stl", encrypted(SCAN)),
+                new ProthesisFilesService.ZipEntrySource("export/case.ZIP", encrypted(ARCHIVE))
+        );
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+
+        ProthesisZipService.writeZip(ProthesisZipService.plan(sources, EncryptionKeyProvider.getOrLoadKek()), zip, EncryptionKeyProvider.getOrLoadKek());
+
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip.toByteArray()))) {
+            ZipEntry stl = in.getNextEntry();
+            assertNotNull(stl);
+            assertEquals(ZipEntry.DEFLATED, stl.getMethod());
+            assertArrayEquals(SCAN, in.readAllBytes());
+
+            ZipEntry archive = in.getNextEntry();
+            assertNotNull(archive);
+            assertEquals("export/case.ZIP", archive.getName());
+            assertEquals(ZipEntry.STORED, archive.getMethod());
+            assertArrayEquals(ARCHIVE, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void rejectsBundlesBeyondTheQueueAndFreesSlotsWhenDone() throws Exception {
+        ProthesisZipService service = new ProthesisZipService(1, 0, 50);
+        List<ProthesisFilesService.ZipEntrySource> sources = List.of(
+                new ProthesisFilesService.ZipEntrySource("arcade.stl", encrypted(SCAN)));
+
+        StreamingResponseBody first = service.stream(sources).body();
+        assertThrows(TooManyRequestsException.class, () -> service.stream(sources));
+        assertEquals(1, service.stats().active());
+
+        first.writeTo(OutputStream.nullOutputStream());
+        service.stream(sources).body().writeTo(OutputStream.nullOutputStream());
+
+        ProthesisZipService.Stats stats = service.stats();
+        assertEquals(0, stats.active());
+        assertEquals(2, stats.completed());
+        assertEquals(1, stats.rejected());
+    }
+
+    @Test
+    void abandoningABundleThatNeverRanFreesItsSlot() throws Exception {
+        ProthesisZipService service = new ProthesisZipService(1, 0, 50);
+        List<ProthesisFilesService.ZipEntrySource> sources = List.of(
+                new ProthesisFilesService.ZipEntrySource("arcade.stl", encrypted(SCAN)));
+
+        // Async request timed out before the body was dispatched.
+        ProthesisZipService.ZipDownload abandoned = service.stream(sources);
+        abandoned.abandon().run();
+        abandoned.abandon().run();
+
+        assertEquals(0, service.stats().active());
+        service.stream(sources).body().writeTo(OutputStream.nullOutputStream());
+        assertThrows(IOException.class, () -> abandoned.body().writeTo(OutputStream.nullOutputStream()));
+        assertEquals(0, service.stats().active());
+    }
+
+    @Test
+    void abandoningARunningBundleKeepsItsSlotUntilTheBodyEnds() throws Exception {
+        ProthesisZipService service = new ProthesisZipService(1, 0, 50);
+        List<ProthesisFilesService.ZipEntrySource> sources = List.of(
+                new ProthesisFilesService.ZipEntrySource("arcade.stl", encrypted(SCAN)));
+        ProthesisZipService.ZipDownload download = service.stream(sources);
+        AtomicInteger activeAfterAbandon = new AtomicInteger(-1);
+
+        // Async timeout while the body is still writing.
+        download.body().writeTo(new OutputStream() {
+            @Override
+            public void write(int b) {
+                if (activeAfterAbandon.get() < 0) {
+                    download.abandon().run();
+                    activeAfterAbandon.set(service.stats().active());
+                }
+            }
+        });
+
+        assertEquals(1, activeAfterAbandon.get());
+        assertEquals(0, service.stats().active());
+        assertEquals(1, service.stats().completed());
+    }
+
+    private static long crc32(byte[] plain) {
+        CRC32 crc = new CRC32();
+        crc.update(plain);
+        return crc.getValue();
+    }
+
+    private StoredObject encrypted(byte[] plain) throws Exception {
+        Path file = Files.createTempFile(dir, "blob", "");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            EncryptedFileIO.encryptToStream(new ByteArrayInputStream(plain), out, EncryptionKeyProvider.getOrLoadKek());
+        }
+        return StoredObject.ofFile(file);
+    }
+}
@@ -0,0 +1,236 @@
+package com.cabinetplus.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.cabinetplus.backend.dto.ProthesisFileItemResponse;
+import com.cabinetplus.backend.dto.UploadSessionRequest;
+import com.cabinetplus.backend.dto.UploadSessionResponse;
+import com.cabinetplus.backend.exceptions.ConflictException;
+import com.cabinetplus.backend.exceptions.NotFoundException;
+import com.cabinetplus.backend.models.Prothesis;
+import com.cabinetplus.backend.models.UploadSession;
+import com.cabinetplus.backend.models.UploadSessionPart;
+import com.cabinetplus.backend.models.User;
+import com.cabinetplus.backend.repositories.UploadSessionPartRepository;
+import com.cabinetplus.backend.repositories.UploadSessionRepository;
+import com.cabinetplus.backend.storage.FileSystemBlobStorage;
+
+class ResumableUploadServiceTest {
+
+    private static final int PART = 128 * 1024;
+
+    @TempDir
+    Path blobDir;
+
+    private UploadSessionRepository repository;
+    private ProthesisFilesService prothesisFilesService;
+    private ResumableUploadService service;
+    private final AtomicReference<UploadSession> stored = new AtomicReference<>();
+    private final List<UploadSessionPart> parts = new CopyOnWriteArrayList<>();
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(UploadSessionRepository.class);
+        prothesisFilesService = mock(ProthesisFilesService.class);
+        BlobStoreService blobStoreService = new BlobStoreService(mock(JdbcTemplate.class), new FileSystemBlobStorage(blobDir), mock(StorageUsageService.class), blobDir.toString(), 60, 200);
+        service = new ResumableUploadService(repository, partRepository(), prothesisFilesService, blobStoreService, PART, 24, 30);
+
+        owner = new User();
+        owner.setId(7L);
+        Prothesis prothesis = new Prothesis();
+        prothesis.setId(3L);
+        when(prothesisFilesService.checkResumableUpload(eq(3L), any(), anyLong(), anyLong(), eq(owner))).thenReturn(prothesis);
+        when(repository.save(any(UploadSession.class))).thenAnswer(inv -> {
+            stored.set(inv.getArgument(0));
+            return inv.getArgument(0);
+        });
+        when(repository.findByIdAndProthesisId(any(), eq(3L))).thenAnswer(inv ->
+                Optional.ofNullable(stored.get()).filter(s -> s.getId().equals(inv.getArgument(0))));
+        when(repository.claimCompletion(anyString(), any(), any())).thenAnswer(inv -> {
+            UploadSession session = stored.get();
+            if (session == null || session.getCompletingSince() != null || session.getReceivedBytes() != session.getTotalBytes()) return 0;
+            session.setCompletingSince(inv.getArgument(1));
+            return 1;
+        });
+        when(repository.deleteUnlessCompleting(anyString(), any())).thenAnswer(inv -> {
+            UploadSession session = stored.get();
+            if (session == null || session.getCompletingSince() != null) return 0;
+            stored.set(null);
+            return 1;
+        });
+    }
+
+    /** Keeps parts in memory; {@code commit} behaves like its query against the session held in {@link #stored}. */
+    private UploadSessionPartRepository partRepository() {
+        UploadSessionPartRepository partRepository = mock(UploadSessionPartRepository.class);
+        AtomicLong ids = new AtomicLong();
+        when(partRepository.save(any(UploadSessionPart.class))).thenAnswer(inv -> {
+            UploadSessionPart part = inv.getArgument(0);
+            part.setId(ids.incrementAndGet());
+            parts.add(part);
+            return part;
+        });
+        when(partRepository.commit(anyLong(), anyString(), anyLong(), anyLong(), any())).thenAnswer(inv -> {
+            UploadSession session = stored.get();
+            if (session == null || session.getCompletingSince() != null || session.getReceivedBytes() != (long) inv.getArgument(2)) return 0;
+            session.setReceivedBytes(inv.getArgument(3));
+            session.setExpiresAt(inv.getArgument(4));
+            parts.stream().filter(p -> p.getId().equals(inv.getArgument(0))).forEach(p -> p.setCommitted(true));
+            return 1;
+        });
+        when(partRepository.findByUploadIdAndCommittedTrueOrderByStartOffsetAsc(anyString())).thenAnswer(inv -> parts.stream()
+                .filter(p -> p.isCommitted() && p.getUploadId().equals(inv.getArgument(0)))
+                .sorted(Comparator.comparingLong(UploadSessionPart::getStartOffset))
+                .toList());
+        doAnswer(inv -> parts.removeIf(p -> p.getId().equals(inv.getArgument(0))))
+                .when(partRepository).deleteById(anyLong());
+        return partRepository;
+    }
+
+    @Test
+    void resumesFromLastAcknowledgedPartAndAttachesTheFile() throws Exception {
+        byte[] scan = random(PART + 500);
+        UploadSessionResponse started = service.start(3L, request(scan.length), owner, owner);
+        assertEquals(PART, started.partSize());
+
+        service.appendPart(3L, started.id(), 0, PART, part(scan, 0, PART), owner);
+        // Resending from the start is refused: the client must continue at receivedBytes.
+        assertThrows(ConflictException.class,
+                () -> service.appendPart(3L, started.id(), 0, PART, part(scan, 0, PART), owner));
+        assertThrows(ConflictException.class, () -> service.complete(3L, started.id(), owner, owner));
+        assertEquals(PART, service.status(3L, started.id(), owner).receivedBytes());
+        assertEquals(1, parts.size(), "the refused part is not kept");
+
+        UploadSessionResponse last = service.appendPart(3L, started.id(), PART, 500, part(scan, PART, 500), owner);
+        assertEquals(scan.length, last.receivedBytes());
+
+        AtomicReference<byte[]> attached = new AtomicReference<>();
+        when(prothesisFilesService.attachUploadedFile(eq(3L), any(), eq("scan.stl"), any(), any(), eq(owner), eq(owner)))
+                .thenAnswer(inv -> {
+                    attached.set(((InputStream) inv.getArgument(1)).readAllBytes());
+                    return new ProthesisFileItemResponse(1L, "scan.stl", null, null, null, null);
+                });
+
+        service.complete(3L, started.id(), owner, owner);
+
+        assertArrayEquals(scan, attached.get());
+        verify(repository).deleteById(started.id());
+        assertTrue(parts.isEmpty());
+        assertEquals(0, stagedFiles(started.id()));
+    }
+
+    @Test
+    void aPartThatEndsEarlyIsDroppedAndSentAgain() throws Exception {
+        byte[] scan = random(1000);
+        UploadSessionResponse started = service.start(3L, request(scan.length), owner, owner);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.appendPart(3L, started.id(), 0, scan.length, part(scan, 0, 600), owner));
+
+        assertEquals(0L, service.status(3L, started.id(), owner).receivedBytes());
+        assertTrue(parts.isEmpty());
+        assertEquals(0, stagedFiles(started.id()));
+
+        assertEquals(scan.length, service.appendPart(3L, started.id(), 0, scan.length, part(scan, 0, scan.length), owner).receivedBytes());
+    }
+
+    @Test
+    void aFailedCompletionCanBeRetried() throws Exception {
+        byte[] scan = random(1000);
+        UploadSessionResponse started = service.start(3L, request(scan.length), owner, owner);
+        service.appendPart(3L, started.id(), 0, scan.length, part(scan, 0, scan.length), owner);
+        when(prothesisFilesService.attachUploadedFile(eq(3L), any(), any(), any(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("quota"))
+                .thenReturn(new ProthesisFileItemResponse(1L, "scan.stl", null, null, null, null));
+        when(repository.releaseCompletion(started.id())).thenAnswer(inv -> {
+            stored.get().setCompletingSince(null);
+            return 1;
+        });
+
+        assertThrows(IllegalStateException.class, () -> service.complete(3L, started.id(), owner, owner));
+        assertEquals(1, stagedFiles(started.id()), "parts are kept for the retry");
+
+        service.complete(3L, started.id(), owner, owner);
+        assertEquals(0, stagedFiles(started.id()));
+    }
+
+    @Test
+    void rejectsSessionsOfAnotherClinicAndCleansUpOnAbort() throws Exception {
+        byte[] scan = random(10);
+        UploadSessionResponse started = service.start(3L, request(scan.length), owner, owner);
+        User other = new User();
+        other.setId(8L);
+
+        assertThrows(NotFoundException.class, () -> service.status(3L, started.id(), other));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.appendPart(3L, started.id(), 0, 3L * PART, part(new byte[0], 0, 0), owner));
+        service.appendPart(3L, started.id(), 0, 4, part(scan, 0, 4), owner);
+
+        // A completion in progress can't be aborted.
+        stored.get().setCompletingSince(LocalDateTime.now());
+        assertThrows(ConflictException.class, () -> service.abort(3L, started.id(), owner));
+        stored.get().setCompletingSince(null);
+
+        service.abort(3L, started.id(), owner);
+
+        assertTrue(parts.isEmpty());
+        assertEquals(0, stagedFiles(started.id()));
+        assertNull(stored.get());
+        verify(prothesisFilesService, never()).attachUploadedFile(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    private long stagedFiles(String uploadId) throws Exception {
+        Path dir = blobDir.resolve("incoming").resolve(uploadId);
+        if (!Files.isDirectory(dir)) return 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    private static UploadSessionRequest request(long size) {
+        return new UploadSessionRequest("scan.stl", null, "model/stl", size);
+    }
+
+    private static InputStream part(byte[] bytes, int offset, int length) {
+        return new ByteArrayInputStream(bytes, offset, length);
+    }
+
+    private static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
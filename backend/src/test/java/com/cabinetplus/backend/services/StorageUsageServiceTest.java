@@ -0,0 +1,122 @@
+package com.cabinetplus.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.cabinetplus.backend.models.User;
+import com.cabinetplus.backend.repositories.DocumentRepository;
+import com.cabinetplus.backend.repositories.ProthesisFileRepository;
+import com.cabinetplus.backend.repositories.ProthesisRepository;
+import com.cabinetplus.backend.repositories.StoredBlobRepository;
+import com.cabinetplus.backend.repositories.UserRepository;
+
+class StorageUsageServiceTest {
+
+    private final Map<Long, Long> counters = new ConcurrentHashMap<>();
+    private DocumentRepository documentRepository;
+    private StoredBlobRepository storedBlobRepository;
+    private StorageUsageService service;
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        owner = new User();
+        owner.setId(7L);
+        documentRepository = mock(DocumentRepository.class);
+        ProthesisRepository prothesisRepository = mock(ProthesisRepository.class);
+        ProthesisFileRepository prothesisFileRepository = mock(ProthesisFileRepository.class);
+        storedBlobRepository = mock(StoredBlobRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(documentRepository.sumFileSizeBytesByOwner(owner)).thenReturn(100L);
+        when(prothesisRepository.sumStlFileSizeBytesByOwner(owner)).thenReturn(20L);
+        when(prothesisFileRepository.sumFileSizeBytesByOwner(owner)).thenReturn(3L);
+        when(storedBlobRepository.sumReferencedSizeBytesByOwner(owner)).thenReturn(1000L);
+        when(userRepository.getReferenceById(7L)).thenReturn(owner);
+        service = new StorageUsageService(storageUsageTable(), documentRepository, prothesisRepository,
+                prothesisFileRepository, storedBlobRepository, userRepository, 360, 200);
+    }
+
+    /** Keeps {@code storage_usage} in {@link #counters}; each statement behaves like its SQL. */
+    private JdbcTemplate storageUsageTable() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForList(contains("select used_bytes from storage_usage"), eq(Long.class), any()))
+                .thenAnswer(inv -> Optional.ofNullable(counters.get((Long) inv.getArgument(2))).map(List::of).orElse(List.of()));
+        when(jdbcTemplate.update(contains("insert into storage_usage"), anyLong(), anyLong())).thenAnswer(inv -> {
+            counters.put(inv.getArgument(1), inv.getArgument(2));
+            return 1;
+        });
+        when(jdbcTemplate.update(contains("set used_bytes = greatest(used_bytes + ?, 0)"), anyLong(), anyLong())).thenAnswer(inv -> {
+            long delta = inv.getArgument(1);
+            return counters.computeIfPresent(inv.getArgument(2), (k, used) -> Math.max(used + delta, 0)) != null ? 1 : 0;
+        });
+        when(jdbcTemplate.queryForList(contains("select owner_id from storage_usage"), eq(Long.class), any(), any()))
+                .thenAnswer(inv -> List.copyOf(counters.keySet()));
+        return jdbcTemplate;
+    }
+
+    @Test
+    void aMissingCounterIsComputedOnceAndThenRead() {
+        assertEquals(1123L, service.usedBytes(owner));
+        assertEquals(1123L, counters.get(7L));
+
+        service.add(7L, 77L);
+
+        assertEquals(1200L, service.usedBytes(owner));
+        verify(documentRepository, times(1)).sumFileSizeBytesByOwner(owner);
+    }
+
+    @Test
+    void theCounterNeverGoesBelowZero() {
+        counters.put(7L, 100L);
+
+        service.add(7L, -500L);
+        assertEquals(0L, counters.get(7L));
+        service.add(7L, 50L);
+        assertEquals(50L, counters.get(7L));
+
+        // Without a counter the first read will include the change.
+        service.add(8L, 10L);
+        assertFalse(counters.containsKey(8L));
+    }
+
+    @Test
+    void reconcileCorrectsDrift() {
+        counters.put(7L, 999L);
+
+        assertEquals(1, service.reconcile());
+
+        assertEquals(1123L, counters.get(7L));
+    }
+
+    @Test
+    void aBlobLeftOnlyToCancelledRowsIsNotSubtractedAgain() {
+        counters.put(7L, 1123L);
+        when(storedBlobRepository.countReferencedOnlyByCancelledRows("ab/cancelled")).thenReturn(1L);
+
+        service.releaseBlob(7L, "ab/cancelled", 500L);
+        assertEquals(1123L, counters.get(7L));
+
+        service.releaseBlob(7L, "ab/active", 500L);
+        assertEquals(623L, counters.get(7L));
+        verify(storedBlobRepository, times(2)).countReferencedOnlyByCancelledRows(any());
+        verify(storedBlobRepository, times(0)).sumReferencedSizeBytesByOwner(any());
+        assertEquals(623L, service.usedBytes(owner));
+    }
+}
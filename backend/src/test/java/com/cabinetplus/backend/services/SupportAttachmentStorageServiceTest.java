@@ -0,0 +1,93 @@
+package com.cabinetplus.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.cabinetplus.backend.security.crypto.DecryptingFileResource;
+import com.cabinetplus.backend.security.crypto.EncryptedFileIO;
+import com.cabinetplus.backend.storage.FileSystemBlobStorage;
+
+class SupportAttachmentStorageServiceTest {
+
+    private static final byte[] IMAGE = {(byte) 0x89, 'P', 'N', 'G', 13, 10, 26, 10, 1, 2, 3, 4};
+
+    @TempDir
+    Path workDir;
+
+    private SupportAttachmentStorageService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new SupportAttachmentStorageService(new FileSystemBlobStorage(workDir));
+    }
+
+    @Test
+    void storesImagesEncryptedAndStreamsThemBack() throws Exception {
+        SupportAttachmentStorageService.StoredAttachment stored = service.storeThreadImage(
+                3L, new MockMultipartFile("file", "capture.png", "image/png", IMAGE));
+
+        Path file = workDir.resolve(stored.path());
+        try (InputStream in = Files.newInputStream(file)) {
+            assertTrue(EncryptedFileIO.isEncryptedFile(in));
+        }
+
+        Resource resource = service.loadResource(stored.path());
+        assertInstanceOf(DecryptingFileResource.class, resource);
+        assertEquals(IMAGE.length, resource.contentLength());
+        try (InputStream in = resource.getInputStream()) {
+            assertArrayEquals(IMAGE, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void servesLegacyPlaintextAttachmentsFromDisk() throws Exception {
+        Path legacy = workDir.resolve("uploads/support/thread-3/old.png");
+        Files.createDirectories(legacy.getParent());
+        Files.write(legacy, IMAGE);
+
+        Resource resource = service.loadResource("uploads/support/thread-3/old.png");
+
+        assertInstanceOf(FileSystemResource.class, resource);
+        try (InputStream in = resource.getInputStream()) {
+            assertArrayEquals(IMAGE, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void rejectsPathsOutsideTheSupportFolder() {
+        assertThrows(IOException.class, () -> service.loadResource("uploads/support/../../secret.txt"));
+        assertThrows(IOException.class, () -> service.loadResource(workDir.resolve("x.png").toString()));
+        assertThrows(NoSuchFileException.class, () -> service.loadResource("uploads/support/thread-3/missing.png"));
+        assertFalse(Files.exists(workDir.resolve("secret.txt")));
+    }
+
+    @Test
+    void deletingAThreadRemovesItsFolderOnly() throws Exception {
+        SupportAttachmentStorageService.StoredAttachment kept = service.storeThreadImage(
+                30L, new MockMultipartFile("file", "a.png", "image/png", IMAGE));
+        SupportAttachmentStorageService.StoredAttachment dropped = service.storeThreadImage(
+                3L, new MockMultipartFile("file", "b.png", "image/png", IMAGE));
+
+        service.deleteThreadFolder(3L);
+
+        assertFalse(Files.exists(workDir.resolve(dropped.path())));
+        assertTrue(Files.exists(workDir.resolve(kept.path())));
+    }
+}
@@ -0,0 +1,106 @@
+package com.cabinetplus.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+
+import com.cabinetplus.backend.exceptions.NotFoundException;
+import com.cabinetplus.backend.security.crypto.EncryptedFileIO;
+import com.cabinetplus.backend.security.crypto.EncryptionKeyProvider;
+import com.cabinetplus.backend.storage.FileSystemBlobStorage;
+
+class ThumbnailServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private ThumbnailService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ThumbnailService(new FileSystemBlobStorage(dir), 1, 4, 10_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void buildsEncryptedThumbnailOnceAndReusesIt() throws Exception {
+        String original = storeEncryptedPng(2000, 1000);
+
+        Resource first = service.thumbnail(original, ThumbnailService.Size.SMALL);
+        Path thumbnail = Path.of(ThumbnailService.thumbnailLocation(original, ThumbnailService.Size.SMALL));
+        try (InputStream in = Files.newInputStream(thumbnail)) {
+            assertTrue(EncryptedFileIO.isEncryptedFile(in));
+        }
+        try (InputStream in = first.getInputStream()) {
+            BufferedImage image = ImageIO.read(in);
+            assertEquals(160, image.getWidth());
+            assertEquals(80, image.getHeight());
+        }
+
+        long modified = Files.getLastModifiedTime(thumbnail).toMillis();
+        service.thumbnail(original, ThumbnailService.Size.SMALL);
+        assertEquals(modified, Files.getLastModifiedTime(thumbnail).toMillis());
+    }
+
+    @Test
+    void doesNotUpscaleSmallImages() throws Exception {
+        String original = storeEncryptedPng(100, 50);
+
+        try (InputStream in = service.thumbnail(original, ThumbnailService.Size.MEDIUM).getInputStream()) {
+            assertEquals(100, ImageIO.read(in).getWidth());
+        }
+    }
+
+    @Test
+    void reportsUnreadableImagesAsUnavailable() throws Exception {
+        Path original = dir.resolve("notes");
+        try (OutputStream out = Files.newOutputStream(original)) {
+            EncryptedFileIO.encryptToStream(new ByteArrayInputStream("not an image".getBytes()), out, EncryptionKeyProvider.getOrLoadKek());
+        }
+
+        assertThrows(NotFoundException.class, () -> service.thumbnail(original.toString(), ThumbnailService.Size.SMALL));
+        assertFalse(Files.exists(Path.of(ThumbnailService.thumbnailLocation(original.toString(), ThumbnailService.Size.SMALL))));
+    }
+
+    @Test
+    void recognisesImageTypes() {
+        assertTrue(ThumbnailService.isSupported("image/png"));
+        assertTrue(ThumbnailService.isSupported("image/tiff"));
+        assertFalse(ThumbnailService.isSupported("application/pdf"));
+        assertFalse(ThumbnailService.isSupported(null));
+        assertEquals(ThumbnailService.Size.SMALL, ThumbnailService.Size.parse(null));
+        assertEquals(ThumbnailService.Size.MEDIUM, ThumbnailService.Size.parse("medium"));
+        assertThrows(IllegalArgumentException.class, () -> ThumbnailService.Size.parse("huge"));
+    }
+
+    private String storeEncryptedPng(int width, int height) throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", png);
+        Path original = Files.createTempFile(dir, "blob", "");
+        try (OutputStream out = Files.newOutputStream(original)) {
+            EncryptedFileIO.encryptToStream(new ByteArrayInputStream(png.toByteArray()), out, EncryptionKeyProvider.getOrLoadKek());
+        }
+        return original.toString();
+    }
+}
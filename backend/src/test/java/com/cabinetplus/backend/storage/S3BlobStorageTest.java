@@ -0,0 +1,293 @@
+package com.cabinetplus.backend.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+class S3BlobStorageTest {
+
+    private static final int MIB = 1024 * 1024;
+
+    @TempDir
+    Path dir;
+
+    private FakeS3 s3;
+    private S3BlobStorage storage;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        s3 = new FakeS3("scans");
+        storage = new S3BlobStorage(new S3BlobStorage.Settings(
+                s3.endpoint(), "eu-west-3", "scans", "access", "secret", "cabinet", true, 8L * MIB, 5L * MIB),
+                new FileSystemBlobStorage(dir));
+    }
+
+    @AfterEach
+    void tearDown() {
+        s3.stop();
+    }
+
+    @Test
+    void storesSmallFilesWithOnePutAndReadsRanges() throws Exception {
+        byte[] content = random(1000);
+        String location = storage.locationFor("uploads/blobs/ab/one");
+        storage.put(location, file(content));
+
+        assertEquals("s3://scans/cabinet/uploads/blobs/ab/one", location);
+        assertTrue(s3.objects.containsKey("cabinet/uploads/blobs/ab/one"));
+        assertFalse(s3.requests.stream().anyMatch(r -> r.contains("uploads=")));
+
+        StoredObject object = storage.object(location);
+        assertTrue(object.exists());
+        assertEquals(1000, object.length());
+        assertEquals("one", object.filename());
+        try (InputStream in = object.open(100, 50)) {
+            assertArrayEquals(Arrays.copyOfRange(content, 100, 150), in.readAllBytes());
+        }
+        try (InputStream in = object.open(990, -1)) {
+            assertArrayEquals(Arrays.copyOfRange(content, 990, 1000), in.readAllBytes());
+        }
+        assertTrue(s3.requests.stream().allMatch(r -> r.endsWith(" signed")));
+    }
+
+    @Test
+    void uploadsLargeFilesInParts() throws Exception {
+        byte[] content = random(11 * MIB + 17);
+        String location = storage.locationFor("uploads/blobs/cd/big");
+        Path source = file(content);
+
+        storage.put(location, source);
+
+        assertFalse(Files.exists(source));
+        assertEquals(3, s3.requests.stream().filter(r -> r.startsWith("PUT") && r.contains("partNumber=")).count());
+        assertArrayEquals(content, s3.objects.get("cabinet/uploads/blobs/cd/big"));
+        assertTrue(s3.uploads.isEmpty());
+    }
+
+    @Test
+    void deletesObjectsByPrefixAcrossListingPages() throws Exception {
+        for (String name : List.of("blob", "blob.thumb-160", "blob.thumb-480", "blob.thumb-960", "other")) {
+            storage.put(storage.locationFor("uploads/blobs/ef/" + name), file(random(10)));
+        }
+        String blob = storage.locationFor("uploads/blobs/ef/blob");
+
+        assertTrue(storage.delete(blob));
+        assertFalse(storage.delete(blob));
+        assertEquals(3, storage.deleteAll(blob + "."));
+
+        assertEquals(List.of("cabinet/uploads/blobs/ef/other"), new ArrayList<>(s3.objects.keySet()));
+        assertFalse(storage.object(blob).exists());
+        assertThrows(NoSuchFileException.class, () -> storage.object(blob).open().close());
+    }
+
+    @Test
+    void servesLocationsOfOtherBackendsFromLocalDisk() throws Exception {
+        Path legacy = dir.resolve("uploads/protheses/old.stl");
+        Files.createDirectories(legacy.getParent());
+        Files.write(legacy, new byte[] {1, 2, 3});
+
+        StoredObject object = storage.object(legacy.toString());
+
+        assertEquals(legacy.toString(), object.location());
+        assertEquals(3, object.length());
+        assertTrue(storage.delete(legacy.toString()));
+        assertTrue(s3.requests.isEmpty());
+    }
+
+    private Path file(byte[] content) throws IOException {
+        Path file = Files.createTempFile(dir, "upload", ".part");
+        Files.write(file, content);
+        return file;
+    }
+
+    private static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    /** Just enough of the S3 REST API for {@link S3BlobStorage}, path-style, listing two keys per page. */
+    private static final class FakeS3 {
+
+        final Map<String, byte[]> objects = new ConcurrentSkipListMap<>();
+        final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+        final List<String> requests = new CopyOnWriteArrayList<>();
+
+        private final String bucket;
+        private final HttpServer server;
+        private int nextUpload;
+
+        FakeS3(String bucket) throws IOException {
+            this.bucket = bucket;
+            this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", this::handle);
+            server.start();
+        }
+
+        URI endpoint() {
+            return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            try (exchange) {
+                String method = exchange.getRequestMethod();
+                String query = exchange.getRequestURI().getRawQuery();
+                String auth = exchange.getRequestHeaders().getFirst("Authorization");
+                requests.add(method + " " + exchange.getRequestURI()
+                        + (auth != null && auth.startsWith("AWS4-HMAC-SHA256 Credential=access/") ? " signed" : " unsigned"));
+
+                String path = exchange.getRequestURI().getPath();
+                String key = path.length() > bucket.length() + 2 ? path.substring(bucket.length() + 2) : "";
+                Map<String, String> params = params(query);
+                byte[] body = exchange.getRequestBody().readAllBytes();
+
+                switch (method) {
+                    case "PUT" -> {
+                        if (params.containsKey("partNumber")) {
+                            uploads.get(params.get("uploadId")).put(Integer.parseInt(params.get("partNumber")), body);
+                        } else {
+                            objects.put(key, body);
+                        }
+                        exchange.getResponseHeaders().set("ETag", "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"");
+                        send(exchange, 200, new byte[0]);
+                    }
+                    case "POST" -> {
+                        if (params.containsKey("uploads")) {
+                            String id = "upload-" + (++nextUpload);
+                            uploads.put(id, new TreeMap<>());
+                            send(exchange, 200, xml("<InitiateMultipartUploadResult><UploadId>" + id + "</UploadId></InitiateMultipartUploadResult>"));
+                        } else {
+                            Map<Integer, byte[]> parts = uploads.remove(params.get("uploadId"));
+                            ByteArrayOutputStream joined = new ByteArrayOutputStream();
+                            for (byte[] part : parts.values()) joined.write(part);
+                            objects.put(key, joined.toByteArray());
+                            send(exchange, 200, xml("<CompleteMultipartUploadResult><Key>" + key + "</Key></CompleteMultipartUploadResult>"));
+                        }
+                    }
+                    case "DELETE" -> {
+                        if (params.containsKey("uploadId")) {
+                            uploads.remove(params.get("uploadId"));
+                        } else {
+                            objects.remove(key);
+                        }
+                        send(exchange, 204, null);
+                    }
+                    case "HEAD" -> {
+                        byte[] object = objects.get(key);
+                        if (object == null) {
+                            exchange.sendResponseHeaders(404, -1);
+                            return;
+                        }
+                        exchange.getResponseHeaders().set("Content-Length", String.valueOf(object.length));
+                        exchange.getResponseHeaders().set("Last-Modified",
+                                DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC)));
+                        exchange.sendResponseHeaders(200, -1);
+                    }
+                    case "GET" -> {
+                        if ("2".equals(params.get("list-type"))) {
+                            send(exchange, 200, list(params.get("prefix"), params.get("continuation-token")));
+                            return;
+                        }
+                        byte[] object = objects.get(key);
+                        if (object == null) {
+                            send(exchange, 404, xml("<Error><Code>NoSuchKey</Code></Error>"));
+                            return;
+                        }
+                        String range = exchange.getRequestHeaders().getFirst("Range");
+                        if (range == null) {
+                            send(exchange, 200, object);
+                            return;
+                        }
+                        String[] bounds = range.substring("bytes=".length()).split("-", -1);
+                        int from = Integer.parseInt(bounds[0]);
+                        int to = bounds[1].isEmpty() ? object.length - 1 : Math.min(object.length - 1, Integer.parseInt(bounds[1]));
+                        send(exchange, 206, Arrays.copyOfRange(object, from, to + 1));
+                    }
+                    default -> send(exchange, 405, null);
+                }
+            }
+        }
+
+        private byte[] list(String prefix, String token) {
+            // Like S3, the token marks the last key returned, so deleting listed keys doesn't shift the next page.
+            List<String> keys = objects.keySet().stream()
+                    .filter(k -> k.startsWith(prefix) && (token == null || k.compareTo(token) > 0))
+                    .toList();
+            List<String> page = keys.subList(0, Math.min(2, keys.size()));
+            StringBuilder xml = new StringBuilder("<ListBucketResult>");
+            for (String key : page) {
+                xml.append("<Contents><Key>").append(key).append("</Key></Contents>");
+            }
+            xml.append("<IsTruncated>").append(page.size() < keys.size()).append("</IsTruncated>");
+            if (page.size() < keys.size()) {
+                xml.append("<NextContinuationToken>").append(page.get(page.size() - 1)).append("</NextContinuationToken>");
+            }
+            return xml(xml.append("</ListBucketResult>").toString());
+        }
+
+        private static Map<String, String> params(String query) {
+            Map<String, String> params = new HashMap<>();
+            if (query == null) return params;
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                String name = eq < 0 ? pair : pair.substring(0, eq);
+                params.put(name, eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+            return params;
+        }
+
+        private static byte[] xml(String body) {
+            return ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + body).getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+            if (body == null || body.length == 0) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.cabinetplus.backend.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StoredZipWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void archiveLengthMatchesWhatIsWritten() throws Exception {
+        byte[] scan = "solid arcade\nendsolid".getBytes(StandardCharsets.UTF_8);
+        byte[] notes = "Teinte A2 – contrôle".getBytes(StandardCharsets.UTF_8);
+        List<StoredZipWriter.Entry> entries = List.of(
+                new StoredZipWriter.Entry("scans/arcade.stl", scan.length, crc32(scan), 1_700_000_000_000L),
+                new StoredZipWriter.Entry("notes é.txt", notes.length, crc32(notes), 0L),
+                new StoredZipWriter.Entry("empty.dcm", 0, crc32(new byte[0]), 1_700_000_000_000L)
+        );
+
+        Path file = dir.resolve("case.zip");
+        try (OutputStream out = Files.newOutputStream(file); StoredZipWriter zip = new StoredZipWriter(out)) {
+            zip.putEntry(entries.get(0), new ByteArrayInputStream(scan));
+            zip.putEntry(entries.get(1), new ByteArrayInputStream(notes));
+            zip.putEntry(entries.get(2), new ByteArrayInputStream(new byte[0]));
+        }
+
+        assertEquals(Files.size(file), StoredZipWriter.archiveLength(entries));
+        try (ZipFile zip = new ZipFile(file.toFile(), StandardCharsets.UTF_8)) {
+            assertEquals(3, zip.size());
+            ZipEntry arcade = zip.getEntry("scans/arcade.stl");
+            assertEquals(ZipEntry.STORED, arcade.getMethod());
+            assertArrayEquals(scan, zip.getInputStream(arcade).readAllBytes());
+            assertArrayEquals(notes, zip.getInputStream(zip.getEntry("notes é.txt")).readAllBytes());
+            assertEquals(0, zip.getEntry("empty.dcm").getSize());
+        }
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(file), StandardCharsets.UTF_8)) {
+            ZipEntry arcade = in.getNextEntry();
+            assertEquals("scans/arcade.stl", arcade.getName());
+            assertEquals(ZipEntry.STORED, arcade.getMethod());
+            assertEquals(crc32(scan), arcade.getCrc());
+            assertArrayEquals(scan, in.readAllBytes());
+            assertEquals("notes é.txt", in.getNextEntry().getName());
+            assertArrayEquals(notes, in.readAllBytes());
+            assertEquals("empty.dcm", in.getNextEntry().getName());
+            assertEquals(0, in.readAllBytes().length);
+            assertNull(in.getNextEntry());
+        }
+    }
+
+    @Test
+    void rejectsContentThatDoesNotMatchTheDeclaredCrc() {
+        byte[] scan = {1, 2, 3};
+        assertThrows(IOException.class, () -> new StoredZipWriter(OutputStream.nullOutputStream())
+                .putEntry(new StoredZipWriter.Entry("a.stl", 3, crc32(scan) ^ 1, 0L), new ByteArrayInputStream(scan)));
+    }
+
+    @Test
+    void rejectsContentThatDoesNotMatchTheDeclaredSize() {
+        StoredZipWriter zip = new StoredZipWriter(OutputStream.nullOutputStream());
+
+        assertThrows(IOException.class,
+                () -> zip.putEntry(new StoredZipWriter.Entry("a.stl", 10, 0L, 0L), new ByteArrayInputStream(new byte[5])));
+        assertThrows(IOException.class,
+                () -> new StoredZipWriter(OutputStream.nullOutputStream())
+                        .putEntry(new StoredZipWriter.Entry("b.stl", 2, 0L, 0L), new ByteArrayInputStream(new byte[5])));
+    }
+
+    @Test
+    void reportsArchivesThatWouldNeedZip64() {
+        assertEquals(-1, StoredZipWriter.archiveLength(List.of(new StoredZipWriter.Entry("big.zip", 5L << 30, 0L, 0L))));
+    }
+
+    private static long crc32(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+}
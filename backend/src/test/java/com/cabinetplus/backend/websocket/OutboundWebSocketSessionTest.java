@@ -0,0 +1,143 @@
+package com.cabinetplus.backend.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+class OutboundWebSocketSessionTest {
+
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private final OutboundWebSocketSession.Counters counters = new OutboundWebSocketSession.Counters();
+    private final List<WebSocketMessage<?>> written = new ArrayList<>();
+    private WebSocketSession session;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s1");
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> written.add(invocation.getArgument(0))).when(session).sendMessage(any());
+    }
+
+    @Test
+    void queuesWithoutWritingAndDrainsInOrderOnTheSenderPool() {
+        OutboundWebSocketSession outbound = new OutboundWebSocketSession(session, tasks::add, limits(10, 1000, 10_000), counters);
+        TextMessage first = new TextMessage("{\"n\":1}");
+        TextMessage second = new TextMessage("{\"n\":2}");
+
+        assertTrue(outbound.send(first));
+        assertTrue(outbound.send(second));
+        assertTrue(written.isEmpty());
+        assertEquals(2, outbound.queuedFrames());
+        assertEquals(1, tasks.size(), "one drain per session");
+
+        runTasks();
+
+        assertEquals(List.of(first, second), written);
+        assertEquals(0, outbound.queuedFrames());
+        assertEquals(2, counters.sent.get());
+    }
+
+    @Test
+    void closesASessionThatFallsTooFarBehind() throws Exception {
+        OutboundWebSocketSession outbound = new OutboundWebSocketSession(session, tasks::add, limits(2, 1000, 10_000), counters);
+
+        assertTrue(outbound.send(new TextMessage("a")));
+        assertTrue(outbound.send(new TextMessage("b")));
+        assertFalse(outbound.send(new TextMessage("c")));
+
+        assertEquals(3, counters.dropped.get());
+        assertEquals(1, counters.closedSlow.get());
+        assertFalse(outbound.isOpen());
+        verify(session, never()).close(any());
+        runTasks();
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertTrue(written.isEmpty());
+    }
+
+    @Test
+    void countsQueuedBytesAgainstTheBufferLimit() throws Exception {
+        OutboundWebSocketSession outbound = new OutboundWebSocketSession(session, tasks::add, limits(100, 10, 10_000), counters);
+
+        assertTrue(outbound.send(new TextMessage("123456")));
+        assertFalse(outbound.send(new TextMessage("123456")));
+        runTasks();
+
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    @Test
+    void closesASessionStuckOnOneFrameForLongerThanTheSendTimeLimit() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(session).sendMessage(any());
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            OutboundWebSocketSession outbound = new OutboundWebSocketSession(session, pool, limits(10, 1000, 50), counters);
+
+            assertTrue(outbound.send(new TextMessage("slow")));
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+            assertTrue(outbound.send(new TextMessage("queued")), "within the limit");
+            Thread.sleep(120);
+
+            // Returns without waiting for the stuck write: the close is left to the sender pool.
+            assertFalse(outbound.send(new TextMessage("late")));
+            assertEquals(2, counters.dropped.get());
+            verify(session, never()).close(any());
+            release.countDown();
+            verify(session, timeout(5000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void discardedSessionsAreNotWrittenTo() throws Exception {
+        OutboundWebSocketSession outbound = new OutboundWebSocketSession(session, tasks::add, limits(10, 1000, 10_000), counters);
+        outbound.send(new TextMessage("a"));
+
+        outbound.discard();
+        runTasks();
+
+        assertFalse(outbound.send(new TextMessage("b")));
+        verify(session, never()).sendMessage(any());
+        assertEquals(1, counters.dropped.get());
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+    }
+
+    private static OutboundWebSocketSession.Limits limits(int frames, long bytes, long sendTimeLimitMillis) {
+        return new OutboundWebSocketSession.Limits(frames, bytes, sendTimeLimitMillis);
+    }
+}
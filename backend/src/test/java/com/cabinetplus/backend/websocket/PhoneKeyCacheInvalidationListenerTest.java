@@ -0,0 +1,104 @@
+package com.cabinetplus.backend.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.hibernate.resource.beans.container.spi.BeanContainer;
+import org.hibernate.resource.beans.container.spi.ContainedBean;
+import org.hibernate.resource.beans.spi.BeanInstanceProducer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.orm.hibernate5.SpringBeanContainer;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.cabinetplus.backend.models.User;
+
+import jakarta.persistence.EntityListeners;
+
+class PhoneKeyCacheInvalidationListenerTest {
+
+    /** How Hibernate asks for entity listeners: JPA-compliant creation, no cached references. */
+    private static final BeanContainer.LifecycleOptions ENTITY_LISTENER_OPTIONS = new BeanContainer.LifecycleOptions() {
+        @Override
+        public boolean canUseCachedReferences() {
+            return false;
+        }
+
+        @Override
+        public boolean useJpaCompliantCreation() {
+            return true;
+        }
+    };
+
+    private static final BeanInstanceProducer NO_FALLBACK = new BeanInstanceProducer() {
+        @Override
+        public <B> B produceBeanInstance(Class<B> beanType) {
+            throw new AssertionError("Spring should create " + beanType);
+        }
+
+        @Override
+        public <B> B produceBeanInstance(String name, Class<B> beanType) {
+            throw new AssertionError("Spring should create " + beanType);
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void userEntityRegistersTheListener() {
+        EntityListeners listeners = User.class.getAnnotation(EntityListeners.class);
+
+        assertTrue(Arrays.asList(listeners.value()).contains(PhoneKeyCacheInvalidationListener.class));
+    }
+
+    @Test
+    void listenerCreatedTheWayHibernateDoesEvictsTheApplicationCache() {
+        PhoneKeyCache cache = new PhoneKeyCache(600, 100);
+        cache.remember(7L, "+213550123456");
+        cache.remember(8L, "+213550999999");
+        PhoneKeyCacheInvalidationListener listener = hibernateListener(cache);
+
+        listener.onWrite(user(7L));
+
+        assertNull(cache.userId("0550123456", phone -> null));
+        assertEquals(8L, cache.userId("0550999999", phone -> null));
+    }
+
+    @Test
+    void mappingsReloadedBeforeCommitAreDroppedAgainAfterIt() {
+        PhoneKeyCache cache = new PhoneKeyCache(600, 100);
+        PhoneKeyCacheInvalidationListener listener = hibernateListener(cache);
+        TransactionSynchronizationManager.initSynchronization();
+
+        listener.onWrite(user(7L));
+        // A concurrent request still sees the uncommitted old row.
+        cache.remember(7L, "+213550123456");
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertNull(cache.userId("0550123456", phone -> null));
+    }
+
+    private static PhoneKeyCacheInvalidationListener hibernateListener(PhoneKeyCache cache) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("phoneKeyCache", cache);
+        ContainedBean<PhoneKeyCacheInvalidationListener> bean = new SpringBeanContainer(beanFactory)
+                .getBean(PhoneKeyCacheInvalidationListener.class, ENTITY_LISTENER_OPTIONS, NO_FALLBACK);
+        return bean.getBeanInstance();
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,103 @@
+package com.cabinetplus.backend.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import com.cabinetplus.backend.models.User;
+
+class PhoneKeyCacheTest {
+
+    private final List<String> lookups = new ArrayList<>();
+
+    @Test
+    void everyStoredVariantOfAPhoneResolvesToTheSameUserWithOneLookup() {
+        PhoneKeyCache cache = new PhoneKeyCache(600, 100);
+        Function<String, User> loader = loader(user(7L, "+213550123456"));
+
+        assertEquals(7L, cache.userId("0550123456", loader));
+        assertEquals(7L, cache.userId("+213550123456", loader));
+        assertEquals(7L, cache.userId("0550123456", loader));
+
+        assertEquals(List.of("0550123456"), lookups);
+    }
+
+    @Test
+    void handshakePrincipalsWarmTheCache() {
+        PhoneKeyCache cache = new PhoneKeyCache(600, 100);
+        cache.remember(7L, "+213550123456");
+
+        assertEquals(7L, cache.userId("0550123456", loader(null)));
+        assertEquals(List.of(), lookups);
+    }
+
+    @Test
+    void unknownPhonesAreLookedUpEachTime() {
+        PhoneKeyCache cache = new PhoneKeyCache(600, 100);
+        Function<String, User> loader = loader(null);
+
+        assertNull(cache.userId("0550000000", loader));
+        assertNull(cache.userId("0550000000", loader));
+
+        assertEquals(2, lookups.size());
+    }
+
+    @Test
+    void invalidatingAUserDropsOnlyTheirMappings() {
+        PhoneKeyCache cache = new PhoneKeyCache(600, 100);
+        cache.remember(7L, "+213550123456");
+        cache.remember(8L, "+213550999999");
+
+        cache.invalidateUser(7L);
+
+        assertNull(cache.userId("0550123456", loader(null)));
+        assertEquals(8L, cache.userId("0550999999", loader(null)));
+    }
+
+    @Test
+    void staysWithinItsBound() {
+        PhoneKeyCache cache = new PhoneKeyCache(600, 4);
+        for (long id = 1; id <= 10; id++) {
+            cache.remember(id, String.format("+2135500000%02d", id));
+        }
+        assertTrue(cache.size() <= 4);
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedPhoneWhenFull() {
+        // Two stored variants per phone: room for two users.
+        PhoneKeyCache cache = new PhoneKeyCache(600, 4);
+        cache.remember(1L, "+213550000001");
+        cache.remember(2L, "+213550000002");
+        assertEquals(1L, cache.userId("0550000001", loader(null)));
+
+        cache.remember(3L, "+213550000003");
+
+        assertEquals(4, cache.size());
+        assertEquals(1L, cache.userId("0550000001", loader(null)));
+        assertNull(cache.userId("+213550000001", loader(null)));
+        assertEquals(2L, cache.userId("0550000002", loader(null)));
+        cache.invalidateUser(3L);
+        assertEquals(2, cache.size());
+    }
+
+    private Function<String, User> loader(User user) {
+        return phone -> {
+            lookups.add(phone);
+            return user;
+        };
+    }
+
+    private static User user(Long id, String phone) {
+        User user = new User();
+        user.setId(id);
+        user.setPhoneNumber(phone);
+        return user;
+    }
+}
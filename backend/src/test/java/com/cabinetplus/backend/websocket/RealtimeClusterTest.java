@@ -0,0 +1,138 @@
+package com.cabinetplus.backend.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+class RealtimeClusterTest {
+
+    /** Delivers every message to every subscriber synchronously, like NOTIFY does to every listening instance. */
+    private static final class InMemoryBus implements RealtimeClusterBus {
+        final List<Listener> listeners = new ArrayList<>();
+        final List<RealtimeClusterMessage> published = new ArrayList<>();
+
+        @Override
+        public void publish(RealtimeClusterMessage message) {
+            published.add(message);
+            for (Listener listener : List.copyOf(listeners)) {
+                listener.onMessage(message);
+            }
+        }
+
+        @Override
+        public void subscribe(Listener listener) {
+            listeners.add(listener);
+        }
+    }
+
+    private final InMemoryBus bus = new InMemoryBus();
+    private final MessagingWebSocketSessionRegistry registryA = new MessagingWebSocketSessionRegistry();
+    private final MessagingWebSocketSessionRegistry registryB = new MessagingWebSocketSessionRegistry();
+    private final List<List<Long>> relayedToB = new ArrayList<>();
+    private RealtimeCluster nodeA;
+    private RealtimeCluster nodeB;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = node(registryA, 60_000);
+        nodeB = node(registryB, 60_000);
+        nodeB.onRemoteEvent((userIds, payload) -> relayedToB.add(userIds));
+    }
+
+    @Test
+    void usersConnectedToAnotherInstanceAreOnlineThere() {
+        connect(registryB, nodeB, 7L);
+
+        assertTrue(nodeA.isOnlineElsewhere(7L));
+        assertFalse(nodeB.isOnlineElsewhere(7L), "own sessions are not 'elsewhere'");
+
+        disconnect(registryB, nodeB, 7L);
+        assertFalse(nodeA.isOnlineElsewhere(7L));
+    }
+
+    @Test
+    void eventsAreRelayedOnlyForRecipientsConnectedElsewhere() {
+        connect(registryB, nodeB, 7L);
+        bus.published.clear();
+
+        nodeA.publishEvent(List.of(7L, 8L), "{\"type\":\"MESSAGE_CREATED\"}");
+        nodeA.publishEvent(List.of(8L), "{\"type\":\"MESSAGE_CREATED\"}");
+
+        assertEquals(List.of(List.of(7L)), relayedToB);
+        assertEquals(1, bus.published.size(), "nothing sent when no recipient is connected elsewhere");
+    }
+
+    @Test
+    void aJoiningInstanceLearnsWhoIsConnectedWhereFromSnapshots() {
+        connect(registryA, nodeA, 1L);
+        connect(registryB, nodeB, 2L);
+
+        RealtimeCluster nodeC = node(new MessagingWebSocketSessionRegistry(), 60_000);
+        nodeC.join();
+
+        assertTrue(nodeC.isOnlineElsewhere(1L));
+        assertTrue(nodeC.isOnlineElsewhere(2L));
+        assertEquals(2, nodeC.liveNodes());
+    }
+
+    @Test
+    void snapshotsReplaceWhatWasKnownAboutAnInstance() {
+        connect(registryB, nodeB, 7L);
+        // The offline announcement was lost; the session is gone from B's registry.
+        registryB.remove(session(7L));
+
+        nodeB.publishSnapshot();
+
+        assertFalse(nodeA.isOnlineElsewhere(7L));
+    }
+
+    @Test
+    void usersOfAnInstanceThatWentSilentAreNoLongerOnline() throws Exception {
+        RealtimeCluster impatient = node(new MessagingWebSocketSessionRegistry(), 20);
+        connect(registryB, nodeB, 7L);
+        assertTrue(impatient.isOnlineElsewhere(7L));
+
+        Thread.sleep(60);
+
+        assertFalse(impatient.isOnlineElsewhere(7L));
+        assertEquals(0, impatient.liveNodes());
+    }
+
+    private RealtimeCluster node(MessagingWebSocketSessionRegistry registry, long nodeTimeoutMillis) {
+        return new RealtimeCluster(bus, registry, nodeTimeoutMillis, 2);
+    }
+
+    private void connect(MessagingWebSocketSessionRegistry registry, RealtimeCluster node, Long userId) {
+        WebSocketSession session = session(userId);
+        OutboundWebSocketSession outbound = new OutboundWebSocketSession(session, Runnable::run,
+                new OutboundWebSocketSession.Limits(10, 1000, 10_000), new OutboundWebSocketSession.Counters());
+        if (registry.add(outbound)) node.localOnline(userId);
+    }
+
+    private void disconnect(MessagingWebSocketSessionRegistry registry, RealtimeCluster node, Long userId) {
+        if (registry.remove(session(userId)) != null && registry.getSessions(userId).isEmpty()) {
+            node.localOffline(userId);
+        }
+    }
+
+    private static WebSocketSession session(Long userId) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(MessagingWebSocketSessionRegistry.USER_ID_ATTR, userId);
+        when(session.getAttributes()).thenReturn(attributes);
+        when(session.getId()).thenReturn("s" + userId);
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+}